@@ -0,0 +1,87 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.snap2d.world.CollisionModel;
+import com.snap2d.world.World2D;
+
+/**
+ * CollisionModel.collidesWith between two circular models, overlapping, just
+ * touching and far apart, for polygons with a varying number of segments.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    static final int SIZE = 32;
+
+    /**
+     * Number of segments in each circle polygon.
+     */
+    @Param({"8", "32", "128"})
+    int segments;
+
+    CollisionModel a, b;
+    double overlapX = SIZE / 2, touchX = SIZE - 1, apartX = SIZE * 4;
+    // keeps the test rays off the polygon vertices, which are all on whole
+    // units
+    double offsY = 0.5;
+
+    @Setup
+    public void setup() {
+
+        World2D world = new World2D(0, 600, 800, 600, 1);
+        Point[] pts = CollisionModel.createCircleBounds(SIZE, Math.PI * 2 / segments);
+        a = new CollisionModel(pts, SIZE, SIZE, world);
+        b = new CollisionModel(pts, SIZE, SIZE, world);
+    }
+
+    @Benchmark
+    public boolean overlapping() {
+
+        return a.collidesWith(0, 0, overlapX, offsY, b);
+    }
+
+    @Benchmark
+    public boolean touching() {
+
+        return a.collidesWith(0, 0, touchX, offsY, b);
+    }
+
+    @Benchmark
+    public boolean apart() {
+
+        return a.collidesWith(0, 0, apartX, offsY, b);
+    }
+}
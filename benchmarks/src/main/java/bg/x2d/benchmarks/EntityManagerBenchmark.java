@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.snap2d.physics.GamePhysics;
+import com.snap2d.world.CollisionModel;
+import com.snap2d.world.Entity;
+import com.snap2d.world.EntityManager;
+import com.snap2d.world.World2D;
+
+/**
+ * One EntityManager update (entity updates plus the pairwise collision pass)
+ * for a varying number of small circular entities moving around an 800x600
+ * world.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityManagerBenchmark {
+
+    static final int WORLD_WT = 800, WORLD_HT = 600, SIZE = 16;
+
+    @Param({"10", "100", "500"})
+    int entityCount;
+
+    EntityManager manager;
+    long time;
+
+    @Setup
+    public void setup() {
+
+        World2D world = new World2D(0, WORLD_HT, WORLD_WT, WORLD_HT, 1);
+        CollisionModel model = new CollisionModel(CollisionModel.createCircleBounds(SIZE, Math.PI / 8), SIZE, SIZE,
+                        world);
+        Random rand = new Random(0);
+        manager = new EntityManager();
+        for (int i = 0; i < entityCount; i++ ) {
+            manager.register(new MovingEntity(rand.nextDouble() * (WORLD_WT - SIZE), rand.nextDouble()
+                            * (WORLD_HT - SIZE), rand.nextDouble() * 4 - 2, rand.nextDouble() * 4 - 2, model, world));
+        }
+    }
+
+    @Benchmark
+    public EntityManager update() {
+
+        time += 16666667;
+        manager.update(time, 16666667);
+        return manager;
+    }
+
+    /*
+     * Moves at a constant velocity and bounces off the world edges. All
+     * instances share one CollisionModel.
+     */
+    static class MovingEntity extends Entity {
+
+        private static final long serialVersionUID = 1L;
+
+        final CollisionModel model;
+        double vx, vy;
+
+        MovingEntity(final double x,
+                     final double y,
+                     final double vx,
+                     final double vy,
+                     final CollisionModel model,
+                     final World2D world) {
+
+            super(new Point2D.Double(x, y), world);
+            this.vx = vx;
+            this.vy = vy;
+            this.model = model;
+            initBounds(SIZE, SIZE);
+        }
+
+        @Override
+        public void update(final long nanoTimeNow, final long nanosSinceLastUpdate) {
+
+            double nx = getWorldX() + vx, ny = getWorldY() + vy;
+            if (nx < 0 || nx > WORLD_WT - SIZE) {
+                vx = -vx;
+                nx = getWorldX() + vx;
+            }
+            if (ny < 0 || ny > WORLD_HT - SIZE) {
+                vy = -vy;
+                ny = getWorldY() + vy;
+            }
+            setWorldLoc(nx, ny);
+        }
+
+        @Override
+        public GamePhysics getPhysics() {
+
+            return null;
+        }
+
+        @Override
+        public CollisionModel getCollisionModel() {
+
+            return model;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.x2d.geo.GeoUtils;
+import bg.x2d.geo.PointUD;
+
+/**
+ * GeoUtils.lineIntersection for crossing lines, parallel lines and a vertical
+ * line (undefined slope).
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoUtilsBenchmark {
+
+    // non-final so the JIT can't fold the calls away
+    double x1 = 0, y1 = 0, x2 = 10, y2 = 10;
+    double x3 = 0, y3 = 10, x4 = 10, y4 = 0;
+    double px3 = 0, py3 = 5, px4 = 10, py4 = 15;
+    double vx3 = 5, vy3 = -5, vx4 = 5, vy4 = 20;
+
+    @Benchmark
+    public PointUD lineIntersectionCrossing() {
+
+        return GeoUtils.lineIntersection(x1, y1, x2, y2, x3, y3, x4, y4);
+    }
+
+    @Benchmark
+    public PointUD lineIntersectionParallel() {
+
+        return GeoUtils.lineIntersection(x1, y1, x2, y2, px3, py3, px4, py4);
+    }
+
+    @Benchmark
+    public PointUD lineIntersectionVertical() {
+
+        return GeoUtils.lineIntersection(x1, y1, x2, y2, vx3, vy3, vx4, vy4);
+    }
+}
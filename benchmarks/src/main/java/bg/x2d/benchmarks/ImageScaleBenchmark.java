@@ -0,0 +1,80 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.x2d.ImageUtils;
+import bg.x2d.ImageUtils.ScaleQuality;
+
+/**
+ * ImageUtils.scaleImage of a 256x256 ARGB sprite, up and down, at each
+ * ScaleQuality.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageScaleBenchmark {
+
+    static final int SIZE = 256;
+
+    @Param({"SPEED", "NORM", "HIGH"})
+    ScaleQuality quality;
+
+    BufferedImage img;
+    Dimension up = new Dimension(SIZE * 2, SIZE * 2), down = new Dimension(SIZE / 4, SIZE / 4);
+
+    @Setup
+    public void setup() {
+
+        img = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Random rand = new Random(0);
+        for (int y = 0; y < SIZE; y++ ) {
+            for (int x = 0; x < SIZE; x++ ) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage scaleUp() {
+
+        return ImageUtils.scaleImage(img, up, quality);
+    }
+
+    @Benchmark
+    public BufferedImage scaleDown() {
+
+        return ImageUtils.scaleImage(img, down, quality);
+    }
+}
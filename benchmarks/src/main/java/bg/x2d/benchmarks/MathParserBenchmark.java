@@ -0,0 +1,129 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.snap2d.script.CompiledExpression;
+import com.snap2d.script.MathParseException;
+import com.snap2d.script.MathParser;
+import com.snap2d.script.Operand;
+
+/**
+ * MathParser on scalar expressions: the full parse (constant substitution,
+ * formatting and conversion to RPN followed by evaluation) and evaluation of
+ * already converted RPN alone, which is the part done by calculate; and the
+ * compiled path: a cached compile plus evaluation, and evaluation alone.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathParserBenchmark {
+
+    static final double[] NO_VARS = new double[0];
+
+    @Param({"3+4*2", "(3.5+4)*2-7/3+1.25*(8-2)", "2*pi*12.5+sqrt(16)"})
+    String expression;
+
+    ExposedParser parser;
+    String rpn;
+    CompiledExpression compiled;
+    double[] stack;
+
+    @Setup
+    public void setup() throws MathParseException {
+
+        parser = new ExposedParser();
+        rpn = parser.toRPN(expression);
+        compiled = parser.compile(expression);
+        stack = new double[compiled.getStackSize()];
+    }
+
+    @Benchmark
+    public double parseScalars() throws MathParseException {
+
+        return parser.parseScalars(expression);
+    }
+
+    @Benchmark
+    public Operand parse() throws MathParseException {
+
+        return parser.parse(expression);
+    }
+
+    @Benchmark
+    public Operand calculate() throws MathParseException {
+
+        return parser.calculate(rpn);
+    }
+
+    @Benchmark
+    public double calculateScalars() throws MathParseException {
+
+        return parser.calculateScalars(rpn);
+    }
+
+    @Benchmark
+    public double compileCached() throws MathParseException {
+
+        return parser.compile(expression).evaluate();
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+
+        return compiled.evaluate(NO_VARS, stack);
+    }
+
+    /*
+     * Gives the benchmark access to the individual parsing stages.
+     */
+    static class ExposedParser extends MathParser {
+
+        String toRPN(final String input) throws MathParseException {
+
+            StringBuilder sb = new StringBuilder(findConstants(input));
+            format(sb);
+            return shuntingYard(sb.toString());
+        }
+
+        @Override
+        protected Operand calculate(final String input) throws MathParseException {
+
+            return super.calculate(input);
+        }
+
+        @Override
+        protected double calculateScalars(final String input) throws MathParseException {
+
+            return super.calculateScalars(input);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.x2d.geo.Vector2d;
+import bg.x2d.geo.Vector2f;
+import bg.x2d.physics.Force;
+import bg.x2d.physics.Friction;
+import bg.x2d.physics.GeneralForce;
+import bg.x2d.physics.Gravity;
+import bg.x2d.physics.StandardPhysics;
+
+/**
+ * One StandardPhysics.applyForces step with gravity, a general force and
+ * friction, in float and double precision.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicsBenchmark {
+
+    StandardPhysics physf, physd;
+    Force[] forcesf, forcesd;
+
+    @Setup
+    public void setup() {
+
+        physf = new StandardPhysics(new Vector2f(3, 4), 2);
+        forcesf = new Force[] {new GeneralForce(new Vector2f(1.5f, 12)), new Friction(0.2f, 0.1f, new Gravity())};
+        physd = new StandardPhysics(new Vector2d(3, 4), 2);
+        forcesd = new Force[] {new GeneralForce(new Vector2d(1.5, 12)), new Friction(0.2, 0.1, new Gravity())};
+    }
+
+    @Benchmark
+    public Vector2f applyForcesFloat() {
+
+        return physf.applyForces(0.0001f, forcesf);
+    }
+
+    @Benchmark
+    public Vector2d applyForcesDouble() {
+
+        return physd.applyForces(0.0001, forcesd);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.x2d.geo.Vector2d;
+import bg.x2d.physics.Force;
+import bg.x2d.physics.Friction;
+import bg.x2d.physics.Gravity;
+import bg.x2d.physics.PhysicsWorld;
+import bg.x2d.physics.StandardPhysics;
+
+/**
+ * One tick of gravity and friction for a varying number of bodies: one
+ * StandardPhysics node per body versus a PhysicsWorld, serial and parallel.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicsWorldBenchmark {
+
+    static final double TICK = 1 / 60.0;
+
+    @Param({"1000", "10000", "100000"})
+    int bodyCount;
+
+    StandardPhysics[] nodes;
+    Force[] forces;
+    PhysicsWorld serial, parallel;
+
+    @Setup
+    public void setup() {
+
+        Friction friction = new Friction(0.3, 0.1, new Gravity());
+        forces = new Force[] {friction};
+        nodes = new StandardPhysics[bodyCount];
+        serial = new PhysicsWorld(bodyCount);
+        serial.setFriction(friction);
+        serial.setParallel(false);
+        parallel = new PhysicsWorld(bodyCount);
+        parallel.setFriction(friction);
+        parallel.setParallelThreshold(0, PhysicsWorld.DEFAULT_CHUNK_SIZE);
+        Random rand = new Random(0);
+        for (int i = 0; i < bodyCount; i++ ) {
+            double vx = rand.nextDouble() * 10 - 5, vy = rand.nextDouble() * 10 - 5, mass = 1 + rand.nextDouble();
+            nodes[i] = new StandardPhysics(new Vector2d(vx, vy), mass);
+            serial.addBody(0, 0, vx, vy, mass);
+            parallel.addBody(0, 0, vx, vy, mass);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        parallel.dispose();
+    }
+
+    @Benchmark
+    public StandardPhysics[] standardPhysics() {
+
+        for (StandardPhysics node : nodes) {
+            node.applyForces(TICK, forces);
+        }
+        return nodes;
+    }
+
+    @Benchmark
+    public PhysicsWorld physicsWorldSerial() {
+
+        serial.step(TICK);
+        return serial;
+    }
+
+    @Benchmark
+    public PhysicsWorld physicsWorldParallel() {
+
+        parallel.step(TICK);
+        return parallel;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+package bg.x2d.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.snap2d.script.Function;
+import com.snap2d.script.ScriptInvocationException;
+import com.snap2d.script.ScriptProgram;
+import com.snap2d.script.ScriptSource;
+
+/**
+ * ScriptProgram.invoke on the functions in bench.snap: recursive integer
+ * calls, a float accumulation loop and polynomial evaluation, with the
+ * functions interpreted and compiled.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+    @Param({"INTERPRETED", "COMPILED"})
+    ScriptProgram.ExecutionMode mode;
+
+    ScriptProgram prog;
+    Function fib, sumTo, poly;
+
+    @Setup
+    public void setup() throws IOException, ScriptInvocationException {
+
+        ScriptSource source = new ScriptSource(ScriptBenchmark.class.getResource("/bench.snap"));
+        prog = new ScriptProgram(true, source);
+        if ( !prog.compile()) {
+            throw (new IllegalStateException("bench.snap failed to compile", prog.getLastCompileError()));
+        }
+        prog.setExecutionMode(mode);
+        prog.initRuntime(true);
+        fib = prog.findFunction("Fib", int.class);
+        sumTo = prog.findFunction("SumTo", int.class);
+        poly = prog.findFunction("Poly", double.class);
+    }
+
+    @Benchmark
+    public Object invokeFib() throws ScriptInvocationException {
+
+        return prog.invoke(fib, 15);
+    }
+
+    @Benchmark
+    public Object invokeSumTo() throws ScriptInvocationException {
+
+        return prog.invoke(sumTo, 100);
+    }
+
+    @Benchmark
+    public Object invokePoly() throws ScriptInvocationException {
+
+        return prog.invoke(poly, 1.5);
+    }
+}
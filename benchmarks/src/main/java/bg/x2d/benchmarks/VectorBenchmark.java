@@ -0,0 +1,253 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package bg.x2d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
+import bg.x2d.geo.Vector2d;
+import bg.x2d.geo.Vector2f;
+
+/**
+ * Vector2f and Vector2d arithmetic (in-place operations, the allocating *New
+ * variants, rotation and normalization) compared with the same operations on
+ * the fast path Vec2f and Vec2d types.
+ *
+ * @author Brian Groenke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+
+    Vector2f af, bf;
+    Vector2d ad, bd;
+    Vec2f vaf, vbf, outf;
+    Vec2d vad, vbd, outd;
+
+    @Setup
+    public void setup() {
+
+        af = new Vector2f(3.5f, -1.25f);
+        bf = new Vector2f(0.75f, 2.0f);
+        ad = new Vector2d(3.5, -1.25);
+        bd = new Vector2d(0.75, 2.0);
+        vaf = new Vec2f(3.5f, -1.25f);
+        vbf = new Vec2f(0.75f, 2.0f);
+        outf = new Vec2f();
+        vad = new Vec2d(3.5, -1.25);
+        vbd = new Vec2d(0.75, 2.0);
+        outd = new Vec2d();
+    }
+
+    @Benchmark
+    public Vector2f floatAddSubInPlace() {
+
+        return af.add(bf).sub(bf);
+    }
+
+    @Benchmark
+    public Vector2f floatAddNew() {
+
+        return af.addNew(bf);
+    }
+
+    @Benchmark
+    public Vector2f floatMultDivInPlace() {
+
+        return af.mult(1.5f).div(1.5f);
+    }
+
+    @Benchmark
+    public float floatDot() {
+
+        return af.dot(bf);
+    }
+
+    @Benchmark
+    public Vector2f floatRotateNew() {
+
+        return af.rotateNew(0.1f);
+    }
+
+    @Benchmark
+    public Vector2f floatNormalize() {
+
+        Vector2f v = new Vector2f(af);
+        v.normalize();
+        return v;
+    }
+
+    @Benchmark
+    public Vector2f floatInterpolate() {
+
+        // interpolate modifies the receiver
+        return new Vector2f(af).interpolate(bf, 0.5f);
+    }
+
+    @Benchmark
+    public Vector2d doubleAddSubInPlace() {
+
+        return ad.add(bd).sub(bd);
+    }
+
+    @Benchmark
+    public Vector2d doubleAddNew() {
+
+        return ad.addNew(bd);
+    }
+
+    @Benchmark
+    public Vector2d doubleMultDivInPlace() {
+
+        return ad.mult(1.5).div(1.5);
+    }
+
+    @Benchmark
+    public double doubleDot() {
+
+        return ad.dot(bd);
+    }
+
+    @Benchmark
+    public Vector2d doubleRotateNew() {
+
+        return ad.rotateNew(0.1);
+    }
+
+    @Benchmark
+    public Vector2d doubleNormalize() {
+
+        Vector2d v = new Vector2d(ad);
+        v.normalize();
+        return v;
+    }
+
+    @Benchmark
+    public Vector2d doubleInterpolate() {
+
+        return new Vector2d(ad).interpolate(bd, 0.5);
+    }
+
+    @Benchmark
+    public Vec2f vec2fAddSubInPlace() {
+
+        return vaf.add(vbf).sub(vbf);
+    }
+
+    @Benchmark
+    public Vec2f vec2fAddOut() {
+
+        return Vec2f.add(vaf, vbf, outf);
+    }
+
+    @Benchmark
+    public Vec2f vec2fMultDivInPlace() {
+
+        return vaf.mult(1.5f).div(1.5f);
+    }
+
+    @Benchmark
+    public float vec2fDot() {
+
+        return vaf.dot(vbf);
+    }
+
+    @Benchmark
+    public Vec2f vec2fRotateOut() {
+
+        return Vec2f.rotate(vaf, 0.1f, outf);
+    }
+
+    @Benchmark
+    public Vec2f vec2fNormalizeOut() {
+
+        return Vec2f.normalize(vaf, outf);
+    }
+
+    @Benchmark
+    public Vec2f vec2fInterpolateOut() {
+
+        return Vec2f.interpolate(vaf, vbf, 0.5f, outf);
+    }
+
+    @Benchmark
+    public float vec2fLength() {
+
+        return vaf.length();
+    }
+
+    @Benchmark
+    public Vec2d vec2dAddSubInPlace() {
+
+        return vad.add(vbd).sub(vbd);
+    }
+
+    @Benchmark
+    public Vec2d vec2dAddOut() {
+
+        return Vec2d.add(vad, vbd, outd);
+    }
+
+    @Benchmark
+    public Vec2d vec2dMultDivInPlace() {
+
+        return vad.mult(1.5).div(1.5);
+    }
+
+    @Benchmark
+    public double vec2dDot() {
+
+        return vad.dot(vbd);
+    }
+
+    @Benchmark
+    public Vec2d vec2dRotateOut() {
+
+        return Vec2d.rotate(vad, 0.1, outd);
+    }
+
+    @Benchmark
+    public Vec2d vec2dNormalizeOut() {
+
+        return Vec2d.normalize(vad, outd);
+    }
+
+    @Benchmark
+    public Vec2d vec2dInterpolateOut() {
+
+        return Vec2d.interpolate(vad, vbd, 0.5, outd);
+    }
+
+    @Benchmark
+    public double vec2dLength() {
+
+        return vad.length();
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A scalar math expression compiled once by {@link MathParser#compile(String)}
+ * into a flat postfix program and evaluated any number of times without
+ * re-parsing. Identifiers other than the named constants (pi, e) and the
+ * built-in functions become variable slots, numbered in order of first
+ * appearance; values for the slots are passed to {@link #evaluate(double...)}.
+ * <br/>
+ * <br/>
+ * Supported syntax: decimal numbers (with optional 'E' exponent), all
+ * operators defined in MathRef with their usual precedence, unary minus,
+ * parentheses, implicit multiplication (<code>2x</code>, <code>2(x+1)</code>,
+ * <code>(a)(b)</code>) and the single argument functions sqrt, abs, sin, cos,
+ * tan, log, exp, floor and ceil. Vector operands are not supported; use
+ * {@link MathParser#parse(String)} for those. Sub-expressions made up only of
+ * constants are folded at compile time. Unlike
+ * {@link MathParser#parseScalars(String)}, results are not rounded.<br/>
+ * <br/>
+ * Instances are immutable and may be shared and evaluated concurrently by any
+ * number of threads.
+ *
+ * @author Brian Groenke
+ *
+ */
+public final class CompiledExpression {
+
+    static final String[] FUNCTIONS = new String[] { "sqrt", "abs", "sin", "cos", "tan", "log", "exp", "floor",
+            "ceil" };
+
+    // instruction layout: kind in the high byte, argument in the low 24 bits
+    private static final int CONST = 1, VAR = 2, NEG = 3, FUNC = 4, BINOP = 5, LPAREN = 6;
+    private static final int KIND_SHIFT = 24, ARG_MASK = 0xFFFFFF;
+
+    private final String source;
+    private final int[] code;
+    private final double[] consts;
+    private final String[] vars;
+    private final int stackSize;
+
+    private CompiledExpression(final String source,
+                               final int[] code,
+                               final double[] consts,
+                               final String[] vars,
+                               final int stackSize) {
+
+        this.source = source;
+        this.code = code;
+        this.consts = consts;
+        this.vars = vars;
+        this.stackSize = stackSize;
+    }
+
+    /**
+     * @return the source text this expression was compiled from
+     */
+    public String getSource() {
+
+        return source;
+    }
+
+    /**
+     * @return the number of variable slots that must be supplied to
+     *         {@link #evaluate(double...)}
+     */
+    public int getVariableCount() {
+
+        return vars.length;
+    }
+
+    /**
+     * @param slot
+     * @return the name of the variable bound to the given slot
+     */
+    public String getVariableName(final int slot) {
+
+        return vars[slot];
+    }
+
+    /**
+     * @param name
+     * @return the slot the named variable is bound to, or -1 if the expression
+     *         does not reference it
+     */
+    public int getVariableSlot(final String name) {
+
+        for (int i = 0; i < vars.length; i++ ) {
+            if (vars[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the minimum length of the stack array accepted by
+     *         {@link #evaluate(double[], double[])}
+     */
+    public int getStackSize() {
+
+        return stackSize;
+    }
+
+    /**
+     * Evaluates the expression with the given variable values, indexed by slot.
+     *
+     * @param values
+     *            one value per variable slot
+     * @return the result
+     */
+    public double evaluate(final double... values) {
+
+        return evaluate(values, new double[stackSize]);
+    }
+
+    /**
+     * Evaluates the expression using a caller supplied stack, so that nothing
+     * is allocated. The stack must not be shared between threads evaluating at
+     * the same time.
+     *
+     * @param values
+     *            one value per variable slot
+     * @param stack
+     *            scratch array of at least {@link #getStackSize()} elements
+     * @return the result
+     */
+    public double evaluate(final double[] values, final double[] stack) {
+
+        if (values.length < vars.length) {
+            throw (new IllegalArgumentException("expected " + vars.length + " variable values, found "
+                            + values.length));
+        }
+        int sp = 0;
+        for (int ins : code) {
+            int arg = ins & ARG_MASK;
+            switch (ins >>> KIND_SHIFT) {
+            case CONST:
+                stack[sp++ ] = consts[arg];
+                break;
+            case VAR:
+                stack[sp++ ] = values[arg];
+                break;
+            case NEG:
+                stack[sp - 1] = -stack[sp - 1];
+                break;
+            case FUNC:
+                stack[sp - 1] = applyFunction(arg, stack[sp - 1]);
+                break;
+            default:
+                sp-- ;
+                stack[sp - 1] = applyOperator((char) arg, stack[sp - 1], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+    @Override
+    public String toString() {
+
+        return source;
+    }
+
+    /*
+     * Operators are applied inline rather than through MathRef.MathOp to
+     * avoid the varargs array; the semantics must match the ops registered in
+     * MathRef.
+     */
+    static double applyOperator(final char op, final double a, final double b) {
+
+        switch (op) {
+        case '+':
+            return a + b;
+        case '-':
+            return a - b;
+        case '*':
+            return a * b;
+        case '/':
+            return a / b;
+        case '|':
+            return (int) a | (int) b;
+        case '&':
+            return (int) a & (int) b;
+        case '~':
+            return (int) a ^ (int) b;
+        case '%':
+            return a % b;
+        case '^':
+            return (float) Math.pow(a, b);
+        case MathRef.EQUALS:
+            return (a == b) ? 1 : 0;
+        case '>':
+            return (a > b) ? 1 : 0;
+        case '<':
+            return (a < b) ? 1 : 0;
+        case MathRef.NOT_EQUALS:
+            return (a != b) ? 1 : 0;
+        case MathRef.LESS_EQUALS:
+            return (a <= b) ? 1 : 0;
+        case MathRef.GREAT_EQUALS:
+            return (a >= b) ? 1 : 0;
+        case MathRef.AND_BOOL:
+            return (a != 0 && b != 0) ? 1 : 0;
+        case MathRef.OR_BOOL:
+            return (a != 0 || b != 0) ? 1 : 0;
+        default:
+            return MathRef.doOperator(op, a, b);
+        }
+    }
+
+    static double applyFunction(final int func, final double x) {
+
+        switch (func) {
+        case 0:
+            return Math.sqrt(x);
+        case 1:
+            return Math.abs(x);
+        case 2:
+            return Math.sin(x);
+        case 3:
+            return Math.cos(x);
+        case 4:
+            return Math.tan(x);
+        case 5:
+            return Math.log(x);
+        case 6:
+            return Math.exp(x);
+        case 7:
+            return Math.floor(x);
+        case 8:
+            return Math.ceil(x);
+        default:
+            throw (new IllegalStateException("unknown function id: " + func));
+        }
+    }
+
+    /**
+     * Compiles the given source in a single pass: tokens are read straight
+     * from the character array and fed through the shunting yard algorithm
+     * into the postfix program, folding constant sub-expressions as they are
+     * emitted.
+     *
+     * @param source
+     * @return the compiled expression
+     * @throws MathParseException
+     *             if the source is not a valid scalar expression
+     */
+    static CompiledExpression compile(final String source) throws MathParseException {
+
+        return new Compiler(source).compile();
+    }
+
+    private static int instr(final int kind, final int arg) {
+
+        return kind << KIND_SHIFT | arg;
+    }
+
+    private static class Compiler {
+
+        final String src;
+        final char[] chars;
+
+        int[] code = new int[16];
+        int codeLen;
+        double[] consts = new double[8];
+        int constLen;
+        final ArrayList<String> vars = new ArrayList<String>();
+
+        // operator stack holds BINOP, NEG, FUNC and LPAREN entries
+        int[] ops = new int[8];
+        int opsLen;
+
+        int depth, maxDepth;
+
+        Compiler(final String src) {
+
+            this.src = src;
+            this.chars = src.toCharArray();
+        }
+
+        CompiledExpression compile() throws MathParseException {
+
+            boolean expectOperand = true;
+            int i = 0;
+            while (i < chars.length) {
+                char c = chars[i];
+                if (Character.isWhitespace(c)) {
+                    i++ ;
+                } else if (Character.isDigit(c) || c == '.') {
+                    if ( !expectOperand) {
+                        pushOperator(MathRef.getDefaultMultiplyOp());
+                    }
+                    int start = i;
+                    i = scanNumber(i);
+                    double val;
+                    try {
+                        val = Double.parseDouble(src.substring(start, i));
+                    } catch (NumberFormatException e) {
+                        throw error("invalid number: " + src.substring(start, i), start);
+                    }
+                    emitConst(val);
+                    expectOperand = false;
+                } else if (Character.isLetter(c) || c == '_') {
+                    if ( !expectOperand) {
+                        pushOperator(MathRef.getDefaultMultiplyOp());
+                    }
+                    int start = i;
+                    while (i < chars.length && (Character.isLetterOrDigit(chars[i]) || chars[i] == '_')) {
+                        i++ ;
+                    }
+                    String name = src.substring(start, i);
+                    int next = i;
+                    while (next < chars.length && Character.isWhitespace(chars[next])) {
+                        next++ ;
+                    }
+                    if (next < chars.length && chars[next] == '(') {
+                        int func = Arrays.asList(FUNCTIONS).indexOf(name);
+                        if (func < 0) {
+                            throw error("unknown function: " + name, start);
+                        }
+                        pushOp(instr(FUNC, func));
+                        // the '(' itself is handled on the next iteration
+                        i = next;
+                        continue;
+                    }
+                    Double constant = MathParser.constMap.get(name);
+                    if (constant != null) {
+                        emitConst(constant);
+                    } else {
+                        int slot = vars.indexOf(name);
+                        if (slot < 0) {
+                            slot = vars.size();
+                            vars.add(name);
+                        }
+                        emit(instr(VAR, slot));
+                    }
+                    expectOperand = false;
+                } else if (c == '(') {
+                    if ( !expectOperand && !topIs(FUNC)) {
+                        pushOperator(MathRef.getDefaultMultiplyOp());
+                    }
+                    pushOp(instr(LPAREN, 0));
+                    expectOperand = true;
+                    i++ ;
+                } else if (c == ')') {
+                    if (expectOperand) {
+                        throw error("expected operand before ')'", i);
+                    }
+                    while (opsLen > 0 && !topIs(LPAREN)) {
+                        emit(ops[--opsLen]);
+                    }
+                    if (opsLen == 0) {
+                        throw error("mismatched ')'", i);
+                    }
+                    opsLen-- ;
+                    if (topIs(FUNC)) {
+                        emit(ops[--opsLen]);
+                    }
+                    i++ ;
+                } else if (MathRef.isOperator(c)) {
+                    if (expectOperand) {
+                        if (c == '-') {
+                            pushOp(instr(NEG, 0));
+                        } else if (c != '+') {
+                            throw error("expected operand before '" + c + "'", i);
+                        }
+                    } else {
+                        pushOperator(c);
+                        expectOperand = true;
+                    }
+                    i++ ;
+                } else if (c == '[' || MathParser.BRACE_OPEN == c) {
+                    throw error("vector operands are not supported by compiled expressions", i);
+                } else {
+                    throw error("unexpected character '" + c + "'", i);
+                }
+            }
+
+            if (expectOperand) {
+                throw error("unexpected end of expression", chars.length);
+            }
+            while (opsLen > 0) {
+                if (topIs(LPAREN)) {
+                    throw error("mismatched '('", chars.length);
+                }
+                emit(ops[--opsLen]);
+            }
+
+            return new CompiledExpression(src, Arrays.copyOf(code, codeLen), Arrays.copyOf(consts, constLen),
+                                          vars.toArray(new String[vars.size()]), maxDepth);
+        }
+
+        /*
+         * Digits and decimal points, optionally followed by an exponent
+         * ('E' as in MathRef.NUM_CHARS, with an optional sign).
+         */
+        int scanNumber(int i) {
+
+            while (i < chars.length && (Character.isDigit(chars[i]) || chars[i] == '.')) {
+                i++ ;
+            }
+            if (i < chars.length && MathRef.isNumChar(chars[i])) {
+                int exp = i + 1;
+                if (exp < chars.length && (chars[exp] == '-' || chars[exp] == '+')) {
+                    exp++ ;
+                }
+                if (exp < chars.length && Character.isDigit(chars[exp])) {
+                    i = exp;
+                    while (i < chars.length && Character.isDigit(chars[i])) {
+                        i++ ;
+                    }
+                }
+            }
+            return i;
+        }
+
+        /*
+         * Unary minus binds tighter than every binary operator except those
+         * ranked above multiplication (i.e. '^'), so that -2^2 is -4.
+         */
+        void pushOperator(final char c) throws MathParseException {
+
+            boolean popNeg = MathRef.getOpPreced(c) <= MathRef.getOpPreced(MathRef.getDefaultMultiplyOp());
+            while (opsLen > 0) {
+                int top = ops[opsLen - 1];
+                int kind = top >>> KIND_SHIFT;
+                if ( (kind == NEG && popNeg) || (kind == BINOP && MathRef.opPreceeds((char) (top & ARG_MASK), c))) {
+                    emit(ops[--opsLen]);
+                } else {
+                    break;
+                }
+            }
+            pushOp(instr(BINOP, c));
+        }
+
+        boolean topIs(final int kind) {
+
+            return opsLen > 0 && ops[opsLen - 1] >>> KIND_SHIFT == kind;
+        }
+
+        void pushOp(final int op) {
+
+            if (opsLen == ops.length) {
+                ops = Arrays.copyOf(ops, opsLen * 2);
+            }
+            ops[opsLen++ ] = op;
+        }
+
+        void emitConst(final double val) {
+
+            if (constLen == consts.length) {
+                consts = Arrays.copyOf(consts, constLen * 2);
+            }
+            consts[constLen] = val;
+            emit(instr(CONST, constLen++ ));
+        }
+
+        /*
+         * Appends an instruction, folding it into the preceding constant
+         * loads where possible.
+         */
+        void emit(final int ins) {
+
+            int kind = ins >>> KIND_SHIFT;
+            int arg = ins & ARG_MASK;
+            switch (kind) {
+            case NEG:
+            case FUNC:
+                if (isConst(codeLen - 1)) {
+                    int slot = code[codeLen - 1] & ARG_MASK;
+                    consts[slot] = (kind == NEG) ? -consts[slot] : applyFunction(arg, consts[slot]);
+                    return;
+                }
+                break;
+            case BINOP:
+                if (isConst(codeLen - 1) && isConst(codeLen - 2)) {
+                    int a = code[codeLen - 2] & ARG_MASK, b = code[codeLen - 1] & ARG_MASK;
+                    consts[a] = applyOperator((char) arg, consts[a], consts[b]);
+                    if (b == constLen - 1) {
+                        constLen-- ;
+                    }
+                    codeLen-- ;
+                    depth-- ;
+                    return;
+                }
+                depth-- ;
+                break;
+            default:
+                depth++ ;
+                maxDepth = Math.max(maxDepth, depth);
+            }
+            if (codeLen == code.length) {
+                code = Arrays.copyOf(code, codeLen * 2);
+            }
+            code[codeLen++ ] = ins;
+        }
+
+        boolean isConst(final int index) {
+
+            return index >= 0 && code[index] >>> KIND_SHIFT == CONST;
+        }
+
+        MathParseException error(final String msg, final int pos) {
+
+            MathParseException e = new MathParseException(msg + " at position " + pos + " in: " + src);
+            e.pos = pos;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+/**
+ * Base class of the JVM classes generated by the script engine's compiled tier
+ * for hot script functions. Generated classes are defined by their own class
+ * loader, so everything they need from the engine is reached through the
+ * protected members of this class. Not intended to be extended or used
+ * directly.
+ *
+ * @author Brian Groenke
+ *
+ */
+public abstract class CompiledFunction {
+
+    private ScriptEngine engine;
+    private Function function;
+
+    /**
+     * Functions invoked by the compiled code, indexed by call site.
+     */
+    protected Function[] callees;
+
+    protected CompiledFunction() {
+
+    }
+
+    void bind(final ScriptEngine engine, final Function function, final Function[] callees) {
+
+        this.engine = engine;
+        this.function = function;
+        this.callees = callees;
+    }
+
+    /**
+     * @return the script function this code was compiled from
+     */
+    public Function getFunction() {
+
+        return function;
+    }
+
+    /**
+     * Runs the compiled function body.
+     *
+     * @param args
+     * @return the value of the executed return statement, or null if none was
+     *         executed
+     * @throws ScriptInvocationException
+     */
+    protected abstract Object run(Object[] args) throws ScriptInvocationException;
+
+    protected final Object call(final Function f, final Object[] args) throws ScriptInvocationException {
+
+        return engine.invokeFromCompiled(f, args);
+    }
+
+    protected final Object callJava(final Function f, final Object[] args) throws ScriptInvocationException {
+
+        return engine.invokeJavaFromCompiled(f, args);
+    }
+
+    /**
+     * Converts a function result used in an expression.
+     */
+    protected final double number(final Object o) throws ScriptInvocationException {
+
+        return plain(engine.numberFromCompiled(o, function));
+    }
+
+    /**
+     * Loop back-edge; lets a time-sliced invocation be suspended.
+     */
+    protected final void safepoint() {
+
+        engine.safepoint();
+    }
+
+    protected final ScriptInvocationException fail(final String msg) {
+
+        return new ScriptInvocationException(msg, function);
+    }
+
+    protected final ScriptInvocationException loopEndError(final int found) {
+
+        return fail("expected END_CMD in loop evaluation: found=" + Integer.toHexString(found));
+    }
+
+    // ---- conversions matching ScriptEngine.Variable and execEvaluation ---- //
+
+    protected static int argInt(final Object value) {
+
+        return (value instanceof Double) ? ((Double) value).intValue() : (Integer) value;
+    }
+
+    protected static double argFloat(final Object value) {
+
+        return (Double) value;
+    }
+
+    protected static int argBool(final Object value) {
+
+        if (value instanceof Double) {
+            return toBool((Double) value);
+        }
+        return ((Boolean) value) ? 1 : 0;
+    }
+
+    protected static int toBool(final double value) {
+
+        return ((byte) value == 1) ? 1 : 0;
+    }
+
+    protected static boolean truth(final double value) {
+
+        return value != 0;
+    }
+
+    /*
+     * The interpreter passes every operand through its decimal string form,
+     * which rejects non-finite values and drops the sign of zero.
+     */
+    protected static double plain(final double value) {
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw (new NumberFormatException("Infinite or NaN"));
+        }
+        return value + 0.0;
+    }
+
+    protected static Object scalar(final double value) {
+
+        return new Scalar(value);
+    }
+
+    /*
+     * Operators other than the arithmetic ones, which are emitted inline.
+     */
+    protected static double operator(final double a, final double b, final int op) {
+
+        return CompiledExpression.applyOperator((char) op, a, b);
+    }
+}
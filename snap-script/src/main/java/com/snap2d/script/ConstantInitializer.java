@@ -25,21 +25,16 @@ import com.snap2d.script.ScriptCompiler.Variable;
  */
 class ConstantInitializer extends Function {
 
-    private static volatile int id = 0;
-
     private Variable[] vars;
 
     /**
      * @param name
-     * @param returnType
-     * @param params
-     * @param paramNames
      * @param src
      * @param srcOffs
      */
-    ConstantInitializer(final String src, final int srcOffs) {
+    ConstantInitializer(final String name, final String src, final int srcOffs) {
 
-        super("consts" + id++ , Keyword.VOID, new Keyword[0], new String[0], src, srcOffs);
+        super(name, Keyword.VOID, new Keyword[0], new String[0], src, srcOffs);
     }
 
     void setConstantVars(final Variable... vars) {
@@ -30,7 +30,7 @@ public class Function implements Comparable<Function> {
 
     private String src;
     private final String[] paramNames;
-    private final long id;
+    private long id;
     private int srcOffs;
     private final Keyword[] paramTypes;
     private Keyword returnType;
@@ -38,6 +38,12 @@ public class Function implements Comparable<Function> {
 
     private Method javaMethod; // only non-null for linked Java methods
 
+    // set by the compiler for script functions: the index of the script
+    // source, the line of the function block and pairs of statement bytecode
+    // offset and character offset in the function source, ordered by offset
+    int srcIndex = -1, srcLine;
+    int[] sourceMap;
+
     /**
      * 
      * @param name
@@ -69,7 +75,6 @@ public class Function implements Comparable<Function> {
         this.paramNames = paramNames;
         this.paramTypes = params;
         this.returnType = returnType;
-        id = idTick++ ;
     }
 
     Function(final String name, final Class<?> cl, final Class<?>... params) throws SecurityException,
@@ -132,6 +137,16 @@ public class Function implements Comparable<Function> {
         return id;
     }
 
+    /**
+     * Assigns the ID of a script function. The precompiler calls this once the
+     * declarations of all sources are known, in declaration order, so IDs do
+     * not depend on the order in which sources were parsed.
+     */
+    void assignID() {
+
+        id = idTick++ ;
+    }
+
     /**
      * @return the function source; null for java functions
      */
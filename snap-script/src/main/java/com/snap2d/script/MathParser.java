@@ -15,6 +15,8 @@ package com.snap2d.script;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import bg.x2d.math.DoubleMath;
@@ -32,16 +34,92 @@ public class MathParser {
 
     private static final String[] CONSTANT_NAMES = new String[] { "pi", "e" };
     private static final double[] CONSTANT_VALS = new double[] { Math.PI, Math.E };
-    private static final HashMap<String, Double> constMap = new HashMap<String, Double>();
+    static final HashMap<String, Double> constMap = new HashMap<String, Double>();
+
+    public static final int DEFAULT_CACHE_SIZE = 64;
 
     public int roundTo = 6;
 
+    private final int cacheSize;
+    private Map<String, CompiledExpression> cache;
+
     static {
         for (int i = 0; i < CONSTANT_NAMES.length; i++ ) {
             constMap.put(CONSTANT_NAMES[i], CONSTANT_VALS[i]);
         }
     }
 
+    public MathParser() {
+
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize
+     *            maximum number of compiled expressions kept by
+     *            {@link #compile(String)}; 0 disables caching
+     */
+    public MathParser(final int cacheSize) {
+
+        if (cacheSize < 0) {
+            throw (new IllegalArgumentException("cache size must be >= 0"));
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Compiles a scalar expression into a {@link CompiledExpression} that can
+     * be evaluated repeatedly, with variables bound by slot, without parsing
+     * the source again. Compiled expressions are kept in a least recently used
+     * cache keyed by source text, so compiling the same formula again (e.g.
+     * once per frame) is a single map lookup. May be called from any thread.
+     *
+     * @param input
+     * @return the compiled expression
+     * @throws MathParseException
+     *             if the input is not a valid scalar expression
+     */
+    public CompiledExpression compile(final String input) throws MathParseException {
+
+        if (cacheSize == 0) {
+            return CompiledExpression.compile(input);
+        }
+        synchronized (this) {
+            if (cache == null) {
+                cache = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+
+                    private static final long serialVersionUID = 6208312364187346412L;
+
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<String, CompiledExpression> eldest) {
+
+                        return size() > cacheSize;
+                    }
+                };
+            }
+            CompiledExpression exp = cache.get(input);
+            if (exp != null) {
+                return exp;
+            }
+        }
+        // compile outside of the lock; a concurrent miss just compiles twice
+        CompiledExpression exp = CompiledExpression.compile(input);
+        synchronized (this) {
+            cache.put(input, exp);
+        }
+        return exp;
+    }
+
+    /**
+     * Discards all cached compiled expressions.
+     */
+    public synchronized void clearCache() {
+
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * Parses a mathematical String expression and returns the result as an
      * Operand. Result may be a scalar or vector depending on expression.
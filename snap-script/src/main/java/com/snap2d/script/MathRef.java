@@ -231,6 +231,19 @@ class MathRef {
         }
     }
 
+    /*
+     * Inverse of matchBytecode.
+     */
+    static byte opBytecode(final char op) {
+
+        for (byte b = Bytecodes.END_CMD; b < Byte.MAX_VALUE; b++ ) {
+            if (matchBytecode(b) == op) {
+                return b;
+            }
+        }
+        throw (new IllegalArgumentException("no bytecode for operator: " + op));
+    }
+
     public static String matchPlaceholderKeyword(final char c) {
 
         switch (c) {
@@ -12,6 +12,7 @@
 
 package com.snap2d.script;
 
+import java.io.PrintStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -20,6 +21,10 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import bg.x2d.utils.Multimap;
 import bg.x2d.utils.Utils;
@@ -39,11 +44,30 @@ class ScriptCompiler {
     public Multimap<String, Function> precompile(final ArrayList<ConstantInitializer> constList,
                                                  final String... scripts) throws ScriptCompilationException {
 
+        List<Callable<Function[]>> tasks = new ArrayList<Callable<Function[]>>(scripts.length);
+        for (int n = 0; n < scripts.length; n++ ) {
+            final String script = scripts[n];
+            final int srcIndex = n;
+            tasks.add(new Callable<Function[]>() {
+
+                @Override
+                public Function[] call() throws ScriptCompilationException {
+
+                    return parseScript(removeComments(script), srcIndex);
+                }
+            });
+        }
+        List<Function[]> parsed = runAll(tasks);
+
         Multimap<String, Function> fmap = new Multimap<String, Function>();
-        for (String script : scripts) {
-            script = removeComments(script);
-            Function[] farr = parseScript(script, constList);
-            for (Function f : farr) {
+        for (int n = 0; n < scripts.length; n++ ) {
+            for (Function f : parsed.get(n)) {
+                f.assignID();
+                if (f instanceof ConstantInitializer) {
+                    constList.add((ConstantInitializer) f);
+                    continue;
+                }
+                f.srcIndex = n;
                 if ( !Character.isUpperCase(f.getName().charAt(0))) {
                     printWarning(f, "script function names should be camel-case (i.e. MyFunction)");
                 }
@@ -53,8 +77,12 @@ class ScriptCompiler {
         return fmap;
     }
 
-    private Function[] parseScript(final String src, final ArrayList<ConstantInitializer> clist)
-                    throws ScriptCompilationException {
+    /*
+     * Returns the functions and constant initializers declared by the script,
+     * in declaration order. Only reads the state of this compiler, so sources
+     * may be parsed concurrently.
+     */
+    private Function[] parseScript(final String src, final int srcIndex) throws ScriptCompilationException {
 
         char[] chars = src.toCharArray();
         ArrayList<Function> flist = new ArrayList<Function>();
@@ -67,6 +95,7 @@ class ScriptCompiler {
         Keyword rtype = null;
         Keyword[] params = null;
         String[] paramNames;
+        int consts = 0;
         for (int i = 0; i < chars.length; i++ ) {
             char c = chars[i];
 
@@ -98,8 +127,8 @@ class ScriptCompiler {
                 int st = i - buff.length();
                 int en = src.indexOf(Keyword.END.sym, st);
                 String csrc = src.substring(st, en + 1).trim();
-                ConstantInitializer cfunc = new ConstantInitializer(csrc, st);
-                clist.add(cfunc);
+                ConstantInitializer cfunc = new ConstantInitializer(constName(srcIndex, ++consts), csrc, st);
+                flist.add(cfunc);
                 i = en + 1; // set new char pos
                 ekey = Flags.PC_RETURN; // reset expected Keyword type
                 nextFlush = Flags.W_FLUSH; // reset next buffer flush point
@@ -141,6 +170,7 @@ class ScriptCompiler {
 
                     Function func = new Function(fname, rtype, params, paramNames,
                                     src.substring(funcStart + 1, funcEnd), funcStart + 1);
+                    func.srcLine = lineOf(src, funcStart + 1);
                     if (flist.contains(func)) {
                         throw (new ScriptCompilationException("found duplicate function: " + func, src, funcStart));
                     }
@@ -153,8 +183,8 @@ class ScriptCompiler {
                                         "reached end of script with unterminated constant initializer", src, i + 1));
                     }
                     String csrc = src.substring(st + 1, en).trim();
-                    ConstantInitializer cfunc = new ConstantInitializer(csrc, st + 1);
-                    clist.add(cfunc);
+                    ConstantInitializer cfunc = new ConstantInitializer(constName(srcIndex, ++consts), csrc, st + 1);
+                    flist.add(cfunc);
                     i = en + 1; // set new char pos
                     ekey = Flags.PC_RETURN; // reset expected Keyword type
                     nextFlush = Flags.W_FLUSH; // reset next buffer flush point
@@ -169,6 +199,11 @@ class ScriptCompiler {
         return flist.toArray(new Function[flist.size()]);
     }
 
+    private static String constName(final int srcIndex, final int n) {
+
+        return "consts" + srcIndex + "_" + n;
+    }
+
     private void parseParams(final Keyword[] storeParams,
                              final String[] storeNames,
                              final String paramStr,
@@ -238,6 +273,10 @@ class ScriptCompiler {
         return -1;
     }
 
+    /*
+     * Comments are blanked out rather than removed so that character
+     * positions and line numbers still refer to the original source.
+     */
     private String removeComments(final String src) {
 
         StringBuilder sb = new StringBuilder(src);
@@ -247,11 +286,12 @@ class ScriptCompiler {
             int brpos = sb.indexOf(Keyword.REM_START.sym, ind);
             if ( (lrpos < brpos || brpos < 0) && lrpos >= 0) {
                 int newline = sb.indexOf("\n", lrpos);
-                sb.delete(lrpos, newline);
-                ind = lrpos;
+                ind = (newline < 0) ? sb.length() : newline;
+                blank(sb, lrpos, ind);
             } else if (brpos >= 0) {
                 int end = sb.indexOf(Keyword.REM_END.sym, brpos);
-                sb.delete(brpos, end + Keyword.REM_END.sym.length());
+                ind = (end < 0) ? sb.length() : end + Keyword.REM_END.sym.length();
+                blank(sb, brpos, ind);
             } else {
                 ind = -1;
             }
@@ -260,6 +300,29 @@ class ScriptCompiler {
         return sb.toString();
     }
 
+    private static void blank(final StringBuilder sb, final int start, final int end) {
+
+        for (int i = start; i < end; i++ ) {
+            if (sb.charAt(i) != '\n') {
+                sb.setCharAt(i, ' ');
+            }
+        }
+    }
+
+    /**
+     * @return the 1-based line number of the given character position
+     */
+    static int lineOf(final String src, final int pos) {
+
+        int line = 1;
+        for (int i = 0; i < pos && i < src.length(); i++ ) {
+            if (src.charAt(i) == '\n') {
+                line++ ;
+            }
+        }
+        return line;
+    }
+
     // ------------------ COMPILER ------------------ //
 
     protected static final int INIT_BUFFER_ALLOC = 0xF00, THRESHOLD = 0x100, REALLOC = 0x400;
@@ -271,6 +334,45 @@ class ScriptCompiler {
 
     private Function func;
 
+    boolean optimize = true;
+    PrintStream bytecodeDump;
+
+    /**
+     * Executor on which sources are parsed and function bodies compiled, or
+     * null to compile on the calling thread. The output is the same either
+     * way.
+     */
+    ExecutorService executor;
+
+    // variable IDs are only unique within a compilation: constants are
+    // numbered first, then the variables of each function from the same base
+    private int nextVarId = Integer.MIN_VALUE;
+
+    /**
+     * Names of the global variables resolved to VarStore slots by the
+     * optimizer, in slot order.
+     */
+    final ArrayList<String> globalSlots = new ArrayList<String>();
+
+    // bytecode offset and source position of each statement of the function
+    // being compiled, relative to the buffer and source currently parsed
+    private final ArrayList<int[]> sourceMap = new ArrayList<int[]>();
+    private int srcBase;
+
+    ScriptCompiler() {
+
+    }
+
+    /*
+     * Creates a compiler for one function body of the parent's compilation.
+     */
+    private ScriptCompiler(final ScriptCompiler parent) {
+
+        this.functions = parent.functions;
+        this.constVars.putAll(parent.constVars);
+        this.nextVarId = parent.nextVarId;
+    }
+
     /**
      * Compiles the Functions in the given Multimap obtained from precompile
      * method. The method will return normally if successful, otherwise an
@@ -288,6 +390,7 @@ class ScriptCompiler {
 
         this.functions = functions;
         stackVars.clear();
+        nextVarId = Integer.MIN_VALUE;
 
         // --- compile constant expressions --- //
         try {
@@ -343,52 +446,127 @@ class ScriptCompiler {
             throw (e);
         }
 
+        // --- compile function bodies --- //
+        // in declaration (ID) order, so the error reported is the first one
+        // in the sources
+        TreeMap<Long, Function> declared = new TreeMap<Long, Function>();
         for (Function func : functions.values()) {
-            if (func.isJavaFunction()) {
-                continue;
+            if ( !func.isJavaFunction()) {
+                declared.put(func.getID(), func);
             }
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(declared.size());
+        for (final Function func : declared.values()) {
+            tasks.add(new Callable<Void>() {
 
-            String src = func.getSource();
-            this.func = func;
-            this.buff = ByteBuffer.allocate(INIT_BUFFER_ALLOC);
+                @Override
+                public Void call() throws ScriptCompilationException {
 
-            stackVars.putAll(constVars); // add constants to variable stack
+                    new ScriptCompiler(ScriptCompiler.this).compileFunction(func);
+                    return null;
+                }
+            });
+        }
+        try {
+            runAll(tasks);
+        } catch (ScriptCompilationException e) {
+            System.err.println("compilation problem in function '" + e.inFunc.getName() + "'");
+            throw (e);
+        }
 
-            Keyword[] params = func.getParamTypes();
-            String[] names = func.getParamNames();
+        if (optimize) {
+            new ScriptOptimizer(functions, constList, globalSlots, bytecodeDump).optimize();
+        }
+    }
 
-            if (params.length == 0) {
-                buff.put(Bytecodes.NO_PARAMS);
-            } else {
-                buff.put(Bytecodes.INIT_PARAMS);
-            }
-            for (int i = 0; i < params.length; i++ ) {
-                Variable var = new Variable(names[i], getVarTypeFromKeyword(params[i]));
-                stackVars.put(names[i], var);
-                paramVars.put(names[i], var);
-                buff.put(Bytecodes.PARAM_VAR);
-                buff.putInt(var.id);
-            }
+    /*
+     * Compiles the body of a script function. Called on a compiler created
+     * for the function, which numbers its variables from the first ID after
+     * the constants.
+     */
+    private void compileFunction(final Function func) throws ScriptCompilationException {
 
-            try {
-                parseMain(src, 0);
-            } catch (ScriptCompilationException e) {
-                System.err.println("compilation problem in function '" + func.getName() + "'");
-                e.inFunc = func;
-                throw (e);
-            }
+        String src = func.getSource();
+        this.func = func;
+        this.buff = ByteBuffer.allocate(INIT_BUFFER_ALLOC);
+
+        stackVars.putAll(constVars); // add constants to variable stack
 
-            ByteBuffer finalBuff = ByteBuffer.allocateDirect(buff.position());
-            buff.flip();
-            finalBuff.put(buff).flip();
-            func.bytecode = finalBuff;
+        Keyword[] params = func.getParamTypes();
+        String[] names = func.getParamNames();
 
-            buff.clear();
-            buff = null;
+        if (params.length == 0) {
+            buff.put(Bytecodes.NO_PARAMS);
+        } else {
+            buff.put(Bytecodes.INIT_PARAMS);
+        }
+        for (int i = 0; i < params.length; i++ ) {
+            Variable var = new Variable(names[i], getVarTypeFromKeyword(params[i]));
+            stackVars.put(names[i], var);
+            paramVars.put(names[i], var);
+            buff.put(Bytecodes.PARAM_VAR);
+            buff.putInt(var.id);
+        }
 
-            stackVars.clear();
-            paramVars.clear();
+        sourceMap.clear();
+        srcBase = 0;
+        try {
+            parseMain(src, 0);
+        } catch (ScriptCompilationException e) {
+            e.inFunc = func;
+            throw (e);
         }
+        func.sourceMap = flattenSourceMap();
+
+        ByteBuffer finalBuff = ByteBuffer.allocateDirect(buff.position());
+        buff.flip();
+        finalBuff.put(buff).flip();
+        func.bytecode = finalBuff;
+
+        buff.clear();
+        buff = null;
+
+        stackVars.clear();
+        paramVars.clear();
+    }
+
+    /*
+     * Runs the tasks on the executor, or in order on the calling thread if
+     * none is set, and returns their results in task order. The exception of
+     * the first failed task in task order is rethrown, so the outcome does not
+     * depend on how the tasks were scheduled.
+     */
+    private <T> List<T> runAll(final List<Callable<T>> tasks) throws ScriptCompilationException {
+
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (executor == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw ((Error) e.getCause());
+                    }
+                    throw ((Exception) e.getCause());
+                }
+            }
+        } catch (ScriptCompilationException e) {
+            throw (e);
+        } catch (RuntimeException e) {
+            throw (e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (new ScriptCompilationException("interrupted during compilation"));
+        } catch (Exception e) {
+            throw (new RuntimeException(e));
+        }
+        return results;
     }
 
     private ByteBuffer buff;
@@ -397,6 +575,48 @@ class ScriptCompiler {
 
     int parseMainStack = 0;
 
+    /*
+     * Parses a nested block whose source starts at the given position of the
+     * source currently parsed.
+     */
+    private void parseBlock(final String blockSrc, final int start) throws ScriptCompilationException {
+
+        int base = srcBase;
+        srcBase += start;
+        parseMain(blockSrc, 0);
+        srcBase = base;
+    }
+
+    /*
+     * Shifts the source map entries recorded since the given mark when the
+     * buffer they refer to is copied to the given offset of its parent.
+     */
+    private void moveSourceMap(final int mark, final int offset) {
+
+        for (int i = mark; i < sourceMap.size(); i++ ) {
+            sourceMap.get(i)[0] += offset;
+        }
+    }
+
+    private int[] flattenSourceMap() {
+
+        int[][] entries = sourceMap.toArray(new int[sourceMap.size()][]);
+        Arrays.sort(entries, new Comparator<int[]>() {
+
+            @Override
+            public int compare(final int[] a, final int[] b) {
+
+                return (a[0] < b[0]) ? -1 : (a[0] == b[0]) ? 0 : 1;
+            }
+        });
+        int[] map = new int[entries.length * 2];
+        for (int i = 0; i < entries.length; i++ ) {
+            map[i * 2] = entries[i][0];
+            map[i * 2 + 1] = entries[i][1];
+        }
+        return map;
+    }
+
     private void parseMain(final String src, final int pos) throws ScriptCompilationException {
 
         parseMainStack++ ;
@@ -420,6 +640,7 @@ class ScriptCompiler {
                     throw (new ScriptCompilationException("found unexpected delimeter: " + c, src, i));
                 }
                 String str = strbuff.toString();
+                sourceMap.add(new int[] { buff.position(), srcBase + i - str.length() });
                 Keyword keyw = Keyword.getFromSymbol(str);
                 if (keyw == null) {
                     Variable var = stackVars.get(str);
@@ -539,6 +760,7 @@ class ScriptCompiler {
         // the statement takes up in bytecode
         ByteBuffer curr = buff;
         this.buff = ByteBuffer.allocate(INIT_BUFFER_ALLOC);
+        int ifMark = sourceMap.size();
 
         boolean cont = true;
         int endPos = 0;
@@ -553,21 +775,25 @@ class ScriptCompiler {
             int bst = src.indexOf(Keyword.BLOCK_BEGIN.sym, pos);
             int end = src.indexOf(Keyword.END.sym, pos);
             String blockSrc;
+            int blockStart;
             if (bst >= 0 && (bst < end || end < 0)) {
                 endPos = findBlockEnd(src.toCharArray(), bst);
-                blockSrc = src.substring(bst + 1, endPos);
+                blockStart = bst + 1;
             } else {
                 endPos = src.indexOf(Keyword.END.sym, pos) + 1;
                 if (endPos < 0) {
                     throw (new ScriptCompilationException("reached end of block without closing delimeter", src, pos));
                 }
-                blockSrc = src.substring(pos, endPos);
+                blockStart = pos;
             }
+            blockSrc = src.substring(blockStart, endPos);
 
             ByteBuffer prev = this.buff;
             this.buff = ByteBuffer.allocate(INIT_BUFFER_ALLOC);
-            parseMain(blockSrc, 0);
+            int mark = sourceMap.size();
+            parseBlock(blockSrc, blockStart);
             prev.putInt(buff.position());
+            moveSourceMap(mark, prev.position());
             this.buff.flip();
             prev.put(buff);
             this.buff = prev;
@@ -602,8 +828,10 @@ class ScriptCompiler {
                             buff.put(Bytecodes.ELSE);
                             prev = this.buff;
                             this.buff = ByteBuffer.allocate(INIT_BUFFER_ALLOC);
-                            parseMain(elseBlock, 0);
+                            mark = sourceMap.size();
+                            parseBlock(elseBlock, stBlock + 1);
                             prev.putInt(buff.position());
+                            moveSourceMap(mark, prev.position());
                             this.buff.flip();
                             prev.put(buff);
                             this.buff = prev;
@@ -629,6 +857,7 @@ class ScriptCompiler {
 
         int len = buff.position();
         curr.putInt(len); // this is the main buffer
+        moveSourceMap(ifMark, curr.position());
         buff.flip(); // prepare temp buffer for reading
         curr.put(buff);
         this.buff = curr; // re-assign primary pointer to the main buffer object
@@ -742,8 +971,11 @@ class ScriptCompiler {
         }
         String blockSrc = src.substring(stblock + 1, endPos);
         inLoop = true;
-        parseMain(blockSrc, 0);
+        parseBlock(blockSrc, stblock + 1);
         inLoop = false;
+        // the terminator is followed by the loop operation and condition, so
+        // it is mapped to the loop header
+        sourceMap.add(new int[] { buff.position(), srcBase + pos });
         buff.put(Bytecodes.CONTINUE);
 
         buff.put(Bytecodes.END_CMD);
@@ -1633,8 +1865,6 @@ class ScriptCompiler {
         System.out.println("warning: [function '" + context.getName() + "'] " + msg);
     }
 
-    static volatile int globalId = Integer.MIN_VALUE;
-
     /*
      * Represents a compiler variable by its name, type, and internal ID.
      */
@@ -1648,7 +1878,7 @@ class ScriptCompiler {
 
             this.name = name;
             this.varType = varType;
-            this.id = globalId++ ;
+            this.id = nextVarId++ ;
         }
 
         public int getID() {
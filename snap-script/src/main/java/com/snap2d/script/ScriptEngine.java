@@ -58,8 +58,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -94,6 +96,9 @@ class ScriptEngine {
      * @param functions
      *            the array of Functions returned and fully compiled by
      *            ScriptCompiler
+     * @param globalSlots
+     *            global variable names in the order of the VarStore slots
+     *            assigned to them by the compiler
      * @param useDouble
      *            true if VarStore should use double precision values for
      *            storage, false if floating point should be used instead.
@@ -103,9 +108,13 @@ class ScriptEngine {
     ScriptEngine(final ScriptProgram prog,
                  final Function[] functions,
                  final ConstantInitializer[] constInits,
+                 final String[] globalSlots,
                  final boolean useDouble) throws ScriptInvocationException {
 
         vars.setUseDouble(useDouble);
+        for (String name : globalSlots) {
+            vars.slotOf(name);
+        }
         this.useDouble = useDouble;
         this.timers = new ScriptTimer(prog);
         List<Method> varFuncs = Arrays.asList(VarStore.class.getMethods());
@@ -162,12 +171,164 @@ class ScriptEngine {
     }
 
     public void dispose() {
+        for (ScriptTask task : tasks.toArray(new ScriptTask[tasks.size()])) {
+            task.cancel();
+        }
         funcMap.clear();
         javaObjs.clear();
+        tiers.clear();
+        jitLoader = null;
         vars = null;
         timers.dispose();
     }
 
+    // >>>>>> TIERED EXECUTION >>>>>> //
+
+    /*
+     * Script functions start out interpreted; in TIERED mode a function is
+     * handed to ScriptJit once it has been invoked compileThreshold times. If
+     * translation fails, the function stays interpreted for good.
+     */
+
+    ScriptProgram.ExecutionMode execMode = ScriptProgram.ExecutionMode.TIERED;
+    int compileThreshold = ScriptProgram.DEFAULT_COMPILE_THRESHOLD;
+
+    private final IdentityHashMap<Function, Tier> tiers = new IdentityHashMap<Function, Tier>();
+    private ScriptJit.Loader jitLoader;
+
+    void setExecutionMode(final ScriptProgram.ExecutionMode mode, final int threshold) {
+
+        if (mode != execMode) {
+            // generated classes are named after their function, so they
+            // cannot be defined again in the loader that holds them
+            tiers.clear();
+            jitLoader = null;
+        }
+        this.execMode = mode;
+        this.compileThreshold = threshold;
+    }
+
+    private CompiledFunction compiledFunction(final Function f) {
+
+        if (execMode == ScriptProgram.ExecutionMode.INTERPRETED) {
+            return null;
+        }
+        Tier tier = tiers.get(f);
+        if (tier == null) {
+            tier = new Tier();
+            tiers.put(f, tier);
+        }
+        if (tier.compiled != null || tier.failed) {
+            return tier.compiled;
+        }
+        if (execMode == ScriptProgram.ExecutionMode.TIERED && ++tier.count < compileThreshold) {
+            return null;
+        }
+        if (jitLoader == null) {
+            jitLoader = new ScriptJit.Loader();
+        }
+        tier.compiled = ScriptJit.compile(this, f, jitLoader);
+        tier.failed = tier.compiled == null;
+        if ( !tier.failed) {
+            log.fine("SnapScript: compiled function " + f.getName() + " after " + tier.count + " invocations");
+        }
+        return tier.compiled;
+    }
+
+    /*
+     * Entry points for the generated code; see CompiledFunction.
+     */
+    Object invokeFromCompiled(final Function f, final Object[] args) throws ScriptInvocationException {
+
+        Object robj = invokeFunction(f, args);
+        if (robj instanceof Operand) {
+            robj = ((Operand) robj).getValue();
+        }
+        return robj;
+    }
+
+    Object invokeJavaFromCompiled(final Function f, final Object[] args) throws ScriptInvocationException {
+
+        return invokeJavaFunction(f, javaObjs.get(f), args);
+    }
+
+    double numberFromCompiled(final Object o, final Function context) throws ScriptInvocationException {
+
+        return checkNumberObject( (o == null) ? 0 : o, context);
+    }
+
+    private static class Tier {
+
+        int count;
+        boolean failed;
+        CompiledFunction compiled;
+    }
+
+    // >>>>>> TIME-SLICED EXECUTION >>>>>> //
+
+    /*
+     * A ScriptTask runs its invocation on its own thread, alternating with
+     * the thread that resumes it. Loop iterations and script function calls
+     * are safepoints at which the running task may be suspended. The
+     * interpreter keeps the state of the current invocation in fields, so
+     * they are saved before suspending and restored after: other functions
+     * may be invoked in between.
+     */
+
+    // the task whose thread is running, if any
+    ScriptTask active;
+
+    // the active profiler, if any; see ScriptProfiler
+    volatile ScriptProfiler profiler;
+    final ArrayList<ScriptTask> tasks = new ArrayList<ScriptTask>();
+
+    ScriptTask startTask(final Function f, final Object... args) {
+
+        ScriptTask task = new ScriptTask(this, f, args);
+        tasks.add(task);
+        return task;
+    }
+
+    void safepoint() {
+
+        sample();
+        ScriptTask task = active;
+        if (task == null || !task.exhausted()) {
+            return;
+        }
+
+        Object ret = this.ret;
+        ByteBuffer buff = this.buff;
+        int buffPos = (buff != null) ? buff.position() : 0;
+        Function curr = this.curr;
+        int stmt = this.stmt;
+        LinkedList<VarStack> stacks = this.stacks;
+        boolean inLoop = this.inLoop;
+        task.suspend();
+        this.ret = ret;
+        this.buff = buff;
+        if (buff != null) {
+            buff.position(buffPos);
+        }
+        this.curr = curr;
+        this.stmt = stmt;
+        this.stacks = stacks;
+        this.inLoop = inLoop;
+    }
+
+    /*
+     * Samples the executing function if the profiler asks for it. Called at
+     * safepoints and when a statement is dispatched, before 'stmt' is moved
+     * on, so the sample is charged to the statement that was running.
+     */
+    private void sample() {
+
+        ScriptProfiler profiler = this.profiler;
+        if (profiler != null && profiler.sampleDue) {
+            profiler.sample(curr, stmt);
+        }
+    }
+
     // >>>>>> SCRIPT EXECUTION ENGINE >>>>>> //
 
     /*
@@ -181,6 +342,9 @@ class ScriptEngine {
     Object ret;
     ByteBuffer buff;
     Function curr;
+    // bytecode offset of the statement of 'curr' being interpreted; 0 on
+    // entry to the function and -1 while it runs compiled
+    int stmt = -1;
     LinkedList<VarStack> stacks;
     VarStack consts;
 
@@ -251,6 +415,10 @@ class ScriptEngine {
             throw (new ScriptInvocationException("cannot invoke Java execution on a script function", f));
         }
         Method m = f.getJavaMethod();
+        ScriptProfiler profiler = this.profiler;
+        if (profiler != null) {
+            profiler.enter(f);
+        }
         try {
             Object ret = m.invoke(javaObj, args);
             ret = checkFuncReturnValue(ret, f.getReturnType());
@@ -263,21 +431,46 @@ class ScriptEngine {
             String msg = (e.getCause() != null) ? e.getCause().toString() : e.toString();
             ScriptInvocationException e1 = new ScriptInvocationException("error in Java function call: " + msg, curr);
             throw (e1);
+        } finally {
+            if (profiler != null) {
+                profiler.exit(f);
+            }
         }
         return null;
     }
 
     /*
-     * this method is exempt from the 'exec<Operation>' name convention despite
-     * its evaluation of bytecode because it's a sibling method of
-     * invokeJavaFunction. Both simply serve to provide the final means of
-     * executing the called function code.
+     * Sibling of invokeJavaFunction; both provide the final means of executing
+     * the called function code and record the invocation with the active
+     * profiler, if any.
      */
     private Object invokeFunction(final Function f, final Object... args) throws ScriptInvocationException {
 
+        ScriptProfiler profiler = this.profiler;
+        if (profiler == null) {
+            return execFunction(f, args);
+        }
+        profiler.enter(f);
+        try {
+            return execFunction(f, args);
+        } finally {
+            profiler.exit(f);
+        }
+    }
+
+    private Object execFunction(final Function f, final Object... args) throws ScriptInvocationException {
+
+        CompiledFunction compiled = compiledFunction(f);
+        curr = f;
+        stmt = (compiled != null) ? -1 : 0;
+        safepoint();
+        if (compiled != null) {
+            Object ret = checkFuncReturnValue(compiled.run(args), f.getReturnType());
+            return (f.getReturnType() == Keyword.VOID) ? null : ret;
+        }
+
         buff = f.bytecode;
         buff.position(0);
-        curr = f;
         ret = null;
         stacks = new LinkedList<VarStack>();
         stacks.add(new VarStack());
@@ -348,7 +541,12 @@ class ScriptEngine {
 
         buff.position(st);
         while (buff.position() < buff.capacity()) {
+            int pos = buff.position();
             byte next = buff.get();
+            if (next != NEW_STACK && next != CLEAR_STACK) {
+                sample();
+                stmt = pos;
+            }
             switch (next) {
             case NEW_STACK:
                 stacks.push(new VarStack());
@@ -664,6 +862,7 @@ class ScriptEngine {
         ByteBuffer buff = this.buff;
         int buffPos = this.buff.position();
         Function curr = this.curr;
+        int stmt = this.stmt;
         LinkedList<VarStack> stacks = this.stacks;
         Object robj = invokeFunction(f, args);
         if (robj instanceof Operand) {
@@ -673,6 +872,7 @@ class ScriptEngine {
         this.buff = buff;
         this.buff.position(buffPos);
         this.curr = curr;
+        this.stmt = stmt;
         this.stacks = stacks;
         return robj;
     }
@@ -832,6 +1032,7 @@ class ScriptEngine {
         int st = buff.position(), stat = Flags.END;
         boolean currInLoop = inLoop;
         while (checkLoopCondition(cond)) {
+            safepoint();
             inLoop = true;
             stat = execMain(st);
             if (stat == Flags.BREAK) {
@@ -889,6 +1090,11 @@ class ScriptEngine {
 
     private double checkNumberObject(final Object o) throws ScriptInvocationException {
 
+        return checkNumberObject(o, curr);
+    }
+
+    private double checkNumberObject(final Object o, final Function context) throws ScriptInvocationException {
+
         double val;
         if (o instanceof Double) {
             val = (Double) o;
@@ -897,7 +1103,7 @@ class ScriptEngine {
         } else if (o instanceof Boolean) {
             val = ((Boolean) o) ? 1 : 0;
         } else {
-            throw (new ScriptInvocationException("function return type does not match expression", curr));
+            throw (new ScriptInvocationException("function return type does not match expression", context));
         }
         return val;
 
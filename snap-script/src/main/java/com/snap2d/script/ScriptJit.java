@@ -0,0 +1,876 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.D2I;
+import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DCMPL;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DDIV;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DREM;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.DSUB;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Translates the bytecode of a script function into a JVM class extending
+ * CompiledFunction, so that hot functions run as ordinary Java code rather than
+ * through the interpreter's dispatch loop.
+ * <p>
+ * Only the numeric subset of the language is translated: int, float and bool
+ * locals and parameters, expressions, if/else-if/else, for loops with ++/--
+ * iteration, script and Java function calls, and int, float or void returns.
+ * The generated code reproduces the interpreter's observable behavior,
+ * including its failures (e.g. a for loop whose condition is initially false).
+ * Functions using anything else (strings, vectors, constant declarations, bool
+ * returns) are left to the interpreter, as are float variables when the engine
+ * does not use double storage.
+ *
+ * @author Brian Groenke
+ *
+ */
+class ScriptJit {
+
+    private static final Logger log = Logger.getLogger(ScriptJit.class.getCanonicalName());
+
+    private static final String BASE = Type.getInternalName(CompiledFunction.class), GEN_PACKAGE = "com/snap2d/script/jit/",
+                    FUNCTION = Type.getInternalName(Function.class), OBJECT = "java/lang/Object",
+                    RUN_DESC = "([Ljava/lang/Object;)Ljava/lang/Object;",
+                    CALL_DESC = "(L" + FUNCTION + ";[Ljava/lang/Object;)Ljava/lang/Object;";
+
+    private static final int TYPE_INT = 0, TYPE_FLOAT = 1, TYPE_BOOL = 2;
+
+    // local slots: 0 = this, 1 = args, 2 = return value
+    private static final int LOCAL_ARGS = 1, LOCAL_RET = 2, LOCAL_FIRST = 3;
+
+    // exit kinds, matching the interpreter's execMain results
+    private static final int EXIT_END = 0, EXIT_BREAK = 1, EXIT_RETURN = 2;
+
+    private static final MethodVisitor DEAD = new MethodVisitor(ASM9) {};
+
+    /**
+     * Compiles the given function.
+     *
+     * @return the bound compiled function, or null if the function uses
+     *         constructs the compiled tier does not support
+     */
+    static CompiledFunction compile(final ScriptEngine engine, final Function f, final Loader loader) {
+
+        if (f.isJavaFunction()) {
+            return null;
+        }
+        ScriptJit jit = new ScriptJit(engine, f);
+        try {
+            String name = GEN_PACKAGE + f.getName().replaceAll("\\W", "_") + "$" + Long.toHexString(f.getID());
+            Class<?> type = loader.define(name.replace('/', '.'), jit.generate(name));
+            CompiledFunction compiled = (CompiledFunction) type.newInstance();
+            compiled.bind(engine, f, jit.callees.toArray(new Function[jit.callees.size()]));
+            return compiled;
+        } catch (Unsupported e) {
+            log.fine("SnapScript: function " + f.getName() + " left to the interpreter: " + e.getMessage());
+        } catch (IndexOutOfBoundsException e) {
+            log.fine("SnapScript: function " + f.getName() + " left to the interpreter: malformed bytecode");
+        } catch (InstantiationException e) {
+            log.warning("SnapScript: failed to compile " + f.getName() + ": " + e);
+        } catch (IllegalAccessException e) {
+            log.warning("SnapScript: failed to compile " + f.getName() + ": " + e);
+        }
+        return null;
+    }
+
+    private final ScriptEngine engine;
+    private final Function func;
+    private final ByteBuffer code;
+    private final List<Function> callees = new ArrayList<Function>();
+    private final HashMap<Integer, Local> locals = new HashMap<Integer, Local>();
+    private final List<Local> slots = new ArrayList<Local>();
+    private int nextSlot = LOCAL_FIRST, loopDepth;
+
+    private MethodVisitor live, mv;
+    private boolean dead;
+
+    private ScriptJit(final ScriptEngine engine, final Function func) {
+
+        this.engine = engine;
+        this.func = func;
+        this.code = func.bytecode;
+    }
+
+    private byte[] generate(final String name) throws Unsupported {
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, BASE, null);
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        live = mv = cw.visitMethod(ACC_PROTECTED, "run", RUN_DESC, null,
+                        new String[] {Type.getInternalName(ScriptInvocationException.class)});
+        mv.visitCode();
+        // locals are zero-initialized by a block at the end of the method,
+        // once all of them are known
+        Label lInit = new Label(), lBody = new Label(), lReturn = new Label();
+        mv.visitJumpInsn(GOTO, lInit);
+        mv.visitLabel(lBody);
+
+        int p = 0;
+        byte next = at(p++ );
+        if (next == Bytecodes.INIT_PARAMS) {
+            Keyword[] types = func.getParamTypes();
+            for (int i = 0; i < types.length; i++ ) {
+                expect(p, Bytecodes.PARAM_VAR);
+                Local param = declare(code.getInt(p + 1), typeOf(types[i]));
+                p += 5;
+                mv.visitVarInsn(ALOAD, LOCAL_ARGS);
+                push(i);
+                mv.visitInsn(AALOAD);
+                String conv = (param.type == TYPE_INT) ? "argInt" : (param.type == TYPE_FLOAT) ? "argFloat" : "argBool";
+                mv.visitMethodInsn(INVOKESTATIC, BASE, conv, "(Ljava/lang/Object;)" + param.desc(), false);
+                mv.visitVarInsn(param.storeOp(), param.slot);
+            }
+        } else if (next != Bytecodes.NO_PARAMS) {
+            throw (new Unsupported("unexpected function header"));
+        }
+
+        final Label returnTarget = lReturn;
+        block(p, new Exits() {
+
+            @Override
+            void exit(final int kind, final int pos) {
+
+                mv.visitJumpInsn(GOTO, returnTarget);
+            }
+        });
+
+        mv.visitLabel(lReturn);
+        mv.visitVarInsn(ALOAD, LOCAL_RET);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(lInit);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitVarInsn(ASTORE, LOCAL_RET);
+        for (Local local : slots) {
+            if (local.type == TYPE_FLOAT) {
+                mv.visitInsn(DCONST_0);
+            } else {
+                mv.visitInsn(ICONST_0);
+            }
+            mv.visitVarInsn(local.storeOp(), local.slot);
+        }
+        mv.visitJumpInsn(GOTO, lBody);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /*
+     * Translates a statement block starting at 'p' (which must open a new var
+     * stack) up to and including its BREAK or CONTINUE terminator, or the end
+     * of the function. Returns the position following the block. Every way out
+     * of the block reports to 'exits' with the bytecode position the
+     * interpreter would be left at.
+     */
+    private int block(int p, final Exits exits) throws Unsupported {
+
+        boolean wasDead = dead;
+        int depth = 0;
+        try {
+            while (true) {
+                if (p >= code.capacity()) {
+                    if (depth != 0) {
+                        throw (new Unsupported("unterminated block"));
+                    }
+                    exit(exits, EXIT_END, p);
+                    return p;
+                }
+                byte next = at(p);
+                if (depth == 0 && next != Bytecodes.NEW_STACK && next != Bytecodes.BREAK
+                                && next != Bytecodes.CONTINUE) {
+                    throw (new Unsupported("statement outside of block"));
+                }
+                switch (next) {
+                case Bytecodes.NEW_STACK:
+                    depth++ ;
+                    p++ ;
+                    break;
+                case Bytecodes.CLEAR_STACK:
+                    if ( --depth < 0) {
+                        throw (new Unsupported("unbalanced block"));
+                    }
+                    p++ ;
+                    break;
+                case Bytecodes.INVOKE_FUNC:
+                case Bytecodes.INVOKE_JAVA_FUNC:
+                    p = call(p);
+                    mv.visitInsn(POP);
+                    break;
+                case Bytecodes.STORE_VAR:
+                    p = store(p + 1);
+                    break;
+                case Bytecodes.IF:
+                    p = conditional(p + 1, exits);
+                    break;
+                case Bytecodes.FOR_VAR:
+                    p = loop(p + 1, exits);
+                    break;
+                case Bytecodes.RETURN:
+                    p = returnValue(p + 1);
+                    exit(exits, EXIT_RETURN, p);
+                    // the statement's own END_CMD is never read by the
+                    // interpreter, but loops check it on the way out
+                    if (p < code.capacity() && code.get(p) == Bytecodes.END_CMD) {
+                        p++ ;
+                    }
+                    setDead(true);
+                    break;
+                case Bytecodes.CONTINUE:
+                case Bytecodes.BREAK:
+                    if (next == Bytecodes.CONTINUE && loopDepth == 0) {
+                        throw (new Unsupported("continue outside of loop"));
+                    }
+                    p++ ;
+                    exit(exits, (next == Bytecodes.BREAK) ? EXIT_BREAK : EXIT_END, p);
+                    if (depth == 0) {
+                        return p;
+                    }
+                    setDead(true);
+                    break;
+                default:
+                    throw (new Unsupported("instruction 0x" + Integer.toHexString(next)));
+                }
+            }
+        } finally {
+            setDead(wasDead);
+        }
+    }
+
+    /*
+     * Mirrors ScriptEngine.execConditional: only a return leaves the
+     * surrounding block, any other exit continues after the statement.
+     */
+    private int conditional(final int p, final Exits exits) throws Unsupported {
+
+        int init = p + 4, end = init + code.getInt(p);
+        expect(end, Bytecodes.END_CMD);
+        expect(init, Bytecodes.EVAL);
+
+        final Label lEnd = new Label(), lRet = new Label();
+        final boolean[] returns = new boolean[1];
+        Exits inner = new Exits() {
+
+            @Override
+            void exit(final int kind, final int pos) {
+
+                if (kind == EXIT_RETURN) {
+                    returns[0] = true;
+                    mv.visitJumpInsn(GOTO, lRet);
+                } else {
+                    mv.visitJumpInsn(GOTO, lEnd);
+                }
+            }
+        };
+
+        int q = init + 1;
+        while (true) {
+            q = eval(q);
+            expect(q, Bytecodes.END_COND);
+            int blockEnd = q + 5 + code.getInt(q + 1);
+            Label lNext = new Label();
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFEQ, lNext);
+            if (block(q + 5, inner) != blockEnd + 1) {
+                throw (new Unsupported("malformed if block"));
+            }
+            mv.visitLabel(lNext);
+            q = blockEnd + 1;
+            byte next = at(q++ );
+            if (next == Bytecodes.ELSE_IF) {
+                // execEvaluation skips the EVAL marker of an else-if
+                expect(q++ , Bytecodes.EVAL);
+            } else if (next == Bytecodes.ELSE) {
+                if (block(q + 4, inner) != end) {
+                    throw (new Unsupported("malformed else block"));
+                }
+                break;
+            } else if (next == Bytecodes.END_CMD && q == end + 1) {
+                mv.visitJumpInsn(GOTO, lEnd);
+                break;
+            } else {
+                throw (new Unsupported("malformed if statement"));
+            }
+        }
+
+        if (returns[0]) {
+            mv.visitLabel(lRet);
+            exit(exits, EXIT_RETURN, end + 1);
+        }
+        mv.visitLabel(lEnd);
+        return end + 1;
+    }
+
+    /*
+     * Mirrors ScriptEngine.execForLoop. The interpreter checks the END_CMD
+     * closing the loop at whatever position the body stopped at, so the byte
+     * found there is tracked in a local and checked when the loop finishes.
+     */
+    private int loop(int p, final Exits exits) throws Unsupported {
+
+        expect(p, Bytecodes.STORE_VAR);
+        p = store(p + 1);
+        expect(p++ , Bytecodes.FOR_COND);
+        expect(p, Bytecodes.EVAL);
+        final int cond = p + 1;
+        p = eval(cond);
+        Label lFirst = new Label();
+        mv.visitInsn(DCONST_0);
+        mv.visitInsn(DCMPL);
+        mv.visitJumpInsn(IFNE, lFirst);
+        throwFail("found unexpected bytecode instruction: " + Integer.toHexString(at(p)));
+        mv.visitLabel(lFirst);
+
+        expect(p++ , Bytecodes.FOR_OP);
+        expect(p, Bytecodes.REF_VAR);
+        int varId = code.getInt(p + 1);
+        p += 5;
+        Local opvar = (engine.fetchConstValue(varId) == null) ? locals.get(varId) : null;
+        if (opvar == null || opvar.type == TYPE_BOOL) {
+            throw (new Unsupported("loop variable"));
+        }
+        byte op = at(p++ );
+        if (op != Bytecodes.INCREM && op != Bytecodes.DECREM) {
+            throw (new Unsupported("loop iteration 0x" + Integer.toHexString(op)));
+        }
+        expect(p++ , Bytecodes.FOR_START);
+        final int st = p;
+
+        final Local lastExit = temp();
+        push(at(st));
+        mv.visitVarInsn(ISTORE, lastExit.slot);
+
+        final Label lCheck = new Label(), lIncr = new Label(), lDone = new Label(), lAfter = new Label();
+        final List<Integer> resumes = new ArrayList<Integer>();
+        mv.visitLabel(lCheck);
+        eval(cond);
+        mv.visitInsn(DCONST_0);
+        mv.visitInsn(DCMPL);
+        mv.visitJumpInsn(IFEQ, lDone);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "safepoint", "()V", false);
+
+        Exits body = new Exits() {
+
+            @Override
+            void exit(final int kind, final int pos) throws Unsupported {
+
+                byte found = at(pos);
+                if (kind == EXIT_END) {
+                    if (found == Bytecodes.END_CMD) {
+                        resumes.add(pos);
+                    }
+                    push(found);
+                    mv.visitVarInsn(ISTORE, lastExit.slot);
+                    mv.visitJumpInsn(GOTO, lIncr);
+                } else if (found != Bytecodes.END_CMD) {
+                    throwFail("expected END_CMD in loop evaluation: found=" + Integer.toHexString(found));
+                } else if (kind == EXIT_BREAK) {
+                    resumes.add(pos);
+                    mv.visitJumpInsn(GOTO, lAfter);
+                } else {
+                    ScriptJit.this.exit(exits, EXIT_RETURN, pos + 1);
+                }
+            }
+        };
+        loopDepth++ ;
+        int end = block(st, body);
+        loopDepth-- ;
+        expect(end, Bytecodes.END_CMD);
+        for (int pos : resumes) {
+            if (pos != end) {
+                throw (new Unsupported("loop resumes inside its body"));
+            }
+        }
+
+        mv.visitLabel(lIncr);
+        mv.visitVarInsn(opvar.loadOp(), opvar.slot);
+        if (opvar.type == TYPE_INT) {
+            mv.visitInsn(I2D);
+        }
+        mv.visitInsn(DCONST_1);
+        mv.visitInsn( (op == Bytecodes.INCREM) ? DADD : DSUB);
+        if (opvar.type == TYPE_INT) {
+            mv.visitInsn(D2I);
+        }
+        mv.visitVarInsn(opvar.storeOp(), opvar.slot);
+        mv.visitJumpInsn(GOTO, lCheck);
+
+        mv.visitLabel(lDone);
+        mv.visitVarInsn(ILOAD, lastExit.slot);
+        mv.visitJumpInsn(IFEQ, lAfter);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, lastExit.slot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "loopEndError", "(I)Lcom/snap2d/script/ScriptInvocationException;",
+                        false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(lAfter);
+        return end + 1;
+    }
+
+    /*
+     * STORE_VAR: declaration or reassignment of a local.
+     */
+    private int store(int p) throws Unsupported {
+
+        byte kind = at(p);
+        int id = code.getInt(p + 1);
+        p += 5;
+        if (engine.fetchConstValue(id) != null) {
+            throw (new Unsupported("assignment to constant"));
+        }
+        Local local = locals.get(id);
+        if (kind != Bytecodes.REALLOC) {
+            int type;
+            switch (kind) {
+            case Bytecodes.ALLOC_INT:
+                type = TYPE_INT;
+                break;
+            case Bytecodes.ALLOC_FLOAT:
+                type = TYPE_FLOAT;
+                break;
+            case Bytecodes.ALLOC_BOOL:
+                type = TYPE_BOOL;
+                break;
+            default:
+                throw (new Unsupported("variable type 0x" + Integer.toHexString(kind)));
+            }
+            if (local == null) {
+                local = declare(id, type);
+            } else if (local.type != type) {
+                throw (new Unsupported("variable redeclared with another type"));
+            }
+        } else if (local == null) {
+            throw (new Unsupported("assignment to unknown variable"));
+        }
+        expect(p, Bytecodes.EVAL);
+        p = eval(p + 1);
+        storeDouble(local);
+        expect(p, Bytecodes.END_CMD);
+        return p + 1;
+    }
+
+    private int returnValue(int p) throws Unsupported {
+
+        Keyword type = func.getReturnType();
+        if (type == Keyword.VOID) {
+            expect(p++ , Bytecodes.END_CMD);
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            expect(p, Bytecodes.EVAL);
+            p = eval(p + 1);
+            if (type == Keyword.INT) {
+                mv.visitInsn(D2I);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+            } else if (type == Keyword.FLOAT) {
+                mv.visitMethodInsn(INVOKESTATIC, BASE, "scalar", "(D)Ljava/lang/Object;", false);
+            } else {
+                throw (new Unsupported("return type " + type));
+            }
+        }
+        mv.visitVarInsn(ASTORE, LOCAL_RET);
+        return p;
+    }
+
+    /*
+     * Function call at 'p'; leaves the Object result on the stack.
+     */
+    private int call(int p) throws Unsupported {
+
+        boolean java = at(p) == Bytecodes.INVOKE_JAVA_FUNC;
+        Function target = engine.funcMap.get(code.getLong(p + 1));
+        p += 9;
+        if (target == null || target.isJavaFunction() != java) {
+            throw (new Unsupported("invalid call target"));
+        }
+        int index = 0;
+        while (index < callees.size() && callees.get(index) != target) {
+            index++ ;
+        }
+        if (index == callees.size()) {
+            callees.add(target);
+        }
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, BASE, "callees", "[L" + FUNCTION + ";");
+        push(index);
+        mv.visitInsn(AALOAD);
+        Keyword[] types = target.getParamTypes();
+        push(types.length);
+        mv.visitTypeInsn(ANEWARRAY, OBJECT);
+        for (int i = 0; i < types.length; i++ ) {
+            mv.visitInsn(DUP);
+            push(i);
+            expect(p, Bytecodes.EVAL);
+            p = eval(p + 1);
+            switch (typeOf(types[i])) {
+            case TYPE_INT:
+                mv.visitInsn(D2I);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+                break;
+            case TYPE_FLOAT:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
+                break;
+            default:
+                mv.visitMethodInsn(INVOKESTATIC, BASE, "truth", "(D)Z", false);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
+            }
+            mv.visitInsn(AASTORE);
+        }
+        expect(p, Bytecodes.END_CMD);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, java ? "callJava" : "call", CALL_DESC, false);
+        return p + 1;
+    }
+
+    /*
+     * Mirrors ScriptEngine.execEvaluation: evaluates the postfix expression
+     * starting at 'p' and leaves its double result on the stack. Returns the
+     * position following the expression's END_CMD.
+     */
+    private int eval(int p) throws Unsupported {
+
+        int depth = 0;
+        while (true) {
+            byte next = at(p++ );
+            switch (next) {
+            case Bytecodes.END_CMD:
+                if (depth != 1) {
+                    throw (new Unsupported("malformed expression"));
+                }
+                return p;
+            case Bytecodes.READ_OP:
+                char op = MathRef.matchBytecode(at(p++ ));
+                if (op == 0 || depth < 2) {
+                    throw (new Unsupported("malformed expression"));
+                }
+                operator(op);
+                depth-- ;
+                break;
+            case Bytecodes.READ_FLOAT:
+                mv.visitLdcInsn(code.getDouble(p) + 0.0);
+                p += 8;
+                depth++ ;
+                break;
+            case Bytecodes.READ_INT:
+                mv.visitLdcInsn((double) code.getInt(p));
+                p += 4;
+                depth++ ;
+                break;
+            case Bytecodes.TRUE:
+                mv.visitInsn(DCONST_1);
+                depth++ ;
+                break;
+            case Bytecodes.FALSE:
+                mv.visitInsn(DCONST_0);
+                depth++ ;
+                break;
+            case Bytecodes.REF_VAR:
+                loadVar(code.getInt(p));
+                p += 4;
+                depth++ ;
+                break;
+            case Bytecodes.INVOKE_FUNC:
+            case Bytecodes.INVOKE_JAVA_FUNC:
+                mv.visitVarInsn(ALOAD, 0);
+                p = call(p - 1);
+                mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "number", "(Ljava/lang/Object;)D", false);
+                depth++ ;
+                break;
+            default:
+                throw (new Unsupported("expression instruction 0x" + Integer.toHexString(next)));
+            }
+        }
+    }
+
+    private void operator(final char op) {
+
+        switch (op) {
+        case '+':
+            mv.visitInsn(DADD);
+            break;
+        case '-':
+            mv.visitInsn(DSUB);
+            break;
+        case '*':
+            mv.visitInsn(DMUL);
+            break;
+        case '/':
+            mv.visitInsn(DDIV);
+            break;
+        case '%':
+            mv.visitInsn(DREM);
+            break;
+        default:
+            push(op);
+            mv.visitMethodInsn(INVOKESTATIC, BASE, "operator", "(DDI)D", false);
+        }
+    }
+
+    /*
+     * Variable reads pass through the interpreter's decimal string conversion;
+     * constants are immutable and inlined.
+     */
+    private void loadVar(final int id) throws Unsupported {
+
+        Object value = engine.fetchConstValue(id);
+        if (value != null) {
+            double d;
+            if (value instanceof Integer) {
+                d = (Integer) value;
+            } else if (value instanceof Boolean) {
+                d = ((Boolean) value) ? 1 : 0;
+            } else if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+                d = (Double) value + 0.0;
+            } else {
+                throw (new Unsupported("constant type"));
+            }
+            mv.visitLdcInsn(d);
+            return;
+        }
+        Local local = locals.get(id);
+        if (local == null) {
+            throw (new Unsupported("unknown variable"));
+        }
+        mv.visitVarInsn(local.loadOp(), local.slot);
+        if (local.type == TYPE_FLOAT) {
+            mv.visitMethodInsn(INVOKESTATIC, BASE, "plain", "(D)D", false);
+        } else {
+            mv.visitInsn(I2D);
+        }
+    }
+
+    private void storeDouble(final Local local) {
+
+        switch (local.type) {
+        case TYPE_INT:
+            mv.visitInsn(D2I);
+            break;
+        case TYPE_BOOL:
+            mv.visitMethodInsn(INVOKESTATIC, BASE, "toBool", "(D)I", false);
+            break;
+        }
+        mv.visitVarInsn(local.storeOp(), local.slot);
+    }
+
+    private void throwFail(final String msg) {
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitLdcInsn(msg);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "fail", "(Ljava/lang/String;)Lcom/snap2d/script/ScriptInvocationException;",
+                        false);
+        mv.visitInsn(ATHROW);
+    }
+
+    private void exit(final Exits exits, final int kind, final int pos) throws Unsupported {
+
+        if ( !dead) {
+            exits.exit(kind, pos);
+        }
+    }
+
+    /*
+     * Code following an unconditional exit is never reached; it is still
+     * walked to find the end of the block, but nothing is emitted for it.
+     */
+    private void setDead(final boolean dead) {
+
+        this.dead = dead;
+        mv = dead ? DEAD : live;
+    }
+
+    private void push(final int value) {
+
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private byte at(final int p) throws Unsupported {
+
+        if (p >= code.capacity()) {
+            throw (new Unsupported("unexpected end of bytecode"));
+        }
+        return code.get(p);
+    }
+
+    private void expect(final int p, final byte instr) throws Unsupported {
+
+        if (at(p) != instr) {
+            throw (new Unsupported("expected 0x" + Integer.toHexString(instr) + " at " + p));
+        }
+    }
+
+    private int typeOf(final Keyword type) throws Unsupported {
+
+        switch (type) {
+        case INT:
+            return TYPE_INT;
+        case FLOAT:
+            return TYPE_FLOAT;
+        case BOOL:
+            return TYPE_BOOL;
+        default:
+            throw (new Unsupported("type " + type));
+        }
+    }
+
+    private Local declare(final int id, final int type) throws Unsupported {
+
+        if (type == TYPE_FLOAT && !engine.useDouble) {
+            throw (new Unsupported("float storage without double precision"));
+        }
+        Local local = newLocal(type);
+        locals.put(id, local);
+        return local;
+    }
+
+    private Local temp() {
+
+        return newLocal(TYPE_INT);
+    }
+
+    private Local newLocal(final int type) {
+
+        Local local = new Local(type, nextSlot);
+        nextSlot += local.size();
+        slots.add(local);
+        return local;
+    }
+
+    private static class Local {
+
+        final int type, slot;
+
+        Local(final int type, final int slot) {
+
+            this.type = type;
+            this.slot = slot;
+        }
+
+        int size() {
+
+            return (type == TYPE_FLOAT) ? 2 : 1;
+        }
+
+        String desc() {
+
+            return (type == TYPE_FLOAT) ? "D" : "I";
+        }
+
+        int loadOp() {
+
+            return (type == TYPE_FLOAT) ? DLOAD : ILOAD;
+        }
+
+        int storeOp() {
+
+            return (type == TYPE_FLOAT) ? DSTORE : ISTORE;
+        }
+    }
+
+    private abstract static class Exits {
+
+        abstract void exit(int kind, int pos) throws Unsupported;
+    }
+
+    private static class Unsupported extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(final String msg) {
+
+            super(msg);
+        }
+    }
+
+    /**
+     * Defines the classes generated for one engine.
+     */
+    static class Loader extends ClassLoader {
+
+        Loader() {
+
+            super(CompiledFunction.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] b) {
+
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+}
@@ -0,0 +1,1273 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+import bg.x2d.utils.Multimap;
+
+import com.snap2d.script.lib.VarStore;
+
+/**
+ * Optimization stage run by ScriptCompiler on the bytecode of compiled
+ * functions. The bytecode is decoded into statements and expression tokens,
+ * rewritten and encoded again:
+ * <ul>
+ * <li>operators applied to literal operands are folded into a single literal,</li>
+ * <li>references to constants whose initializer folds to a literal are
+ * replaced by the value,</li>
+ * <li>if/else-if branches with constant conditions are dropped or made final,
+ * and statements following a return, break or continue in the same block are
+ * removed,</li>
+ * <li>calls to small script functions consisting of a single numeric return
+ * expression without calls are replaced by that expression,</li>
+ * <li>VarStore global variable accessors called with a literal name are
+ * replaced by their slot accessors; the names are assigned slots in order of
+ * appearance, which the engine reproduces when it creates its VarStore.</li>
+ * </ul>
+ * The interpreter's observable behavior is preserved, with two exceptions for
+ * inlined functions: a float argument or result that is NaN or infinite is no
+ * longer rejected with a NumberFormatException, and float arguments keep
+ * double precision when the runtime stores floats as Java floats. Functions
+ * containing bytecode the optimizer does not recognize are left untouched.
+ *
+ * @author Brian Groenke
+ *
+ */
+class ScriptOptimizer {
+
+    private static final Logger log = Logger.getLogger(ScriptOptimizer.class.getCanonicalName());
+
+    /**
+     * Maximum number of expression tokens in a function body for it to be
+     * inlined.
+     */
+    static final int INLINE_MAX_TOKENS = 24;
+
+    private static final int MAX_ROUNDS = 4;
+
+    private static final String[][] GLOBAL_ACCESSORS = { { "putInt", "putIntSlot" }, { "putFloat", "putFloatSlot" },
+                    { "putString", "putStringSlot" }, { "putBool", "putBoolSlot" }, { "putVec", "putVecSlot" },
+                    { "getInt", "getIntSlot" }, { "getFloat", "getFloatSlot" }, { "getBool", "getBoolSlot" },
+                    { "getString", "getStringSlot" }, { "getVec", "getVecSlot" }, { "isVarDefined", "isSlotDefined" } };
+
+    private final Function[] functions;
+    private final ConstantInitializer[] constInits;
+    private final PrintStream dump;
+    private final List<String> globalSlots;
+
+    private final HashMap<Long, Function> byId = new HashMap<Long, Function>();
+    private final HashMap<Integer, Double> constValues = new HashMap<Integer, Double>();
+    private final HashMap<Integer, Integer> constTypes = new HashMap<Integer, Integer>();
+    private final HashMap<Function, Inline> inlines = new HashMap<Function, Inline>();
+    private final HashMap<Function, Function> slotAccessors = new HashMap<Function, Function>();
+    private final HashMap<String, Integer> slotIndex = new HashMap<String, Integer>();
+
+    // types of the variables of the function being optimized
+    private final HashMap<Integer, Integer> varTypes = new HashMap<Integer, Integer>();
+
+    /**
+     * @param functions
+     *            compiled functions, including linked Java functions
+     * @param constInits
+     *            compiled constant initializers
+     * @param globalSlots
+     *            receives the global variable names resolved to slots, in
+     *            slot order
+     * @param dump
+     *            if non-null, the bytecode of each function is printed before
+     *            and after optimization
+     */
+    ScriptOptimizer(final Multimap<String, Function> functions, final List<ConstantInitializer> constInits,
+                    final List<String> globalSlots, final PrintStream dump) {
+
+        this.functions = functions.values().toArray(new Function[0]);
+        this.constInits = constInits.toArray(new ConstantInitializer[constInits.size()]);
+        this.globalSlots = globalSlots;
+        this.dump = dump;
+        for (Function f : this.functions) {
+            byId.put(f.getID(), f);
+        }
+        Arrays.sort(this.functions);
+        findSlotAccessors();
+    }
+
+    private void findSlotAccessors() {
+
+        HashMap<Method, Function> linked = new HashMap<Method, Function>();
+        for (Function f : functions) {
+            if (f.isJavaFunction() && f.getJavaMethod().getDeclaringClass() == VarStore.class) {
+                linked.put(f.getJavaMethod(), f);
+            }
+        }
+        for (String[] names : GLOBAL_ACCESSORS) {
+            for (Function f : functions) {
+                Method m = f.getJavaMethod();
+                if ( !linked.containsKey(m) || !m.getName().equals(names[0])) {
+                    continue;
+                }
+                Class<?>[] params = m.getParameterTypes().clone();
+                params[0] = int.class;
+                try {
+                    Function slotted = linked.get(VarStore.class.getMethod(names[1], params));
+                    if (slotted != null) {
+                        slotAccessors.put(f, slotted);
+                    }
+                } catch (NoSuchMethodException e) {
+                    log.warning("SnapScript: missing VarStore slot accessor " + names[1]);
+                }
+            }
+        }
+    }
+
+    void optimize() {
+
+        resolveConstants();
+
+        HashMap<Function, ByteBuffer> original = new HashMap<Function, ByteBuffer>();
+        for (Function f : functions) {
+            if ( !f.isJavaFunction()) {
+                original.put(f, f.bytecode);
+            }
+        }
+
+        // inlining can turn a caller into an inline candidate itself, so
+        // repeat while new candidates appear
+        for (int round = 0; round < MAX_ROUNDS; round++ ) {
+            int candidates = inlines.size();
+            for (Function f : functions) {
+                if (f.isJavaFunction()) {
+                    continue;
+                }
+                try {
+                    Body body = decodeFunction(f);
+                    body.stmts = optimizeStmts(body.stmts);
+                    HashMap<Integer, Integer> moved = new HashMap<Integer, Integer>();
+                    f.bytecode = encodeFunction(body, moved);
+                    f.sourceMap = moveSourceMap(f.sourceMap, moved);
+                    Inline inline = Inline.from(f, body);
+                    if (inline != null) {
+                        inlines.put(f, inline);
+                    }
+                } catch (Unrecognized e) {
+                    log.fine("SnapScript: function " + f.getName() + " not optimized: " + e.getMessage());
+                }
+            }
+            if (inlines.size() == candidates) {
+                break;
+            }
+        }
+
+        if (dump != null) {
+            for (Function f : functions) {
+                if ( !f.isJavaFunction()) {
+                    dump(f, "before", original.get(f));
+                    dump(f, "after", f.bytecode);
+                }
+            }
+        }
+    }
+
+    /*
+     * Constant initializers are executed in order, so each one can use the
+     * values of those before it.
+     */
+    private void resolveConstants() {
+
+        for (ConstantInitializer init : constInits) {
+            try {
+                ByteBuffer code = init.bytecode.duplicate();
+                code.position(0);
+                while (code.hasRemaining()) {
+                    Stmt stmt = decodeStmt(code);
+                    if (stmt.kind != Bytecodes.STORE_CONST) {
+                        throw (new Unrecognized("statement 0x" + Integer.toHexString(stmt.kind)));
+                    }
+                    int type = typeOfAlloc(stmt.alloc);
+                    constTypes.put(stmt.id, type);
+                    Expr value = optimizeExpr(stmt.expr);
+                    Token lit = value.literal();
+                    if (lit == null || type < 0) {
+                        continue;
+                    }
+                    double d = lit.value;
+                    if (type == Flags.TYPE_INT) {
+                        d = (int) d;
+                    } else if (type == Flags.TYPE_BOOL) {
+                        d = ((byte) d == 1) ? 1 : 0;
+                    } else if (type == Flags.TYPE_FLOAT && (float) d != d) {
+                        // the value read back depends on the float storage
+                        // mode chosen at runtime
+                        continue;
+                    }
+                    constValues.put(stmt.id, d);
+                }
+            } catch (Unrecognized e) {
+                log.fine("SnapScript: constant initializer not optimized: " + e.getMessage());
+            }
+        }
+    }
+
+    // >>>>>> OPTIMIZATION >>>>>> //
+
+    private List<Stmt> optimizeStmts(final List<Stmt> stmts) throws Unrecognized {
+
+        List<Stmt> opt = new ArrayList<Stmt>(stmts.size());
+        for (Stmt stmt : stmts) {
+            Stmt next = optimizeStmt(stmt);
+            if (next == null) {
+                continue;
+            }
+            opt.add(next);
+            if (next.exits()) {
+                break;
+            }
+        }
+        return opt;
+    }
+
+    private Stmt optimizeStmt(final Stmt stmt) throws Unrecognized {
+
+        switch (stmt.kind) {
+        case Bytecodes.STORE_VAR:
+        case Bytecodes.STORE_CONST:
+        case Bytecodes.RETURN:
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            if (stmt.expr != null) {
+                stmt.expr = optimizeExpr(stmt.expr);
+            }
+            return stmt;
+        case Bytecodes.NEW_STACK:
+            stmt.block = optimizeStmts(stmt.block);
+            return stmt;
+        case Bytecodes.FOR_VAR:
+            stmt.init = optimizeStmt(stmt.init);
+            stmt.expr = optimizeExpr(stmt.expr);
+            if (stmt.step != null) {
+                stmt.step = optimizeExpr(stmt.step);
+            }
+            stmt.block = optimizeStmts(stmt.block);
+            return stmt;
+        case Bytecodes.IF:
+            return optimizeConditional(stmt);
+        default:
+            return stmt;
+        }
+    }
+
+    /*
+     * Branches whose condition folds to false are dropped; a branch whose
+     * condition folds to true ends the chain. Each branch keeps its own block,
+     * since ScriptEngine.execConditional swallows break and continue.
+     */
+    private Stmt optimizeConditional(final Stmt stmt) throws Unrecognized {
+
+        List<Branch> branches = new ArrayList<Branch>();
+        for (Branch branch : stmt.branches) {
+            branch.block = optimizeStmts(branch.block);
+            if (branch.cond == null) {
+                // else block
+                if (branches.isEmpty()) {
+                    branch.cond = new Expr(Arrays.asList(Token.literal(1)));
+                }
+                branches.add(branch);
+                break;
+            }
+            branch.cond = optimizeExpr(branch.cond);
+            Token lit = branch.cond.literal();
+            if (lit != null && lit.value == 0) {
+                continue;
+            }
+            branches.add(branch);
+            if (lit != null) {
+                break;
+            }
+        }
+        if (branches.isEmpty()) {
+            return null;
+        }
+        stmt.branches = branches;
+        return stmt;
+    }
+
+    private Expr optimizeExpr(final Expr expr) throws Unrecognized {
+
+        if (expr.tokens == null) {
+            return expr;
+        }
+        Folder folder = new Folder();
+        for (Token t : expr.tokens) {
+            feed(folder, t);
+        }
+        return new Expr(folder.finish());
+    }
+
+    private void feed(final Folder folder, final Token t) throws Unrecognized {
+
+        switch (t.kind) {
+        case Bytecodes.REF_VAR:
+            Double value = constValues.get(t.id);
+            if (value != null) {
+                folder.push(Token.literal(value));
+            } else {
+                folder.push(t);
+            }
+            break;
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            for (int i = 0; i < t.args.size(); i++ ) {
+                t.args.set(i, optimizeExpr(t.args.get(i)));
+            }
+            List<Token> inlined = inline(t);
+            if (inlined == null) {
+                folder.push(t);
+            } else {
+                for (Token it : inlined) {
+                    feed(folder, it);
+                }
+            }
+            break;
+        default:
+            folder.push(t);
+        }
+    }
+
+    /*
+     * Expands a call to an inline candidate. Arguments are converted the way
+     * ScriptEngine.readArgs and Variable.setValue would convert them, and the
+     * result the way a function result is read back in an expression: int
+     * values are truncated with '|0', float values lose the sign of zero with
+     * '+0' and bool values are normalized with '!=0'.
+     */
+    private List<Token> inline(final Token call) {
+
+        Inline inline = inlines.get(call.target);
+        if (inline == null || call.kind != Bytecodes.INVOKE_FUNC) {
+            return null;
+        }
+        int n = inline.params.length;
+        List<List<Token>> args = new ArrayList<List<Token>>(n);
+        boolean sideEffects = false;
+        for (int i = 0; i < n; i++ ) {
+            Expr arg = call.args.get(i);
+            if (arg.tokens == null || arg.hasVectors()) {
+                return null;
+            }
+            boolean calls = arg.hasCalls();
+            sideEffects |= calls;
+            boolean atom = arg.tokens.size() == 1 && !calls;
+            if ( !atom && inline.uses[i] > 1) {
+                return null;
+            }
+            args.add(convert(arg.tokens, inline.types[i]));
+        }
+        // calls in the arguments must still run exactly once, in order
+        if (sideEffects && !inline.linear) {
+            return null;
+        }
+
+        List<Token> out = new ArrayList<Token>();
+        for (Token t : inline.body) {
+            int param = (t.kind == Bytecodes.REF_VAR) ? inline.indexOf(t.id) : -1;
+            if (param >= 0) {
+                out.addAll(args.get(param));
+            } else {
+                out.add(t);
+            }
+        }
+        out.add(Token.literal(0));
+        out.add(Token.operator(inline.returnType == Flags.TYPE_INT ? MathRef.OPERATORS[4] : MathRef.OPERATORS[0]));
+        return out;
+    }
+
+    private List<Token> convert(final List<Token> arg, final int type) {
+
+        Token single = (arg.size() == 1) ? arg.get(0) : null;
+        if (single != null && single.kind == Bytecodes.READ_FLOAT) {
+            double d = single.value;
+            if (type == Flags.TYPE_INT) {
+                d = (int) d;
+            } else if (type == Flags.TYPE_BOOL) {
+                d = (d != 0) ? 1 : 0;
+            }
+            return Arrays.asList(Token.literal(d));
+        }
+        Integer var = (single != null && single.kind == Bytecodes.REF_VAR) ? varTypes.get(single.id) : null;
+        int varType = (var != null) ? var : -1;
+        if (varType == type || varType == Flags.TYPE_BOOL && type != Flags.TYPE_BOOL
+                        || varType == Flags.TYPE_INT && type == Flags.TYPE_FLOAT) {
+            return arg;
+        }
+        List<Token> conv = new ArrayList<Token>(arg);
+        conv.add(Token.literal(0));
+        switch (type) {
+        case Flags.TYPE_INT:
+            conv.add(Token.operator(MathRef.OPERATORS[4]));
+            break;
+        case Flags.TYPE_BOOL:
+            conv.add(Token.operator(MathRef.NOT_EQUALS));
+            break;
+        default:
+            conv.add(Token.operator(MathRef.OPERATORS[0]));
+        }
+        return conv;
+    }
+
+    /*
+     * Postfix evaluation over tokens that folds an operator whose operands are
+     * both literals.
+     */
+    private static class Folder {
+
+        final List<Token> out = new ArrayList<Token>();
+        // start index in 'out' of each pending operand
+        final List<Integer> starts = new ArrayList<Integer>();
+
+        void push(final Token t) throws Unrecognized {
+
+            if (t.kind != Bytecodes.READ_OP) {
+                starts.add(out.size());
+                out.add(t);
+                return;
+            }
+            int n = starts.size();
+            if (n < 2) {
+                throw (new Unrecognized("malformed expression"));
+            }
+            int a = starts.get(n - 2), b = starts.get(n - 1);
+            starts.remove(n - 1);
+            Token ta = out.get(a), tb = out.get(b);
+            if (b == a + 1 && b == out.size() - 1 && ta.kind == Bytecodes.READ_FLOAT
+                            && tb.kind == Bytecodes.READ_FLOAT) {
+                double r = CompiledExpression.applyOperator(t.op, ta.value, tb.value);
+                // the interpreter reads literals back from their decimal
+                // form, which has no NaN, infinity or negative zero
+                if ( !Double.isNaN(r) && !Double.isInfinite(r) && (r != 0 || 1 / r > 0)) {
+                    out.remove(b);
+                    out.set(a, Token.literal(r));
+                    return;
+                }
+            }
+            out.add(t);
+        }
+
+        List<Token> finish() throws Unrecognized {
+
+            if (starts.size() != 1) {
+                throw (new Unrecognized("malformed expression"));
+            }
+            return out;
+        }
+    }
+
+    // >>>>>> DECODING >>>>>> //
+
+    private Body decodeFunction(final Function f) throws Unrecognized {
+
+        ByteBuffer code = f.bytecode.duplicate();
+        code.position(0);
+        Body body = new Body();
+        varTypes.clear();
+        varTypes.putAll(constTypes);
+        byte header = code.get();
+        body.header = header;
+        if (header == Bytecodes.INIT_PARAMS) {
+            Keyword[] types = f.getParamTypes();
+            body.params = new int[types.length];
+            for (int i = 0; i < types.length; i++ ) {
+                if (code.get() != Bytecodes.PARAM_VAR) {
+                    throw (new Unrecognized("expected PARAM_VAR"));
+                }
+                body.params[i] = code.getInt();
+                varTypes.put(body.params[i], Keyword.typeKeyToFlag(types[i]));
+            }
+        } else if (header == Bytecodes.NO_PARAMS) {
+            body.params = new int[0];
+        } else {
+            throw (new Unrecognized("function header 0x" + Integer.toHexString(header)));
+        }
+        body.stmts = new ArrayList<Stmt>();
+        while (code.hasRemaining()) {
+            body.stmts.add(decodeStmt(code));
+        }
+        return body;
+    }
+
+    private Stmt decodeStmt(final ByteBuffer code) throws Unrecognized {
+
+        int offset = code.position();
+        Stmt stmt = new Stmt(code.get());
+        stmt.offset = offset;
+        switch (stmt.kind) {
+        case Bytecodes.NEW_STACK:
+            stmt.block = decodeBlockRest(code);
+            break;
+        case Bytecodes.STORE_VAR:
+        case Bytecodes.STORE_CONST:
+            stmt.alloc = code.get();
+            stmt.id = code.getInt();
+            int type = typeOfAlloc(stmt.alloc);
+            if (type >= 0) {
+                varTypes.put(stmt.id, type);
+            }
+            stmt.expr = decodeExpr(code);
+            expect(code, Bytecodes.END_CMD);
+            break;
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            code.position(code.position() - 1);
+            stmt.expr = new Expr(decodeCall(code));
+            break;
+        case Bytecodes.RETURN:
+            if (peek(code) != Bytecodes.END_CMD) {
+                stmt.expr = decodeExpr(code);
+            }
+            expect(code, Bytecodes.END_CMD);
+            break;
+        case Bytecodes.BREAK:
+        case Bytecodes.CONTINUE:
+            break;
+        case Bytecodes.IF:
+            code.getInt();
+            stmt.branches = new ArrayList<Branch>();
+            expect(code, Bytecodes.EVAL);
+            while (true) {
+                Branch branch = new Branch();
+                branch.cond = new Expr(decodeTokens(code));
+                expect(code, Bytecodes.END_COND);
+                code.getInt();
+                branch.block = decodeBlock(code);
+                branch.term = code.get();
+                stmt.branches.add(branch);
+                byte next = code.get();
+                if (next == Bytecodes.ELSE_IF) {
+                    expect(code, Bytecodes.EVAL);
+                } else if (next == Bytecodes.ELSE) {
+                    Branch last = new Branch();
+                    code.getInt();
+                    last.block = decodeBlock(code);
+                    last.term = code.get();
+                    stmt.branches.add(last);
+                    expect(code, Bytecodes.END_CMD);
+                    break;
+                } else if (next == Bytecodes.END_CMD) {
+                    break;
+                } else {
+                    throw (new Unrecognized("if statement 0x" + Integer.toHexString(next)));
+                }
+            }
+            break;
+        case Bytecodes.FOR_VAR:
+            expect(code, Bytecodes.STORE_VAR);
+            code.position(code.position() - 1);
+            stmt.init = decodeStmt(code);
+            expect(code, Bytecodes.FOR_COND);
+            stmt.expr = decodeExpr(code);
+            expect(code, Bytecodes.FOR_OP);
+            expect(code, Bytecodes.REF_VAR);
+            stmt.id = code.getInt();
+            stmt.alloc = code.get();
+            if (stmt.alloc != Bytecodes.INCREM && stmt.alloc != Bytecodes.DECREM) {
+                stmt.step = decodeExpr(code);
+            }
+            expect(code, Bytecodes.FOR_START);
+            stmt.block = decodeBlock(code);
+            stmt.termOffset = code.position();
+            stmt.term = code.get();
+            expect(code, Bytecodes.END_CMD);
+            break;
+        default:
+            throw (new Unrecognized("statement 0x" + Integer.toHexString(stmt.kind)));
+        }
+        return stmt;
+    }
+
+    private List<Stmt> decodeBlock(final ByteBuffer code) throws Unrecognized {
+
+        expect(code, Bytecodes.NEW_STACK);
+        return decodeBlockRest(code);
+    }
+
+    private List<Stmt> decodeBlockRest(final ByteBuffer code) throws Unrecognized {
+
+        List<Stmt> stmts = new ArrayList<Stmt>();
+        while (peek(code) != Bytecodes.CLEAR_STACK) {
+            stmts.add(decodeStmt(code));
+        }
+        code.get();
+        return stmts;
+    }
+
+    /*
+     * An expression as read by ScriptEngine.execExpression.
+     */
+    private Expr decodeExpr(final ByteBuffer code) throws Unrecognized {
+
+        int start = code.position();
+        switch (peek(code)) {
+        case Bytecodes.EVAL:
+            code.get();
+            return new Expr(decodeTokens(code));
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            return new Expr(decodeCall(code));
+        case Bytecodes.REF_VAR:
+            code.position(start + 5);
+            break;
+        case Bytecodes.READ_STR:
+            code.get();
+            byte next;
+            while ( (next = code.get()) == Bytecodes.STR_VAR) {
+                expect(code, Bytecodes.REF_VAR);
+                code.position(code.position() + 8);
+            }
+            if (next != Bytecodes.STR_START) {
+                throw (new Unrecognized("string literal"));
+            }
+            int len = code.getInt();
+            code.position(code.position() + len);
+            expect(code, Bytecodes.END_CMD);
+            break;
+        default:
+            throw (new Unrecognized("expression 0x" + Integer.toHexString(peek(code))));
+        }
+        return Expr.raw(code, start);
+    }
+
+    /*
+     * Tokens as read by ScriptEngine.execEvaluation, up to and including the
+     * terminating END_CMD.
+     */
+    private List<Token> decodeTokens(final ByteBuffer code) throws Unrecognized {
+
+        List<Token> tokens = new ArrayList<Token>();
+        while (true) {
+            int start = code.position();
+            byte kind = code.get();
+            switch (kind) {
+            case Bytecodes.END_CMD:
+                return tokens;
+            case Bytecodes.READ_OP:
+                char op = MathRef.matchBytecode(code.get());
+                if (op == 0) {
+                    throw (new Unrecognized("operator"));
+                }
+                tokens.add(Token.operator(op));
+                break;
+            case Bytecodes.READ_INT:
+                tokens.add(Token.literal(code.getInt()));
+                break;
+            case Bytecodes.READ_FLOAT:
+                // literals pass through BigDecimal.toPlainString
+                tokens.add(Token.literal(code.getDouble() + 0.0));
+                break;
+            case Bytecodes.TRUE:
+                tokens.add(Token.literal(1));
+                break;
+            case Bytecodes.FALSE:
+                tokens.add(Token.literal(0));
+                break;
+            case Bytecodes.REF_VAR:
+                Token var = new Token(Bytecodes.REF_VAR);
+                var.id = code.getInt();
+                tokens.add(var);
+                break;
+            case Bytecodes.INVOKE_FUNC:
+            case Bytecodes.INVOKE_JAVA_FUNC:
+                code.position(start);
+                tokens.add(decodeCall(code));
+                break;
+            case Bytecodes.READ_VEC2:
+                for (int i = 0; i < 2; i++ ) {
+                    expect(code, Bytecodes.EVAL);
+                    decodeTokens(code);
+                }
+                Token vec = new Token(Bytecodes.READ_VEC2);
+                vec.raw = Expr.raw(code, start).raw;
+                tokens.add(vec);
+                break;
+            default:
+                throw (new Unrecognized("expression token 0x" + Integer.toHexString(kind)));
+            }
+        }
+    }
+
+    private Token decodeCall(final ByteBuffer code) throws Unrecognized {
+
+        Token call = new Token(code.get());
+        call.target = byId.get(code.getLong());
+        if (call.target == null) {
+            throw (new Unrecognized("unknown function"));
+        }
+        call.args = new ArrayList<Expr>();
+        for (int i = 0; i < call.target.getParamCount(); i++ ) {
+            call.args.add(decodeExpr(code));
+        }
+        expect(code, Bytecodes.END_CMD);
+        resolveGlobal(call);
+        return call;
+    }
+
+    private void resolveGlobal(final Token call) {
+
+        Function slotted = slotAccessors.get(call.target);
+        String name = (slotted != null) ? stringLiteral(call.args.get(0)) : null;
+        if (name == null) {
+            return;
+        }
+        Integer slot = slotIndex.get(name);
+        if (slot == null) {
+            slot = globalSlots.size();
+            globalSlots.add(name);
+            slotIndex.put(name, slot);
+        }
+        call.target = slotted;
+        call.args.set(0, new Expr(new ArrayList<Token>(Arrays.asList(Token.literal(slot)))));
+    }
+
+    /*
+     * The value of a string expression without embedded variables, or null.
+     */
+    private static String stringLiteral(final Expr expr) {
+
+        byte[] raw = expr.raw;
+        if (raw == null || raw.length < 7 || raw[0] != Bytecodes.READ_STR || raw[1] != Bytecodes.STR_START) {
+            return null;
+        }
+        int len = ByteBuffer.wrap(raw, 2, 4).getInt();
+        if (raw.length != 7 + len) {
+            return null;
+        }
+        // decoded as ScriptEngine.execStringLiteral does
+        return new String(raw, 6, len);
+    }
+
+    private static byte peek(final ByteBuffer code) throws Unrecognized {
+
+        if ( !code.hasRemaining()) {
+            throw (new Unrecognized("unexpected end of bytecode"));
+        }
+        return code.get(code.position());
+    }
+
+    private static void expect(final ByteBuffer code, final byte instr) throws Unrecognized {
+
+        if ( !code.hasRemaining() || code.get() != instr) {
+            throw (new Unrecognized("expected 0x" + Integer.toHexString(instr)));
+        }
+    }
+
+    private static int typeOfAlloc(final byte alloc) {
+
+        switch (alloc) {
+        case Bytecodes.ALLOC_INT:
+            return Flags.TYPE_INT;
+        case Bytecodes.ALLOC_FLOAT:
+            return Flags.TYPE_FLOAT;
+        case Bytecodes.ALLOC_BOOL:
+            return Flags.TYPE_BOOL;
+        case Bytecodes.ALLOC_STRING:
+            return Flags.TYPE_STRING;
+        case Bytecodes.ALLOC_VEC2:
+            return Flags.TYPE_VEC2;
+        default:
+            return -1;
+        }
+    }
+
+    // >>>>>> ENCODING >>>>>> //
+
+    /*
+     * Source map entries follow their statements to the new offsets; those
+     * of removed statements are dropped.
+     */
+    private static int[] moveSourceMap(final int[] map, final HashMap<Integer, Integer> moved) {
+
+        if (map == null) {
+            return null;
+        }
+        int[] out = new int[map.length];
+        int n = 0;
+        for (int i = 0; i < map.length; i += 2) {
+            Integer offset = moved.get(map[i]);
+            if (offset != null) {
+                out[n++ ] = offset;
+                out[n++ ] = map[i + 1];
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static ByteBuffer encodeFunction(final Body body, final HashMap<Integer, Integer> moved) {
+
+        Out out = new Out();
+        out.moved = moved;
+        out.put(body.header);
+        for (int id : body.params) {
+            out.put(Bytecodes.PARAM_VAR);
+            out.putInt(id);
+        }
+        for (Stmt stmt : body.stmts) {
+            encodeStmt(out, stmt);
+        }
+        ByteBuffer buff = ByteBuffer.allocateDirect(out.len);
+        buff.put(out.buf, 0, out.len).flip();
+        return buff;
+    }
+
+    private static void encodeStmt(final Out out, final Stmt stmt) {
+
+        if (stmt.offset >= 0) {
+            out.moved.put(stmt.offset, out.len);
+        }
+        switch (stmt.kind) {
+        case Bytecodes.NEW_STACK:
+            encodeBlock(out, stmt.block);
+            break;
+        case Bytecodes.STORE_VAR:
+        case Bytecodes.STORE_CONST:
+            out.put(stmt.kind);
+            out.put(stmt.alloc);
+            out.putInt(stmt.id);
+            encodeExpr(out, stmt.expr);
+            out.put(Bytecodes.END_CMD);
+            break;
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            encodeExpr(out, stmt.expr);
+            break;
+        case Bytecodes.RETURN:
+            out.put(Bytecodes.RETURN);
+            if (stmt.expr != null) {
+                encodeExpr(out, stmt.expr);
+            }
+            out.put(Bytecodes.END_CMD);
+            break;
+        case Bytecodes.BREAK:
+        case Bytecodes.CONTINUE:
+            out.put(stmt.kind);
+            break;
+        case Bytecodes.IF:
+            out.put(Bytecodes.IF);
+            int lenPos = out.reserveInt();
+            int init = out.len;
+            for (int i = 0; i < stmt.branches.size(); i++ ) {
+                Branch branch = stmt.branches.get(i);
+                if (branch.cond == null) {
+                    out.put(Bytecodes.ELSE);
+                    encodeBranchBlock(out, branch);
+                    break;
+                }
+                if (i > 0) {
+                    out.put(Bytecodes.ELSE_IF);
+                }
+                encodeExpr(out, branch.cond);
+                out.put(Bytecodes.END_COND);
+                encodeBranchBlock(out, branch);
+            }
+            out.patchInt(lenPos, out.len - init);
+            out.put(Bytecodes.END_CMD);
+            break;
+        case Bytecodes.FOR_VAR:
+            out.put(Bytecodes.FOR_VAR);
+            encodeStmt(out, stmt.init);
+            out.put(Bytecodes.FOR_COND);
+            encodeExpr(out, stmt.expr);
+            out.put(Bytecodes.FOR_OP);
+            out.put(Bytecodes.REF_VAR);
+            out.putInt(stmt.id);
+            out.put(stmt.alloc);
+            if (stmt.step != null) {
+                encodeExpr(out, stmt.step);
+            }
+            out.put(Bytecodes.FOR_START);
+            encodeBlock(out, stmt.block);
+            if (stmt.termOffset >= 0) {
+                out.moved.put(stmt.termOffset, out.len);
+            }
+            out.put(stmt.term);
+            out.put(Bytecodes.END_CMD);
+            break;
+        }
+    }
+
+    /*
+     * Block length covers the block up to its terminator (exclusive).
+     */
+    private static void encodeBranchBlock(final Out out, final Branch branch) {
+
+        int lenPos = out.reserveInt();
+        int start = out.len;
+        encodeBlock(out, branch.block);
+        out.patchInt(lenPos, out.len - start);
+        out.put(branch.term);
+    }
+
+    private static void encodeBlock(final Out out, final List<Stmt> stmts) {
+
+        out.put(Bytecodes.NEW_STACK);
+        for (Stmt stmt : stmts) {
+            encodeStmt(out, stmt);
+        }
+        out.put(Bytecodes.CLEAR_STACK);
+    }
+
+    private static void encodeExpr(final Out out, final Expr expr) {
+
+        if (expr.raw != null) {
+            out.put(expr.raw);
+        } else if (expr.call != null) {
+            encodeToken(out, expr.call);
+        } else {
+            out.put(Bytecodes.EVAL);
+            for (Token t : expr.tokens) {
+                encodeToken(out, t);
+            }
+            out.put(Bytecodes.END_CMD);
+        }
+    }
+
+    private static void encodeToken(final Out out, final Token t) {
+
+        switch (t.kind) {
+        case Bytecodes.READ_OP:
+            out.put(Bytecodes.READ_OP);
+            out.put(MathRef.opBytecode(t.op));
+            break;
+        case Bytecodes.READ_FLOAT:
+            // integral values are written as ints, which read back the same
+            if (t.value == (int) t.value && (t.value != 0 || 1 / t.value > 0)) {
+                out.put(Bytecodes.READ_INT);
+                out.putInt((int) t.value);
+            } else {
+                out.put(Bytecodes.READ_FLOAT);
+                out.putLong(Double.doubleToLongBits(t.value));
+            }
+            break;
+        case Bytecodes.REF_VAR:
+            out.put(Bytecodes.REF_VAR);
+            out.putInt(t.id);
+            break;
+        case Bytecodes.INVOKE_FUNC:
+        case Bytecodes.INVOKE_JAVA_FUNC:
+            out.put(t.kind);
+            out.putLong(t.target.getID());
+            for (Expr arg : t.args) {
+                encodeExpr(out, arg);
+            }
+            out.put(Bytecodes.END_CMD);
+            break;
+        case Bytecodes.READ_VEC2:
+            out.put(t.raw);
+            break;
+        }
+    }
+
+    private void dump(final Function f, final String stage, final ByteBuffer code) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("SnapScript bytecode: ").append(f).append(" (").append(stage).append(", ")
+                        .append(code.capacity()).append(" bytes)");
+        for (int i = 0; i < code.capacity(); i++ ) {
+            if (i % 16 == 0) {
+                sb.append(String.format("%n  %04x:", i));
+            }
+            sb.append(String.format(" %02x", code.get(i)));
+        }
+        dump.println(sb);
+    }
+
+    // >>>>>> STRUCTURES >>>>>> //
+
+    private static class Body {
+
+        byte header;
+        int[] params;
+        List<Stmt> stmts;
+    }
+
+    private static class Stmt {
+
+        final byte kind;
+        byte alloc, term;
+        int id;
+        // position in the decoded bytecode, or -1
+        int offset = -1;
+        // position of a for loop's terminator, which has its own source line
+        int termOffset = -1;
+        Expr expr, step;
+        Stmt init;
+        List<Stmt> block;
+        List<Branch> branches;
+
+        Stmt(final byte kind) {
+
+            this.kind = kind;
+        }
+
+        /*
+         * True if nothing after this statement in the same block can run or
+         * be read. Break and continue also end the block, but a loop reads
+         * the instruction following them.
+         */
+        boolean exits() {
+
+            return kind == Bytecodes.RETURN;
+        }
+    }
+
+    private static class Branch {
+
+        // null for an else block
+        Expr cond;
+        List<Stmt> block;
+        byte term;
+    }
+
+    /*
+     * An expression is either a token list (EVAL), a bare call or raw bytes
+     * for string literals and plain variable references.
+     */
+    private static class Expr {
+
+        List<Token> tokens;
+        Token call;
+        byte[] raw;
+
+        Expr(final List<Token> tokens) {
+
+            this.tokens = tokens;
+        }
+
+        Expr(final Token call) {
+
+            this.call = call;
+        }
+
+        static Expr raw(final ByteBuffer code, final int start) {
+
+            Expr expr = new Expr((List<Token>) null);
+            expr.raw = new byte[code.position() - start];
+            ByteBuffer src = code.duplicate();
+            src.position(start);
+            src.get(expr.raw);
+            return expr;
+        }
+
+        Token literal() {
+
+            return (tokens != null && tokens.size() == 1 && tokens.get(0).kind == Bytecodes.READ_FLOAT) ? tokens.get(0)
+                            : null;
+        }
+
+        boolean hasVectors() {
+
+            for (Token t : tokens) {
+                if (t.kind == Bytecodes.READ_VEC2) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean hasCalls() {
+
+            if (tokens == null) {
+                return true;
+            }
+            for (Token t : tokens) {
+                if (t.kind == Bytecodes.INVOKE_FUNC || t.kind == Bytecodes.INVOKE_JAVA_FUNC) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Literals of any kind are kept as READ_FLOAT tokens holding the value the
+     * interpreter would read.
+     */
+    private static class Token {
+
+        final byte kind;
+        char op;
+        double value;
+        int id;
+        Function target;
+        List<Expr> args;
+        byte[] raw;
+
+        Token(final byte kind) {
+
+            this.kind = kind;
+        }
+
+        static Token literal(final double value) {
+
+            Token t = new Token(Bytecodes.READ_FLOAT);
+            t.value = value;
+            return t;
+        }
+
+        static Token operator(final char op) {
+
+            Token t = new Token(Bytecodes.READ_OP);
+            t.op = op;
+            return t;
+        }
+    }
+
+    /*
+     * A function that can be inlined: a single return of a call-free numeric
+     * expression over its parameters.
+     */
+    private static class Inline {
+
+        int[] params, types, uses;
+        int returnType;
+        List<Token> body;
+        // each parameter used exactly once, in order
+        boolean linear;
+
+        static Inline from(final Function f, final Body body) {
+
+            int rtype = Keyword.typeKeyToFlag(f.getReturnType());
+            if (rtype != Flags.TYPE_INT && rtype != Flags.TYPE_FLOAT || body.stmts.size() != 1) {
+                return null;
+            }
+            Stmt block = body.stmts.get(0);
+            if (block.kind != Bytecodes.NEW_STACK || block.block.size() != 1) {
+                return null;
+            }
+            Stmt ret = block.block.get(0);
+            if (ret.kind != Bytecodes.RETURN || ret.expr == null || ret.expr.tokens == null
+                            || ret.expr.tokens.size() > INLINE_MAX_TOKENS) {
+                return null;
+            }
+
+            Inline inline = new Inline();
+            inline.params = body.params;
+            inline.types = new int[body.params.length];
+            inline.uses = new int[body.params.length];
+            inline.returnType = rtype;
+            inline.body = ret.expr.tokens;
+            Keyword[] ptypes = f.getParamTypes();
+            for (int i = 0; i < ptypes.length; i++ ) {
+                inline.types[i] = Keyword.typeKeyToFlag(ptypes[i]);
+                if (inline.types[i] != Flags.TYPE_INT && inline.types[i] != Flags.TYPE_FLOAT
+                                && inline.types[i] != Flags.TYPE_BOOL) {
+                    return null;
+                }
+            }
+            inline.linear = true;
+            int last = -1;
+            for (Token t : inline.body) {
+                if (t.kind != Bytecodes.READ_OP && t.kind != Bytecodes.READ_FLOAT && t.kind != Bytecodes.REF_VAR) {
+                    return null;
+                }
+                int param = (t.kind == Bytecodes.REF_VAR) ? inline.indexOf(t.id) : -1;
+                if (param >= 0) {
+                    inline.uses[param]++ ;
+                    inline.linear &= param == last + 1;
+                    last = param;
+                }
+            }
+            inline.linear &= last == inline.params.length - 1;
+            return inline;
+        }
+
+        int indexOf(final int id) {
+
+            for (int i = 0; i < params.length; i++ ) {
+                if (params[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class Out {
+
+        byte[] buf = new byte[256];
+        int len;
+        // decoded statement offsets to encoded offsets
+        HashMap<Integer, Integer> moved;
+
+        void put(final byte b) {
+
+            ensure(1);
+            buf[len++ ] = b;
+        }
+
+        void put(final byte[] b) {
+
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        void putInt(final int v) {
+
+            ensure(4);
+            patchInt(len, v);
+            len += 4;
+        }
+
+        void putLong(final long v) {
+
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        int reserveInt() {
+
+            putInt(0);
+            return len - 4;
+        }
+
+        void patchInt(final int pos, final int v) {
+
+            buf[pos] = (byte) (v >>> 24);
+            buf[pos + 1] = (byte) (v >>> 16);
+            buf[pos + 2] = (byte) (v >>> 8);
+            buf[pos + 3] = (byte) v;
+        }
+
+        private void ensure(final int n) {
+
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            }
+        }
+    }
+
+    private static class Unrecognized extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        Unrecognized(final String msg) {
+
+            super(msg);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Profiler for a running ScriptProgram, obtained from
+ * {@link ScriptProgram#startProfiling(int)}.
+ * <p>
+ * Every invocation of a script or linked Java function is counted and timed.
+ * Inclusive time and allocation cover the invocation and everything it calls;
+ * exclusive figures leave out nested function invocations. Recursive
+ * invocations are only counted once towards inclusive figures. Times are
+ * wall-clock, so they include any time a sliced invocation spends suspended
+ * (see {@link ScriptTask}). Allocations are the bytes allocated by the
+ * invoking thread, where the JVM supports measuring them, and -1 otherwise.
+ * <p>
+ * In addition, the executing function is sampled at a fixed interval. Samples
+ * are taken at the engine's next statement, loop iteration or function
+ * invocation. For interpreted functions, a sample is charged to the line of
+ * the statement that was executing, or to the line that opens the function
+ * body if it was just invoked. Compiled functions are sampled without a line.
+ * <p>
+ * When no profiler is active, the engine performs no profiling work.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class ScriptProfiler {
+
+    private static final com.sun.management.ThreadMXBean threadBean;
+
+    static {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            threadBean = null;
+        }
+    }
+
+    private final ScriptSource[] sources;
+    private final int sampleMillis;
+    private Thread sampler;
+
+    // set by the sampler thread and cleared by the engine when it samples
+    volatile boolean sampleDue;
+
+    // guarded by this
+    private final HashMap<Function, FunctionProfile> profiles = new HashMap<Function, FunctionProfile>();
+
+    private final ThreadLocal<CallStack> stacks = new ThreadLocal<CallStack>() {
+
+        @Override
+        protected CallStack initialValue() {
+
+            return new CallStack();
+        }
+    };
+
+    ScriptProfiler(final ScriptSource[] sources, final int sampleMillis) {
+
+        if (sampleMillis < 0) {
+            throw (new IllegalArgumentException("negative sample interval"));
+        }
+        this.sources = sources;
+        this.sampleMillis = sampleMillis;
+    }
+
+    synchronized void start() {
+
+        if (sampler != null || sampleMillis == 0) {
+            return;
+        }
+        sampler = new Thread(new Sampler(), "snap2d_script_profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    synchronized void stop() {
+
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler = null;
+        }
+        sampleDue = false;
+    }
+
+    /**
+     * @return true if allocated bytes are being measured
+     */
+    public static boolean isAllocationSupported() {
+
+        return threadBean != null;
+    }
+
+    /**
+     * Discards all data recorded so far.
+     */
+    public synchronized void reset() {
+
+        profiles.clear();
+    }
+
+    /**
+     * @return the profiles of all functions invoked so far, ordered by
+     *         descending exclusive time
+     */
+    public synchronized List<FunctionProfile> getProfiles() {
+
+        ArrayList<FunctionProfile> list = new ArrayList<FunctionProfile>();
+        for (FunctionProfile p : profiles.values()) {
+            list.add(p.copy());
+        }
+        Collections.sort(list, new Comparator<FunctionProfile>() {
+
+            @Override
+            public int compare(final FunctionProfile a, final FunctionProfile b) {
+
+                return (a.exclusiveNanos > b.exclusiveNanos) ? -1 : (a.exclusiveNanos == b.exclusiveNanos) ? 0 : 1;
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Writes the recorded data as tab-separated text. Functions are ordered by
+     * signature and hot spots by source line, so that the output of two runs
+     * of the same program can be compared line by line. Each function line
+     * holds the signature, invocation count, inclusive and exclusive time in
+     * microseconds, inclusive and exclusive allocated bytes and sample count;
+     * it is followed by an indented line for each sampled source line with
+     * the source index, line number and sample count.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void export(final Writer out) throws IOException {
+
+        List<FunctionProfile> list = getProfiles();
+        Collections.sort(list, new Comparator<FunctionProfile>() {
+
+            @Override
+            public int compare(final FunctionProfile a, final FunctionProfile b) {
+
+                return a.signature.compareTo(b.signature);
+            }
+        });
+        out.write("# SnapScript profile " + ScriptInfo.SCRIPT_VERSION.str + "\n");
+        out.write("# function\tcalls\tincl_us\texcl_us\tincl_bytes\texcl_bytes\tsamples\n");
+        for (FunctionProfile p : list) {
+            out.write(String.format(Locale.ROOT, "%s\t%d\t%d\t%d\t%d\t%d\t%d\n", p.signature, p.calls,
+                            p.inclusiveNanos / 1000, p.exclusiveNanos / 1000, p.inclusiveBytes, p.exclusiveBytes,
+                            p.samples));
+            for (HotSpot h : p.getHotSpots()) {
+                out.write(String.format(Locale.ROOT, "\t@%d:%d\t%d\n", h.sourceIndex, h.line, h.samples));
+            }
+        }
+        out.flush();
+    }
+
+    // ---- engine hooks; called on the invoking thread ---- //
+
+    void enter(final Function f) {
+
+        CallStack stack = stacks.get();
+        Frame frame = stack.push();
+        frame.function = f;
+        int[] depth = stack.depths.get(f);
+        if (depth == null) {
+            depth = new int[1];
+            stack.depths.put(f, depth);
+        }
+        depth[0]++ ;
+        frame.childNanos = frame.childBytes = 0;
+        frame.bytes = allocatedBytes();
+        frame.start = System.nanoTime();
+    }
+
+    void exit(final Function f) {
+
+        long end = System.nanoTime();
+        long bytes = allocatedBytes();
+        CallStack stack = stacks.get();
+        Frame frame = stack.pop();
+        long nanos = end - frame.start;
+        bytes = (bytes < 0) ? -1 : bytes - frame.bytes;
+        boolean outermost = --stack.depths.get(f)[0] == 0;
+        Frame parent = stack.peek();
+        if (parent != null) {
+            parent.childNanos += nanos;
+            parent.childBytes += bytes;
+        }
+        synchronized (this) {
+            FunctionProfile p = profile(f);
+            p.calls++ ;
+            p.exclusiveNanos += nanos - frame.childNanos;
+            p.exclusiveBytes = (bytes < 0) ? -1 : p.exclusiveBytes + bytes - frame.childBytes;
+            if (outermost) {
+                p.inclusiveNanos += nanos;
+                p.inclusiveBytes = (bytes < 0) ? -1 : p.inclusiveBytes + bytes;
+            }
+        }
+    }
+
+    /**
+     * Records a sample of the function on top of the calling thread's stack.
+     *
+     * @param curr
+     *            the function being executed
+     * @param offset
+     *            the start of the statement being interpreted, 0 on entry to
+     *            the function or -1 if it is running compiled
+     */
+    void sample(final Function curr, final int offset) {
+
+        sampleDue = false;
+        Frame top = stacks.get().peek();
+        if (top == null) {
+            return;
+        }
+        synchronized (this) {
+            FunctionProfile p = profile(top.function);
+            p.samples++ ;
+            if (top.function == curr && offset >= 0 && curr.sourceMap != null) {
+                int line = lineOf(curr, offset);
+                int[] count = p.lines.get(line);
+                if (count == null) {
+                    count = new int[1];
+                    p.lines.put(line, count);
+                }
+                count[0]++ ;
+            }
+        }
+    }
+
+    private FunctionProfile profile(final Function f) {
+
+        FunctionProfile p = profiles.get(f);
+        if (p == null) {
+            p = new FunctionProfile(f, sources);
+            profiles.put(f, p);
+        }
+        return p;
+    }
+
+    /*
+     * The line of the last statement starting at or before the offset, or of
+     * the start of the function body if the offset precedes its statements.
+     */
+    private static int lineOf(final Function f, final int offset) {
+
+        int[] map = f.sourceMap;
+        int lo = 0, hi = map.length / 2 - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (map[mid * 2] <= offset) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return f.srcLine;
+        }
+        return f.srcLine + ScriptCompiler.lineOf(f.getSource(), map[found * 2 + 1]) - 1;
+    }
+
+    private static long allocatedBytes() {
+
+        return (threadBean != null) ? threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    private class Sampler implements Runnable {
+
+        @Override
+        public void run() {
+
+            try {
+                while ( !Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(sampleMillis);
+                    sampleDue = true;
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }
+    }
+
+    /*
+     * Invocations in progress on one thread. Frames are reused.
+     */
+    private static class CallStack {
+
+        final ArrayList<Frame> frames = new ArrayList<Frame>();
+        final IdentityHashMap<Function, int[]> depths = new IdentityHashMap<Function, int[]>();
+        int size;
+
+        Frame push() {
+
+            if (size == frames.size()) {
+                frames.add(new Frame());
+            }
+            return frames.get(size++ );
+        }
+
+        Frame pop() {
+
+            return frames.get(--size);
+        }
+
+        Frame peek() {
+
+            return (size > 0) ? frames.get(size - 1) : null;
+        }
+    }
+
+    private static class Frame {
+
+        Function function;
+        long start, bytes, childNanos, childBytes;
+    }
+
+    /**
+     * Data recorded for one function.
+     */
+    public static class FunctionProfile {
+
+        private final Function function;
+        private final String signature;
+        private final ScriptSource source;
+
+        private long calls, inclusiveNanos, exclusiveNanos, inclusiveBytes, exclusiveBytes, samples;
+        private final HashMap<Integer, int[]> lines = new HashMap<Integer, int[]>();
+
+        private FunctionProfile(final Function function, final ScriptSource[] sources) {
+
+            this.function = function;
+            this.signature = (function.isJavaFunction()) ? function.getJavaMethod().getDeclaringClass()
+                            .getSimpleName() + "." + function.toString() : function.toString();
+            this.source = (function.srcIndex >= 0 && function.srcIndex < sources.length) ? sources[function.srcIndex]
+                            : null;
+        }
+
+        private FunctionProfile copy() {
+
+            FunctionProfile p = new FunctionProfile(function, new ScriptSource[] { source });
+            p.calls = calls;
+            p.inclusiveNanos = inclusiveNanos;
+            p.exclusiveNanos = exclusiveNanos;
+            p.inclusiveBytes = inclusiveBytes;
+            p.exclusiveBytes = exclusiveBytes;
+            p.samples = samples;
+            for (Integer line : lines.keySet()) {
+                p.lines.put(line, lines.get(line).clone());
+            }
+            return p;
+        }
+
+        public Function getFunction() {
+
+            return function;
+        }
+
+        /**
+         * @return the script source the function was compiled from, or null
+         *         for Java functions
+         */
+        public ScriptSource getSource() {
+
+            return source;
+        }
+
+        public long getInvocationCount() {
+
+            return calls;
+        }
+
+        public long getInclusiveNanos() {
+
+            return inclusiveNanos;
+        }
+
+        public long getExclusiveNanos() {
+
+            return exclusiveNanos;
+        }
+
+        /**
+         * @return bytes allocated by invocations of the function and the
+         *         functions they call, or -1 if not measured
+         */
+        public long getInclusiveAllocatedBytes() {
+
+            return inclusiveBytes;
+        }
+
+        /**
+         * @return bytes allocated by invocations of the function excluding
+         *         the functions they call, or -1 if not measured
+         */
+        public long getExclusiveAllocatedBytes() {
+
+            return exclusiveBytes;
+        }
+
+        public long getSampleCount() {
+
+            return samples;
+        }
+
+        /**
+         * @return the sampled source lines of the function, ordered by line
+         */
+        public List<HotSpot> getHotSpots() {
+
+            ArrayList<HotSpot> list = new ArrayList<HotSpot>();
+            for (Integer line : lines.keySet()) {
+                list.add(new HotSpot(source, function.srcIndex, line, lines.get(line)[0]));
+            }
+            Collections.sort(list, new Comparator<HotSpot>() {
+
+                @Override
+                public int compare(final HotSpot a, final HotSpot b) {
+
+                    return a.line - b.line;
+                }
+            });
+            return list;
+        }
+
+        @Override
+        public String toString() {
+
+            return signature + ": calls=" + calls + " incl=" + inclusiveNanos / 1000 + "us excl="
+                            + exclusiveNanos / 1000 + "us samples=" + samples;
+        }
+    }
+
+    /**
+     * Number of samples taken on one line of a function.
+     */
+    public static class HotSpot {
+
+        private final ScriptSource source;
+        private final int sourceIndex, line, samples;
+
+        private HotSpot(final ScriptSource source, final int sourceIndex, final int line, final int samples) {
+
+            this.source = source;
+            this.sourceIndex = sourceIndex;
+            this.line = line;
+            this.samples = samples;
+        }
+
+        public ScriptSource getSource() {
+
+            return source;
+        }
+
+        /**
+         * @return the index of the source among those compiled by the program
+         */
+        public int getSourceIndex() {
+
+            return sourceIndex;
+        }
+
+        /**
+         * @return the 1-based line number in the source
+         */
+        public int getLine() {
+
+            return line;
+        }
+
+        public int getSamples() {
+
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+
+            return "line " + line + ": " + samples;
+        }
+    }
+}
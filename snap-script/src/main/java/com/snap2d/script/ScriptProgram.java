@@ -12,9 +12,11 @@
 
 package com.snap2d.script;
 
+import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 import bg.x2d.utils.Multimap;
@@ -33,16 +35,34 @@ public class ScriptProgram {
 
     private static final Logger log = Logger.getLogger(ScriptProgram.class.getCanonicalName());
 
+    /**
+     * Number of invocations after which a script function is compiled in
+     * TIERED mode.
+     */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
     ArrayList<ScriptSource> scripts = new ArrayList<ScriptSource>();
     ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
     Multimap<String, Function> funcs;
     ConstantInitializer[] initConsts;
+    String[] globalSlots;
     ScriptEngine engine;
 
     ScriptCompilationException lastErr;
 
     Function[] scriptFuncs = new Function[0];
 
+    ExecutionMode execMode = ExecutionMode.TIERED;
+    int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+
+    boolean optimize = true;
+    PrintStream bytecodeDump;
+    ExecutorService compileExecutor;
+
+    // sources of the last successful compilation, in compiler order
+    ScriptSource[] compiledSources = new ScriptSource[0];
+    ScriptProfiler profiler;
+
     /**
      * Create a new ScriptProgram with the given sources. The program is not
      * compiled or executable until the <code>compile</code> method is called.
@@ -103,11 +123,15 @@ public class ScriptProgram {
         log.info("Initializing SnapScript " + ScriptInfo.SCRIPT_VERSION.str + " [BCS." + ScriptInfo.BYTECODE_SPEC.str
                         + "]");
         ScriptCompiler compiler = new ScriptCompiler();
+        compiler.optimize = optimize;
+        compiler.bytecodeDump = bytecodeDump;
+        compiler.executor = compileExecutor;
         boolean chk;
         try {
-            String[] srcs = new String[scripts.size()];
-            for (int i = 0; i < scripts.size(); i++ ) {
-                srcs[i] = scripts.get(i).getSource();
+            ScriptSource[] sources = scripts.toArray(new ScriptSource[scripts.size()]);
+            String[] srcs = new String[sources.length];
+            for (int i = 0; i < sources.length; i++ ) {
+                srcs[i] = sources[i].getSource();
             }
             ArrayList<ConstantInitializer> constList = new ArrayList<ConstantInitializer>();
             log.info("Running precompiler...");
@@ -143,6 +167,8 @@ public class ScriptProgram {
             compiler.compile(funcs, constList);
             initConsts = new ConstantInitializer[constList.size()];
             constList.toArray(initConsts);
+            globalSlots = compiler.globalSlots.toArray(new String[compiler.globalSlots.size()]);
+            compiledSources = sources;
             System.out.println("Done");
             chk = true;
         } catch (ScriptCompilationException e) {
@@ -181,10 +207,145 @@ public class ScriptProgram {
         }
 
         disposeRuntime();
-        engine = new ScriptEngine(this, funcs.values().toArray(new Function[funcs.size()]), initConsts, useDoubleStore);
+        engine = new ScriptEngine(this, funcs.values().toArray(new Function[funcs.size()]), initConsts, globalSlots,
+                        useDoubleStore);
+        engine.setExecutionMode(execMode, compileThreshold);
+        engine.profiler = profiler;
         log.info("SnapScript runtime successfully initialized!\n");
     }
 
+    /**
+     * Sets how script functions are executed. The default, TIERED, interprets
+     * each function until it has been invoked <code>threshold</code> times and
+     * then runs it as generated JVM code. INTERPRETED and COMPILED force
+     * either tier, which is mostly useful for testing; functions the compiler
+     * does not support are always interpreted. May be called before or after
+     * the runtime is initialized.
+     *
+     * @param mode
+     *            the execution mode
+     * @param threshold
+     *            invocations before compilation in TIERED mode
+     */
+    public void setExecutionMode(final ExecutionMode mode, final int threshold) {
+
+        if (mode == null) {
+            throw (new IllegalArgumentException("execution mode cannot be null"));
+        }
+        if (threshold < 1) {
+            throw (new IllegalArgumentException("compile threshold must be positive: " + threshold));
+        }
+        this.execMode = mode;
+        this.compileThreshold = threshold;
+        if (engine != null) {
+            engine.setExecutionMode(mode, threshold);
+        }
+    }
+
+    public void setExecutionMode(final ExecutionMode mode) {
+
+        setExecutionMode(mode, compileThreshold);
+    }
+
+    public ExecutionMode getExecutionMode() {
+
+        return execMode;
+    }
+
+    public int getCompileThreshold() {
+
+        return compileThreshold;
+    }
+
+    /**
+     * Enables or disables the optimizing passes run on function bytecode at
+     * the end of compilation (constant folding and propagation, removal of
+     * unreachable code and inlining of small functions). Enabled by default.
+     * Takes effect on the next call to <code>compile</code>.
+     *
+     * @param optimize
+     */
+    public void setOptimizationEnabled(final boolean optimize) {
+
+        this.optimize = optimize;
+    }
+
+    public boolean isOptimizationEnabled() {
+
+        return optimize;
+    }
+
+    /**
+     * Sets a stream to which the bytecode of each function is printed before
+     * and after optimization when the program is compiled, or null (the
+     * default) to disable the dump.
+     *
+     * @param out
+     */
+    public void setBytecodeDump(final PrintStream out) {
+
+        this.bytecodeDump = out;
+    }
+
+    /**
+     * Sets the executor used to compile the program, or null (the default) to
+     * compile on the calling thread. Sources are parsed and function bodies
+     * compiled as separate tasks; the compiled program is the same as when
+     * compiling on one thread, including function IDs. The executor is not
+     * shut down by the program.
+     *
+     * @param executor
+     */
+    public void setCompileExecutor(final ExecutorService executor) {
+
+        this.compileExecutor = executor;
+    }
+
+    /**
+     * Starts profiling invocations of the program's functions, replacing any
+     * profiler already active. Profiling continues across reinitialization of
+     * the runtime until stopped; see {@link ScriptProfiler}.
+     *
+     * @param sampleMillis
+     *            interval at which the executing function is sampled, or 0 to
+     *            only count and time invocations
+     * @return the new profiler
+     */
+    public ScriptProfiler startProfiling(final int sampleMillis) {
+
+        stopProfiling();
+        profiler = new ScriptProfiler(compiledSources, sampleMillis);
+        profiler.start();
+        if (engine != null) {
+            engine.profiler = profiler;
+        }
+        return profiler;
+    }
+
+    /**
+     * Stops profiling. The data recorded remains available from the returned
+     * profiler.
+     *
+     * @return the profiler that was active, or null if none
+     */
+    public ScriptProfiler stopProfiling() {
+
+        ScriptProfiler prof = profiler;
+        if (prof != null) {
+            prof.stop();
+            profiler = null;
+            if (engine != null) {
+                engine.profiler = null;
+            }
+        }
+        return prof;
+    }
+
+    public ScriptProfiler getProfiler() {
+
+        return profiler;
+    }
+
     private void disposeRuntime() {
         if (engine != null) engine.dispose();
     }
@@ -320,6 +481,37 @@ public class ScriptProgram {
         return invoke(findFunction(funcName), args);
     }
 
+    /**
+     * Starts a time-sliced invocation of the script function with the given
+     * arguments. Nothing is executed until the returned task is resumed; see
+     * {@link ScriptTask}.
+     *
+     * @param f
+     * @param args
+     * @return the task running the invocation
+     */
+    public ScriptTask invokeSliced(final Function f, final Object... args) {
+
+        if (engine == null) {
+            throw (new IllegalStateException("script engine not initialized"));
+        }
+        return engine.startTask(f, args);
+    }
+
+    /**
+     * Starts a time-sliced invocation of the first matching script Function
+     * object with the given arguments. This method is equivalent to:
+     * <code>invokeSliced(findFunction(funcName), args)</code>
+     *
+     * @param funcName
+     * @param args
+     * @return the task running the invocation
+     */
+    public ScriptTask invokeSliced(final String funcName, final Object... args) {
+
+        return invokeSliced(findFunction(funcName), args);
+    }
+
     private Keyword getKeyword(final Class<?> param) {
 
         if (Function.isInt(param)) {
@@ -338,4 +530,13 @@ public class ScriptProgram {
             return null;
         }
     }
+
+    /**
+     * Execution tiers for script functions.
+     *
+     * @see ScriptProgram#setExecutionMode(ExecutionMode, int)
+     */
+    public enum ExecutionMode {
+        INTERPRETED, TIERED, COMPILED;
+    }
 }
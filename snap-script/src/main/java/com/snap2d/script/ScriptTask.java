@@ -0,0 +1,265 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+/**
+ * A script function invocation that runs in slices of bounded length, obtained
+ * from {@link ScriptProgram#invokeSliced(Function, Object...)}. Each call to
+ * {@link #resume(int, long)} runs the function until it either returns or
+ * exhausts the given budget, in which case it is suspended at the next loop
+ * iteration or script function call and continues from there on the following
+ * resume. Typically a task is resumed once per frame:
+ *
+ * <pre>
+ * if (task.resume(0, 2000000)) { // at most ~2ms per frame
+ *     Object result = task.getResult();
+ * }
+ * </pre>
+ *
+ * The invocation runs on its own thread, but never concurrently with the
+ * thread calling resume: the caller waits while the task runs and the task
+ * waits while suspended. Other functions of the program may be invoked while
+ * a task is suspended, including from other tasks. A task should only be
+ * resumed or cancelled by one thread at a time.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class ScriptTask {
+
+    private static volatile int count = 0;
+
+    private final ScriptEngine engine;
+    private final Function function;
+    private final Object[] args;
+
+    private Thread thread;
+
+    // handoff state; guarded by this
+    private boolean taskTurn, done, cancelled;
+    private Object result;
+    private ScriptInvocationException error;
+    private Throwable fault;
+    private int slices;
+
+    // budget of the current slice; only used by the task thread
+    private int stepsLeft;
+    private long deadline;
+    private boolean timed;
+
+    ScriptTask(final ScriptEngine engine, final Function function, final Object[] args) {
+
+        this.engine = engine;
+        this.function = function;
+        this.args = args;
+    }
+
+    /**
+     * Runs the invocation until it completes or the budget is exhausted. A
+     * step is one loop iteration or script function call; the time budget is
+     * checked at the same points, so a slice may overrun it by the time taken
+     * to get from one such point to the next. Every slice makes progress,
+     * however small the budget.
+     *
+     * @param maxSteps
+     *            maximum number of steps to run, or 0 for no limit
+     * @param maxNanos
+     *            maximum time to run in nanoseconds, or 0 for no limit
+     * @return true if the invocation has completed, normally or not
+     */
+    public synchronized boolean resume(final int maxSteps, final long maxNanos) {
+
+        if (maxSteps < 0 || maxNanos < 0) {
+            throw (new IllegalArgumentException("budget cannot be negative"));
+        }
+        if (done) {
+            return true;
+        }
+        stepsLeft = (maxSteps > 0) ? maxSteps : Integer.MAX_VALUE;
+        timed = maxNanos > 0;
+        deadline = System.nanoTime() + maxNanos;
+        slices++ ;
+        engine.active = this;
+        handOff();
+        return done;
+    }
+
+    /**
+     * Cancels the invocation. A suspended invocation is unwound without
+     * running any further script code.
+     */
+    public synchronized void cancel() {
+
+        if (done) {
+            return;
+        }
+        cancelled = true;
+        if (thread == null) {
+            finish();
+            return;
+        }
+        engine.active = null;
+        handOff();
+    }
+
+    public synchronized boolean isDone() {
+
+        return done;
+    }
+
+    public synchronized boolean isCancelled() {
+
+        return cancelled;
+    }
+
+    /**
+     * @return the value returned by the function
+     * @throws ScriptInvocationException
+     *             if the function failed
+     * @throws IllegalStateException
+     *             if the task has not completed or was cancelled
+     */
+    public synchronized Object getResult() throws ScriptInvocationException {
+
+        if ( !done) {
+            throw (new IllegalStateException("task has not completed"));
+        }
+        if (cancelled) {
+            throw (new IllegalStateException("task was cancelled"));
+        }
+        if (error != null) {
+            throw (error);
+        }
+        if (fault instanceof RuntimeException) {
+            throw ((RuntimeException) fault);
+        } else if (fault != null) {
+            throw ((Error) fault);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of times the task has been resumed
+     */
+    public synchronized int getSliceCount() {
+
+        return slices;
+    }
+
+    public Function getFunction() {
+
+        return function;
+    }
+
+    /*
+     * Gives the turn to the task thread, starting it on first use, and waits
+     * for it to be handed back.
+     */
+    private void handOff() {
+
+        taskTurn = true;
+        if (thread == null) {
+            thread = new Thread(new Runner(), "snap2d_script_task" + count++ );
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (taskTurn) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // the task is running engine code and cannot be abandoned
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void finish() {
+
+        done = true;
+        engine.tasks.remove(this);
+    }
+
+    /**
+     * Called by the engine on the task thread at each step.
+     *
+     * @return true if the slice's budget is exhausted
+     */
+    boolean exhausted() {
+
+        return --stepsLeft < 0 || timed && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Called by the engine on the task thread to suspend until the next
+     * resume.
+     */
+    synchronized void suspend() {
+
+        engine.active = null;
+        taskTurn = false;
+        notifyAll();
+        while ( !taskTurn) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // only resume or cancel end a suspension
+            }
+        }
+        if (cancelled) {
+            throw (new Cancellation());
+        }
+    }
+
+    private class Runner implements Runnable {
+
+        @Override
+        public void run() {
+
+            Object result = null;
+            ScriptInvocationException error = null;
+            Throwable fault = null;
+            try {
+                result = engine.invoke(function.getID(), args);
+            } catch (ScriptInvocationException e) {
+                error = e;
+            } catch (Cancellation e) {
+                // unwound
+            } catch (Throwable t) {
+                fault = t;
+            }
+            synchronized (ScriptTask.this) {
+                ScriptTask.this.result = result;
+                ScriptTask.this.error = error;
+                ScriptTask.this.fault = fault;
+                engine.active = null;
+                finish();
+                taskTurn = false;
+                ScriptTask.this.notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Unwinds the task thread when a suspended task is cancelled.
+     */
+    private static class Cancellation extends Error {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -12,13 +12,13 @@
 
 package com.snap2d.script.lib;
 
-import java.util.Date;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
-import bg.x2d.utils.Utils;
-
 import com.snap2d.script.Function;
+import com.snap2d.script.Keyword;
 import com.snap2d.script.ScriptInvocationException;
 import com.snap2d.script.ScriptLink;
 import com.snap2d.script.ScriptProgram;
@@ -26,7 +26,9 @@ import com.snap2d.script.Vec2;
 
 /**
  * Library class initialized and attached by the runtime engine to manage timers
- * created in script code.
+ * created in script code. Timers of all programs are run by a single shared
+ * {@link TimerWheel} thread. Timers are looked up by id through an index; if
+ * several pending timers share an id, the id refers to the one added last.
  * 
  * @author Brian Groenke
  *
@@ -34,233 +36,180 @@ import com.snap2d.script.Vec2;
 public class ScriptTimer {
 
     private static final Logger log = Logger.getLogger(ScriptTimer.class.getCanonicalName());
-    private static volatile int threadid = 0;
+    private static volatile int count = 0;
 
-    private final TimerThread timerThread;
+    private final TimerWheel wheel = TimerWheel.shared();
     private final ScriptProgram program;
-    private boolean running = true;
+    private volatile boolean running = true;
     private final int id;
 
     public ScriptTimer(final ScriptProgram program) {
 
         this.program = program;
-        this.id = threadid++ ;
-        timerThread = new TimerThread();
-        timerThread.setName("snap2d_script_timer_thread" + id);
-        timerThread.setDaemon(true);
-        timerThread.start();
+        this.id = count++ ;
     }
 
-    private final TreeSet<ScheduledTimerTask> tasks = new TreeSet<ScheduledTimerTask>();
+    private final ConcurrentHashMap<String, ScheduledTimerTask> tasks = new ConcurrentHashMap<String, ScheduledTimerTask>();
 
     @ScriptLink
     public void timerAdd(final String id, final int delay, final String scriptFunc) {
 
-        ScheduledTimerTask t = new ScheduledTimerTask(System.currentTimeMillis() + delay);
-        t.id = id;
-        t.scriptFunc = scriptFunc;
-        t.args = new Object[0];
-        tasks.add(t);
-        interruptTimerThread();
+        if ( !running) {
+            return;
+        }
+        // overloads are resolved against the argument types when the timer
+        // fires, since arguments are added after the timer
+        ScheduledTimerTask t = new ScheduledTimerTask(id, scriptFunc, program.findFunctions(scriptFunc));
+        tasks.put(id, t);
+        t.setTimeout(wheel.schedule(t, delay));
     }
 
     @ScriptLink
     public void timerArg(final String id, final int intArg) {
 
-        ScheduledTimerTask timer = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                timer = t;
-                break;
-            }
-        }
-        if (timer == null) {
-            return;
-        }
-        timer.args = Utils.appendArray(timer.args, intArg);
+        addArg(id, intArg, Keyword.INT);
     }
 
     @ScriptLink
     public void timerArg(final String id, final float floatArg) {
 
-        ScheduledTimerTask timer = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                timer = t;
-                break;
-            }
-        }
-        if (timer == null) {
-            return;
-        }
-        timer.args = Utils.appendArray(timer.args, floatArg);
+        // script float parameters are passed as doubles
+        addArg(id, (double) floatArg, Keyword.FLOAT);
     }
 
     @ScriptLink
     public void timerArg(final String id, final boolean boolArg) {
 
-        ScheduledTimerTask timer = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                timer = t;
-                break;
-            }
-        }
-        if (timer == null) {
-            return;
-        }
-        timer.args = Utils.appendArray(timer.args, boolArg);
+        addArg(id, boolArg, Keyword.BOOL);
     }
 
     @ScriptLink
     public void timerArg(final String id, final String strArg) {
 
-        ScheduledTimerTask timer = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                timer = t;
-                break;
-            }
-        }
-        if (timer == null) {
-            return;
-        }
-        timer.args = Utils.appendArray(timer.args, strArg);
+        addArg(id, strArg, Keyword.STRING);
     }
 
     @ScriptLink
     public void timerArg(final String id, final Vec2 vecArg) {
 
-        ScheduledTimerTask timer = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                timer = t;
-                break;
-            }
-        }
-        if (timer == null) {
-            return;
-        }
-        timer.args = Utils.appendArray(timer.args, vecArg);
+        addArg(id, vecArg, Keyword.VEC2);
     }
 
     @ScriptLink
     public boolean timerCancel(final String id) {
 
-        Object removeObj = null;
-        for (ScheduledTimerTask t : tasks) {
-            if (t.id.equals(id)) {
-                removeObj = t;
-                break;
-            }
-        }
-        boolean hadElement = false;
-        if (removeObj != null) {
-            hadElement = tasks.remove(removeObj);
-        }
-        interruptTimerThread();
-        return hadElement;
+        ScheduledTimerTask t = tasks.remove(id);
+        return t != null && t.cancel();
     }
 
     /**
-     * Stops the timer thread associated with this ScriptTimer object and clears
-     * the internal task list. No further calls to
-     * {@link #addTimer(int, int, String, Object...)} or
-     * {@link #cancelTimer(int)} will have any effect.
+     * Cancels all pending timers of this ScriptTimer object. No further calls
+     * to {@link #timerAdd(String, int, String)} or
+     * {@link #timerCancel(String)} will have any effect.
      */
     public void dispose() {
 
         running = false;
-        interruptTimerThread();
+        for (ScheduledTimerTask t : tasks.values()) {
+            t.cancel();
+        }
         tasks.clear();
     }
 
-    private void interruptTimerThread() {
+    private void addArg(final String id, final Object arg, final Keyword type) {
 
-        timerThread.interrupt();
+        ScheduledTimerTask timer = tasks.get(id);
+        if (timer == null) {
+            return;
+        }
+        timer.addArg(arg, type);
     }
 
-    private class TimerThread extends Thread implements Runnable {
+    private class ScheduledTimerTask implements Runnable {
 
-        ScheduledTimerTask nextTask;
+        final String id;
+        final String scriptFunc;
+        final Function[] candidates;
+        final ArrayList<Object> args = new ArrayList<Object>(4);
+        final ArrayList<Keyword> types = new ArrayList<Keyword>(4);
+        TimerWheel.Timeout timeout;
+        // set once the task has run or been cancelled
+        boolean done;
 
-        /**
-         *
-         */
-        @Override
-        public void run() {
+        ScheduledTimerTask(final String id, final String scriptFunc, final Function[] candidates) {
 
-            while (running) {
-                nextTask = (tasks.size() == 0) ? null : tasks.first();
-
-                if (nextTask == null) {
-                    try {
-                        Thread.sleep(Integer.MAX_VALUE);
-                    } catch (InterruptedException e) {
-                    }
-                } else {
-                    long sleepTime = nextTask.runTime.getTime() - System.currentTimeMillis();
-                    if (sleepTime < 0) {
-                        log.warning("timer-thread" + id + ": task not valid - negative time difference!");
-                        log.warning("discarding task request...");
-                        tasks.pollFirst();
-                        continue;
-                    }
-
-                    try {
-                        Thread.sleep(sleepTime);
-                        Class<?>[] types = getArgClasses(nextTask.args);
-                        Function f = program.findFunction(nextTask.scriptFunc, types);
-                        try {
-                            if (f == null) {
-                                log.warning("task '" + nextTask.id + "' aborted - function '" + nextTask.scriptFunc
-                                                + "' not found");
-                            } else {
-                                program.invoke(f, nextTask.args);
-                            }
-                        } catch (ScriptInvocationException e) {
-                            log.warning("timer-thread" + id + ": error invoking script function: " + f);
-                        }
-                        tasks.pollFirst();
-                    } catch (InterruptedException e) {
-                        log.warning("timer-thread" + id + ": interrupted while waiting for task: " + nextTask.id
-                                        + " func=" + nextTask.scriptFunc);
-                    }
-                }
-            }
+            this.id = id;
+            this.scriptFunc = scriptFunc;
+            this.candidates = candidates;
         }
 
-        private Class<?>[] getArgClasses(final Object[] args) {
+        synchronized void setTimeout(final TimerWheel.Timeout timeout) {
 
-            Class<?>[] classes = new Class<?>[args.length];
-            for (int i = 0; i < args.length; i++ ) {
-                classes[i] = args[i].getClass();
+            this.timeout = timeout;
+            if (done) {
+                timeout.cancel();
             }
-            return classes;
         }
-    }
 
-    private class ScheduledTimerTask implements Comparable<ScheduledTimerTask> {
+        synchronized boolean cancel() {
 
-        String id;
-        String scriptFunc;
-        Object[] args;
-        Date runTime;
+            if (done) {
+                return false;
+            }
+            done = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            return true;
+        }
 
-        public ScheduledTimerTask(final long runAt) {
+        synchronized void addArg(final Object arg, final Keyword type) {
 
-            runTime = new Date(runAt);
+            args.add(arg);
+            types.add(type);
         }
 
         /**
          *
          */
         @Override
-        public int compareTo(final ScheduledTimerTask task) {
+        public void run() {
 
-            return runTime.compareTo(task.runTime);
+            tasks.remove(id, this);
+            Object[] args;
+            Keyword[] types;
+            synchronized (this) {
+                if (done || !running) {
+                    return;
+                }
+                done = true;
+                args = this.args.toArray();
+                types = this.types.toArray(new Keyword[this.types.size()]);
+            }
+            Function f = resolve(types);
+            if (f == null) {
+                log.warning("task '" + id + "' aborted - function '" + scriptFunc + "' not found");
+                return;
+            }
+            try {
+                program.invoke(f, args);
+            } catch (ScriptInvocationException e) {
+                log.warning("script-timer" + ScriptTimer.this.id + ": error invoking script function: " + f);
+            }
         }
 
+        private Function resolve(final Keyword[] types) {
+
+            if (candidates == null) {
+                return null;
+            }
+            for (Function f : candidates) {
+                if (Arrays.equals(f.getParamTypes(), types)) {
+                    return f;
+                }
+            }
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,287 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script.lib;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel shared by all ScriptTimer instances. Tasks are hashed
+ * into one of WHEEL_SIZE buckets by their deadline tick, so scheduling and
+ * cancelling are constant time regardless of the number of pending tasks. A
+ * single daemon thread advances the wheel every TICK_MILLIS and runs expired
+ * tasks; it parks while no tasks are pending.
+ * <p>
+ * Tasks and cancellations are handed to the wheel thread through lock-free
+ * queues, so the buckets themselves are only ever touched by that thread.
+ *
+ * @author Brian Groenke
+ *
+ */
+final class TimerWheel {
+
+    private static final Logger log = Logger.getLogger(TimerWheel.class.getCanonicalName());
+
+    /**
+     * Resolution of the wheel; tasks fire at most one tick late.
+     */
+    static final long TICK_MILLIS = 10;
+    static final int WHEEL_SIZE = 512;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    private static TimerWheel shared;
+
+    /**
+     * @return the wheel shared by all script programs, started on first use
+     */
+    static synchronized TimerWheel shared() {
+
+        if (shared == null) {
+            shared = new TimerWheel("snap2d_script_timer");
+        }
+        return shared;
+    }
+
+    private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+    private final Thread worker;
+
+    // next tick to be processed; owned by the worker thread
+    private long tick;
+
+    private TimerWheel(final String name) {
+
+        for (int i = 0; i < wheel.length; i++ ) {
+            wheel[i] = new Bucket();
+        }
+        worker = new Thread(new Worker(), name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the given task to be run by the wheel thread after at least
+     * the given delay.
+     *
+     * @param task
+     * @param delayMillis
+     *            delay in milliseconds; negative values are treated as zero
+     * @return a handle that can be used to cancel the task
+     */
+    Timeout schedule(final Runnable task, final long delayMillis) {
+
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + delay);
+        pending.incrementAndGet();
+        added.add(timeout);
+        LockSupport.unpark(worker);
+        return timeout;
+    }
+
+    /**
+     * @return the number of tasks scheduled that have neither run nor been
+     *         cancelled
+     */
+    int pendingTasks() {
+
+        return pending.get();
+    }
+
+    private void transferAdded() {
+
+        Timeout timeout;
+        while ( (timeout = added.poll()) != null) {
+            if (timeout.state.get() != Timeout.INIT) {
+                continue;
+            }
+            long ticks = Math.max(timeout.deadline / TICK_NANOS, tick);
+            timeout.rounds = (ticks - tick) / WHEEL_SIZE;
+            wheel[(int) (ticks & (WHEEL_SIZE - 1))].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+
+        Timeout timeout;
+        while ( (timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /*
+     * Waits for the start of the current tick, or until a task is scheduled
+     * if none are pending. Returns the deadline of the tick in nanoseconds
+     * from startTime.
+     */
+    private long awaitTick() {
+
+        long deadline = (tick + 1) * TICK_NANOS;
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            if (pending.get() == 0 && added.isEmpty()) {
+                LockSupport.park(this);
+                // nothing was in the wheel, so skipped ticks can be dropped
+                now = System.nanoTime() - startTime;
+                tick = Math.max(tick, now / TICK_NANOS);
+                deadline = (tick + 1) * TICK_NANOS;
+                continue;
+            }
+            if (now >= deadline) {
+                return deadline;
+            }
+            LockSupport.parkNanos(this, deadline - now);
+            // the only reason to wake early is a new task, which can wait
+            // for the tick it hashes to
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+
+            while (true) {
+                long deadline = awaitTick();
+                transferAdded();
+                removeCancelled();
+                wheel[(int) (tick & (WHEEL_SIZE - 1))].expire(deadline);
+                tick++ ;
+            }
+        }
+    }
+
+    /*
+     * Doubly linked list of the timeouts hashed to one slot.
+     */
+    private static final class Bucket {
+
+        Timeout head, tail;
+
+        void add(final Timeout timeout) {
+
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(final Timeout timeout) {
+
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire(final long deadline) {
+
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.rounds-- ;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Handle to a task scheduled on the wheel.
+     */
+    static final class Timeout {
+
+        static final int INIT = 0, CANCELLED = 1, EXPIRED = 2;
+
+        final AtomicInteger state = new AtomicInteger(INIT);
+
+        private final TimerWheel owner;
+        private final Runnable task;
+        private final long deadline;
+
+        // owned by the worker thread
+        private long rounds;
+        private Timeout prev, next;
+        private Bucket bucket;
+
+        private Timeout(final TimerWheel owner, final Runnable task, final long deadline) {
+
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return true if the task was cancelled, false if it has already
+         *         run or been cancelled
+         */
+        boolean cancel() {
+
+            if ( !state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            owner.pending.decrementAndGet();
+            owner.cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+
+            if ( !state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            owner.pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warning("timer task failed: " + t);
+            }
+        }
+    }
+}
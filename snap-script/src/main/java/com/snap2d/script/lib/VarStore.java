@@ -13,26 +13,46 @@
 package com.snap2d.script.lib;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 
 import com.snap2d.script.ScriptLink;
 import com.snap2d.script.Vec2;
 
 /**
+ * Global variables and lists shared by the functions of a script program.
+ * <p>
+ * Global variables are held in slots assigned to their names on first use,
+ * with numeric and boolean values stored unboxed. The script compiler resolves
+ * constant variable names to slots ahead of time, so accessing a global by a
+ * literal name is an array read; names computed at run time are looked up by
+ * hash as before.
+ * <p>
+ * Lists are referred to by integer handles, which index directly into a table
+ * of list storage; int, float and bool lists are backed by growable primitive
+ * arrays, so element access neither boxes nor hashes. Float lists hold doubles
+ * or floats according to {@link #isUsingDouble()} at the time they are
+ * created. Handles are never reused, and 0 is never a valid handle.
+ *
  * @author Brian Groenke
  *
  */
 public class VarStore {
 
-    private final HashMap<String, Object> globals = new HashMap<String, Object>();
-    private final HashMap<Integer, List<Integer>> intLists = new HashMap<Integer, List<Integer>>();
-    private final HashMap<Integer, List<Float>> floatLists = new HashMap<Integer, List<Float>>();
-    private final HashMap<Integer, List<String>> stringLists = new HashMap<Integer, List<String>>();
-    private final HashMap<Integer, List<Boolean>> boolLists = new HashMap<Integer, List<Boolean>>();
-    private final HashMap<Integer, List<Vec2>> vecLists = new HashMap<Integer, List<Vec2>>();
+    private static final byte UNDEFINED = 0, INT = 1, FLOAT = 2, BOOL = 3, STRING = 4, VEC = 5;
+
+    // global variables by slot; ints, floats and bools are held in numbers
+    private final HashMap<String, Integer> slots = new HashMap<String, Integer>();
+    private String[] names = new String[16];
+    private byte[] kinds = new byte[16];
+    private double[] numbers = new double[16];
+    private Object[] objects = new Object[16];
+    private int slotCount;
 
-    private static volatile int listID = Integer.MIN_VALUE;
+    // list storage indexed by handle; slot 0 is unused
+    private ListStore[] lists = new ListStore[16];
+    private int listCount = 1;
 
     boolean useDouble = false;
 
@@ -47,212 +67,1004 @@ public class VarStore {
         return useDouble;
     }
 
+    /**
+     * Returns the slot of the named global variable, assigning the next free
+     * slot if the name has not been seen before. Slots are assigned in order
+     * from 0 and remain valid for the lifetime of the store, whether or not
+     * the variable is defined; callers that access a variable repeatedly can
+     * look up its slot once and use the slot accessors.
+     *
+     * @param name
+     * @return the slot of the variable
+     */
+    public int slotOf(final String name) {
+
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (slotCount == names.length) {
+            int len = slotCount * 2;
+            names = Arrays.copyOf(names, len);
+            kinds = Arrays.copyOf(kinds, len);
+            numbers = Arrays.copyOf(numbers, len);
+            objects = Arrays.copyOf(objects, len);
+        }
+        names[slotCount] = name;
+        slots.put(name, slotCount);
+        return slotCount++ ;
+    }
+
     @ScriptLink
     public void putInt(final String name, final int value) {
 
-        globals.put(name, value);
+        putIntSlot(slotOf(name), value);
     }
 
     @ScriptLink
     public void putFloat(final String name, final double value) {
 
-        globals.put(name, (useDouble) ? value : (float) value);
+        putFloatSlot(slotOf(name), value);
     }
 
     @ScriptLink
     public void putString(final String name, final String value) {
 
-        globals.put(name, value);
+        putStringSlot(slotOf(name), value);
     }
 
     @ScriptLink
     public void putBool(final String name, final boolean value) {
 
-        globals.put(name, value);
+        putBoolSlot(slotOf(name), value);
     }
 
     @ScriptLink
     public void putVec(final String name, final Vec2 v) {
 
-        globals.put(name, v);
+        putVecSlot(slotOf(name), v);
     }
 
     @ScriptLink
     public int getInt(final String name) {
 
-        return (Integer) globals.get(name);
+        return getIntSlot(find(name));
     }
 
     @ScriptLink
     public double getFloat(final String name) {
 
-        return (Double) globals.get(name);
+        return getFloatSlot(find(name));
     }
 
     @ScriptLink
     public boolean getBool(final String name) {
 
-        return (Boolean) globals.get(name);
+        return getBoolSlot(find(name));
     }
 
     @ScriptLink
     public String getString(final String name) {
 
-        return (String) globals.get(name);
+        return getStringSlot(find(name));
     }
 
     @ScriptLink
     public Vec2 getVec(final String name) {
 
-        return (Vec2) globals.get(name);
+        return getVecSlot(find(name));
     }
 
     @ScriptLink
     public boolean isVarDefined(final String name) {
 
-        return globals.containsKey(name);
+        Integer slot = slots.get(name);
+        return slot != null && kinds[slot] != UNDEFINED;
+    }
+
+    /*
+     * Slot accessors. Calls to the name accessors with a constant name are
+     * compiled to these.
+     */
+
+    @ScriptLink
+    public void putIntSlot(final int slot, final int value) {
+
+        define(slot, INT);
+        numbers[slot] = value;
+    }
+
+    @ScriptLink
+    public void putFloatSlot(final int slot, final double value) {
+
+        define(slot, FLOAT);
+        numbers[slot] = (useDouble) ? value : (float) value;
+    }
+
+    @ScriptLink
+    public void putStringSlot(final int slot, final String value) {
+
+        define(slot, STRING);
+        objects[slot] = value;
+    }
+
+    @ScriptLink
+    public void putBoolSlot(final int slot, final boolean value) {
+
+        define(slot, BOOL);
+        numbers[slot] = (value) ? 1 : 0;
+    }
+
+    @ScriptLink
+    public void putVecSlot(final int slot, final Vec2 v) {
+
+        define(slot, VEC);
+        objects[slot] = v;
+    }
+
+    @ScriptLink
+    public int getIntSlot(final int slot) {
+
+        return (int) numbers[checkKind(slot, INT)];
+    }
+
+    @ScriptLink
+    public double getFloatSlot(final int slot) {
+
+        return numbers[checkKind(slot, FLOAT)];
+    }
+
+    @ScriptLink
+    public boolean getBoolSlot(final int slot) {
+
+        return numbers[checkKind(slot, BOOL)] != 0;
+    }
+
+    @ScriptLink
+    public String getStringSlot(final int slot) {
+
+        return (String) objects[checkKind(slot, STRING)];
+    }
+
+    @ScriptLink
+    public Vec2 getVecSlot(final int slot) {
+
+        return (Vec2) objects[checkKind(slot, VEC)];
+    }
+
+    @ScriptLink
+    public boolean isSlotDefined(final int slot) {
+
+        return slot >= 0 && slot < slotCount && kinds[slot] != UNDEFINED;
+    }
+
+    /*
+     * Reads do not assign slots to unknown names.
+     */
+    private int find(final String name) {
+
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            throw (new IllegalArgumentException("global variable '" + name + "' is not defined"));
+        }
+        return slot;
+    }
+
+    /*
+     * A variable takes the type of the last value stored to it.
+     */
+    private void define(final int slot, final byte kind) {
+
+        if (slot < 0 || slot >= slotCount) {
+            throw (new IllegalArgumentException("no global variable slot " + slot));
+        }
+        if (kinds[slot] != kind) {
+            kinds[slot] = kind;
+            objects[slot] = null;
+        }
+    }
+
+    private int checkKind(final int slot, final byte kind) {
+
+        if (slot < 0 || slot >= slotCount) {
+            throw (new IllegalArgumentException("no global variable slot " + slot));
+        }
+        if (kinds[slot] == UNDEFINED) {
+            throw (new IllegalArgumentException("global variable '" + names[slot] + "' is not defined"));
+        }
+        if (kinds[slot] != kind) {
+            throw (new ClassCastException("global variable '" + names[slot] + "' is not of the requested type"));
+        }
+        return slot;
     }
 
     @ScriptLink
     public int newIntList() {
-        List<Integer> newList = new ArrayList<Integer>();
-        int id = listID++ ;
-        intLists.put(id, newList);
-        return id;
+
+        return register(new IntList());
     }
 
     @ScriptLink
-    public void addToList(int value, int id) {
-        intLists.get(id).add(value);
+    public void addToList(final int value, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof IntList) {
+            ((IntList) list).add(list.size, value);
+        } else {
+            addToList((double) value, id);
+        }
     }
 
     @ScriptLink
-    public void addToList(int value, int pos, int id) {
-        intLists.get(id).add(pos, value);
+    public void addToList(final int value, final int pos, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof IntList) {
+            ((IntList) list).add(pos, value);
+        } else {
+            addToList((double) value, pos, id);
+        }
     }
 
     @ScriptLink
-    public int intAt(int pos, int id) {
-        return intLists.get(id).get(pos);
+    public int intAt(final int pos, final int id) {
+
+        IntList list = intList(id);
+        list.check(pos);
+        return list.data[pos];
     }
 
     @ScriptLink
     public int newFloatList() {
-        List<Float> newList = new ArrayList<Float>();
-        int id = listID++ ;
-        floatLists.put(id, newList);
-        return id;
+
+        return register( (useDouble) ? new DoubleList() : new FloatList());
     }
 
     @ScriptLink
-    public void addToList(float value, int id) {
-        floatLists.get(id).add(value);
+    public void addToList(final double value, final int id) {
+
+        addToList(value, list(id).size, id);
     }
 
     @ScriptLink
-    public void addToList(float value, int pos, int id) {
-        floatLists.get(id).add(pos, value);
+    public void addToList(final double value, final int pos, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof DoubleList) {
+            ((DoubleList) list).add(pos, value);
+        } else if (list instanceof FloatList) {
+            ((FloatList) list).add(pos, (float) value);
+        } else {
+            throw (typeMismatch(id, "float"));
+        }
     }
 
     @ScriptLink
-    public float floatAt(int pos, int id) {
-        return floatLists.get(id).get(pos);
+    public double floatAt(final int pos, final int id) {
+
+        ListStore list = list(id);
+        list.check(pos);
+        if (list instanceof DoubleList) {
+            return ((DoubleList) list).data[pos];
+        } else if (list instanceof FloatList) {
+            return ((FloatList) list).data[pos];
+        } else {
+            throw (typeMismatch(id, "float"));
+        }
     }
 
     @ScriptLink
     public int newBoolList() {
-        List<Boolean> newList = new ArrayList<Boolean>();
-        int id = listID++ ;
-        boolLists.put(id, newList);
-        return id;
+
+        return register(new BoolList());
     }
 
     @ScriptLink
-    public void addToList(boolean value, int id) {
-        boolLists.get(id).add(value);
+    public void addToList(final boolean value, final int id) {
+
+        BoolList list = boolList(id);
+        list.add(list.size, value);
     }
 
     @ScriptLink
-    public void addToList(boolean value, int pos, int id) {
-        boolLists.get(id).add(pos, value);
+    public void addToList(final boolean value, final int pos, final int id) {
+
+        boolList(id).add(pos, value);
     }
 
     @ScriptLink
-    public boolean boolAt(int pos, int id) {
-        return boolLists.get(id).get(pos);
+    public boolean boolAt(final int pos, final int id) {
+
+        BoolList list = boolList(id);
+        list.check(pos);
+        return list.data[pos];
     }
 
     @ScriptLink
     public int newStringList() {
-        List<String> newList = new ArrayList<String>();
-        int id = listID++ ;
-        stringLists.put(id, newList);
-        return id;
+
+        return register(new ObjectList(String.class));
     }
 
     @ScriptLink
-    public void addToList(String value, int id) {
-        stringLists.get(id).add(value);
+    public void addToList(final String value, final int id) {
+
+        ObjectList list = objectList(id, String.class);
+        list.add(list.size, value);
     }
 
     @ScriptLink
-    public void addToList(String value, int pos, int id) {
-        stringLists.get(id).add(pos, value);
+    public void addToList(final String value, final int pos, final int id) {
+
+        objectList(id, String.class).add(pos, value);
     }
 
     @ScriptLink
-    public String stringAt(int pos, int id) {
-        return stringLists.get(id).get(pos);
+    public String stringAt(final int pos, final int id) {
+
+        ObjectList list = objectList(id, String.class);
+        list.check(pos);
+        return (String) list.data.get(pos);
     }
 
     @ScriptLink
     public int newVecList() {
-        List<Vec2> newList = new ArrayList<Vec2>();
-        int id = listID++ ;
-        vecLists.put(id, newList);
-        return id;
+
+        return register(new ObjectList(Vec2.class));
     }
 
     @ScriptLink
-    public void addToList(Vec2 value, int id) {
-        vecLists.get(id).add(value);
+    public void addToList(final Vec2 value, final int id) {
+
+        ObjectList list = objectList(id, Vec2.class);
+        list.add(list.size, value);
     }
 
     @ScriptLink
-    public void addToList(Vec2 value, int pos, int id) {
-        vecLists.get(id).add(pos, value);
+    public void addToList(final Vec2 value, final int pos, final int id) {
+
+        objectList(id, Vec2.class).add(pos, value);
     }
 
     @ScriptLink
-    public Vec2 vecAt(int pos, int id) {
-        return vecLists.get(id).get(pos);
+    public Vec2 vecAt(final int pos, final int id) {
+
+        ObjectList list = objectList(id, Vec2.class);
+        list.check(pos);
+        return (Vec2) list.data.get(pos);
     }
 
     @ScriptLink
-    public boolean listExists(int listId) {
-        for (List<?> nextList : queryLists(listId)) {
-            if (nextList != null) return true;
+    public void setAt(final int value, final int pos, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof IntList) {
+            list.check(pos);
+            ((IntList) list).data[pos] = value;
+        } else {
+            setAt((double) value, pos, id);
         }
-        return false;
     }
 
     @ScriptLink
-    public void printList(int listId) {
-        for (List<?> nextList : queryLists(listId)) {
-            if (nextList != null) ScriptUtils.println(nextList.toString());
+    public void setAt(final double value, final int pos, final int id) {
+
+        ListStore list = list(id);
+        list.check(pos);
+        if (list instanceof DoubleList) {
+            ((DoubleList) list).data[pos] = value;
+        } else if (list instanceof FloatList) {
+            ((FloatList) list).data[pos] = (float) value;
+        } else {
+            throw (typeMismatch(id, "float"));
         }
     }
 
     @ScriptLink
-    public int size(int listId) {
-        for (List<?> nextList : queryLists(listId)) {
-            if (nextList != null) return nextList.size();
+    public void setAt(final boolean value, final int pos, final int id) {
+
+        BoolList list = boolList(id);
+        list.check(pos);
+        list.data[pos] = value;
+    }
+
+    @ScriptLink
+    public void setAt(final String value, final int pos, final int id) {
+
+        ObjectList list = objectList(id, String.class);
+        list.check(pos);
+        list.data.set(pos, value);
+    }
+
+    @ScriptLink
+    public void setAt(final Vec2 value, final int pos, final int id) {
+
+        ObjectList list = objectList(id, Vec2.class);
+        list.check(pos);
+        list.data.set(pos, value);
+    }
+
+    /**
+     * Sets every element of the list to the given value.
+     */
+    @ScriptLink
+    public void fill(final int value, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof IntList) {
+            Arrays.fill( ((IntList) list).data, 0, list.size, value);
+        } else {
+            fill((double) value, id);
         }
-        return -1;
     }
 
-    private final List<?>[] queryLists(int listId) {
-        return new List<?>[] { intLists.get(listId), floatLists.get(listId), stringLists.get(listId),
-                boolLists.get(listId), vecLists.get(listId) };
+    @ScriptLink
+    public void fill(final double value, final int id) {
+
+        ListStore list = list(id);
+        if (list instanceof DoubleList) {
+            Arrays.fill( ((DoubleList) list).data, 0, list.size, value);
+        } else if (list instanceof FloatList) {
+            Arrays.fill( ((FloatList) list).data, 0, list.size, (float) value);
+        } else {
+            throw (typeMismatch(id, "float"));
+        }
+    }
+
+    @ScriptLink
+    public void fill(final boolean value, final int id) {
+
+        BoolList list = boolList(id);
+        Arrays.fill(list.data, 0, list.size, value);
+    }
+
+    /**
+     * Sets the size of the list, truncating it or padding it with zero, false
+     * or null elements.
+     */
+    @ScriptLink
+    public void resize(final int size, final int id) {
+
+        if (size < 0) {
+            throw (new IllegalArgumentException("negative list size: " + size));
+        }
+        list(id).resize(size);
+    }
+
+    /**
+     * Copies len elements from one list to another list of the same type,
+     * growing the destination list if necessary. The lists may be the same.
+     */
+    @ScriptLink
+    public void copy(final int srcId, final int srcPos, final int dstId, final int dstPos, final int len) {
+
+        ListStore src = list(srcId), dst = list(dstId);
+        if (src.getClass() != dst.getClass() || src.elementType() != dst.elementType()) {
+            throw (new IllegalArgumentException("cannot copy between lists of different types: " + srcId + ", "
+                    + dstId));
+        }
+        if (len < 0 || srcPos < 0 || dstPos < 0 || srcPos + len > src.size) {
+            throw (new IndexOutOfBoundsException("copy of " + len + " from " + srcPos + ": size=" + src.size));
+        }
+        if (dstPos > dst.size) {
+            throw (new IndexOutOfBoundsException("copy to " + dstPos + ": size=" + dst.size));
+        }
+        if (dstPos + len > dst.size) {
+            dst.resize(dstPos + len);
+        }
+        src.copyTo(srcPos, dst, dstPos, len);
+    }
+
+    /**
+     * Sorts the list in ascending order; false sorts before true. Vec lists
+     * cannot be sorted.
+     */
+    @ScriptLink
+    public void sort(final int id) {
+
+        list(id).sort();
+    }
+
+    /**
+     * @return the sum of the elements of an int or float list
+     */
+    @ScriptLink
+    public double sum(final int id) {
+
+        ListStore list = list(id);
+        double sum = 0;
+        if (list instanceof IntList) {
+            int[] data = ((IntList) list).data;
+            for (int i = 0; i < list.size; i++ ) {
+                sum += data[i];
+            }
+        } else if (list instanceof DoubleList) {
+            double[] data = ((DoubleList) list).data;
+            for (int i = 0; i < list.size; i++ ) {
+                sum += data[i];
+            }
+        } else if (list instanceof FloatList) {
+            float[] data = ((FloatList) list).data;
+            for (int i = 0; i < list.size; i++ ) {
+                sum += data[i];
+            }
+        } else {
+            throw (typeMismatch(id, "int or float"));
+        }
+        return sum;
+    }
+
+    @ScriptLink
+    public void clearList(final int id) {
+
+        list(id).resize(0);
+    }
+
+    /**
+     * Releases the storage of the list; its handle becomes invalid.
+     */
+    @ScriptLink
+    public void deleteList(final int id) {
+
+        list(id);
+        lists[id] = null;
+    }
+
+    @ScriptLink
+    public boolean listExists(final int listId) {
+
+        return listId > 0 && listId < listCount && lists[listId] != null;
+    }
+
+    @ScriptLink
+    public void printList(final int listId) {
+
+        if (listExists(listId)) {
+            ScriptUtils.println(lists[listId].toString());
+        }
+    }
+
+    @ScriptLink
+    public int size(final int listId) {
+
+        return (listExists(listId)) ? lists[listId].size : -1;
+    }
+
+    private int register(final ListStore list) {
+
+        if (listCount == lists.length) {
+            lists = Arrays.copyOf(lists, listCount * 2);
+        }
+        lists[listCount] = list;
+        return listCount++ ;
+    }
+
+    private ListStore list(final int id) {
+
+        if ( !listExists(id)) {
+            throw (new IllegalArgumentException("no list with id " + id));
+        }
+        return lists[id];
+    }
+
+    private IntList intList(final int id) {
+
+        ListStore list = list(id);
+        if ( !(list instanceof IntList)) {
+            throw (typeMismatch(id, "int"));
+        }
+        return (IntList) list;
+    }
+
+    private BoolList boolList(final int id) {
+
+        ListStore list = list(id);
+        if ( !(list instanceof BoolList)) {
+            throw (typeMismatch(id, "bool"));
+        }
+        return (BoolList) list;
+    }
+
+    private ObjectList objectList(final int id, final Class<?> type) {
+
+        ListStore list = list(id);
+        if (list.elementType() != type) {
+            throw (typeMismatch(id, (type == Vec2.class) ? "vec" : "string"));
+        }
+        return (ObjectList) list;
+    }
+
+    private IllegalArgumentException typeMismatch(final int id, final String expected) {
+
+        return new IllegalArgumentException("list " + id + " is not a " + expected + " list");
+    }
+
+    /*
+     * Storage of one list. Primitive lists keep their elements in an array
+     * that grows by half its length when full.
+     */
+    private static abstract class ListStore {
+
+        int size;
+
+        abstract Class<?> elementType();
+
+        abstract int capacity();
+
+        abstract void setCapacity(int capacity);
+
+        /*
+         * Moves the elements from pos up by one and increments size.
+         */
+        abstract void shift(int pos);
+
+        abstract void copyTo(int pos, ListStore dst, int dstPos, int len);
+
+        abstract void sort();
+
+        abstract void clear(int from, int to);
+
+        void check(final int pos) {
+
+            if (pos < 0 || pos >= size) {
+                throw (new IndexOutOfBoundsException("index " + pos + ": size=" + size));
+            }
+        }
+
+        void insert(final int pos) {
+
+            if (pos < 0 || pos > size) {
+                throw (new IndexOutOfBoundsException("index " + pos + ": size=" + size));
+            }
+            ensureCapacity(size + 1);
+            shift(pos);
+        }
+
+        void ensureCapacity(final int min) {
+
+            int cap = capacity();
+            if (min > cap) {
+                setCapacity(Math.max(min, cap + (cap >> 1) + 1));
+            }
+        }
+
+        void resize(final int newSize) {
+
+            ensureCapacity(newSize);
+            if (newSize < size) {
+                clear(newSize, size);
+            }
+            size = newSize;
+        }
+    }
+
+    private static final class IntList extends ListStore {
+
+        int[] data = new int[8];
+
+        void add(final int pos, final int value) {
+
+            insert(pos);
+            data[pos] = value;
+        }
+
+        @Override
+        Class<?> elementType() {
+
+            return int.class;
+        }
+
+        @Override
+        int capacity() {
+
+            return data.length;
+        }
+
+        @Override
+        void setCapacity(final int capacity) {
+
+            data = Arrays.copyOf(data, capacity);
+        }
+
+        @Override
+        void shift(final int pos) {
+
+            System.arraycopy(data, pos, data, pos + 1, size++ - pos);
+        }
+
+        @Override
+        void copyTo(final int pos, final ListStore dst, final int dstPos, final int len) {
+
+            System.arraycopy(data, pos, ((IntList) dst).data, dstPos, len);
+        }
+
+        @Override
+        void sort() {
+
+            Arrays.sort(data, 0, size);
+        }
+
+        @Override
+        void clear(final int from, final int to) {
+
+            Arrays.fill(data, from, to, 0);
+        }
+
+        @Override
+        public String toString() {
+
+            return Arrays.toString(Arrays.copyOf(data, size));
+        }
+    }
+
+    private static final class FloatList extends ListStore {
+
+        float[] data = new float[8];
+
+        void add(final int pos, final float value) {
+
+            insert(pos);
+            data[pos] = value;
+        }
+
+        @Override
+        Class<?> elementType() {
+
+            return float.class;
+        }
+
+        @Override
+        int capacity() {
+
+            return data.length;
+        }
+
+        @Override
+        void setCapacity(final int capacity) {
+
+            data = Arrays.copyOf(data, capacity);
+        }
+
+        @Override
+        void shift(final int pos) {
+
+            System.arraycopy(data, pos, data, pos + 1, size++ - pos);
+        }
+
+        @Override
+        void copyTo(final int pos, final ListStore dst, final int dstPos, final int len) {
+
+            System.arraycopy(data, pos, ((FloatList) dst).data, dstPos, len);
+        }
+
+        @Override
+        void sort() {
+
+            Arrays.sort(data, 0, size);
+        }
+
+        @Override
+        void clear(final int from, final int to) {
+
+            Arrays.fill(data, from, to, 0);
+        }
+
+        @Override
+        public String toString() {
+
+            return Arrays.toString(Arrays.copyOf(data, size));
+        }
+    }
+
+    private static final class DoubleList extends ListStore {
+
+        double[] data = new double[8];
+
+        void add(final int pos, final double value) {
+
+            insert(pos);
+            data[pos] = value;
+        }
+
+        @Override
+        Class<?> elementType() {
+
+            return double.class;
+        }
+
+        @Override
+        int capacity() {
+
+            return data.length;
+        }
+
+        @Override
+        void setCapacity(final int capacity) {
+
+            data = Arrays.copyOf(data, capacity);
+        }
+
+        @Override
+        void shift(final int pos) {
+
+            System.arraycopy(data, pos, data, pos + 1, size++ - pos);
+        }
+
+        @Override
+        void copyTo(final int pos, final ListStore dst, final int dstPos, final int len) {
+
+            System.arraycopy(data, pos, ((DoubleList) dst).data, dstPos, len);
+        }
+
+        @Override
+        void sort() {
+
+            Arrays.sort(data, 0, size);
+        }
+
+        @Override
+        void clear(final int from, final int to) {
+
+            Arrays.fill(data, from, to, 0);
+        }
+
+        @Override
+        public String toString() {
+
+            return Arrays.toString(Arrays.copyOf(data, size));
+        }
+    }
+
+    private static final class BoolList extends ListStore {
+
+        boolean[] data = new boolean[8];
+
+        void add(final int pos, final boolean value) {
+
+            insert(pos);
+            data[pos] = value;
+        }
+
+        @Override
+        Class<?> elementType() {
+
+            return boolean.class;
+        }
+
+        @Override
+        int capacity() {
+
+            return data.length;
+        }
+
+        @Override
+        void setCapacity(final int capacity) {
+
+            data = Arrays.copyOf(data, capacity);
+        }
+
+        @Override
+        void shift(final int pos) {
+
+            System.arraycopy(data, pos, data, pos + 1, size++ - pos);
+        }
+
+        @Override
+        void copyTo(final int pos, final ListStore dst, final int dstPos, final int len) {
+
+            System.arraycopy(data, pos, ((BoolList) dst).data, dstPos, len);
+        }
+
+        @Override
+        void sort() {
+
+            int falses = 0;
+            for (int i = 0; i < size; i++ ) {
+                if ( !data[i]) {
+                    falses++ ;
+                }
+            }
+            Arrays.fill(data, 0, falses, false);
+            Arrays.fill(data, falses, size, true);
+        }
+
+        @Override
+        void clear(final int from, final int to) {
+
+            Arrays.fill(data, from, to, false);
+        }
+
+        @Override
+        public String toString() {
+
+            return Arrays.toString(Arrays.copyOf(data, size));
+        }
+    }
+
+    /*
+     * String and Vec2 lists; size mirrors data.size().
+     */
+    private static final class ObjectList extends ListStore {
+
+        final ArrayList<Object> data = new ArrayList<Object>();
+        final Class<?> type;
+
+        ObjectList(final Class<?> type) {
+
+            this.type = type;
+        }
+
+        void add(final int pos, final Object value) {
+
+            data.add(pos, value);
+            size++ ;
+        }
+
+        @Override
+        Class<?> elementType() {
+
+            return type;
+        }
+
+        @Override
+        int capacity() {
+
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        void setCapacity(final int capacity) {
+
+        }
+
+        @Override
+        void shift(final int pos) {
+
+            data.add(pos, null);
+            size++ ;
+        }
+
+        @Override
+        void resize(final int newSize) {
+
+            while (data.size() > newSize) {
+                data.remove(data.size() - 1);
+            }
+            while (data.size() < newSize) {
+                data.add(null);
+            }
+            size = newSize;
+        }
+
+        @Override
+        void copyTo(final int pos, final ListStore dst, final int dstPos, final int len) {
+
+            ArrayList<Object> from = new ArrayList<Object>(data.subList(pos, pos + len));
+            for (int i = 0; i < len; i++ ) {
+                ((ObjectList) dst).data.set(dstPos + i, from.get(i));
+            }
+        }
+
+        @Override
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        void sort() {
+
+            if (type != String.class) {
+                throw (new UnsupportedOperationException("vec lists cannot be sorted"));
+            }
+            Collections.sort((ArrayList) data);
+        }
+
+        @Override
+        void clear(final int from, final int to) {
+
+            data.subList(from, to).clear();
+        }
+
+        @Override
+        public String toString() {
+
+            return data.toString();
+        }
     }
 }
@@ -12,16 +12,23 @@
 
 package com.snap2d.script.obj;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
- * Parses SnapObject(s) from source strings.
+ * Parses SnapObject(s) from source strings, streams or files. Parsing is done
+ * by a {@link SnapObjectReader}, which may also be used directly to iterate
+ * over the objects in a source without collecting them.
  * 
  * @author Brian Groenke
  * @see {@link SnapObject}
@@ -30,16 +37,13 @@ public class SnapObjectParser {
 
     public static final String OBJECT_SCRIPT_SPEC_VERSION = "0.0.1", TYPE_PROPERTY = "type";
 
+    /**
+     * Parses all objects from the stream using the platform default charset.
+     * The stream is closed once parsing is finished.
+     */
     public SnapObject[] parseFromStream(final InputStream in) throws IOException, ScriptObjectParsingException {
 
-        BufferedReader buffRead = new BufferedReader(new InputStreamReader(in));
-        StringBuilder sb = new StringBuilder();
-        String line = null;
-        while ( (line = buffRead.readLine()) != null) {
-            sb.append(line + "\n");
-        }
-        buffRead.close();
-        return parseFromSource(sb.toString());
+        return parseAll(new SnapObjectReader(new InputStreamReader(in)));
     }
 
     public SnapObject[] parseFromFile(final File file) throws IOException, ScriptObjectParsingException {
@@ -47,69 +51,76 @@ public class SnapObjectParser {
         return parseFromStream(new FileInputStream(file));
     }
 
-    public SnapObject[] parseFromSource(String src) throws ScriptObjectParsingException {
+    public SnapObject[] parseFromSource(final String src) throws ScriptObjectParsingException {
 
-        src = src.trim();
-        ArrayList<SnapObject> objList = new ArrayList<SnapObject>();
-        for (int i = 0; i < src.length();) {
-            int ind = src.indexOf("{", i);
-            String dec = src.substring(i, ind);
-            String objName = dec.trim();
-            SnapObject snapObj = new SnapObject(objName);
-            int end = findEndOfBlock(src.toCharArray(), ind + 1);
-            parseProperties(src.substring(ind + 1, end), snapObj);
-            if (snapObj.get(TYPE_PROPERTY) == null) {
-                throw new ScriptObjectParsingException("error parsing object '" + snapObj.name
-                                + "' - all objects must declare the '" + TYPE_PROPERTY + "' property");
-            }
-            objList.add(snapObj);
-            i = end + 1;
+        try {
+            return parseAll(new SnapObjectReader(new StringReader(src)));
+        } catch (IOException e) {
+            throw (new ScriptObjectParsingException(e.toString()));
         }
-        return objList.toArray(new SnapObject[objList.size()]);
     }
 
-    private void parseProperties(String str, final SnapObject obj) throws ScriptObjectParsingException {
+    /**
+     * Parses each of the given files as a task on the executor. Files are
+     * parsed independently, so the number of files parsed at once is limited
+     * only by the executor.
+     * 
+     * @param exec
+     * @param files
+     * @return the objects parsed from each file, in the order the files were
+     *         given
+     * @throws IOException
+     *             the first error (in file order) encountered reading a file
+     * @throws ScriptObjectParsingException
+     *             the first error (in file order) encountered parsing a file
+     * @throws InterruptedException
+     *             if interrupted while waiting for the tasks to finish
+     */
+    public SnapObject[][] parseFromFiles(final ExecutorService exec, final File... files) throws IOException,
+                    ScriptObjectParsingException, InterruptedException {
 
-        str = str.trim();
-        String[] pts = str.split("\n");
-        for (String s : pts) {
-            String[] kv = s.split("=");
-            if (kv.length != 2) {
-                throw new ScriptObjectParsingException("error parsing properties: invalid assignment syntax in: " + s
-                                + " [" + obj.name + "]");
-            }
-            kv[0] = kv[0].trim();
-            kv[1] = kv[1].trim();
-            if ( !kv[1].startsWith("\"") || !kv[1].endsWith("\"")) {
-                throw new ScriptObjectParsingException("error parsing properties: values must be delimited by quotes "
-                                + s);
-            }
-            obj.put(kv[0], kv[1].substring(1, kv[1].length() - 1));
-        }
-    }
+        List<Callable<SnapObject[]>> tasks = new ArrayList<Callable<SnapObject[]>>(files.length);
+        for (final File file : files) {
+            tasks.add(new Callable<SnapObject[]>() {
 
-    private int findEndOfBlock(final char[] chars, int pos) {
+                @Override
+                public SnapObject[] call() throws Exception {
 
-        int stcount = 0;
-        boolean inquot = false;
-        for (; pos < chars.length; pos++ ) {
-            if (chars[pos] == '{' && !inquot) {
-                stcount++ ;
-            } else if (chars[pos] == '"') {
-                if (pos > 0 && chars[pos - 1] != '\\') {
-                    inquot = !inquot;
+                    return parseFromFile(file);
                 }
-            } else if (chars[pos] == '}') {
-                if (stcount == 0) {
-                    return pos;
-                } else {
-                    stcount-- ;
+            });
+        }
+        List<Future<SnapObject[]>> results = exec.invokeAll(tasks);
+        SnapObject[][] objs = new SnapObject[files.length][];
+        for (int i = 0; i < objs.length; i++ ) {
+            try {
+                objs[i] = results.get(i).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw ((IOException) cause);
+                } else if (cause instanceof ScriptObjectParsingException) {
+                    throw ((ScriptObjectParsingException) cause);
+                } else if (cause instanceof RuntimeException) {
+                    throw ((RuntimeException) cause);
                 }
+                throw ((Error) cause);
             }
         }
-        if (stcount == 0) {
-            return pos - 1;
+        return objs;
+    }
+
+    private SnapObject[] parseAll(final SnapObjectReader reader) throws IOException, ScriptObjectParsingException {
+
+        ArrayList<SnapObject> objList = new ArrayList<SnapObject>();
+        try {
+            SnapObject obj;
+            while ( (obj = reader.read()) != null) {
+                objList.add(obj);
+            }
+        } finally {
+            reader.close();
         }
-        return -1;
+        return objList.toArray(new SnapObject[objList.size()]);
     }
 }
@@ -0,0 +1,266 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script.obj;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads SnapObjects one at a time from a character stream or a buffer of
+ * encoded text, without holding more than the current object in memory. The
+ * source is tokenized in a single pass:
+ *
+ * <pre>
+ * SnapObjectReader reader = new SnapObjectReader(new FileReader(file));
+ * try {
+ *     SnapObject obj;
+ *     while ( (obj = reader.read()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * Each property must be on its own line, with its value enclosed in quotes;
+ * blank lines are ignored. Braces and equals signs within quotes are part of
+ * the value, and a quote preceded by a backslash does not end it. Values are
+ * stored as written, without processing escapes.
+ * <p>
+ * A reader is not thread-safe, but any number of readers may be used
+ * concurrently.
+ *
+ * @author Brian Groenke
+ * @see SnapObject
+ */
+public class SnapObjectReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EOF = -1;
+
+    private final Reader in;
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean flushed;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos, len;
+    // the line of the last character read
+    private int line = 1;
+    private boolean lineEnded;
+
+    private final StringBuilder token = new StringBuilder();
+
+    public SnapObjectReader(final Reader in) {
+
+        this.in = in;
+        this.bytes = null;
+        this.decoder = null;
+    }
+
+    /**
+     * Reads from the remaining bytes of the buffer, which are decoded as they
+     * are parsed. The buffer's position is advanced as it is read.
+     *
+     * @param bytes
+     * @param charset
+     */
+    public SnapObjectReader(final ByteBuffer bytes, final Charset charset) {
+
+        this.in = null;
+        this.bytes = bytes;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * @return the next object, or null if the end of the source has been
+     *         reached
+     * @throws IOException
+     * @throws ScriptObjectParsingException
+     *             if the source is malformed or an object does not declare
+     *             the '{@value SnapObjectParser#TYPE_PROPERTY}' property
+     */
+    public SnapObject read() throws IOException, ScriptObjectParsingException {
+
+        int c = skipWhitespace();
+        if (c == EOF) {
+            return null;
+        }
+        int start = line;
+        token.setLength(0);
+        while (c != '{') {
+            if (c == EOF || c == '}') {
+                throw (error("expected '{' after object name: " + token.toString().trim(), start));
+            }
+            token.append((char) c);
+            c = next();
+        }
+        SnapObject obj = new SnapObject(token.toString().trim());
+        while (readProperty(obj)) {
+            ;
+        }
+        if (obj.get(SnapObjectParser.TYPE_PROPERTY) == null) {
+            throw new ScriptObjectParsingException("error parsing object '" + obj.name + "' - all objects must declare the '"
+                            + SnapObjectParser.TYPE_PROPERTY + "' property");
+        }
+        return obj;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /*
+     * Reads one line of the object body. Returns false once the closing brace
+     * has been read.
+     */
+    private boolean readProperty(final SnapObject obj) throws IOException, ScriptObjectParsingException {
+
+        int c = skipBlank();
+        if (c == '}') {
+            return false;
+        } else if (c == '\n') {
+            return true;
+        } else if (c == EOF) {
+            throw (unterminated(obj));
+        }
+        token.setLength(0);
+        while (c != '=') {
+            if (c == EOF || c == '\n' || c == '}' || c == '{' || c == '"') {
+                throw (error("invalid assignment syntax in property " + token.toString().trim() + " [" + obj.name
+                                + "]", line));
+            }
+            token.append((char) c);
+            c = next();
+        }
+        String key = token.toString().trim();
+        if (key.length() == 0) {
+            throw (error("missing property name [" + obj.name + "]", line));
+        }
+
+        if (skipBlank() != '"') {
+            throw (error("values must be delimited by quotes: " + key + " [" + obj.name + "]", line));
+        }
+        token.setLength(0);
+        int prev = 0;
+        while ( (c = next()) != '"' || prev == '\\') {
+            if (c == EOF) {
+                throw (error("unterminated value: " + key + " [" + obj.name + "]", line));
+            }
+            token.append((char) c);
+            prev = c;
+        }
+        obj.put(key, token.toString());
+
+        c = skipBlank();
+        if (c == '}') {
+            return false;
+        } else if (c == EOF) {
+            throw (unterminated(obj));
+        } else if (c != '\n') {
+            throw (error("unexpected characters after value: " + key + " [" + obj.name + "]", line));
+        }
+        return true;
+    }
+
+    private ScriptObjectParsingException unterminated(final SnapObject obj) {
+
+        return error("missing '}' at end of object [" + obj.name + "]", line);
+    }
+
+    private ScriptObjectParsingException error(final String msg, final int atLine) {
+
+        return new ScriptObjectParsingException("error parsing properties: " + msg + " (line " + atLine + ")");
+    }
+
+    private int skipWhitespace() throws IOException {
+
+        int c;
+        while ( (c = next()) != EOF && Character.isWhitespace(c)) {
+            ;
+        }
+        return c;
+    }
+
+    /*
+     * Skips whitespace other than line breaks.
+     */
+    private int skipBlank() throws IOException {
+
+        int c;
+        while ( (c = next()) != EOF && c != '\n' && Character.isWhitespace(c)) {
+            ;
+        }
+        return c;
+    }
+
+    private int next() throws IOException {
+
+        if (pos == len) {
+            len = fill();
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return EOF;
+            }
+        }
+        char c = buf[pos++ ];
+        // a line feed belongs to the line it ends
+        if (lineEnded) {
+            line++ ;
+        }
+        lineEnded = (c == '\n');
+        return c;
+    }
+
+    private int fill() throws IOException {
+
+        if (in != null) {
+            int n;
+            while ( (n = in.read(buf, 0, buf.length)) == 0) {
+                ;
+            }
+            return n;
+        }
+        CharBuffer out = CharBuffer.wrap(buf);
+        if ( !flushed) {
+            check(decoder.decode(bytes, out, true));
+            if ( !bytes.hasRemaining() && out.hasRemaining()) {
+                // a decoder may hold back characters until the end of input
+                flushed = decoder.flush(out).isUnderflow();
+            }
+        }
+        return (out.position() > 0) ? out.position() : EOF;
+    }
+
+    private static void check(final CoderResult result) throws CharacterCodingException {
+
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+}
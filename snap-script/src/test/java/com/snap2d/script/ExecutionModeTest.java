@@ -0,0 +1,43 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.snap2d.script.ScriptProgram.ExecutionMode;
+
+public class ExecutionModeTest {
+
+    private static final String FIB = "int Fib(int n) {\n" + "    if (n < 2) {\n" + "        return n;\n" + "    }\n"
+                    + "    return Fib(n - 1) + Fib(n - 2);\n" + "}\n";
+
+    @Test
+    public void testRecompileAfterModeSwitch() throws Exception {
+
+        ScriptProgram prog = new ScriptProgram(true, new ScriptSource(FIB));
+        assertTrue(prog.compile());
+        prog.setExecutionMode(ExecutionMode.COMPILED);
+        prog.initRuntime(true);
+
+        assertEquals(55, prog.invoke("Fib", 10));
+        prog.setExecutionMode(ExecutionMode.INTERPRETED);
+        assertEquals(55, prog.invoke("Fib", 10));
+        prog.setExecutionMode(ExecutionMode.COMPILED);
+        assertEquals(55, prog.invoke("Fib", 10));
+        prog.setExecutionMode(ExecutionMode.TIERED, 1);
+        assertEquals(55, prog.invoke("Fib", 10));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.snap2d.script.ScriptProgram.ExecutionMode;
+import com.snap2d.script.lib.VarStore;
+
+public class GlobalSlotTest {
+
+    private static final String GLOBALS = "void PutLit(int v) {\n" + "    putInt(\"score\", v);\n" + "}\n"
+                    + "int GetLit() {\n" + "    return getInt(\"score\");\n" + "}\n"
+                    + "void PutNamed(string name, int v) {\n" + "    putInt(name, v);\n" + "}\n"
+                    + "int GetNamed(string name) {\n" + "    return getInt(name);\n" + "}\n"
+                    + "void PutSpeed(float v) {\n" + "    putFloat(\"speed\", v);\n" + "}\n"
+                    + "float GetSpeed() {\n" + "    return getFloat(\"speed\");\n" + "}\n";
+
+    @Test
+    public void testLiteralNamesResolvedToSlots() throws Exception {
+
+        ScriptProgram prog = program(true, ExecutionMode.INTERPRETED);
+        assertEquals(Arrays.asList("score", "speed"), Arrays.asList(prog.globalSlots));
+        VarStore vars = prog.getVarStore();
+        assertEquals(0, vars.slotOf("score"));
+        assertEquals(1, vars.slotOf("speed"));
+        assertFalse(vars.isSlotDefined(0));
+
+        ScriptProgram plain = program(false, ExecutionMode.INTERPRETED);
+        assertEquals(0, plain.globalSlots.length);
+    }
+
+    @Test
+    public void testSlotAndNamePathsAgree() throws Exception {
+
+        for (boolean optimize : new boolean[] { true, false }) {
+            for (ExecutionMode mode : new ExecutionMode[] { ExecutionMode.INTERPRETED, ExecutionMode.COMPILED }) {
+                String msg = "optimize=" + optimize + ", mode=" + mode;
+                ScriptProgram prog = program(optimize, mode);
+                VarStore vars = prog.getVarStore();
+
+                prog.invoke("PutLit", 7);
+                assertEquals(msg, 7, prog.invoke("GetNamed", "score"));
+                assertEquals(msg, 7, vars.getInt("score"));
+                assertEquals(msg, 7, vars.getIntSlot(vars.slotOf("score")));
+
+                prog.invoke("PutNamed", "score", 11);
+                assertEquals(msg, 11, prog.invoke("GetLit"));
+
+                vars.putInt("score", 13);
+                assertEquals(msg, 13, prog.invoke("GetLit"));
+                vars.putIntSlot(vars.slotOf("score"), 17);
+                assertEquals(msg, 17, prog.invoke("GetNamed", "score"));
+
+                prog.invoke("PutSpeed", 2.5);
+                assertEquals(msg, 2.5, vars.getFloat("speed"), 0);
+                assertEquals(msg, 2.5, floatValue(prog.invoke("GetSpeed")), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testUndefinedAndMismatchedSlots() {
+
+        VarStore vars = new VarStore();
+        int slot = vars.slotOf("x");
+        assertEquals(slot, vars.slotOf("x"));
+        assertFalse(vars.isVarDefined("x"));
+        try {
+            vars.getIntSlot(slot);
+            fail("read of undefined global");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            vars.getIntSlot(slot + 1);
+            fail("read of unassigned slot");
+        } catch (IllegalArgumentException e) {
+        }
+
+        vars.putStringSlot(slot, "s");
+        assertTrue(vars.isVarDefined("x"));
+        assertEquals("s", vars.getString("x"));
+        try {
+            vars.getInt("x");
+            fail("read of string global as int");
+        } catch (ClassCastException e) {
+        }
+
+        // a slot can change type when it is written again
+        vars.putInt("x", 3);
+        assertEquals(3, vars.getIntSlot(slot));
+    }
+
+    /*
+     * Interpreted functions return floats as Scalars.
+     */
+    private static double floatValue(final Object ret) {
+
+        return (ret instanceof Scalar) ? ((Scalar) ret).getValue() : ((Number) ret).doubleValue();
+    }
+
+    private static ScriptProgram program(final boolean optimize, final ExecutionMode mode) throws Exception {
+
+        ScriptProgram prog = new ScriptProgram(true, new ScriptSource(GLOBALS));
+        prog.setOptimizationEnabled(optimize);
+        assertTrue(prog.compile());
+        prog.setExecutionMode(mode);
+        prog.initRuntime(true);
+        return prog;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelCompileTest {
+
+    private static final int SOURCES = 12;
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testSameProgram() throws Exception {
+
+        ScriptSource[] sources = sources(false);
+        for (boolean optimize : new boolean[] { true, false }) {
+            String msg = "optimize=" + optimize;
+            ScriptProgram serial = program(null, optimize, sources);
+            ScriptProgram parallel = program(pool, optimize, sources);
+            assertTrue(msg, serial.compile());
+            assertTrue(msg, parallel.compile());
+
+            Function[] expected = sorted(serial.getScriptFunctions());
+            Function[] actual = sorted(parallel.getScriptFunctions());
+            assertEquals(msg, expected.length, actual.length);
+            // IDs come from a counter shared by every program, so those of
+            // the parallel program are offset by the functions created since
+            long offset = actual[0].getID() - expected[0].getID();
+            HashSet<Long> ids = new HashSet<Long>();
+            for (Function f : serial.funcs.values()) {
+                ids.add(f.getID());
+            }
+            for (int i = 0; i < expected.length; i++ ) {
+                Function e = expected[i], a = actual[i];
+                String fmsg = msg + ", function " + e.getName();
+                assertEquals(fmsg, e.getName(), a.getName());
+                assertEquals(fmsg, e.getID() + offset, a.getID());
+                assertSameCode(fmsg, bytes(e.bytecode), bytes(a.bytecode), ids, offset);
+                assertArrayEquals(fmsg, e.sourceMap, a.sourceMap);
+                assertEquals(fmsg, e.srcLine, a.srcLine);
+            }
+            assertArrayEquals(msg, serial.globalSlots, parallel.globalSlots);
+
+            serial.initRuntime(true);
+            parallel.initRuntime(true);
+            for (int i = 0; i < SOURCES; i++ ) {
+                assertEquals(msg, serial.invoke("Run" + i, 20), parallel.invoke("Run" + i, 20));
+            }
+        }
+    }
+
+    @Test
+    public void testFirstErrorInSourceOrder() {
+
+        // errors in function bodies are found by the compiler, errors in
+        // declarations by the precompiler; both run as parallel tasks
+        int[][] bad = { { 3, 8 }, { 0, SOURCES - 1 } };
+        for (boolean declaration : new boolean[] { false, true }) {
+            for (int[] b : bad) {
+                ScriptSource[] sources = sources(declaration, b);
+                for (boolean optimize : new boolean[] { true, false }) {
+                    String msg = "bad=" + Arrays.toString(b) + ", declaration=" + declaration + ", optimize="
+                                    + optimize;
+                    ScriptProgram serial = program(null, optimize, sources);
+                    ScriptProgram parallel = program(pool, optimize, sources);
+                    assertFalse(msg, serial.compile());
+                    assertFalse(msg, parallel.compile());
+                    ScriptCompilationException expected = serial.getLastCompileError();
+                    ScriptCompilationException actual = parallel.getLastCompileError();
+                    assertNotNull(msg, expected);
+                    assertNotNull(msg, actual);
+                    assertEquals(msg, expected.getMessage(), actual.getMessage());
+                    assertTrue(msg + ": " + actual.getMessage(), actual.getMessage().contains("missing" + b[0]));
+                }
+            }
+        }
+    }
+
+    private static ScriptProgram program(final ExecutorService executor, final boolean optimize,
+            final ScriptSource... sources) {
+
+        ScriptProgram prog = new ScriptProgram(true, sources);
+        prog.setOptimizationEnabled(optimize);
+        prog.setCompileExecutor(executor);
+        return prog;
+    }
+
+    /*
+     * Builds the test sources; those at the 'bad' indices reference an
+     * undefined variable in a function body or, if 'declaration' is true,
+     * declare a function with an undefined parameter type.
+     */
+    private static ScriptSource[] sources(final boolean declaration, final int... bad) {
+
+        ScriptSource[] sources = new ScriptSource[SOURCES];
+        for (int i = 0; i < SOURCES; i++ ) {
+            boolean isBad = Arrays.binarySearch(bad, i) >= 0;
+            StringBuilder src = new StringBuilder();
+            // calls into the next source, so that bodies reference functions
+            // compiled by other tasks
+            int next = (i + 1) % SOURCES;
+            src.append("int Step").append(i).append("(int n) {\n");
+            src.append("    int s = ").append(i).append(";\n");
+            src.append("    for (int k = 0; k < n; k++) {\n");
+            src.append("        if (k % 3 == 0) {\n");
+            src.append("            s = s + k * ").append(i + 1).append(";\n");
+            src.append("        } else {\n");
+            src.append("            s = s - k;\n");
+            src.append("        }\n");
+            src.append("    }\n");
+            if (isBad && !declaration) {
+                src.append("    s = s + missing").append(i).append(";\n");
+            }
+            src.append("    return s;\n");
+            src.append("}\n");
+            src.append("float Scale").append(i).append("(float x) {\n");
+            src.append("    putFloat(\"scale").append(i % 4).append("\", x * 0.5);\n");
+            src.append("    return getFloat(\"scale").append(i % 4).append("\") + ").append(i).append(";\n");
+            src.append("}\n");
+            if (isBad && declaration) {
+                src.append("int Broken").append(i).append("(missing").append(i).append(" v) {\n");
+                src.append("    return 0;\n");
+                src.append("}\n");
+            }
+            src.append("int Run").append(i).append("(int n) {\n");
+            src.append("    putInt(\"runs\", n);\n");
+            src.append("    if (n > 0) {\n");
+            src.append("        return Step").append(i).append("(n) + Step").append(next).append("(n - 1);\n");
+            src.append("    }\n");
+            src.append("    return getInt(\"runs\");\n");
+            src.append("}\n");
+            sources[i] = new ScriptSource(src.toString());
+        }
+        return sources;
+    }
+
+    private static Function[] sorted(final Function[] funcs) {
+
+        Function[] sorted = funcs.clone();
+        Arrays.sort(sorted, new Comparator<Function>() {
+
+            @Override
+            public int compare(final Function f1, final Function f2) {
+
+                return (f1.getID() < f2.getID()) ? -1 : ( (f1.getID() == f2.getID()) ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    /*
+     * Asserts that the bytecode is the same, except for function IDs offset
+     * by 'offset' in the actual code.
+     */
+    private static void assertSameCode(final String msg, final byte[] expected, final byte[] actual,
+            final Set<Long> ids, final long offset) {
+
+        assertEquals(msg, expected.length, actual.length);
+        ByteBuffer e = ByteBuffer.wrap(expected), a = ByteBuffer.wrap(actual);
+        for (int i = 0; i < expected.length; i++ ) {
+            if (expected[i] == actual[i]) {
+                continue;
+            }
+            int id = -1;
+            for (int k = Math.max(0, i - 7); k <= i && k + 8 <= expected.length && id < 0; k++ ) {
+                long eid = e.getLong(k);
+                if (ids.contains(eid) && a.getLong(k) == eid + offset) {
+                    id = k;
+                }
+            }
+            assertTrue(msg + ": bytecode differs at " + i, id >= 0);
+            i = id + 7;
+        }
+    }
+
+    private static byte[] bytes(final ByteBuffer buff) {
+
+        ByteBuffer copy = buff.duplicate();
+        copy.rewind();
+        byte[] data = new byte[copy.remaining()];
+        copy.get(data);
+        return data;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.snap2d.script.ScriptProfiler.FunctionProfile;
+import com.snap2d.script.ScriptProfiler.HotSpot;
+
+public class ScriptProfilerTest {
+
+    private static final int HOT_LINE = 4, UNTAKEN_LINE = 6;
+
+    private static final String HOT = "int Hot(int n) {\n" // 1
+                    + "    int s = 0;\n" // 2
+                    + "    for (int i = 0; i < n; i++) {\n" // 3
+                    + "        s = i * 3 + (i * 5 + 2) * 7 - (i * 11 + 3) * 2 + i * 4 + (i + 1) * (i + 2) - i * i"
+                    + " + (i * 2 + 1) * 3 - i * 6 + (i + 7) * 5 - i * 5 + (i * 9 + 4) * 2 - i * 18;\n" // 4
+                    + "        if (s < 0) {\n" // 5
+                    + "            s = 0;\n" // 6
+                    + "        }\n" // 7
+                    + "    }\n" // 8
+                    + "    return s;\n" // 9
+                    + "}\n";
+
+    @Test
+    public void testSampledLines() throws Exception {
+
+        ScriptProgram prog = new ScriptProgram(false, new ScriptSource(HOT));
+        assertTrue(prog.compile());
+        prog.setExecutionMode(ScriptProgram.ExecutionMode.INTERPRETED);
+        prog.initRuntime(true);
+        ScriptProfiler profiler = prog.startProfiling(1);
+
+        long end = System.currentTimeMillis() + 10000;
+        FunctionProfile hot;
+        do {
+            prog.invoke("Hot", 500);
+            hot = profiler.getProfiles().get(0);
+        } while (hot.getSampleCount() < 200 && System.currentTimeMillis() < end);
+        prog.stopProfiling();
+
+        HashMap<Integer, Integer> lines = new HashMap<Integer, Integer>();
+        int maxLine = -1, max = 0;
+        for (HotSpot h : hot.getHotSpots()) {
+            lines.put(h.getLine(), h.getSamples());
+            if (h.getSamples() > max) {
+                max = h.getSamples();
+                maxLine = h.getLine();
+            }
+        }
+        assertEquals("Hot", hot.getFunction().getName());
+        assertTrue("no samples recorded", max > 0);
+        assertEquals("samples by line: " + lines, HOT_LINE, maxLine);
+        assertTrue("samples by line: " + lines, !lines.containsKey(UNTAKEN_LINE));
+    }
+}
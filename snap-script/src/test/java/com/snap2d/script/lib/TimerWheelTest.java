@@ -0,0 +1,138 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    // one full turn of the wheel
+    private static final long TURN_MILLIS = TimerWheel.WHEEL_SIZE * TimerWheel.TICK_MILLIS;
+
+    @Test
+    public void testRunsAfterDelay() throws InterruptedException {
+
+        TimerWheel wheel = TimerWheel.shared();
+        long start = System.nanoTime();
+        Task[] tasks = { new Task(start), new Task(start), new Task(start) };
+        long[] delays = { 0, 50, 120 };
+        for (int i = 0; i < tasks.length; i++ ) {
+            wheel.schedule(tasks[i], delays[i]);
+        }
+        for (int i = 0; i < tasks.length; i++ ) {
+            assertTrue("task " + i + " did not run", tasks[i].await(delays[i] + 2000));
+            assertTrue("task " + i + " ran early: " + tasks[i].elapsedMillis(), tasks[i].elapsedMillis() >= delays[i]);
+        }
+    }
+
+    @Test
+    public void testRounds() throws InterruptedException {
+
+        TimerWheel wheel = TimerWheel.shared();
+        long start = System.nanoTime();
+        // both hash to the same bucket, a turn of the wheel apart
+        Task near = new Task(start), far = new Task(start);
+        wheel.schedule(far, TURN_MILLIS + 30);
+        wheel.schedule(near, 30);
+
+        assertTrue("task did not run", near.await(2000));
+        Thread.sleep(4 * TimerWheel.TICK_MILLIS);
+        assertFalse("task ran a turn of the wheel early", far.hasRun());
+
+        assertTrue("task did not run", far.await(TURN_MILLIS + 2000));
+        assertTrue("task ran early: " + far.elapsedMillis(), far.elapsedMillis() >= TURN_MILLIS + 30);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+
+        TimerWheel wheel = TimerWheel.shared();
+        long start = System.nanoTime();
+        Task a = new Task(start), b = new Task(start), c = new Task(start), d = new Task(start);
+        TimerWheel.Timeout ta = wheel.schedule(a, 50);
+        TimerWheel.Timeout tb = wheel.schedule(b, 50);
+        wheel.schedule(c, 50);
+        TimerWheel.Timeout td = wheel.schedule(d, 0);
+
+        // cancelling the middle of a bucket must not unlink its neighbours
+        assertTrue(tb.cancel());
+        assertTrue(tb.isCancelled());
+        assertFalse(tb.cancel());
+
+        assertTrue("task did not run", a.await(2000));
+        assertTrue("task did not run", c.await(2000));
+        assertTrue("task did not run", d.await(2000));
+        Thread.sleep(100);
+        assertFalse("cancelled task ran", b.hasRun());
+
+        // a task that has run can no longer be cancelled
+        assertFalse(ta.cancel());
+        assertFalse(td.cancel());
+        assertFalse(ta.isCancelled());
+    }
+
+    @Test
+    public void testCancelFarTask() throws InterruptedException {
+
+        TimerWheel wheel = TimerWheel.shared();
+        Task far = new Task(System.nanoTime());
+        int pending = wheel.pendingTasks();
+        TimerWheel.Timeout timeout = wheel.schedule(far, TURN_MILLIS * 3);
+        assertEquals(pending + 1, wheel.pendingTasks());
+        Thread.sleep(5 * TimerWheel.TICK_MILLIS);
+        assertTrue(timeout.cancel());
+        assertEquals(pending, wheel.pendingTasks());
+        assertFalse(far.hasRun());
+    }
+
+    private static class Task implements Runnable {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final long start;
+        volatile long ranAt;
+
+        Task(final long start) {
+
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+
+            ranAt = System.nanoTime();
+            done.countDown();
+        }
+
+        boolean await(final long millis) throws InterruptedException {
+
+            return done.await(millis, TimeUnit.MILLISECONDS);
+        }
+
+        boolean hasRun() {
+
+            return done.getCount() == 0;
+        }
+
+        long elapsedMillis() {
+
+            return TimeUnit.NANOSECONDS.toMillis(ranAt - start);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class VarStoreTest {
+
+    @Test
+    public void testInsertAtPosition() {
+
+        VarStore store = new VarStore();
+        int id = store.newIntList();
+        store.addToList(1, id);
+        store.addToList(2, id);
+        store.addToList(3, id);
+        store.addToList(9, 1, id);
+        store.addToList(0, 0, id);
+        store.addToList(4, store.size(id), id);
+        assertInts(store, id, 0, 1, 9, 2, 3, 4);
+
+        int sid = store.newStringList();
+        store.addToList("b", sid);
+        store.addToList("a", 0, sid);
+        store.addToList("c", 2, sid);
+        assertEquals(3, store.size(sid));
+        assertEquals("a", store.stringAt(0, sid));
+        assertEquals("b", store.stringAt(1, sid));
+        assertEquals("c", store.stringAt(2, sid));
+    }
+
+    @Test
+    public void testGrowPastInitialCapacity() {
+
+        VarStore store = new VarStore();
+        int id = store.newIntList(), fid = store.newFloatList(), bid = store.newBoolList();
+        for (int i = 0; i < 100; i++ ) {
+            // inserting at the front shifts every element on each add
+            store.addToList(i, 0, id);
+            store.addToList(i * 0.5, fid);
+            store.addToList(i % 3 == 0, bid);
+        }
+        assertEquals(100, store.size(id));
+        assertEquals(100, store.size(fid));
+        assertEquals(100, store.size(bid));
+        for (int i = 0; i < 100; i++ ) {
+            assertEquals(99 - i, store.intAt(i, id));
+            assertEquals(i * 0.5, store.floatAt(i, fid), 0);
+            assertEquals(i % 3 == 0, store.boolAt(i, bid));
+        }
+        assertEquals(4950, store.sum(id), 0);
+    }
+
+    @Test
+    public void testCopyWithinList() {
+
+        VarStore store = new VarStore();
+        int id = newRange(store, 10);
+        // overlapping, towards the end
+        store.copy(id, 0, id, 2, 5);
+        assertInts(store, id, 0, 1, 0, 1, 2, 3, 4, 7, 8, 9);
+
+        id = newRange(store, 10);
+        // overlapping, towards the start
+        store.copy(id, 3, id, 1, 5);
+        assertInts(store, id, 0, 3, 4, 5, 6, 7, 6, 7, 8, 9);
+
+        id = newRange(store, 10);
+        // past the end of the list, which grows to fit
+        store.copy(id, 5, id, 8, 5);
+        assertInts(store, id, 0, 1, 2, 3, 4, 5, 6, 7, 5, 6, 7, 8, 9);
+
+        int sid = store.newStringList();
+        for (String s : new String[] { "a", "b", "c", "d" }) {
+            store.addToList(s, sid);
+        }
+        store.copy(sid, 0, sid, 1, 3);
+        assertEquals("a", store.stringAt(0, sid));
+        assertEquals("a", store.stringAt(1, sid));
+        assertEquals("b", store.stringAt(2, sid));
+        assertEquals("c", store.stringAt(3, sid));
+    }
+
+    @Test
+    public void testResizeAndClear() {
+
+        VarStore store = new VarStore();
+        int id = newRange(store, 10);
+        store.resize(3, id);
+        assertInts(store, id, 0, 1, 2);
+        // elements past the old size must not reappear
+        store.resize(6, id);
+        assertInts(store, id, 0, 1, 2, 0, 0, 0);
+        store.resize(20, id);
+        assertEquals(20, store.size(id));
+        assertEquals(0, store.intAt(19, id));
+
+        int sid = store.newStringList();
+        store.addToList("a", sid);
+        store.addToList("b", sid);
+        store.resize(1, sid);
+        store.resize(2, sid);
+        assertNull(store.stringAt(1, sid));
+
+        store.clearList(id);
+        assertEquals(0, store.size(id));
+        assertTrue(store.listExists(id));
+        store.addToList(7, id);
+        assertInts(store, id, 7);
+    }
+
+    @Test
+    public void testTypeMismatch() {
+
+        final VarStore store = new VarStore();
+        final int id = store.newIntList(), fid = store.newFloatList(), sid = store.newStringList(), vid = store
+                        .newVecList();
+        store.addToList(1, id);
+        store.addToList(1.0, fid);
+        store.addToList("a", sid);
+
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.intAt(0, fid);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.addToList("b", id);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.addToList(true, id);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.vecAt(0, sid);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.copy(id, 0, fid, 0, 1);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.copy(sid, 0, vid, 0, 1);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.sum(sid);
+            }
+        });
+        // an int added to a float list is converted
+        store.addToList(2, fid);
+        assertEquals(2.0, store.floatAt(1, fid), 0);
+    }
+
+    @Test
+    public void testInvalidHandleAndIndex() {
+
+        final VarStore store = new VarStore();
+        final int id = store.newIntList();
+        store.addToList(1, id);
+
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.intAt(0, 0);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.addToList(1, id + 1);
+            }
+        });
+        expect(IndexOutOfBoundsException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.intAt(1, id);
+            }
+        });
+        expect(IndexOutOfBoundsException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.addToList(5, 2, id);
+            }
+        });
+        expect(IndexOutOfBoundsException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.copy(id, 0, id, 2, 1);
+            }
+        });
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.resize( -1, id);
+            }
+        });
+
+        store.deleteList(id);
+        assertFalse(store.listExists(id));
+        assertEquals( -1, store.size(id));
+        expect(IllegalArgumentException.class, new Runnable() {
+
+            @Override
+            public void run() {
+
+                store.intAt(0, id);
+            }
+        });
+        // handles are not reused
+        assertTrue(store.newIntList() != id);
+    }
+
+    private static int newRange(final VarStore store, final int n) {
+
+        int id = store.newIntList();
+        for (int i = 0; i < n; i++ ) {
+            store.addToList(i, id);
+        }
+        return id;
+    }
+
+    private static void assertInts(final VarStore store, final int id, final int... expected) {
+
+        assertEquals(expected.length, store.size(id));
+        for (int i = 0; i < expected.length; i++ ) {
+            assertEquals("element " + i, expected[i], store.intAt(i, id));
+        }
+    }
+
+    private static void expect(final Class<? extends Exception> type, final Runnable r) {
+
+        try {
+            r.run();
+        } catch (Exception e) {
+            if ( !type.isInstance(e)) {
+                throw (new AssertionError("expected " + type.getSimpleName() + " but was " + e));
+            }
+            return;
+        }
+        fail("expected " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.script.obj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SnapObjectReaderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testQuotedBracesAndEquals() throws Exception {
+
+        List<SnapObject> objs = readAll("first {\n" + "    type=\"a}b{c\"\n" + "    expr = \"x = {y}\"\n"
+                        + "    quote=\"say \\\"}\\\" twice\"\n" + "}\n" + "second { type=\"b\" }\n");
+        assertEquals(2, objs.size());
+        SnapObject first = objs.get(0);
+        assertEquals("first", first.name);
+        assertEquals("a}b{c", first.get("type"));
+        assertEquals("x = {y}", first.get("expr"));
+        // escapes are kept as written
+        assertEquals("say \\\"}\\\" twice", first.get("quote"));
+        assertEquals("second", objs.get(1).name);
+        assertEquals("b", objs.get(1).get("type"));
+    }
+
+    @Test
+    public void testCrlf() throws Exception {
+
+        String src = "obj\r\n{\r\n\r\n  type=\"t\"\r\n  value=\"1\"\r\n}\r\nnext {\r\n type=\"u\"\r\n}\r\n";
+        List<SnapObject> objs = readAll(src);
+        assertEquals(2, objs.size());
+        assertEquals("obj", objs.get(0).name);
+        assertEquals("t", objs.get(0).get("type"));
+        assertEquals("1", objs.get(0).get("value"));
+        assertEquals("u", objs.get(1).get("type"));
+        assertEquals(objs.toString(), readAll(src.replace("\r\n", "\n")).toString());
+
+        // line numbers are counted by line feeds
+        try {
+            readAll("obj {\r\n  type=\"t\"\r\n  bad\r\n}\r\n");
+            fail("missing assignment");
+        } catch (ScriptObjectParsingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+        }
+    }
+
+    @Test
+    public void testDecodeAcrossBufferBoundary() throws Exception {
+
+        // multi-byte characters, including a surrogate pair, packed so that
+        // they straddle every 8192 char and byte boundary of the reader
+        StringBuilder value = new StringBuilder();
+        String chars = "a\u00e9\u20ac\ud83d\ude00";
+        while (value.length() < 3 * 8192) {
+            value.append(chars);
+        }
+        StringBuilder src = new StringBuilder();
+        for (int pad = 0; pad < 6; pad++ ) {
+            src.append("obj").append(pad).append(" {\n type=\"t\"\n pad=\"");
+            for (int i = 0; i < pad; i++ ) {
+                src.append('x');
+            }
+            src.append("\"\n v=\"").append(value).append("\"\n}\n");
+        }
+        String text = src.toString();
+
+        List<SnapObject> objs = new ArrayList<SnapObject>();
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(UTF8));
+        SnapObjectReader reader = new SnapObjectReader(bytes, UTF8);
+        SnapObject obj;
+        while ( (obj = reader.read()) != null) {
+            objs.add(obj);
+        }
+        assertEquals(0, bytes.remaining());
+        assertEquals(6, objs.size());
+        for (int pad = 0; pad < 6; pad++ ) {
+            assertEquals("obj" + pad, objs.get(pad).name);
+            assertEquals("obj" + pad, value.toString(), objs.get(pad).get("v"));
+        }
+        assertEquals(objs.toString(), readAll(text).toString());
+    }
+
+    @Test
+    public void testEndOfInput() throws Exception {
+
+        assertEquals(0, readAll("").size());
+        assertEquals(0, readAll(" \n\r\n\t").size());
+        SnapObjectReader reader = new SnapObjectReader(ByteBuffer.allocate(0), UTF8);
+        assertNull(reader.read());
+        try {
+            readAll("obj {\n type=\"t\"\n");
+            fail("unterminated object");
+        } catch (ScriptObjectParsingException e) {
+        }
+        try {
+            readAll("obj {\n type=\"t\n}\n");
+            fail("unterminated value");
+        } catch (ScriptObjectParsingException e) {
+        }
+    }
+
+    private static List<SnapObject> readAll(final String src) throws IOException, ScriptObjectParsingException {
+
+        List<SnapObject> objs = new ArrayList<SnapObject>();
+        SnapObjectReader reader = new SnapObjectReader(new StringReader(src));
+        try {
+            SnapObject obj;
+            while ( (obj = reader.read()) != null) {
+                objs.add(obj);
+            }
+        } finally {
+            reader.close();
+        }
+        return objs;
+    }
+}
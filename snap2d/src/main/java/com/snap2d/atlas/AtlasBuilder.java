@@ -0,0 +1,260 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+import com.snap2d.ImageRef;
+import com.snap2d.editor.SpriteData;
+
+import bg.x2d.utils.Utils;
+
+/**
+ * Build-time tool that packs a directory of sprite images, along with the
+ * collision outlines of any SpriteData (.sdat) files in it, into a binary
+ * atlas file that can be loaded at startup with {@link AtlasIO#load}. Images
+ * are named after their file name without extension; images referenced by a
+ * SpriteData file are named after the SpriteData file instead.<br/>
+ * <br/>
+ * Usage:
+ *
+ * <pre>
+ * AtlasBuilder &lt;sprite dir&gt; &lt;output file&gt; [page size] [padding] [-z]
+ * </pre>
+ *
+ * where '-z' deflate-compresses the page data.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class AtlasBuilder {
+
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+
+    private static final Logger log = Logger.getLogger(AtlasBuilder.class.getCanonicalName());
+
+    private static final String[] IMAGE_SUFFIXES = { "png", "jpg", "jpeg", "gif", "bmp" };
+
+    private final int pageSize, padding;
+
+    private final Map<String, BufferedImage> images = new HashMap<>();
+    private final Map<String, SpriteData> spriteData = new HashMap<>();
+
+    public AtlasBuilder(final int pageSize, final int padding) {
+
+        this.pageSize = pageSize;
+        this.padding = padding;
+    }
+
+    /**
+     * Loads all images and SpriteData files in the given directory (not
+     * recursive). Files are processed in name order so that the same input
+     * always produces the same atlas.
+     *
+     * @param dir
+     * @throws IOException
+     */
+    public void addDirectory(final File dir) throws IOException {
+
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw (new IOException("not a directory: " + dir));
+        }
+        Arrays.sort(files);
+        Set<String> claimed = new HashSet<>();
+        for (File f : files) {
+            if (f.isFile() && f.getName().endsWith("." + SpriteData.FILE_SUFFIX)) {
+                SpriteData data = readSpriteData(f);
+                File imgFile = new File(dir, data.imgName);
+                String name = baseName(f);
+                addImage(name, readImage(imgFile));
+                spriteData.put(name, data);
+                claimed.add(imgFile.getName());
+            }
+        }
+        for (File f : files) {
+            if (f.isFile() && isImage(f) && !claimed.contains(f.getName())) {
+                addImage(baseName(f), readImage(f));
+            }
+        }
+    }
+
+    /**
+     * Adds a single image to be packed.
+     *
+     * @param name
+     * @param img
+     */
+    public void addImage(final String name, final BufferedImage img) {
+
+        if (images.put(name, img) != null) {
+            log.warning("duplicate atlas image name, replacing: " + name);
+        }
+    }
+
+    /**
+     * Packs all added images into a new TextureAtlas, largest first.
+     *
+     * @return the packed atlas
+     */
+    public TextureAtlas pack() {
+
+        List<String> names = new ArrayList<>(images.keySet());
+        Collections.sort(names);
+        Collections.sort(names, new Comparator<String>() {
+
+            @Override
+            public int compare(final String n0, final String n1) {
+
+                BufferedImage i0 = images.get(n0), i1 = images.get(n1);
+                int side0 = Math.max(i0.getWidth(), i0.getHeight()), side1 = Math.max(i1.getWidth(), i1.getHeight());
+                if (side0 != side1) {
+                    return side1 - side0;
+                }
+                return i1.getWidth() * i1.getHeight() - i0.getWidth() * i0.getHeight();
+            }
+        });
+
+        TextureAtlas atlas = new TextureAtlas(pageSize, pageSize, padding, 0, false);
+        for (String name : names) {
+            atlas.addImageToAtlas(name, new BuilderImageRef(images.get(name)));
+        }
+        return atlas;
+    }
+
+    /**
+     * Packs all added images and writes the atlas to the given file.
+     *
+     * @param out
+     * @param compress
+     * @return the packed atlas
+     * @throws IOException
+     */
+    public TextureAtlas write(final File out, final boolean compress) throws IOException {
+
+        TextureAtlas atlas = pack();
+        AtlasIO.write(atlas, spriteData, out, compress);
+        return atlas;
+    }
+
+    private static SpriteData readSpriteData(final File f) throws IOException {
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new FileInputStream(f));
+            return (SpriteData) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw (new IOException("invalid sprite data file: " + f, e));
+        } finally {
+            Utils.closeStream(in);
+        }
+    }
+
+    private static BufferedImage readImage(final File f) throws IOException {
+
+        BufferedImage img = ImageIO.read(f);
+        if (img == null) {
+            throw (new IOException("failed to decode image: " + f));
+        }
+        return img;
+    }
+
+    private static boolean isImage(final File f) {
+
+        String name = f.getName().toLowerCase();
+        for (String suffix : IMAGE_SUFFIXES) {
+            if (name.endsWith("." + suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String baseName(final File f) {
+
+        String name = f.getName();
+        int ind = name.lastIndexOf('.');
+        return (ind > 0) ? name.substring(0, ind) : name;
+    }
+
+    public static void main(final String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.err.println("usage: AtlasBuilder <sprite dir> <output file> [page size] [padding] [-z]");
+            System.exit(1);
+        }
+        List<String> opts = new ArrayList<>(Arrays.asList(args));
+        boolean compress = opts.remove("-z");
+        int pageSize = (opts.size() > 2) ? Integer.parseInt(opts.get(2)) : DEFAULT_PAGE_SIZE;
+        int padding = (opts.size() > 3) ? Integer.parseInt(opts.get(3)) : TextureAtlas.DEFAULT_PADDING;
+
+        File out = new File(opts.get(1));
+        if ( !out.getName().contains(".")) {
+            out = new File(out.getPath() + "." + AtlasIO.FILE_SUFFIX);
+        }
+        AtlasBuilder builder = new AtlasBuilder(pageSize, padding);
+        builder.addDirectory(new File(opts.get(0)));
+        TextureAtlas atlas = builder.write(out, compress);
+        System.out.println("packed " + atlas.getImageCount() + " images into " + atlas.getPageCount() + " page(s): "
+                        + out);
+    }
+
+    private static class BuilderImageRef implements ImageRef {
+
+        final BufferedImage img;
+
+        BuilderImageRef(final BufferedImage img) {
+
+            this.img = img;
+        }
+
+        @Override
+        public BufferedImage asBufferedImage() {
+
+            return img;
+        }
+
+        @Override
+        public int imageWidth() {
+
+            return img.getWidth();
+        }
+
+        @Override
+        public int imageHeight() {
+
+            return img.getHeight();
+        }
+
+        @Override
+        public void update() {
+
+        }
+    }
+}
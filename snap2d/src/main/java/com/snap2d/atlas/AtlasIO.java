@@ -0,0 +1,310 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import com.snap2d.editor.SpriteData;
+
+import bg.x2d.utils.Utils;
+
+/**
+ * Reads and writes the binary atlas format produced by {@link AtlasBuilder}.
+ * The format stores the raw ARGB pixel data of each atlas page, so loading an
+ * atlas is a memory-mapped bulk copy (or a single inflate pass for compressed
+ * atlases) rather than an image decode per sprite.<br/>
+ * <br/>
+ * Layout (big-endian):
+ *
+ * <pre>
+ * int    magic ('SATL')
+ * short  version
+ * short  flags (bit 0: page data is deflate-compressed)
+ * int    page width, page height, padding
+ * short  page count
+ * int    region count
+ * region * count:
+ *     short  name length, byte[] name (UTF-8)
+ *     short  page index
+ *     int    x, y, width, height
+ *     int    outline vertex count (-1 if there is no sprite data)
+ *     int    sprite width, sprite height, then x, y for each vertex
+ * page * count:
+ *     int    data length in bytes
+ *     byte[] page pixels (ARGB ints, row-major)
+ * </pre>
+ *
+ * @author Brian Groenke
+ *
+ */
+public final class AtlasIO {
+
+    public static final String FILE_SUFFIX = "satlas";
+
+    public static final int FLAG_DEFLATE = 0x1;
+
+    private static final int MAGIC = 0x5341544c; // 'SATL'
+    private static final short VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private AtlasIO() {
+
+    }
+
+    /**
+     * Writes the given atlas and sprite outline data to a file.
+     *
+     * @param atlas
+     * @param spriteData
+     *            sprite data for images in the atlas, keyed by region name; may
+     *            be null or missing entries for images without an outline
+     * @param file
+     * @param compress
+     *            true if page data should be deflate-compressed; compressed
+     *            atlases are smaller on disk but cannot be memory-mapped
+     * @throws IOException
+     */
+    public static void write(final TextureAtlas atlas,
+                             final Map<String, SpriteData> spriteData,
+                             final File file,
+                             final boolean compress) throws IOException {
+
+        DataOutputStream out = null;
+        Deflater deflater = (compress) ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(compress ? FLAG_DEFLATE : 0);
+            out.writeInt(atlas.getPageWidth());
+            out.writeInt(atlas.getPageHeight());
+            out.writeInt(atlas.getPadding());
+            out.writeShort(atlas.getPageCount());
+            out.writeInt(atlas.getImageCount());
+            for (int i = 0; i < atlas.getPageCount(); i++ ) {
+                for (AtlasRegion region : atlas.getPage(i).regions) {
+                    writeRegion(out, region, (spriteData != null) ? spriteData.get(region.getName()) : null);
+                }
+            }
+            for (int i = 0; i < atlas.getPageCount(); i++ ) {
+                writePage(out, atlas.getPage(i).asBufferedImage(), deflater);
+            }
+            out.flush();
+        } finally {
+            Utils.closeStream(out);
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Loads an atlas file written by {@link #write}. Pages of uncompressed
+     * atlases are read through a memory-mapped view of the file.
+     *
+     * @param file
+     * @return the loaded atlas and its sprite data
+     * @throws IOException
+     *             if the file cannot be read or is not a valid atlas file
+     */
+    public static PackedAtlas load(final File file) throws IOException {
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            ByteBuffer buff = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buff);
+        } finally {
+            Utils.closeStream(in);
+        }
+    }
+
+    /**
+     * Reads an atlas from the given buffer, starting at its current position.
+     *
+     * @param buff
+     * @return the loaded atlas and its sprite data
+     * @throws IOException
+     *             if the buffer does not contain a valid atlas
+     */
+    public static PackedAtlas read(final ByteBuffer buff) throws IOException {
+
+        buff.order(ByteOrder.BIG_ENDIAN);
+        if (buff.getInt() != MAGIC) {
+            throw (new IOException("not a Snap2D atlas file"));
+        }
+        short version = buff.getShort();
+        if (version != VERSION) {
+            throw (new IOException("unsupported atlas version: " + version));
+        }
+        int flags = buff.getShort();
+        int pageWt = buff.getInt(), pageHt = buff.getInt(), padding = buff.getInt();
+        int pageCount = buff.getShort(), regionCount = buff.getInt();
+
+        String[] names = new String[regionCount];
+        int[] pageInds = new int[regionCount];
+        Rectangle[] bounds = new Rectangle[regionCount];
+        Map<String, SpriteData> spriteData = new HashMap<>();
+        for (int i = 0; i < regionCount; i++ ) {
+            byte[] name = new byte[buff.getShort() & 0xffff];
+            buff.get(name);
+            names[i] = new String(name, UTF8);
+            pageInds[i] = buff.getShort();
+            bounds[i] = new Rectangle(buff.getInt(), buff.getInt(), buff.getInt(), buff.getInt());
+            int nverts = buff.getInt();
+            if (nverts >= 0) {
+                SpriteData data = new SpriteData();
+                data.imgName = names[i];
+                data.wt = buff.getInt();
+                data.ht = buff.getInt();
+                data.vertices = new Point[nverts];
+                for (int k = 0; k < nverts; k++ ) {
+                    data.vertices[k] = new Point(buff.getInt(), buff.getInt());
+                }
+                spriteData.put(names[i], data);
+            }
+        }
+
+        TextureAtlas atlas = new TextureAtlas(pageWt, pageHt, padding, 0, false);
+        Inflater inflater = ( (flags & FLAG_DEFLATE) != 0) ? new Inflater() : null;
+        try {
+            for (int i = 0; i < pageCount; i++ ) {
+                BufferedImage img = new BufferedImage(pageWt, pageHt, BufferedImage.TYPE_INT_ARGB);
+                int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                int len = buff.getInt();
+                if (inflater != null) {
+                    inflatePage(buff, len, pixels, inflater);
+                } else {
+                    ByteBuffer pageData = buff.slice();
+                    pageData.limit(len);
+                    pageData.asIntBuffer().get(pixels);
+                    buff.position(buff.position() + len);
+                }
+                atlas.addPackedPage(img);
+            }
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        for (int i = 0; i < regionCount; i++ ) {
+            AtlasRegion region = atlas.addPackedRegion(names[i], pageInds[i], bounds[i]);
+            SpriteData data = spriteData.get(names[i]);
+            if (data != null) {
+                Rectangle r = region.bounds;
+                data.loadedImage = region.page.asBufferedImage().getSubimage(r.x, r.y, r.width, r.height);
+            }
+        }
+        return new PackedAtlas(atlas, spriteData);
+    }
+
+    private static void writeRegion(final DataOutputStream out, final AtlasRegion region, final SpriteData data)
+                    throws IOException {
+
+        byte[] name = region.getName().getBytes(UTF8);
+        if (name.length > 0xffff) {
+            throw (new IOException("region name too long: " + region.getName()));
+        }
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeShort(region.getPageIndex());
+        Rectangle r = region.bounds;
+        out.writeInt(r.x);
+        out.writeInt(r.y);
+        out.writeInt(r.width);
+        out.writeInt(r.height);
+        if (data == null || data.vertices == null) {
+            out.writeInt( -1);
+            return;
+        }
+        out.writeInt(data.vertices.length);
+        out.writeInt(data.wt);
+        out.writeInt(data.ht);
+        for (Point p : data.vertices) {
+            out.writeInt(p.x);
+            out.writeInt(p.y);
+        }
+    }
+
+    /*
+     * Writes the page's pixels, compressed with 'deflater' unless it is null.
+     */
+    private static void writePage(final DataOutputStream out, final BufferedImage img, final Deflater deflater)
+                    throws IOException {
+
+        int wt = img.getWidth(), ht = img.getHeight();
+        ByteBuffer pixels = ByteBuffer.allocate(wt * ht * 4);
+        pixels.asIntBuffer().put(img.getRGB(0, 0, wt, ht, null, 0, wt));
+        byte[] data = pixels.array();
+        if (deflater != null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+            // shared by all pages; ended by write(), as DeflaterOutputStream
+            // only ends deflaters it creates
+            deflater.reset();
+            DeflaterOutputStream deflate = new DeflaterOutputStream(bytes, deflater);
+            deflate.write(data);
+            deflate.finish();
+            data = bytes.toByteArray();
+        }
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static void inflatePage(final ByteBuffer buff, final int len, final int[] pixels, final Inflater inflater)
+                    throws IOException {
+
+        byte[] input = new byte[len];
+        buff.get(input);
+        byte[] output = new byte[pixels.length * 4];
+        inflater.reset();
+        inflater.setInput(input);
+        try {
+            int n = 0;
+            while (n < output.length && !inflater.finished()) {
+                int read = inflater.inflate(output, n, output.length - n);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != output.length) {
+                throw (new IOException("truncated atlas page data"));
+            }
+        } catch (DataFormatException e) {
+            throw (new IOException("corrupt atlas page data", e));
+        }
+        ByteBuffer.wrap(output).asIntBuffer().get(pixels);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
+import com.snap2d.ImageRef;
+import com.snap2d.gl.opengl.Texture2D;
+
+/**
+ * A single page of a {@link TextureAtlas}. Each page is backed by one
+ * BufferedImage and, once requested from the GL thread, one texture that all
+ * regions on the page share. Changes made to the page image are uploaded
+ * lazily the next time the texture is requested.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class AtlasPage implements ImageRef {
+
+    private final int index;
+    private final BufferedImage image;
+    private final RectPacker packer;
+    private final boolean mipmap;
+
+    final List<AtlasRegion> regions = new ArrayList<>();
+
+    private Texture2D texture;
+    private volatile boolean dirty = true;
+
+    AtlasPage(final int index, final int width, final int height, final boolean mipmap) {
+
+        this(index, new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), mipmap);
+    }
+
+    AtlasPage(final int index, final BufferedImage image, final boolean mipmap) {
+
+        this.index = index;
+        this.image = image;
+        this.mipmap = mipmap;
+        this.packer = new RectPacker(image.getWidth(), image.getHeight());
+        image.setAccelerationPriority(1.0f);
+    }
+
+    /**
+     * Fetches the texture for this page, creating it or uploading any pending
+     * changes to the page image first if necessary. Must be called from the GL
+     * thread.
+     *
+     * @return the texture holding this page's image data
+     */
+    public synchronized Texture2D getTexture() {
+
+        if ( !dirty && texture != null) {
+            return texture;
+        }
+        final GL gl = GLContext.getCurrentGL();
+        if (texture == null) {
+            texture = new Texture2D(AWTTextureIO.newTexture(gl.getGLProfile(), image, mipmap));
+        } else {
+            texture.getTextureObject().updateImage(gl, AWTTextureIO.newTextureData(gl.getGLProfile(), image, mipmap));
+        }
+        dirty = false;
+        Texture tex = texture.getTextureObject();
+        for (AtlasRegion region : regions) {
+            Rectangle r = region.bounds;
+            // getSubImageTexCoords expects a lower-left origin
+            region.updateCoords(tex.getSubImageTexCoords(r.x, image.getHeight() - r.y - r.height, r.x + r.width,
+                                                         image.getHeight() - r.y));
+        }
+        return texture;
+    }
+
+    /**
+     * Destroys this page's texture, if it has been created. The page image is
+     * kept, so the texture will be re-created on the next call to
+     * {@link #getTexture()}. Must be called from the GL thread.
+     */
+    public synchronized void dispose() {
+
+        if (texture != null) {
+            texture.getTextureObject().destroy(GLContext.getCurrentGL());
+            texture = null;
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return true if the next call to {@link #getTexture()} will create or
+     *         re-upload the page texture
+     */
+    public boolean needsUpload() {
+
+        return dirty || texture == null;
+    }
+
+    public int getIndex() {
+
+        return index;
+    }
+
+    /**
+     * @return the fraction of this page's area that is in use, 0-1
+     */
+    public float getOccupancy() {
+
+        return packer.getOccupancy();
+    }
+
+    public int getRegionCount() {
+
+        return regions.size();
+    }
+
+    @Override
+    public BufferedImage asBufferedImage() {
+
+        return image;
+    }
+
+    @Override
+    public int imageWidth() {
+
+        return image.getWidth();
+    }
+
+    @Override
+    public int imageHeight() {
+
+        return image.getHeight();
+    }
+
+    /**
+     * Marks the page image as changed so that it is re-uploaded on the next
+     * call to {@link #getTexture()}.
+     */
+    @Override
+    public void update() {
+
+        dirty = true;
+    }
+
+    Rectangle allocate(final int wt, final int ht) {
+
+        return packer.insert(wt, ht);
+    }
+
+    void occupy(final Rectangle slot) {
+
+        packer.occupy(slot);
+    }
+
+    void release(final Rectangle slot) {
+
+        packer.free(slot);
+    }
+
+    void paint(final BufferedImage src, final Rectangle bounds) {
+
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(src, bounds.x, bounds.y, bounds.width, bounds.height, null);
+        g.dispose();
+        dirty = true;
+    }
+
+    void clear(final Rectangle bounds) {
+
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g.dispose();
+        dirty = true;
+    }
+
+    void reset() {
+
+        packer.reset();
+        regions.clear();
+        clear(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+}
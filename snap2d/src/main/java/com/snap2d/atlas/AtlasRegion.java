@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.Rectangle;
+
+import com.jogamp.opengl.util.texture.TextureCoords;
+import com.snap2d.gl.opengl.GLHandle;
+import com.snap2d.gl.opengl.Texture2D;
+
+/**
+ * A named sub-image of a {@link TextureAtlas}. Holds the page the image was
+ * packed into, its pixel bounds on that page and the texture coordinates of
+ * those bounds once the page has been uploaded to the GPU. Regions are owned
+ * and updated by their atlas; a region that has been removed from its atlas
+ * is no longer valid.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class AtlasRegion {
+
+    private final String name;
+
+    AtlasPage page;
+    // 'slot' is the padded area allocated from the page's packer
+    Rectangle bounds, slot;
+    float left, bottom, right, top;
+    boolean valid = true;
+
+    AtlasRegion(final String name, final AtlasPage page, final Rectangle bounds, final Rectangle slot) {
+
+        this.name = name;
+        this.page = page;
+        this.bounds = bounds;
+        this.slot = slot;
+    }
+
+    /**
+     * Binds this region's atlas page texture and sets the handle's texture
+     * coordinates to the bounds of this region. Must be called from the GL
+     * thread.
+     *
+     * @param handle
+     */
+    public void bind(final GLHandle handle) {
+
+        if ( !valid) {
+            throw (new IllegalStateException("region '" + name + "' has been removed from its atlas"));
+        }
+        boolean upload = page.needsUpload();
+        Texture2D tex = page.getTexture();
+        if (upload) {
+            // uploading re-binds the page texture outside of the handle
+            handle.invalidateStateCache();
+        }
+        handle.bindTexture(tex);
+        handle.setRectTexCoords(left, bottom, right, top);
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * @return the index of the atlas page this region is stored on
+     */
+    public int getPageIndex() {
+
+        return page.getIndex();
+    }
+
+    public AtlasPage getPage() {
+
+        return page;
+    }
+
+    /**
+     * @return a copy of this region's pixel bounds on its atlas page
+     */
+    public Rectangle getBounds() {
+
+        return new Rectangle(bounds);
+    }
+
+    public int getWidth() {
+
+        return bounds.width;
+    }
+
+    public int getHeight() {
+
+        return bounds.height;
+    }
+
+    public float getLeftCoord() {
+
+        return left;
+    }
+
+    public float getBottomCoord() {
+
+        return bottom;
+    }
+
+    public float getRightCoord() {
+
+        return right;
+    }
+
+    public float getTopCoord() {
+
+        return top;
+    }
+
+    public boolean isValid() {
+
+        return valid;
+    }
+
+    void updateCoords(final TextureCoords coords) {
+
+        left = coords.left();
+        bottom = coords.bottom();
+        right = coords.right();
+        top = coords.top();
+    }
+}
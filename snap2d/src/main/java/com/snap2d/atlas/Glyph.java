@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+/**
+ * A single character rasterized into a {@link GlyphAtlas}. Offsets and sizes
+ * are in font pixels; the y offset is the distance from the baseline down to
+ * the top of the glyph image (negative for glyphs that rise above the
+ * baseline).
+ *
+ * @author Brian Groenke
+ *
+ */
+public final class Glyph {
+
+    final char ch;
+    final AtlasRegion region;
+    final int xoff, yoff, width, height;
+    final float advance;
+
+    Glyph(final char ch, final AtlasRegion region, final int xoff, final int yoff, final float advance) {
+
+        this.ch = ch;
+        this.region = region;
+        this.xoff = xoff;
+        this.yoff = yoff;
+        this.width = (region != null) ? region.getWidth() : 0;
+        this.height = (region != null) ? region.getHeight() : 0;
+        this.advance = advance;
+    }
+
+    public char getChar() {
+
+        return ch;
+    }
+
+    /**
+     * @return the atlas region holding this glyph's image, or null if the
+     *         glyph has no visible pixels (e.g. whitespace)
+     */
+    public AtlasRegion getRegion() {
+
+        return region;
+    }
+
+    public int getOffsetX() {
+
+        return xoff;
+    }
+
+    public int getOffsetY() {
+
+        return yoff;
+    }
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    public int getHeight() {
+
+        return height;
+    }
+
+    /**
+     * @return the horizontal distance to the origin of the next glyph
+     */
+    public float getAdvance() {
+
+        return advance;
+    }
+
+    public boolean isVisible() {
+
+        return region != null;
+    }
+}
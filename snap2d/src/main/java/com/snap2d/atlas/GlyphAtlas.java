@@ -0,0 +1,251 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bitmap font atlas that rasterizes the glyphs of a Font on demand into the
+ * pages of a {@link TextureAtlas}. Glyphs are painted white with coverage in
+ * the alpha channel, so they can be tinted to any color when drawn. Text is
+ * turned into positioned glyphs by {@link #layout(String)}, which caches the
+ * layouts of recently used strings so that static labels are only laid out
+ * once.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class GlyphAtlas {
+
+    public static final int DEFAULT_PAGE_SIZE = 512, DEFAULT_LAYOUT_CACHE_SIZE = 256;
+
+    private static final int GLYPH_BORDER = 1;
+
+    private final Font font;
+    private final boolean antialias;
+    private final TextureAtlas atlas;
+    private final FontRenderContext frc;
+    private final int ascent, descent, lineHeight;
+
+    private final Glyph[] ascii = new Glyph[128];
+    private final Map<Character, Glyph> glyphs = new HashMap<>();
+    private final Map<String, GlyphRun> layoutCache;
+
+    public GlyphAtlas(final Font font, final boolean antialias) {
+
+        this(font, antialias, false, DEFAULT_PAGE_SIZE, DEFAULT_LAYOUT_CACHE_SIZE);
+    }
+
+    /**
+     * @param font
+     * @param antialias
+     *            true if glyphs should be rasterized with anti-aliasing
+     * @param mipmap
+     *            true if the atlas page textures should be mipmapped
+     * @param pageSize
+     *            width and height of each atlas page
+     * @param cacheSize
+     *            number of string layouts to keep cached; 0 to disable caching
+     */
+    public GlyphAtlas(final Font font,
+                      final boolean antialias,
+                      final boolean mipmap,
+                      final int pageSize,
+                      final int cacheSize) {
+
+        this.font = font;
+        this.antialias = antialias;
+        this.atlas = new TextureAtlas(pageSize, pageSize, TextureAtlas.DEFAULT_PADDING, 0, mipmap);
+        this.layoutCache = new LinkedHashMap<String, GlyphRun>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, GlyphRun> eldest) {
+
+                return size() > cacheSize;
+            }
+        };
+
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = createGraphics(scratch);
+        FontMetrics metrics = g.getFontMetrics(font);
+        this.frc = g.getFontRenderContext();
+        this.ascent = metrics.getAscent();
+        this.descent = metrics.getDescent();
+        this.lineHeight = metrics.getHeight();
+        g.dispose();
+    }
+
+    /**
+     * Fetches the glyph for the given character, rasterizing it into the atlas
+     * if it has not been used before.
+     *
+     * @param c
+     * @return the glyph for 'c'
+     */
+    public synchronized Glyph getGlyph(final char c) {
+
+        Glyph glyph = (c < ascii.length) ? ascii[c] : glyphs.get(c);
+        if (glyph == null) {
+            glyph = rasterize(c);
+            if (c < ascii.length) {
+                ascii[c] = glyph;
+            } else {
+                glyphs.put(c, glyph);
+            }
+        }
+        return glyph;
+    }
+
+    /**
+     * Lays out the given text, which may contain line breaks. Results are
+     * cached, so repeated calls with the same string return the same GlyphRun.
+     *
+     * @param text
+     * @return the laid out glyphs of 'text'
+     */
+    public synchronized GlyphRun layout(final String text) {
+
+        GlyphRun run = layoutCache.get(text);
+        if (run == null) {
+            run = createLayout(text);
+            layoutCache.put(text, run);
+        }
+        return run;
+    }
+
+    /**
+     * Pre-rasterizes all characters in the given string so that they don't
+     * need to be uploaded to the atlas textures mid-frame.
+     *
+     * @param chars
+     */
+    public synchronized void preload(final String chars) {
+
+        for (int i = 0; i < chars.length(); i++ ) {
+            getGlyph(chars.charAt(i));
+        }
+    }
+
+    public Font getFont() {
+
+        return font;
+    }
+
+    public TextureAtlas getAtlas() {
+
+        return atlas;
+    }
+
+    public int getAscent() {
+
+        return ascent;
+    }
+
+    public int getDescent() {
+
+        return descent;
+    }
+
+    public int getLineHeight() {
+
+        return lineHeight;
+    }
+
+    /**
+     * Destroys the atlas page textures. Must be called from the GL thread.
+     */
+    public void dispose() {
+
+        atlas.dispose();
+    }
+
+    private GlyphRun createLayout(final String text) {
+
+        int visible = 0;
+        for (int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if (c != '\n' && getGlyph(c).isVisible()) {
+                visible++ ;
+            }
+        }
+
+        Glyph[] runGlyphs = new Glyph[visible];
+        float[] xs = new float[visible], ys = new float[visible];
+        float x = 0, y = 0, width = 0;
+        int n = 0;
+        for (int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                width = Math.max(width, x);
+                x = 0;
+                y += lineHeight;
+                continue;
+            }
+            Glyph glyph = getGlyph(c);
+            if (glyph.isVisible()) {
+                runGlyphs[n] = glyph;
+                xs[n] = x + glyph.xoff;
+                ys[n] = y + glyph.yoff;
+                n++ ;
+            }
+            x += glyph.advance;
+        }
+        width = Math.max(width, x);
+        return new GlyphRun(text, runGlyphs, xs, ys, width, y + lineHeight);
+    }
+
+    private Glyph rasterize(final char c) {
+
+        String str = String.valueOf(c);
+        GlyphVector gv = font.createGlyphVector(frc, str);
+        float advance = gv.getGlyphMetrics(0).getAdvanceX();
+        Rectangle bounds = gv.getPixelBounds(frc, 0, 0);
+        if (bounds.isEmpty()) {
+            return new Glyph(c, null, 0, 0, advance);
+        }
+
+        int wt = bounds.width + 2 * GLYPH_BORDER, ht = bounds.height + 2 * GLYPH_BORDER;
+        BufferedImage img = new BufferedImage(wt, ht, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = createGraphics(img);
+        g.setColor(Color.WHITE);
+        g.drawGlyphVector(gv, GLYPH_BORDER - bounds.x, GLYPH_BORDER - bounds.y);
+        g.dispose();
+
+        AtlasRegion region = atlas.addGlyphImage(str, img);
+        return new Glyph(c, region, bounds.x - GLYPH_BORDER, bounds.y - GLYPH_BORDER, advance);
+    }
+
+    private Graphics2D createGraphics(final BufferedImage img) {
+
+        Graphics2D g = img.createGraphics();
+        g.setFont(font);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                           (antialias) ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+                                           : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        return g;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+/**
+ * The laid out visible glyphs of a string, created by
+ * {@link GlyphAtlas#layout(String)}. Glyph positions are the top-left corners
+ * of the glyph images in font pixels, relative to the start of the first
+ * line's baseline with y increasing downward. A GlyphRun is immutable, so runs
+ * for static strings can be cached and drawn any number of times.
+ *
+ * @author Brian Groenke
+ *
+ */
+public final class GlyphRun {
+
+    final String text;
+    final Glyph[] glyphs;
+    final float[] xs, ys;
+    final float width, height;
+
+    GlyphRun(final String text, final Glyph[] glyphs, final float[] xs, final float[] ys, final float width,
+             final float height) {
+
+        this.text = text;
+        this.glyphs = glyphs;
+        this.xs = xs;
+        this.ys = ys;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getText() {
+
+        return text;
+    }
+
+    /**
+     * @return the number of visible glyphs in this run
+     */
+    public int getGlyphCount() {
+
+        return glyphs.length;
+    }
+
+    public Glyph getGlyph(final int i) {
+
+        return glyphs[i];
+    }
+
+    public float getGlyphX(final int i) {
+
+        return xs[i];
+    }
+
+    public float getGlyphY(final int i) {
+
+        return ys[i];
+    }
+
+    /**
+     * @return the advance width of the longest line
+     */
+    public float getWidth() {
+
+        return width;
+    }
+
+    /**
+     * @return the total height of all lines
+     */
+    public float getHeight() {
+
+        return height;
+    }
+}
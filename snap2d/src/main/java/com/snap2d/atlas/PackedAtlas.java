@@ -0,0 +1,60 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.snap2d.editor.SpriteData;
+
+/**
+ * The result of loading a pre-built atlas with {@link AtlasIO#load}: the
+ * restored TextureAtlas and the collision outline data of any sprites that
+ * were packed with a SpriteData file.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class PackedAtlas {
+
+    private final TextureAtlas atlas;
+    private final Map<String, SpriteData> spriteData;
+
+    PackedAtlas(final TextureAtlas atlas, final Map<String, SpriteData> spriteData) {
+
+        this.atlas = atlas;
+        this.spriteData = Collections.unmodifiableMap(spriteData);
+    }
+
+    public TextureAtlas getAtlas() {
+
+        return atlas;
+    }
+
+    /**
+     * @param name
+     * @return the sprite data for the image with the given name, or null if it
+     *         was packed without an outline. The returned SpriteData's
+     *         <code>loadedImage</code> shares its pixel data with the atlas
+     *         page.
+     */
+    public SpriteData getSpriteData(final String name) {
+
+        return spriteData.get(name);
+    }
+
+    public Map<String, SpriteData> getAllSpriteData() {
+
+        return spriteData;
+    }
+}
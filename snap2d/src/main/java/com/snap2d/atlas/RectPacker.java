@@ -0,0 +1,206 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.atlas;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangle bin packer based on the MaxRects algorithm using the "best short
+ * side fit" heuristic. The packer tracks the maximal free rectangles of a
+ * fixed size bin; rectangles can be inserted and freed incrementally. Freed
+ * space becomes available for new insertions immediately, but it is not
+ * merged with neighboring free space, so a bin that sees a lot of churn
+ * should be periodically rebuilt by {@link #reset()} and re-inserting its
+ * contents (largest first).
+ *
+ * @author Brian Groenke
+ *
+ */
+public class RectPacker {
+
+    private final int width, height;
+    private final List<Rectangle> freeRects = new ArrayList<>();
+
+    private long usedArea;
+
+    public RectPacker(final int width, final int height) {
+
+        if (width <= 0 || height <= 0) {
+            throw (new IllegalArgumentException("bin dimensions must be > 0"));
+        }
+        this.width = width;
+        this.height = height;
+        reset();
+    }
+
+    /**
+     * Finds space for a rectangle of the given size and marks it as used.
+     *
+     * @param wt
+     * @param ht
+     * @return the bounds of the placed rectangle, or null if there is no free
+     *         space large enough to hold it
+     */
+    public Rectangle insert(final int wt, final int ht) {
+
+        if (wt <= 0 || ht <= 0) {
+            throw (new IllegalArgumentException("rectangle dimensions must be > 0"));
+        }
+        Rectangle best = null;
+        int bestShort = Integer.MAX_VALUE, bestLong = Integer.MAX_VALUE;
+        for (int i = 0; i < freeRects.size(); i++ ) {
+            Rectangle free = freeRects.get(i);
+            if (free.width < wt || free.height < ht) {
+                continue;
+            }
+            int leftoverX = free.width - wt, leftoverY = free.height - ht;
+            int shortSide = Math.min(leftoverX, leftoverY), longSide = Math.max(leftoverX, leftoverY);
+            if (shortSide < bestShort || (shortSide == bestShort && longSide < bestLong)) {
+                best = free;
+                bestShort = shortSide;
+                bestLong = longSide;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        Rectangle node = new Rectangle(best.x, best.y, wt, ht);
+        place(node);
+        return node;
+    }
+
+    /**
+     * Marks a rectangle at a fixed position as used, e.g. when restoring the
+     * layout of a previously packed bin. The rectangle should not overlap any
+     * other used rectangle.
+     *
+     * @param used
+     */
+    public void occupy(final Rectangle used) {
+
+        place(new Rectangle(used));
+    }
+
+    /**
+     * Returns the area occupied by the given rectangle to the pool of free
+     * space. The rectangle should be one previously returned by
+     * {@link #insert(int, int)}.
+     *
+     * @param used
+     */
+    public void free(final Rectangle used) {
+
+        freeRects.add(new Rectangle(used));
+        usedArea -= (long) used.width * used.height;
+        pruneFreeList();
+    }
+
+    /**
+     * Discards all placed rectangles so the full bin is free again.
+     */
+    public void reset() {
+
+        freeRects.clear();
+        freeRects.add(new Rectangle(0, 0, width, height));
+        usedArea = 0;
+    }
+
+    /**
+     * @return the fraction of the bin area currently in use, 0-1
+     */
+    public float getOccupancy() {
+
+        return (float) usedArea / ((long) width * height);
+    }
+
+    public int getWidth() {
+
+        return width;
+    }
+
+    public int getHeight() {
+
+        return height;
+    }
+
+    private void place(final Rectangle node) {
+
+        for (int i = 0; i < freeRects.size(); i++ ) {
+            if (splitFreeNode(freeRects.get(i), node)) {
+                freeRects.remove(i-- );
+            }
+        }
+        pruneFreeList();
+        usedArea += (long) node.width * node.height;
+    }
+
+    /*
+     * Splits 'free' into the (up to four) maximal rectangles left over around
+     * 'used' and appends them to the free list. Returns false if the two
+     * rectangles do not intersect and 'free' should be kept as is.
+     */
+    private boolean splitFreeNode(final Rectangle free, final Rectangle used) {
+
+        if (used.x >= free.x + free.width || used.x + used.width <= free.x || used.y >= free.y + free.height
+                        || used.y + used.height <= free.y) {
+            return false;
+        }
+
+        if (used.x < free.x + free.width && used.x + used.width > free.x) {
+            // space above the used node
+            if (used.y > free.y && used.y < free.y + free.height) {
+                freeRects.add(new Rectangle(free.x, free.y, free.width, used.y - free.y));
+            }
+            // space below the used node
+            if (used.y + used.height < free.y + free.height) {
+                int y = used.y + used.height;
+                freeRects.add(new Rectangle(free.x, y, free.width, free.y + free.height - y));
+            }
+        }
+
+        if (used.y < free.y + free.height && used.y + used.height > free.y) {
+            // space to the left of the used node
+            if (used.x > free.x && used.x < free.x + free.width) {
+                freeRects.add(new Rectangle(free.x, free.y, used.x - free.x, free.height));
+            }
+            // space to the right of the used node
+            if (used.x + used.width < free.x + free.width) {
+                int x = used.x + used.width;
+                freeRects.add(new Rectangle(x, free.y, free.x + free.width - x, free.height));
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Removes all free rectangles that are fully contained by another.
+     */
+    private void pruneFreeList() {
+
+        for (int i = 0; i < freeRects.size(); i++ ) {
+            for (int j = i + 1; j < freeRects.size(); j++ ) {
+                Rectangle a = freeRects.get(i), b = freeRects.get(j);
+                if (b.contains(a)) {
+                    freeRects.remove(i-- );
+                    break;
+                }
+                if (a.contains(b)) {
+                    freeRects.remove(j-- );
+                }
+            }
+        }
+    }
+}
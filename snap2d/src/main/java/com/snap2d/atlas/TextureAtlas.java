@@ -2,92 +2,373 @@ package com.snap2d.atlas;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.snap2d.ImageRef;
 
+/**
+ * Packs many small images into a few large texture pages so that sprites can
+ * be rendered from a handful of textures with far fewer texture binds. Images
+ * are packed incrementally into the first page with enough free space; a new
+ * page is created when none of the existing pages can fit an image. Images can
+ * be looked up by name as {@link AtlasRegion}s, which know how to bind their
+ * page and set the texture coordinates on a GLHandle.<br/>
+ * <br/>
+ * Removing images frees their space for new images, but repeated adds and
+ * removes will fragment the pages over time. Calling {@link #update()}
+ * re-packs all images from scratch (largest first), compacting the atlas.
+ * Changes to the pages are uploaded lazily the next time their textures are
+ * requested from the GL thread.<br/>
+ * <br/>
+ * As an ImageRef, the atlas refers to the image of its first page.
+ *
+ * @author Brian Groenke
+ *
+ */
 public class TextureAtlas implements ImageRef {
 
-    private final int width, height;
-    private final Set<Rectangle> innerTexBounds;
-    private final Set<InnerTextureData> innerTexData;
+    public static final int DEFAULT_PADDING = 1;
 
-    private BufferedImage atlasImage;
-    private boolean invalidated = false;
+    private final int width, height, padding, maxPages;
+    private final boolean mipmap;
+    private final List<AtlasPage> pages = new ArrayList<>();
+    private final Map<String, InnerTextureData> innerTexData = new HashMap<>();
 
-    public TextureAtlas(int width, int height) {
+    public TextureAtlas(final int width, final int height) {
+
+        this(width, height, DEFAULT_PADDING, 0, false);
+    }
+
+    /**
+     * @param width
+     *            width of each atlas page
+     * @param height
+     *            height of each atlas page
+     * @param padding
+     *            number of transparent pixels kept between packed images to
+     *            avoid bleeding when the texture is filtered
+     * @param maxPages
+     *            maximum number of pages the atlas may grow to; 0 for no limit
+     * @param mipmap
+     *            true if page textures should be mipmapped
+     */
+    public TextureAtlas(final int width, final int height, final int padding, final int maxPages, final boolean mipmap) {
+
+        if (width <= 0 || height <= 0) {
+            throw (new IllegalArgumentException("atlas page dimensions must be > 0"));
+        }
+        if (padding < 0 || maxPages < 0) {
+            throw (new IllegalArgumentException("padding and maxPages must be >= 0"));
+        }
         this.width = width;
         this.height = height;
-        this.innerTexBounds = new HashSet<>();
-        innerTexData = new HashSet<>();
-        atlasImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        atlasImage.setAccelerationPriority(1.0f);
+        this.padding = padding;
+        this.maxPages = maxPages;
+        this.mipmap = mipmap;
     }
 
     /**
-     * Adds an ImageRef to this atlas. The position of the image in the atlas
-     * will be algorithmically determined when TextureAtlas is updated.
-     * 
+     * Adds an ImageRef to this atlas. The image is packed into the first page
+     * with enough free space, or into a new page if no existing page can hold
+     * it. If an image with the same name is already in the atlas, it is
+     * replaced once the new image has been packed, so the atlas must have room
+     * for both; if packing fails, the existing image is left in place.
+     *
      * @param name
      * @param img
+     * @return the region the image was packed into
+     * @throws IllegalArgumentException
+     *             if the image is larger than an atlas page
+     * @throws IllegalStateException
+     *             if the image does not fit and the page limit has been reached
      */
-    public void addImageToAtlas(String name, ImageRef img) {
+    public synchronized AtlasRegion addImageToAtlas(final String name, final ImageRef img) {
+
+        BufferedImage src = img.asBufferedImage();
+        if (src.getWidth() + padding > width || src.getHeight() + padding > height) {
+            throw (new IllegalArgumentException("image '" + name + "' is too large for an atlas page of size " + width
+                            + "x" + height));
+        }
         InnerTextureData data = new InnerTextureData();
         data.imgRef = img;
         data.name = name;
+        data.region = pack(name, src);
+        removeImageFromAtlas(name);
+        innerTexData.put(name, data);
+        return data.region;
     }
 
     /**
-     * Removes the sub-image added to this atlas with the given 'name'
-     * 
+     * Removes the sub-image added to this atlas with the given 'name'. The
+     * image's region is invalidated and its space is freed for new images.
+     *
      * @param name
+     * @return true if an image was removed, false if there was no image with
+     *         the given name
      */
-    public void removeImageFromAtlas(String name) {
-        innerTexData.remove(name);
+    public synchronized boolean removeImageFromAtlas(final String name) {
+
+        InnerTextureData data = innerTexData.remove(name);
+        if (data == null) {
+            return false;
+        }
+        AtlasRegion region = data.region;
+        region.page.clear(region.bounds);
+        region.page.release(region.slot);
+        region.page.regions.remove(region);
+        region.valid = false;
+        return true;
     }
 
+    /**
+     * @param name
+     * @return the region for the image with the given name, or null if there is
+     *         no such image in this atlas
+     */
+    public synchronized AtlasRegion getRegion(final String name) {
+
+        InnerTextureData data = innerTexData.get(name);
+        return (data != null) ? data.region : null;
+    }
+
+    public synchronized boolean contains(final String name) {
+
+        return innerTexData.containsKey(name);
+    }
+
+    public synchronized int getPageCount() {
+
+        return pages.size();
+    }
+
+    public synchronized AtlasPage getPage(final int index) {
+
+        return pages.get(index);
+    }
+
+    public synchronized int getImageCount() {
+
+        return innerTexData.size();
+    }
+
+    public int getPageWidth() {
+
+        return width;
+    }
+
+    public int getPageHeight() {
+
+        return height;
+    }
+
+    /**
+     * @return the image of the first page, which is created if the atlas has
+     *         no pages yet
+     */
     @Override
-    public BufferedImage asBufferedImage() {
-        return atlasImage;
+    public synchronized BufferedImage asBufferedImage() {
+
+        if (pages.isEmpty()) {
+            pages.add(new AtlasPage(0, width, height, mipmap));
+        }
+        return pages.get(0).asBufferedImage();
     }
 
+    /**
+     * @return the width of a page
+     */
     @Override
     public int imageWidth() {
+
         return width;
     }
 
+    /**
+     * @return the height of a page
+     */
     @Override
     public int imageHeight() {
+
         return height;
     }
 
+    /**
+     * Re-packs all images in this atlas from scratch, compacting the pages.
+     * Existing regions are updated in place, so previously fetched
+     * AtlasRegion objects remain valid. Pages left empty after re-packing are
+     * kept so that their textures can be reused.
+     */
     @Override
-    public void update() {
+    public synchronized void update() {
+
         layoutAndRepaintAtlas();
     }
 
+    /**
+     * Destroys the textures of all pages. Must be called from the GL thread.
+     */
+    public synchronized void dispose() {
+
+        for (AtlasPage page : pages) {
+            page.dispose();
+        }
+    }
+
+    public int getPadding() {
+
+        return padding;
+    }
+
+    /*
+     * Packs an image that is only kept in the page data, not as a separate
+     * ImageRef; re-packing reads it back from the page. Used by GlyphAtlas.
+     */
+    synchronized AtlasRegion addGlyphImage(final String name, final BufferedImage img) {
+
+        if (img.getWidth() + padding > width || img.getHeight() + padding > height) {
+            throw (new IllegalArgumentException("glyph '" + name + "' is too large for an atlas page of size "
+                            + width + "x" + height));
+        }
+        InnerTextureData data = new InnerTextureData();
+        data.name = name;
+        data.region = pack(name, img);
+        removeImageFromAtlas(name);
+        innerTexData.put(name, data);
+        return data.region;
+    }
+
+    /*
+     * Appends a page with already packed image data. Used by AtlasIO when
+     * restoring an atlas from its binary format.
+     */
+    synchronized AtlasPage addPackedPage(final BufferedImage image) {
+
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw (new IllegalArgumentException("page image must be " + width + "x" + height));
+        }
+        AtlasPage page = new AtlasPage(pages.size(), image, mipmap);
+        pages.add(page);
+        return page;
+    }
+
+    /*
+     * Registers an image that is already painted on the given page at the given
+     * bounds. Used by AtlasIO when restoring an atlas from its binary format.
+     */
+    synchronized AtlasRegion addPackedRegion(final String name, final int pageIndex, final Rectangle bounds) {
+
+        AtlasPage page = pages.get(pageIndex);
+        Rectangle slot = new Rectangle(bounds.x, bounds.y, Math.min(bounds.width + padding, width - bounds.x),
+                        Math.min(bounds.height + padding, height - bounds.y));
+        page.occupy(slot);
+        AtlasRegion region = new AtlasRegion(name, page, new Rectangle(bounds), slot);
+        page.regions.add(region);
+
+        InnerTextureData data = new InnerTextureData();
+        data.name = name;
+        data.region = region;
+        innerTexData.put(name, data);
+        return region;
+    }
+
     private void layoutAndRepaintAtlas() {
 
+        List<InnerTextureData> sorted = new ArrayList<>(innerTexData.values());
+        // snapshot images that only exist in the page data before clearing
+        Map<InnerTextureData, BufferedImage> sources = new HashMap<>();
+        for (InnerTextureData data : sorted) {
+            sources.put(data, data.getSourceImage());
+        }
+        Collections.sort(sorted, new Comparator<InnerTextureData>() {
+
+            @Override
+            public int compare(final InnerTextureData d0, final InnerTextureData d1) {
+
+                Rectangle b0 = d0.region.bounds, b1 = d1.region.bounds;
+                int side0 = Math.max(b0.width, b0.height), side1 = Math.max(b1.width, b1.height);
+                if (side0 != side1) {
+                    return side1 - side0;
+                }
+                return b1.width * b1.height - b0.width * b0.height;
+            }
+        });
+
+        for (AtlasPage page : pages) {
+            page.reset();
+        }
+        for (InnerTextureData data : sorted) {
+            AtlasRegion old = data.region;
+            AtlasRegion packed = pack(data.name, sources.get(data));
+            // move the new placement into the existing region object
+            packed.page.regions.remove(packed);
+            packed.page.regions.add(old);
+            old.page = packed.page;
+            old.bounds = packed.bounds;
+            old.slot = packed.slot;
+        }
+    }
+
+    /*
+     * Finds space for the image on an existing page or a new page, paints it
+     * and returns the new region.
+     */
+    private AtlasRegion pack(final String name, final BufferedImage src) {
+
+        int wt = src.getWidth(), ht = src.getHeight();
+        for (AtlasPage page : pages) {
+            AtlasRegion region = packInto(page, name, src, wt, ht);
+            if (region != null) {
+                return region;
+            }
+        }
+        if (maxPages > 0 && pages.size() >= maxPages) {
+            throw (new IllegalStateException("texture atlas full: no space for '" + name + "' in " + maxPages
+                            + " pages"));
+        }
+        AtlasPage page = new AtlasPage(pages.size(), width, height, mipmap);
+        pages.add(page);
+        return packInto(page, name, src, wt, ht);
+    }
+
+    private AtlasRegion packInto(final AtlasPage page,
+                                 final String name,
+                                 final BufferedImage src,
+                                 final int wt,
+                                 final int ht) {
+
+        Rectangle slot = page.allocate(wt + padding, ht + padding);
+        if (slot == null) {
+            return null;
+        }
+        Rectangle bounds = new Rectangle(slot.x, slot.y, wt, ht);
+        AtlasRegion region = new AtlasRegion(name, page, bounds, slot);
+        page.regions.add(region);
+        page.paint(src, bounds);
+        return region;
     }
 
     private class InnerTextureData {
+
         ImageRef imgRef;
         String name;
-        Rectangle bounds;
-
-        // Override hashCode and equals so that InnerTextureData can be
-        // identified solely by its name.
+        AtlasRegion region;
 
-        @Override
-        public int hashCode() {
-            return name.hashCode();
-        }
+        BufferedImage getSourceImage() {
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null || ! (obj instanceof InnerTextureData)) return false;
-            return ((InnerTextureData) obj).name.equals(this.name);
+            if (imgRef != null) {
+                return imgRef.asBufferedImage();
+            }
+            Rectangle b = region.bounds;
+            BufferedImage pageImg = region.page.asBufferedImage();
+            BufferedImage copy = new BufferedImage(b.width, b.height, BufferedImage.TYPE_INT_ARGB);
+            copy.setRGB(0, 0, b.width, b.height, pageImg.getRGB(b.x, b.y, b.width, b.height, null, 0, b.width), 0,
+                        b.width);
+            return copy;
         }
     }
 }
@@ -0,0 +1,34 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.awt.Rectangle;
+
+/**
+ * A Renderable that declares the screen area it draws to, allowing the
+ * renderer to skip it for parts of the screen it does not touch.
+ *
+ * @author Brian Groenke
+ *
+ */
+public interface BoundedRenderable extends Renderable {
+
+    /**
+     * Called once per frame before rendering.
+     *
+     * @return the screen space bounds of everything this Renderable will draw
+     *         on the next call to render, or null if it may draw anywhere on
+     *         screen.
+     */
+    public Rectangle getRenderBounds();
+}
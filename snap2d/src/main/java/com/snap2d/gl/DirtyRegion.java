@@ -0,0 +1,232 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of screen rectangles that need to be redrawn. Overlapping rectangles
+ * are merged as they are added. Once the region covers most of the screen, or
+ * becomes too fragmented, it collapses to "full", meaning the whole screen
+ * should be redrawn; at that point redrawing rectangle by rectangle would cost
+ * more than a plain full redraw.<br/>
+ * <br/>
+ * DirtyRegion is not thread safe.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class DirtyRegion {
+
+    /**
+     * Maximum number of separate rectangles kept before they are merged into
+     * their union.
+     */
+    public static final int MAX_RECTS = 16;
+
+    /**
+     * Fraction of the screen area above which the region is treated as full.
+     */
+    public static final float FULL_THRESHOLD = 0.5f;
+
+    private final List<Rectangle> rects = new ArrayList<Rectangle>();
+    private int width, height;
+    private boolean full;
+
+    public DirtyRegion(final int width, final int height) {
+
+        setSize(width, height);
+    }
+
+    /**
+     * Sets the screen size this region is clipped to. Resizing marks the whole
+     * region dirty.
+     *
+     * @param width
+     * @param height
+     */
+    public void setSize(final int width, final int height) {
+
+        if (this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            markAll();
+        }
+    }
+
+    /**
+     * Adds the given rectangle to the dirty region. The rectangle is copied.
+     *
+     * @param rect
+     */
+    public void add(final Rectangle rect) {
+
+        add(rect.x, rect.y, rect.width, rect.height);
+    }
+
+    public void add(final int x, final int y, final int wt, final int ht) {
+
+        if (full) {
+            return;
+        }
+        // clip to the screen
+        int x0 = Math.max(x, 0), y0 = Math.max(y, 0);
+        int x1 = Math.min(x + wt, width), y1 = Math.min(y + ht, height);
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        Rectangle merged = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        // merge with any overlapping rectangles until nothing else overlaps
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = rects.size() - 1; i >= 0; i-- ) {
+                Rectangle r = rects.get(i);
+                if (r.contains(merged)) {
+                    return;
+                }
+                if (r.intersects(merged)) {
+                    merged.add(r);
+                    rects.remove(i);
+                    changed = true;
+                }
+            }
+        }
+        rects.add(merged);
+        if (rects.size() > MAX_RECTS) {
+            collapse();
+        }
+        checkFull();
+    }
+
+    /**
+     * Adds everything in the given region to this region.
+     *
+     * @param other
+     */
+    public void add(final DirtyRegion other) {
+
+        if (other.full) {
+            markAll();
+            return;
+        }
+        for (Rectangle r : other.rects) {
+            add(r);
+        }
+    }
+
+    /**
+     * Marks the whole screen dirty.
+     */
+    public void markAll() {
+
+        full = true;
+        rects.clear();
+    }
+
+    /**
+     * Resets this region to empty.
+     */
+    public void clear() {
+
+        full = false;
+        rects.clear();
+    }
+
+    public boolean isFull() {
+
+        return full;
+    }
+
+    public boolean isEmpty() {
+
+        return !full && rects.isEmpty();
+    }
+
+    /**
+     * @param rect
+     * @return true if any part of 'rect' is dirty; if rect is null, returns
+     *         true if the region is not empty
+     */
+    public boolean intersects(final Rectangle rect) {
+
+        if (full) {
+            return true;
+        }
+        if (rect == null) {
+            return !rects.isEmpty();
+        }
+        for (int i = 0; i < rects.size(); i++ ) {
+            if (rects.get(i).intersects(rect)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of separate dirty rectangles; undefined when full
+     */
+    public int getRectCount() {
+
+        return rects.size();
+    }
+
+    /**
+     * @param i
+     * @return the i'th dirty rectangle; callers must not modify it
+     */
+    public Rectangle getRect(final int i) {
+
+        return rects.get(i);
+    }
+
+    /**
+     * @return the bounding box of the dirty region, or null if it is empty
+     */
+    public Rectangle getBounds() {
+
+        if (full) {
+            return new Rectangle(0, 0, width, height);
+        }
+        if (rects.isEmpty()) {
+            return null;
+        }
+        Rectangle bounds = new Rectangle(rects.get(0));
+        for (int i = 1; i < rects.size(); i++ ) {
+            bounds.add(rects.get(i));
+        }
+        return bounds;
+    }
+
+    private void collapse() {
+
+        Rectangle union = getBounds();
+        rects.clear();
+        rects.add(union);
+    }
+
+    private void checkFull() {
+
+        long area = 0;
+        for (int i = 0; i < rects.size(); i++ ) {
+            Rectangle r = rects.get(i);
+            area += (long) r.width * r.height;
+        }
+        if (area > FULL_THRESHOLD * width * height) {
+            markAll();
+        }
+    }
+}
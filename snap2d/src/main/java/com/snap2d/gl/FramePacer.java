@@ -0,0 +1,185 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for frame deadlines in the render loops without burning a core. Most
+ * of the wait is spent parked with {@link LockSupport#parkNanos(long)}; only
+ * the last stretch before the deadline, which the OS timer can't be trusted to
+ * hit, is spent spinning. The length of that final spin adapts to how late
+ * parks have been waking up on this machine.<br/>
+ * <br/>
+ * FramePacer also keeps statistics of how late each deadline was actually
+ * reached (jitter). Statistics may be read from any thread; waiting must only
+ * be done by one thread.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class FramePacer {
+
+    /**
+     * Lower and upper bounds for the final spin, in nanoseconds.
+     */
+    public static final long MIN_SPIN_NANOS = 100000, MAX_SPIN_NANOS = 4000000;
+
+    private static final long INITIAL_SPIN_NANOS = 1000000;
+
+    // estimated park oversleep, in nanoseconds (exponential moving average)
+    private long parkOvershoot = INITIAL_SPIN_NANOS / 2;
+    private volatile long spinNanos = INITIAL_SPIN_NANOS;
+    private volatile boolean spinOnly;
+
+    // jitter statistics
+    private long count, total, max;
+    private double sumSquares;
+
+    /**
+     * Blocks until System.nanoTime() reaches the given deadline. Returns
+     * immediately if the deadline has already passed.
+     *
+     * @param deadline
+     *            the target time, in System.nanoTime() units
+     * @return the value of System.nanoTime() on return
+     */
+    public long awaitDeadline(final long deadline) {
+
+        long now = System.nanoTime();
+        if (now >= deadline) {
+            return now;
+        }
+        if ( !spinOnly) {
+            long spin = spinNanos;
+            while (deadline - now > spin) {
+                long request = deadline - now - spin;
+                LockSupport.parkNanos(request);
+                long woke = System.nanoTime();
+                adjustSpin(woke - now - request);
+                now = woke;
+                if (Thread.interrupted()) {
+                    // parkNanos returns immediately while interrupted; keep the
+                    // status for the caller and finish by spinning
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        while (now < deadline) {
+            now = System.nanoTime();
+        }
+        record(now - deadline);
+        return now;
+    }
+
+    /**
+     * If true, deadlines are always waited for by spinning, as the render
+     * loops did before FramePacer. This gives the lowest jitter at the cost of
+     * keeping a core busy. False by default.
+     *
+     * @param spinOnly
+     */
+    public void setSpinOnly(final boolean spinOnly) {
+
+        this.spinOnly = spinOnly;
+    }
+
+    public boolean isSpinOnly() {
+
+        return spinOnly;
+    }
+
+    /**
+     * @return the current length of the final spin before each deadline, in
+     *         nanoseconds
+     */
+    public long getSpinNanos() {
+
+        return spinNanos;
+    }
+
+    /**
+     * @return the number of deadlines waited for since the last reset
+     */
+    public synchronized long getSampleCount() {
+
+        return count;
+    }
+
+    /**
+     * @return mean time past the deadline at which waits returned, in
+     *         nanoseconds
+     */
+    public synchronized double getMeanJitter() {
+
+        return (count > 0) ? (double) total / count : 0;
+    }
+
+    /**
+     * @return standard deviation of the time past the deadline at which waits
+     *         returned, in nanoseconds
+     */
+    public synchronized double getJitterStdDev() {
+
+        if (count == 0) {
+            return 0;
+        }
+        double mean = (double) total / count;
+        return Math.sqrt(Math.max(0, sumSquares / count - mean * mean));
+    }
+
+    /**
+     * @return largest time past the deadline at which a wait returned, in
+     *         nanoseconds
+     */
+    public synchronized long getMaxJitter() {
+
+        return max;
+    }
+
+    public synchronized void resetStatistics() {
+
+        count = 0;
+        total = 0;
+        max = 0;
+        sumSquares = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        return String.format("FramePacer[samples=%d, mean=%.1fus, stddev=%.1fus, max=%.1fus, spin=%.1fus]", count,
+                             getMeanJitter() / 1000, getJitterStdDev() / 1000, max / 1000.0, spinNanos / 1000.0);
+    }
+
+    private synchronized void record(final long late) {
+
+        count++ ;
+        total += late;
+        sumSquares += (double) late * late;
+        if (late > max) {
+            max = late;
+        }
+    }
+
+    /*
+     * Spin for twice the average oversleep so that most parks wake up before
+     * the deadline.
+     */
+    private void adjustSpin(final long overshoot) {
+
+        parkOvershoot += (Math.max(0, overshoot) - parkOvershoot) / 8;
+        spinNanos = Math.max(MIN_SPIN_NANOS, Math.min(MAX_SPIN_NANOS, parkOvershoot * 2));
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records per-frame timings of a render loop: total frame time, time spent in
+ * update and render, GC pause time and bytes allocated by the loop thread, as
+ * well as the update and render time of each individual Renderable. Samples
+ * are kept in fixed size ring buffers, so only the most recent frames are
+ * available; recording never blocks and never allocates once a Renderable has
+ * been seen. The samples of a Renderable are kept until it is passed to
+ * {@link #remove(Object)}, which render controllers do when it leaves their
+ * render queue.<br/>
+ * <br/>
+ * Profiling is disabled by default and costs nothing but a volatile read per
+ * frame while disabled. Summaries ({@link #getSummary(Metric)}) and dumps
+ * ({@link #dump(File)}) may be taken from any thread while the loop is
+ * running.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class FrameProfiler {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Per-frame values recorded by the profiler. Times are in nanoseconds,
+     * allocation in bytes.
+     */
+    public enum Metric {
+        FRAME, UPDATE, RENDER, GC_PAUSE, ALLOCATED;
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final int capacity;
+    private final Series[] frameSeries;
+    private final ConcurrentHashMap<Object, Series[]> renderableSeries = new ConcurrentHashMap<Object, Series[]>();
+
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private volatile boolean enabled;
+
+    // loop thread state for the frame in progress
+    private long frameStart, updateNanos, renderNanos, gcStart, allocStart;
+
+    public FrameProfiler() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            number of frames (and samples per Renderable) to keep; rounded
+     *            up to a power of two
+     */
+    public FrameProfiler(final int capacity) {
+
+        if (capacity <= 0) {
+            throw (new IllegalArgumentException("capacity must be > 0"));
+        }
+        this.capacity = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        frameSeries = new Series[METRICS.length];
+        for (int i = 0; i < frameSeries.length; i++ ) {
+            frameSeries[i] = new Series(this.capacity);
+        }
+    }
+
+    public void setEnabled(final boolean enabled) {
+
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Discards all recorded samples.
+     */
+    public void clear() {
+
+        for (Series s : frameSeries) {
+            s.clear();
+        }
+        renderableSeries.clear();
+    }
+
+    /**
+     * Discards the samples recorded for a Renderable. Called by the render
+     * loop when the Renderable is removed. May be called from any thread.
+     *
+     * @param renderable
+     */
+    public void remove(final Object renderable) {
+
+        renderableSeries.remove(renderable);
+    }
+
+    /**
+     * Called by the render loop at the start of each loop iteration.
+     */
+    public void beginFrame() {
+
+        frameStart = System.nanoTime();
+        updateNanos = 0;
+        renderNanos = 0;
+        gcStart = gcTime();
+        allocStart = allocatedBytes();
+    }
+
+    /**
+     * Called by the render loop after the updates for this frame have run.
+     *
+     * @param nanos
+     *            total time spent updating
+     */
+    public void recordUpdatePhase(final long nanos) {
+
+        updateNanos += nanos;
+    }
+
+    /**
+     * Called by the render loop after the frame has been rendered.
+     *
+     * @param nanos
+     *            total time spent rendering
+     */
+    public void recordRenderPhase(final long nanos) {
+
+        renderNanos += nanos;
+    }
+
+    /**
+     * Called by the render loop at the end of each loop iteration, before
+     * waiting for the next frame.
+     */
+    public void endFrame() {
+
+        frameSeries[Metric.FRAME.ordinal()].add(System.nanoTime() - frameStart);
+        frameSeries[Metric.UPDATE.ordinal()].add(updateNanos);
+        frameSeries[Metric.RENDER.ordinal()].add(renderNanos);
+        frameSeries[Metric.GC_PAUSE.ordinal()].add(gcTime() - gcStart);
+        long alloc = allocatedBytes();
+        frameSeries[Metric.ALLOCATED.ordinal()].add( (alloc >= 0 && allocStart >= 0) ? alloc - allocStart : 0);
+    }
+
+    /**
+     * Records the time taken by one call to a Renderable's update method. May
+     * be called from any thread.
+     *
+     * @param renderable
+     * @param nanos
+     */
+    public void recordUpdate(final Object renderable, final long nanos) {
+
+        seriesFor(renderable)[0].add(nanos);
+    }
+
+    /**
+     * Records the time taken by one call to a Renderable's render method. May
+     * be called from any thread.
+     *
+     * @param renderable
+     * @param nanos
+     */
+    public void recordRender(final Object renderable, final long nanos) {
+
+        seriesFor(renderable)[1].add(nanos);
+    }
+
+    /**
+     * @param metric
+     * @return a summary of the recorded frames for the given metric
+     */
+    public Summary getSummary(final Metric metric) {
+
+        return frameSeries[metric.ordinal()].summarize();
+    }
+
+    /**
+     * @param renderable
+     * @param render
+     *            true for render times, false for update times
+     * @return a summary of the given Renderable's recorded times, or null if
+     *         nothing has been recorded for it
+     */
+    public Summary getRenderableSummary(final Object renderable, final boolean render) {
+
+        Series[] series = renderableSeries.get(renderable);
+        return (series != null) ? series[ (render) ? 1 : 0].summarize() : null;
+    }
+
+    /**
+     * @return the average number of bytes allocated by the loop thread per
+     *         second over the recorded frames, or 0 if unavailable
+     */
+    public double getAllocationRate() {
+
+        long[] frames = frameSeries[Metric.FRAME.ordinal()].snapshot();
+        long[] alloc = frameSeries[Metric.ALLOCATED.ordinal()].snapshot();
+        long time = 0, bytes = 0;
+        for (int i = 0; i < Math.min(frames.length, alloc.length); i++ ) {
+            time += frames[i];
+            bytes += alloc[i];
+        }
+        return (time > 0) ? bytes * 1.0e9 / time : 0;
+    }
+
+    /**
+     * Writes all recorded frames, one per line as comma separated values,
+     * followed by summaries for each metric and each Renderable.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void dump(final File file) throws IOException {
+
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            long[][] cols = new long[METRICS.length][];
+            int rows = Integer.MAX_VALUE;
+            for (int i = 0; i < METRICS.length; i++ ) {
+                cols[i] = frameSeries[i].snapshot();
+                rows = Math.min(rows, cols[i].length);
+            }
+            out.println("frame_ns,update_ns,render_ns,gc_pause_ns,allocated_bytes");
+            for (int r = 0; r < rows; r++ ) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < METRICS.length; i++ ) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    // align columns on the most recent frames
+                    sb.append(cols[i][cols[i].length - rows + r]);
+                }
+                out.println(sb);
+            }
+            out.println();
+            for (Metric m : METRICS) {
+                out.println(m + ": " + getSummary(m));
+            }
+            for (Map.Entry<Object, Series[]> e : renderableSeries.entrySet()) {
+                out.println(e.getKey() + " update: " + e.getValue()[0].summarize());
+                out.println(e.getKey() + " render: " + e.getValue()[1].summarize());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private Series[] seriesFor(final Object renderable) {
+
+        Series[] series = renderableSeries.get(renderable);
+        if (series == null) {
+            series = new Series[] {new Series(capacity), new Series(capacity)};
+            Series[] prev = renderableSeries.putIfAbsent(renderable, series);
+            if (prev != null) {
+                series = prev;
+            }
+        }
+        return series;
+    }
+
+    private long gcTime() {
+
+        long total = 0;
+        for (int i = 0; i < gcBeans.size(); i++ ) {
+            long t = gcBeans.get(i).getCollectionTime();
+            if (t > 0) {
+                total += t;
+            }
+        }
+        return total * 1000000;
+    }
+
+    private long allocatedBytes() {
+
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread()
+                            .getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Immutable statistics over a set of samples.
+     */
+    public static class Summary {
+
+        private final int count;
+        private final long p50, p99, max;
+        private final double mean;
+
+        Summary(final long[] sorted) {
+
+            this.count = sorted.length;
+            if (count == 0) {
+                p50 = p99 = max = 0;
+                mean = 0;
+                return;
+            }
+            p50 = percentile(sorted, 0.50);
+            p99 = percentile(sorted, 0.99);
+            max = sorted[count - 1];
+            double sum = 0;
+            for (long v : sorted) {
+                sum += v;
+            }
+            mean = sum / count;
+        }
+
+        public int getCount() {
+
+            return count;
+        }
+
+        public long getP50() {
+
+            return p50;
+        }
+
+        public long getP99() {
+
+            return p99;
+        }
+
+        public long getMax() {
+
+            return max;
+        }
+
+        public double getMean() {
+
+            return mean;
+        }
+
+        @Override
+        public String toString() {
+
+            return String.format("n=%d p50=%d p99=%d max=%d mean=%.1f", count, p50, p99, max, mean);
+        }
+
+        private static long percentile(final long[] sorted, final double p) {
+
+            int i = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+        }
+    }
+
+    /*
+     * Lock-free ring buffer of longs. Writers claim a slot with one atomic
+     * increment; readers copy the buffer and drop any slots that were
+     * overwritten while copying.
+     */
+    private static class Series {
+
+        final AtomicLongArray data;
+        final AtomicLong head = new AtomicLong();
+        final int mask;
+
+        Series(final int capacity) {
+
+            data = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        void add(final long value) {
+
+            long i = head.getAndIncrement();
+            data.lazySet((int) (i & mask), value);
+        }
+
+        void clear() {
+
+            head.set(0);
+        }
+
+        long[] snapshot() {
+
+            long end = head.get();
+            long start = Math.max(0, end - data.length());
+            long[] copy = new long[(int) (end - start)];
+            for (long i = start; i < end; i++ ) {
+                copy[(int) (i - start)] = data.get((int) (i & mask));
+            }
+            // anything written since 'end' may have overwritten the oldest
+            // copied slots
+            long overwritten = head.get() - data.length() - start;
+            if (overwritten > 0) {
+                copy = Arrays.copyOfRange(copy, (int) Math.min(overwritten, copy.length), copy.length);
+            }
+            return copy;
+        }
+
+        Summary summarize() {
+
+            long[] values = snapshot();
+            Arrays.sort(values);
+            return new Summary(values);
+        }
+    }
+}
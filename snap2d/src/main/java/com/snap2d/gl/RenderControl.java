@@ -16,6 +16,7 @@ import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.RenderingHints.Key;
 import java.awt.event.ComponentAdapter;
@@ -27,10 +28,9 @@ import java.awt.image.BufferedImage;
 import java.awt.image.VolatileImage;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -88,10 +88,18 @@ public class RenderControl implements RenderController {
     protected volatile VolatileImage accBuff;
     protected volatile int[] pixelData;
     protected volatile long lastResizeFinish;
-    protected volatile boolean applyGamma, updateGamma, scheduledResize;
+    protected volatile boolean applyGamma, updateGamma, scheduledResize, tiledRendering,
+                    dirtyRendering, redrawAll;
 
-    protected List<Renderable> rtasks = new ArrayList<Renderable>(), delQueue = new Vector<Renderable>();
-    protected List<QueuedRenderable> addQueue = new Vector<QueuedRenderable>();
+    protected final RenderQueue<Renderable> renderQueue = new RenderQueue<Renderable>(Renderable.class) {
+
+        @Override
+        protected void onRemoved(final Renderable r) {
+
+            profiler.remove(r);
+        }
+    };
+    protected ConcurrentLinkedQueue<Rectangle> dirtyQueue = new ConcurrentLinkedQueue<Rectangle>();
     protected RenderLoop loop;
     protected ThreadManager exec = new ThreadManager();
     protected AutoResize autoResize;
@@ -101,6 +109,7 @@ public class RenderControl implements RenderController {
     protected float gamma = 1.0f;
 
     protected GammaTable gammaTable = new GammaTable(gamma);
+    protected final FrameProfiler profiler = new FrameProfiler();
     protected Map<RenderingHints.Key, Object> renderOps;
 
     private final Semaphore loopChk = new Semaphore(1, true);
@@ -233,9 +242,8 @@ public class RenderControl implements RenderController {
         if (bs != null) {
             bs.dispose();
         }
-        rtasks.clear();
-        addQueue.clear();
-        delQueue.clear();
+        renderQueue.clear();
+        profiler.clear();
         renderOps.clear();
         // pri.flush();
         if (accBuff != null) {
@@ -277,6 +285,26 @@ public class RenderControl implements RenderController {
         return loop.tps;
     }
 
+    /**
+     * @return the FramePacer used by the render loop to wait between frames;
+     *         can be used to query frame timing jitter
+     */
+    public FramePacer getFramePacer() {
+
+        return loop.pacer;
+    }
+
+    /**
+     * @return the FrameProfiler for this controller's render loop; profiling
+     *         is disabled until {@link FrameProfiler#setEnabled(boolean)} is
+     *         called
+     */
+    @Override
+    public FrameProfiler getFrameProfiler() {
+
+        return profiler;
+    }
+
     /**
      * Sets the frame rate that the rendering algorithm will target when
      * interpolating.
@@ -333,21 +361,22 @@ public class RenderControl implements RenderController {
         }
     }
 
-    @Deprecated
     /**
-     * No longer supported.
-     * Enables/disables gamma correction on the rendered image.
+     * Enables/disables gamma correction on the rendered image. Gamma
+     * correction is only applied by the tiled renderer (see
+     * {@link #setTiledRendering(boolean)}), where each tile is corrected with a
+     * lookup table right after it is rendered. It is ignored by the default
+     * VolatileImage renderer.
      * 
      * @param enabled
      */
     public void setGammaCorrectionEnabled(final boolean enabled) {
 
         applyGamma = enabled;
+        redrawAll = true;
     }
 
-    @Deprecated
     /**
-     * No longer supported.
      * @return true if gamma correction is enabled, false otherwise.
      */
     public boolean isGammaEnabled() {
@@ -355,6 +384,83 @@ public class RenderControl implements RenderController {
         return applyGamma;
     }
 
+    /**
+     * Enables or disables parallel tiled software rendering. When enabled, each
+     * frame is split into tiles that are rendered concurrently on the render
+     * thread pool into an int[] backed image (see {@link TiledRasterizer}),
+     * instead of rendering serially into a VolatileImage. This scales with the
+     * number of cores and does not rely on a GPU, but Renderables must be safe
+     * to render from multiple threads at once. Renderables implementing
+     * {@link BoundedRenderable} are only rendered in the tiles they overlap.
+     * The frame profiler does not record per-Renderable render times in this
+     * mode. False by default.
+     *
+     * @param enabled
+     */
+    public void setTiledRendering(final boolean enabled) {
+
+        tiledRendering = enabled;
+    }
+
+    public boolean isTiledRendering() {
+
+        return tiledRendering;
+    }
+
+    /**
+     * Enables or disables incremental (dirty rectangle) rendering. When
+     * enabled, only the parts of the frame that changed since the last frame
+     * are cleared and redrawn; the rest of the back buffer is kept from the
+     * previous frame. A part of the frame is dirty when:
+     * <ul>
+     * <li>a {@link BoundedRenderable}'s render bounds moved, grew or shrank
+     * (both the old and new bounds are dirty)</li>
+     * <li>a BoundedRenderable was added or removed</li>
+     * <li>it was passed to {@link #markDirty(Rectangle)}</li>
+     * </ul>
+     * Renderables that don't implement BoundedRenderable (or return null
+     * bounds) may draw anywhere, so the whole frame is redrawn on every frame
+     * they are registered. Renderables whose appearance changes without their
+     * bounds changing must call markDirty themselves. While redrawing a dirty
+     * rectangle, the Graphics clip is set to that rectangle, so Renderables
+     * must not replace the clip with setClip. Works with both the default and
+     * tiled renderers; in tiled mode, every tile touching a dirty rectangle is
+     * redrawn. False by default.
+     *
+     * @param enabled
+     */
+    public void setDirtyRendering(final boolean enabled) {
+
+        dirtyRendering = enabled;
+        redrawAll = true;
+    }
+
+    public boolean isDirtyRendering() {
+
+        return dirtyRendering;
+    }
+
+    /**
+     * Marks an area of the screen to be redrawn on the next frame when dirty
+     * rendering is enabled. May be called from any thread.
+     *
+     * @param rect
+     *            the area in screen coordinates; it is copied
+     */
+    public void markDirty(final Rectangle rect) {
+
+        dirtyQueue.offer(new Rectangle(rect));
+    }
+
+    /**
+     * Marks the whole screen to be redrawn on the next frame when dirty
+     * rendering is enabled. May be called from any thread.
+     */
+    public void markDirty() {
+
+        redrawAll = true;
+    }
+
     /**
      * @return true if hardware acceleration is enabled, false otherwise.
      */
@@ -397,16 +503,13 @@ public class RenderControl implements RenderController {
      *            first to be rendered on each frame and LAST is provided as a
      *            convenience field to insert at position size - 1 (aka the end
      *            of the queue, thus last to be rendered on each frame).
+     *            Additions and removals are applied in the order they were
+     *            made at the start of the next frame. Safe to call from any
+     *            thread; never blocks.
      */
-    public synchronized void addRenderable(final Renderable r, int pos) {
+    public void addRenderable(final Renderable r, final int pos) {
 
-        if (pos == POSITION_LAST) {
-            pos = (addQueue.size() == 0) ? rtasks.size() : rtasks.size() + addQueue.size();
-        }
-        QueuedRenderable qr = new QueuedRenderable();
-        qr.pos = pos;
-        qr.r = r;
-        addQueue.add(qr);
+        renderQueue.add(r, pos);
     }
 
     /**
@@ -415,50 +518,39 @@ public class RenderControl implements RenderController {
      * @param r
      *            removes the Renderable from the queue.
      */
-    public synchronized void removeRenderable(final Renderable r) {
+    public void removeRenderable(final Renderable r) {
 
-        delQueue.add(r);
+        renderQueue.remove(r);
     }
 
-    public synchronized boolean isRegistered(final Renderable r) {
+    public boolean isRegistered(final Renderable r) {
 
-        return rtasks.contains(r);
+        return renderQueue.contains(r);
     }
 
-    public synchronized int getIndexInQueue(final Renderable r) {
+    public int getIndexInQueue(final Renderable r) {
 
-        try {
-            loopChk.acquire();
-            int ind = rtasks.indexOf(r);
-            loopChk.release();
-            return ind;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        return -1;
+        return renderQueue.indexOf(r);
     }
 
-    public synchronized Renderable[] getRenderQueue() {
+    /**
+     * @return a copy of the rendering queue as of the start of the current
+     *         frame
+     */
+    public Renderable[] getRenderQueue() {
 
-        Renderable[] queueArr = new Renderable[getQueueSize()];
-        try {
-            loopChk.acquire();
-            rtasks.toArray(queueArr);
-            loopChk.release();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        return queueArr;
+        return renderQueue.get().clone();
     }
 
     /**
-     * Fetches List.size() for the rendering queue.
+     * Fetches the size of the rendering queue as of the start of the current
+     * frame.
      * 
      * @return
      */
     public int getQueueSize() {
 
-        return rtasks.size();
+        return renderQueue.size();
     }
 
     public void setRenderOp(final Key key, final Object value) {
@@ -487,30 +579,35 @@ public class RenderControl implements RenderController {
      */
     protected int blend(final float srcA, final int srcValue, final int dstValue) {
 
-        float srcR = ( (srcValue & 0x00ff0000) >>> 16) / 255f;
-        float srcG = ( (srcValue & 0x0000ff00) >>> 8) / 255f;
-        float srcB = ( (srcValue & 0x000000ff)) / 255f;
-
-        // float dstA = ((dstValue & 0xff000000) >>> 24) / 255f;
-        float dstR = ( (dstValue & 0x00ff0000) >>> 16) / 255f;
-        float dstG = ( (dstValue & 0x0000ff00) >>> 8) / 255f;
-        float dstB = ( (dstValue & 0x000000ff)) / 255f;
-
-        srcR *= srcA;
-        srcG *= srcA;
-        srcB *= srcA;
+        // 8-bit fixed point: c = (src * a + dst * (255 - a)) / 255
+        int a = (int) (srcA * 255 + 0.5f), ia = 255 - a;
+        int r = div255( (srcValue >>> 16 & 0xff) * a + (dstValue >>> 16 & 0xff) * ia);
+        int g = div255( (srcValue >>> 8 & 0xff) * a + (dstValue >>> 8 & 0xff) * ia);
+        int b = div255( (srcValue & 0xff) * a + (dstValue & 0xff) * ia);
+        return r << 16 | g << 8 | b;
+    }
 
-        // final output
-        float R = srcR + dstR * (1 - srcA);
-        float G = srcG + dstG * (1 - srcA);
-        float B = srcB + dstB * (1 - srcA);
+    /*
+     * Exact rounded division by 255 for 0 <= x <= 255 * 255.
+     */
+    private static int div255(final int x) {
 
-        return ((int) (R * 255) << 16) | ((int) (G * 255) << 8) | (int) (B * 255);
+        int t = x + 128;
+        return (t + (t >>> 8)) >>> 8;
     }
 
     ExecutorService renderPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
                                                               new RenderThreadFactory());
     ArrayList<RenderRow> rowCache = new ArrayList<RenderRow>();
+    TiledRasterizer rasterizer;
+    // true while the current frame is being profiled; render thread only
+    boolean profiling;
+
+    // dirty rendering state; only accessed by the render thread
+    DirtyRegion dirty;
+    Rectangle[] frameBounds = new Rectangle[0];
+    IdentityHashMap<Renderable, Rectangle> lastBounds = new IdentityHashMap<Renderable, Rectangle>(),
+                    currBounds = new IdentityHashMap<Renderable, Rectangle>();
 
     /**
      * Internal method that is called by RenderLoop to draw rendered data to the
@@ -540,38 +637,163 @@ public class RenderControl implements RenderController {
         g.setRenderingHints(renderOps);
         try {
 
-            // Check the status of the VolatileImage and update/re-create it if
-            // necessary.
-            if (accBuff == null || accBuff.getWidth() != canvas.getWidth() || accBuff.getHeight() != canvas.getHeight()) {
-                accBuff = ImageUtils.createVolatileImage(canvas.getWidth(), canvas.getHeight());
-                accBuff.setAccelerationPriority( (accelerated) ? 1.0f : 0.0f);
+            DirtyRegion region = (dirtyRendering) ? updateDirtyRegion(renderables) : null;
+            if (tiledRendering) {
+                renderTiled(g, renderables, interpolation, region);
+            } else {
+                renderAccelerated(g, renderables, interpolation, region);
             }
-            int stat = 0;
-            do {
-                if ( (stat = ImageUtils.validateVI(accBuff, g)) != VolatileImage.IMAGE_OK) {
-                    if (stat == VolatileImage.IMAGE_INCOMPATIBLE) {
-                        accBuff = ImageUtils.createVolatileImage(canvas.getWidth(), canvas.getHeight());
-                        accBuff.setAccelerationPriority( (accelerated) ? 1.0f : 0.0f);
-                    }
+        } finally {
+            g.dispose();
+        }
+
+        if ( !bs.contentsLost() && canvas.getParent() != null) {
+            bs.show();
+        }
+    }
+
+    private void renderAccelerated(final Graphics2D g,
+                                   final Renderable[] renderables,
+                                   final float interpolation,
+                                   final DirtyRegion region) {
+
+        boolean redrawFrame = region == null || region.isFull();
+        // Check the status of the VolatileImage and update/re-create it if
+        // necessary.
+        if (accBuff == null || accBuff.getWidth() != canvas.getWidth() || accBuff.getHeight() != canvas.getHeight()) {
+            accBuff = ImageUtils.createVolatileImage(canvas.getWidth(), canvas.getHeight());
+            accBuff.setAccelerationPriority( (accelerated) ? 1.0f : 0.0f);
+            redrawFrame = true;
+        }
+        int stat = 0;
+        boolean lost;
+        do {
+            if ( (stat = ImageUtils.validateVI(accBuff, g)) != VolatileImage.IMAGE_OK) {
+                if (stat == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    accBuff = ImageUtils.createVolatileImage(canvas.getWidth(), canvas.getHeight());
+                    accBuff.setAccelerationPriority( (accelerated) ? 1.0f : 0.0f);
                 }
+                // the old contents can't be kept
+                redrawFrame = true;
+            }
 
-                Graphics2D img = accBuff.createGraphics();
+            Graphics2D img = accBuff.createGraphics();
+            if (redrawFrame) {
                 img.setColor(CANVAS_BACK);
                 img.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
                 for (Renderable r : renderables) {
-                    r.render(img, interpolation);
+                    renderProfiled(r, img, interpolation);
+                }
+            } else {
+                for (int i = 0; i < region.getRectCount(); i++ ) {
+                    Rectangle clip = region.getRect(i);
+                    img.setClip(clip);
+                    img.setColor(CANVAS_BACK);
+                    img.fillRect(clip.x, clip.y, clip.width, clip.height);
+                    for (int k = 0; k < renderables.length; k++ ) {
+                        if (frameBounds[k].intersects(clip)) {
+                            renderProfiled(renderables[k], img, interpolation);
+                        }
+                    }
                 }
-                img.dispose();
-            } while (accBuff.contentsLost());
+            }
+            img.dispose();
+            lost = accBuff.contentsLost();
+            redrawFrame |= lost;
+        } while (lost);
 
-            g.drawImage(accBuff, 0, 0, null);
-        } finally {
-            g.dispose();
+        g.drawImage(accBuff, 0, 0, null);
+    }
+
+    private void renderProfiled(final Renderable r, final Graphics2D img, final float interpolation) {
+
+        if (profiling) {
+            long start = System.nanoTime();
+            r.render(img, interpolation);
+            profiler.recordRender(r, System.nanoTime() - start);
+        } else {
+            r.render(img, interpolation);
         }
+    }
 
-        if ( !bs.contentsLost() && canvas.getParent() != null) {
-            bs.show();
+    private void renderTiled(final Graphics2D g,
+                             final Renderable[] renderables,
+                             final float interpolation,
+                             final DirtyRegion region) {
+
+        if (rasterizer == null) {
+            rasterizer = new TiledRasterizer(renderPool);
         }
+        rasterizer.setGammaTable( (applyGamma) ? gammaTable : null);
+        try {
+            pri = rasterizer.render(renderables, interpolation, canvas.getWidth(), canvas.getHeight(), CANVAS_BACK,
+                                    renderOps, region);
+            pixelData = rasterizer.getPixelData();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        g.drawImage(pri, 0, 0, null);
+    }
+
+    /*
+     * Collects the areas that changed since the last frame: changed render
+     * bounds, added/removed Renderables and areas marked with markDirty.
+     * Called on the render thread.
+     */
+    private DirtyRegion updateDirtyRegion(final Renderable[] renderables) {
+
+        if (dirty == null) {
+            dirty = new DirtyRegion(canvas.getWidth(), canvas.getHeight());
+        }
+        dirty.clear();
+        dirty.setSize(canvas.getWidth(), canvas.getHeight());
+        if (redrawAll) {
+            redrawAll = false;
+            dirty.markAll();
+        }
+        Rectangle rect;
+        while ( (rect = dirtyQueue.poll()) != null) {
+            dirty.add(rect);
+        }
+
+        if (frameBounds.length != renderables.length) {
+            frameBounds = new Rectangle[renderables.length];
+        }
+        currBounds.clear();
+        for (int i = 0; i < renderables.length; i++ ) {
+            Renderable r = renderables[i];
+            Rectangle bounds = (r instanceof BoundedRenderable) ? ((BoundedRenderable) r).getRenderBounds() : null;
+            Rectangle prev = lastBounds.get(r);
+            if (bounds == null) {
+                // unbounded renderables may draw anywhere
+                dirty.markAll();
+                prev = null;
+            } else if (prev == null) {
+                prev = new Rectangle(bounds);
+                dirty.add(bounds);
+            } else if ( !prev.equals(bounds)) {
+                dirty.add(prev);
+                dirty.add(bounds);
+                prev.setBounds(bounds);
+            }
+            currBounds.put(r, prev);
+            frameBounds[i] = prev;
+        }
+        // anything left over was removed since the last frame
+        for (Map.Entry<Renderable, Rectangle> e : lastBounds.entrySet()) {
+            if ( !currBounds.containsKey(e.getKey())) {
+                if (e.getValue() == null) {
+                    dirty.markAll();
+                } else {
+                    dirty.add(e.getValue());
+                }
+            }
+        }
+        IdentityHashMap<Renderable, Rectangle> swap = lastBounds;
+        lastBounds = currBounds;
+        currBounds = swap;
+        return dirty;
     }
 
     /**
@@ -593,35 +815,9 @@ public class RenderControl implements RenderController {
         @Override
         public void run() {
 
-            int priWidth = pri.getWidth();
-            for (int x = 0; x < priWidth; x++ ) {
-
-                if (x >= priWidth || x < 0) {
-                    continue;
-                }
-
-                int pos = y * priWidth + x;
-                if (pos < 0 || pos >= pixelData.length) {
-                    continue;
-                }
-
-                // get foreground pixels (source)
-                int srcValue = pixelData[y * priWidth + x];
-                int b = srcValue & 0xFF;
-                int g = srcValue >> 8 & 0xFF;
-                int r = srcValue >> 16 & 0xFF;
-                int a = srcValue >> 24 & 0xFF;
-                if (applyGamma) {
-                    a = gammaTable.applyGamma(a);
-                    r = gammaTable.applyGamma(r);
-                    g = gammaTable.applyGamma(g);
-                    b = gammaTable.applyGamma(b);
-                }
-                srcValue = a;
-                srcValue = (srcValue << 8) + r;
-                srcValue = (srcValue << 8) + g;
-                srcValue = (srcValue << 8) + b;
-                pixelData[pos] = srcValue;
+            if (applyGamma) {
+                int priWidth = pri.getWidth();
+                gammaTable.applyGamma(pixelData, y * priWidth, priWidth);
             }
         }
 
@@ -669,6 +865,8 @@ public class RenderControl implements RenderController {
         volatile int fps, tps;
         volatile boolean running, active, noUpdate, printFrames;
 
+        final FramePacer pacer = new FramePacer();
+
         @Override
         public void run() {
 
@@ -702,8 +900,8 @@ public class RenderControl implements RenderController {
                         try {
                             Thread.sleep(800);
                             boolean print = Boolean.getBoolean(Property.SNAP2D_PRINT_RENDER_STAT.getProperty());
-                            while ( !printFrames) {
-                                ;
+                            while ( !printFrames && running) {
+                                Thread.sleep(SLEEP_WHILE_INACTIVE);
                             }
                             String printStr = fps + " fps " + tps + " ticks";
                             if (print) {
@@ -726,29 +924,14 @@ public class RenderControl implements RenderController {
             int frameCount = 0, ticks = 0;
             running = true;
             active = true;
-            Renderable[] renderables = new Renderable[0];
+            Renderable[] renderables = renderQueue.get();
             System.runFinalization();
             System.gc();
             while (running) {
                 try {
 
-                    if (addQueue.size() > 0) {
-
-                        for (QueuedRenderable qr : addQueue) {
-                            rtasks.add(qr.pos, qr.r);
-                        }
-                        addQueue.clear();
-
-                        renderables = rtasks.toArray(new Renderable[rtasks.size()]);
-                    }
-
-                    if (delQueue.size() > 0) {
-                        for (Renderable r : delQueue) {
-                            rtasks.remove(r);
-                        }
-                        delQueue.clear();
-
-                        renderables = rtasks.toArray(new Renderable[rtasks.size()]);
+                    if (renderQueue.drain()) {
+                        renderables = renderQueue.get();
                     }
 
                     if (scheduledResize) {
@@ -759,6 +942,7 @@ public class RenderControl implements RenderController {
                     if (updateGamma) {
                         gammaTable.setGamma(gamma);
                         updateGamma = false;
+                        redrawAll = true;
                     }
 
                     double now = System.nanoTime();
@@ -768,12 +952,23 @@ public class RenderControl implements RenderController {
                             initSize = new Dimension(canvas.getWidth(), canvas.getHeight());
                         }
 
-                        int updateCount = 0;
+                        profiling = profiler.isEnabled();
+                        if (profiling) {
+                            profiler.beginFrame();
+                        }
 
+                        int updateCount = 0;
+                        long updateStart = System.nanoTime();
                         while (now - lastUpdateTime > timeBetweenUpdates && updateCount < maxUpdates && !noUpdate) {
 
                             for (Renderable r : renderables) {
-                                r.update((long) now, (long) lastUpdateTime);
+                                if (profiling) {
+                                    long start = System.nanoTime();
+                                    r.update((long) now, (long) lastUpdateTime);
+                                    profiler.recordUpdate(r, System.nanoTime() - start);
+                                } else {
+                                    r.update((long) now, (long) lastUpdateTime);
+                                }
                             }
 
                             lastUpdateTime += timeBetweenUpdates;
@@ -791,7 +986,13 @@ public class RenderControl implements RenderController {
                          * r:renderables) r.render(g, interpolation);
                          * g.dispose(); render();
                          */
+                        long renderStart = System.nanoTime();
                         render(renderables, interpolation);
+                        if (profiling) {
+                            profiler.recordUpdatePhase(renderStart - updateStart);
+                            profiler.recordRenderPhase(System.nanoTime() - renderStart);
+                            profiler.endFrame();
+                        }
                         lastRenderTime = now;
                         frameCount++ ;
 
@@ -813,11 +1014,12 @@ public class RenderControl implements RenderController {
                     }
 
                     loopChk.release();
-                    while (now - lastRenderTime < targetTimeBetweenRenders
-                                    && (now - lastUpdateTime < timeBetweenUpdates || noUpdate)) {
-                        Thread.yield();
-                        now = System.nanoTime();
+                    // wait for the next frame or tick, whichever is due first
+                    double deadline = lastRenderTime + targetTimeBetweenRenders;
+                    if ( !noUpdate) {
+                        deadline = Math.min(deadline, lastUpdateTime + timeBetweenUpdates);
                     }
+                    pacer.awaitDeadline((long) deadline);
                     loopChk.acquire();
 
                     if ( !active) {
@@ -864,12 +1066,6 @@ public class RenderControl implements RenderController {
         }
     }
 
-    protected class QueuedRenderable {
-
-        Renderable r;
-        int pos;
-    }
-
     protected class AutoResize extends ComponentAdapter {
 
         private volatile int wt, ht;
@@ -893,9 +1089,7 @@ public class RenderControl implements RenderController {
             }
 
             if (auto) {
-                Iterator<Renderable> itr = rtasks.listIterator();
-                while (itr.hasNext()) {
-                    Renderable r = itr.next();
+                for (Renderable r : renderQueue.get()) {
                     r.onResize(initSize, new Dimension(wt, ht));
                 }
 
@@ -0,0 +1,219 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.snap2d.gl.spi.RenderController;
+
+/**
+ * Ordered list of registered renderables shared between the render thread and
+ * any number of threads adding or removing renderables. Additions and
+ * removals are pushed onto a lock-free command queue and applied by the
+ * render thread once per frame in {@link #drain()}, which then publishes a new
+ * immutable snapshot array. The render thread iterates the snapshot without
+ * any locking, and other threads can read the current snapshot at any time
+ * without blocking the render thread.
+ *
+ * @author Brian Groenke
+ *
+ * @param <T>
+ *            the renderable type
+ */
+public class RenderQueue<T> {
+
+    private final Class<T> type;
+    private final ConcurrentLinkedQueue<Command<T>> commands = new ConcurrentLinkedQueue<Command<T>>();
+    // only modified by the thread holding 'drainLock'
+    private final ArrayList<T> working = new ArrayList<T>();
+    private final Object drainLock = new Object();
+
+    private volatile T[] snapshot;
+
+    public RenderQueue(final Class<T> type) {
+
+        this.type = type;
+        this.snapshot = newArray(type, 0);
+    }
+
+    /**
+     * Queues 'r' to be inserted at the given position on the next drain. May
+     * be called from any thread; never blocks.
+     *
+     * @param r
+     * @param pos
+     *            index to insert at, or {@link RenderController#POSITION_LAST}
+     *            to append; positions past the end of the list also append
+     */
+    public void add(final T r, final int pos) {
+
+        commands.offer(new Command<T>(r, pos, false));
+    }
+
+    /**
+     * Queues 'r' to be removed on the next drain. May be called from any
+     * thread; never blocks.
+     *
+     * @param r
+     */
+    public void remove(final T r) {
+
+        commands.offer(new Command<T>(r, 0, true));
+    }
+
+    /**
+     * Applies all queued additions and removals in the order they were made
+     * and publishes a new snapshot if anything changed. Should be called by
+     * the render thread once per frame; concurrent calls are serialized.
+     *
+     * @return true if the snapshot changed
+     */
+    public boolean drain() {
+
+        if (commands.isEmpty()) {
+            return false;
+        }
+        synchronized (drainLock) {
+            boolean changed = false;
+            Command<T> cmd;
+            while ( (cmd = commands.poll()) != null) {
+                if (cmd.remove) {
+                    if (working.remove(cmd.r)) {
+                        changed = true;
+                        onRemoved(cmd.r);
+                    }
+                } else {
+                    int pos = (cmd.pos < 0 || cmd.pos > working.size()) ? working.size() : cmd.pos;
+                    working.add(pos, cmd.r);
+                    changed = true;
+                    onAdded(cmd.r);
+                }
+            }
+            if (changed) {
+                snapshot = working.toArray(newArray(type, working.size()));
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * @return the renderables as of the last drain, in render order. The array
+     *         is shared and must not be modified.
+     */
+    public T[] get() {
+
+        return snapshot;
+    }
+
+    public int size() {
+
+        return snapshot.length;
+    }
+
+    public boolean contains(final T r) {
+
+        return indexOf(r) >= 0;
+    }
+
+    public int indexOf(final T r) {
+
+        T[] arr = snapshot;
+        for (int i = 0; i < arr.length; i++ ) {
+            if (arr[i] == r || (arr[i] != null && arr[i].equals(r))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of additions and removals waiting for the next drain
+     */
+    public int getPendingCount() {
+
+        return commands.size();
+    }
+
+    /**
+     * Queues the current renderables, followed by any pending additions and
+     * removals, on the given queue.
+     *
+     * @param other
+     */
+    public void copyTo(final RenderQueue<T> other) {
+
+        for (T r : snapshot) {
+            other.add(r, RenderController.POSITION_LAST);
+        }
+        Iterator<Command<T>> itr = commands.iterator();
+        while (itr.hasNext()) {
+            other.commands.offer(itr.next());
+        }
+    }
+
+    /**
+     * Removes all renderables and pending commands immediately. Should only be
+     * called while the render loop is stopped.
+     */
+    public void clear() {
+
+        synchronized (drainLock) {
+            commands.clear();
+            working.clear();
+            snapshot = newArray(type, 0);
+        }
+    }
+
+    /**
+     * Called from {@link #drain()} for each renderable added. Does nothing by
+     * default.
+     *
+     * @param r
+     */
+    protected void onAdded(final T r) {
+
+    }
+
+    /**
+     * Called from {@link #drain()} for each renderable removed. Does nothing by
+     * default.
+     *
+     * @param r
+     */
+    protected void onRemoved(final T r) {
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(final Class<T> type, final int len) {
+
+        return (T[]) Array.newInstance(type, len);
+    }
+
+    private static class Command<T> {
+
+        final T r;
+        final int pos;
+        final boolean remove;
+
+        Command(final T r, final int pos, final boolean remove) {
+
+            this.r = r;
+            this.pos = pos;
+            this.remove = remove;
+        }
+    }
+}
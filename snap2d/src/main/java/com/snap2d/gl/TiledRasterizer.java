@@ -0,0 +1,264 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Software rasterizer that splits the frame into square tiles and renders the
+ * tiles in parallel on an ExecutorService. All tiles share one int[] backing
+ * buffer; each tile draws through its own sub-image of the frame with a clip
+ * restricted to the tile, so tiles never write the same pixels.
+ * {@link BoundedRenderable}s are only rendered in the tiles their bounds
+ * overlap; all other Renderables are rendered in every tile.<br/>
+ * <br/>
+ * Renderables are called concurrently from multiple threads (once per tile),
+ * so their render methods must not modify shared state. Each tile's Graphics2D
+ * is translated to the tile's position, so Renderables should only apply
+ * relative transforms rather than replacing the transform with setTransform.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class TiledRasterizer {
+
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    private final ExecutorService pool;
+    private final int tileSize;
+
+    private BufferedImage frame;
+    private int[] pixels;
+    private final List<Tile> tiles = new ArrayList<Tile>(), dirtyTiles = new ArrayList<Tile>();
+
+    // per-frame state read by tile tasks
+    private Renderable[] renderables = new Renderable[0];
+    private Rectangle[] bounds = new Rectangle[0];
+    private float interpolation;
+    private Color background = Color.WHITE;
+    private Map<RenderingHints.Key, Object> hints;
+    private volatile GammaTable gamma;
+
+    public TiledRasterizer(final ExecutorService pool) {
+
+        this(pool, DEFAULT_TILE_SIZE);
+    }
+
+    public TiledRasterizer(final ExecutorService pool, final int tileSize) {
+
+        if (tileSize <= 0) {
+            throw (new IllegalArgumentException("tile size must be > 0"));
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Renders a frame of the given size. Blocks until all tiles are done.
+     * Equivalent to calling render with a null DirtyRegion.
+     *
+     * @see #render(Renderable[], float, int, int, Color, Map, DirtyRegion)
+     */
+    public BufferedImage render(final Renderable[] renderables,
+                                final float interpolation,
+                                final int width,
+                                final int height,
+                                final Color background,
+                                final Map<RenderingHints.Key, Object> hints) throws InterruptedException {
+
+        return render(renderables, interpolation, width, height, background, hints, null);
+    }
+
+    /**
+     * Renders a frame of the given size. Blocks until all tiles are done.
+     *
+     * @param renderables
+     * @param interpolation
+     * @param width
+     * @param height
+     * @param background
+     *            color each tile is cleared to before rendering
+     * @param hints
+     *            rendering hints applied to each tile's Graphics2D; may be null
+     * @param dirty
+     *            if non-null, only tiles intersecting this region are redrawn
+     *            and all other tiles keep their contents from the last frame.
+     *            Ignored if the frame size changed.
+     * @return the rendered frame, backed by {@link #getPixelData()}
+     * @throws InterruptedException
+     */
+    public BufferedImage render(final Renderable[] renderables,
+                                final float interpolation,
+                                final int width,
+                                final int height,
+                                final Color background,
+                                final Map<RenderingHints.Key, Object> hints,
+                                final DirtyRegion dirty) throws InterruptedException {
+
+        boolean resized = resize(width, height);
+        List<Tile> tasks = tiles;
+        if (dirty != null && !dirty.isFull() && !resized) {
+            dirtyTiles.clear();
+            for (Tile tile : tiles) {
+                if (dirty.intersects(tile.rect)) {
+                    dirtyTiles.add(tile);
+                }
+            }
+            if (dirtyTiles.isEmpty()) {
+                return frame;
+            }
+            tasks = dirtyTiles;
+        }
+        if (bounds.length < renderables.length) {
+            bounds = new Rectangle[renderables.length];
+        }
+        // fetch bounds once on this thread, not once per tile
+        for (int i = 0; i < renderables.length; i++ ) {
+            Renderable r = renderables[i];
+            bounds[i] = (r instanceof BoundedRenderable) ? ((BoundedRenderable) r).getRenderBounds() : null;
+        }
+        this.renderables = renderables;
+        this.interpolation = interpolation;
+        this.background = background;
+        this.hints = hints;
+
+        try {
+            List<Future<Object>> results = pool.invokeAll(tasks);
+            for (Future<Object> f : results) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (new RuntimeException("error rendering tile", cause));
+        } finally {
+            this.renderables = new Renderable[0];
+        }
+        return frame;
+    }
+
+    /**
+     * @return the current frame, or null if nothing has been rendered yet
+     */
+    public BufferedImage getFrame() {
+
+        return frame;
+    }
+
+    /**
+     * @return the ARGB backing buffer of the current frame, row-major
+     */
+    public int[] getPixelData() {
+
+        return pixels;
+    }
+
+    /**
+     * Sets a gamma table applied to each tile's pixels after it is rendered,
+     * as part of the same parallel tile task.
+     *
+     * @param gamma
+     *            the table to apply, or null to disable gamma correction
+     */
+    public void setGammaTable(final GammaTable gamma) {
+
+        this.gamma = gamma;
+    }
+
+    public GammaTable getGammaTable() {
+
+        return gamma;
+    }
+
+    public int getTileSize() {
+
+        return tileSize;
+    }
+
+    public int getTileCount() {
+
+        return tiles.size();
+    }
+
+    private boolean resize(final int width, final int height) {
+
+        if (frame != null && frame.getWidth() == width && frame.getHeight() == height) {
+            return false;
+        }
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        tiles.clear();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                tiles.add(new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        return true;
+    }
+
+    private class Tile implements Callable<Object> {
+
+        final Rectangle rect;
+        final BufferedImage view;
+
+        Tile(final int x, final int y, final int wt, final int ht) {
+
+            this.rect = new Rectangle(x, y, wt, ht);
+            // shares the frame's data buffer
+            this.view = frame.getSubimage(x, y, wt, ht);
+        }
+
+        @Override
+        public Object call() {
+
+            Graphics2D g = view.createGraphics();
+            try {
+                if (hints != null) {
+                    g.setRenderingHints(hints);
+                }
+                g.setColor(background);
+                g.fillRect(0, 0, rect.width, rect.height);
+                g.translate( -rect.x, -rect.y);
+                g.clipRect(rect.x, rect.y, rect.width, rect.height);
+                Renderable[] rs = renderables;
+                for (int i = 0; i < rs.length; i++ ) {
+                    if (bounds[i] == null || bounds[i].intersects(rect)) {
+                        rs[i].render(g, interpolation);
+                    }
+                }
+            } finally {
+                g.dispose();
+            }
+            GammaTable table = gamma;
+            if (table != null) {
+                table.applyGamma(pixels, rect.y * frame.getWidth() + rect.x, rect.width, rect.height,
+                                 frame.getWidth());
+            }
+            return null;
+        }
+    }
+}
@@ -53,6 +53,7 @@ public class GL2Handle implements GLHandle {
     int swt, sht;
     float ppu;
     float[] texCoords = DEFAULT_RECT_TEX_COORDS;
+    final float[] rectTexCoords = new float[8];
     boolean texEnabled, texBound;
 
     int magFilter = FILTER_LINEAR, minFilter = FILTER_LINEAR;
@@ -304,14 +305,24 @@ public class GL2Handle implements GLHandle {
     @Override
     public void setRectTexCoords(final Texture2D rectCoords) {
 
-        texCoords[0] = rectCoords.getLeftCoord();
-        texCoords[1] = rectCoords.getBottomCoord();
-        texCoords[2] = rectCoords.getLeftCoord();
-        texCoords[3] = rectCoords.getTopCoord();
-        texCoords[4] = rectCoords.getRightCoord();
-        texCoords[5] = rectCoords.getBottomCoord();
-        texCoords[6] = rectCoords.getRightCoord();
-        texCoords[7] = rectCoords.getTopCoord();
+        setRectTexCoords(rectCoords.getLeftCoord(), rectCoords.getBottomCoord(), rectCoords.getRightCoord(),
+                         rectCoords.getTopCoord());
+    }
+
+    @Override
+    public void setRectTexCoords(final float left, final float bottom, final float right, final float top) {
+
+        // write to a handle-owned array so that the shared default coords and
+        // arrays passed to setTexCoords aren't modified
+        rectTexCoords[0] = left;
+        rectTexCoords[1] = bottom;
+        rectTexCoords[2] = left;
+        rectTexCoords[3] = top;
+        rectTexCoords[4] = right;
+        rectTexCoords[5] = bottom;
+        rectTexCoords[6] = right;
+        rectTexCoords[7] = top;
+        texCoords = rectTexCoords;
     }
 
     // ---- Data Store/Access and Drawing ---- //
@@ -1297,6 +1308,16 @@ public class GL2Handle implements GLHandle {
         }
     }
 
+    /**
+     * The compatibility handle does not cache GL state, so this only clears the
+     * program binding cached by {@link GLProgram}.
+     */
+    @Override
+    public void invalidateStateCache() {
+
+        GLProgram.invalidateBinding();
+    }
+
     @Override
     public void dispose() {
 
@@ -31,12 +31,11 @@ import com.jogamp.opengl.GL2ES2;
 import com.jogamp.opengl.GL2GL3;
 import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.GLException;
-import com.jogamp.opengl.util.awt.TextRenderer;
+import com.snap2d.atlas.GlyphAtlas;
 import com.snap2d.gl.opengl.GLConfig.Property;
 import com.snap2d.light.LightSource;
 
 import bg.x2d.geo.PointUD;
-import bg.x2d.utils.Utils;
 
 /**
  * @author Brian Groenke
@@ -53,12 +52,14 @@ public class GL3Handle implements GLHandle {
     private static final Logger log = Logger.getLogger(GLHandle.class.getCanonicalName());
 
     protected GLConfig config;
-    protected TextRenderer textRender;
+    protected GlyphAtlas glyphAtlas;
+    protected TextBatch textBatch;
 
     float vx, vy, vwt, vht;
     int swt, sht;
     float ppu;
     float[] texCoords = DEFAULT_RECT_TEX_COORDS;
+    final float[] rectTexCoords = new float[8];
     boolean texEnabled, texBound;
 
     int magFilter = FILTER_LINEAR, minFilter = FILTER_LINEAR;
@@ -66,15 +67,24 @@ public class GL3Handle implements GLHandle {
     FloatBuffer defColorBuff, orthoMatrix;
 
     HashSet<LightSource> lights = new HashSet<LightSource>();
+    final LightBuffer lightBuff = new LightBuffer();
+    int lightsVersion;
 
     // transformation values
     float theta, rx, ry, tx, ty, sx = 1, sy = 1;
 
+    // last known GL state; used to skip redundant state changes and reset by
+    // invalidateStateCache()
+    private Texture2D boundTex;
+    private int boundMinFilter, boundMagFilter;
+    private AlphaFunc boundBlendFunc;
+    private Boolean texTargetEnabled;
+    private final Boolean[] featureState = new Boolean[GLFeature.values().length];
+
     GL3Handle(final GLConfig config) {
 
         this.config = config;
-        this.textRender = new TextRenderer(new Font("Arial", Font.PLAIN, 12), true, true, null,
-                        config.getAsBool(Property.GL_RENDER_TEXT_MIPMAP));
+        setFont(new Font("Arial", Font.PLAIN, 12));
         this.defColorBuff = Buffers.newDirectFloatBuffer(new float[] { 1, 1, 1, 1 });
 
         // create default shader program
@@ -149,6 +159,7 @@ public class GL3Handle implements GLHandle {
 
         this.swt = width;
         this.sht = height;
+        lightsVersion++ ;
     }
 
     @Override
@@ -172,13 +183,17 @@ public class GL3Handle implements GLHandle {
     @Override
     public void setTextureEnabled(final boolean enabled) {
 
+        texEnabled = enabled;
+        if (texTargetEnabled != null && texTargetEnabled == enabled) {
+            return;
+        }
         final GL gl = getGL();
         if (enabled) {
             gl.glEnable(GL.GL_TEXTURE_2D);
         } else {
             gl.glDisable(GL.GL_TEXTURE_2D);
         }
-        texEnabled = enabled;
+        texTargetEnabled = enabled;
     }
 
     @Override
@@ -188,11 +203,22 @@ public class GL3Handle implements GLHandle {
         if ( !texEnabled) {
             tex.enable(gl);
             texEnabled = true;
+            texTargetEnabled = true;
         }
 
-        tex.bind(gl);
-        tex.setTexParameteri(gl, GL.GL_TEXTURE_MIN_FILTER, minFilter);
-        tex.setTexParameteri(gl, GL.GL_TEXTURE_MAG_FILTER, magFilter);
+        if (tex != boundTex) {
+            tex.bind(gl);
+            boundTex = tex;
+            boundMinFilter = boundMagFilter = -1;
+        }
+        if (boundMinFilter != minFilter) {
+            tex.setTexParameteri(gl, GL.GL_TEXTURE_MIN_FILTER, minFilter);
+            boundMinFilter = minFilter;
+        }
+        if (boundMagFilter != magFilter) {
+            tex.setTexParameteri(gl, GL.GL_TEXTURE_MAG_FILTER, magFilter);
+            boundMagFilter = magFilter;
+        }
         // gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE,
         // GL2.GL_MODULATE);
         texBound = true;
@@ -365,24 +391,38 @@ public class GL3Handle implements GLHandle {
     @Override
     public void setRectTexCoords(final Texture2D rectCoords) {
 
-        texCoords[0] = rectCoords.getLeftCoord();
-        texCoords[1] = rectCoords.getBottomCoord();
-        texCoords[2] = rectCoords.getLeftCoord();
-        texCoords[3] = rectCoords.getTopCoord();
-        texCoords[4] = rectCoords.getRightCoord();
-        texCoords[5] = rectCoords.getBottomCoord();
-        texCoords[6] = rectCoords.getRightCoord();
-        texCoords[7] = rectCoords.getTopCoord();
+        setRectTexCoords(rectCoords.getLeftCoord(), rectCoords.getBottomCoord(), rectCoords.getRightCoord(),
+                         rectCoords.getTopCoord());
+    }
+
+    @Override
+    public void setRectTexCoords(final float left, final float bottom, final float right, final float top) {
+
+        // write to a handle-owned array so that the shared default coords and
+        // arrays passed to setTexCoords aren't modified
+        rectTexCoords[0] = left;
+        rectTexCoords[1] = bottom;
+        rectTexCoords[2] = left;
+        rectTexCoords[3] = top;
+        rectTexCoords[4] = right;
+        rectTexCoords[5] = bottom;
+        rectTexCoords[6] = right;
+        rectTexCoords[7] = top;
+        texCoords = rectTexCoords;
     }
 
     public void addLightSource(final LightSource light) {
 
-        lights.add(light);
+        if (lights.add(light)) {
+            lightsVersion++ ;
+        }
     }
 
     public void removeLightSource(final LightSource light) {
 
-        lights.remove(light);
+        if (lights.remove(light)) {
+            lightsVersion++ ;
+        }
     }
 
     float[] ambientColor = new float[] { 1, 1, 1 };
@@ -391,65 +431,44 @@ public class GL3Handle implements GLHandle {
     public void setAmbientLightFactor(final float ambientFactor) {
 
         this.ambientFactor = ambientFactor;
+        lightsVersion++ ;
     }
 
     public void setAmbientLightColor(final float[] ambientLightColor) {
 
         System.arraycopy(ambientLightColor, 0, ambientColor, 0, ambientColor.length);
+        lightsVersion++ ;
     }
 
-    // lighting system string constants
-    private static final String UNIFORM_LCOUNT = "light_count", UNIFORM_LCOORDS = "lights",
-                    UNIFORM_LCOLORS = "light_colors", UNIFORM_LINTENSITY = "intensity", UNIFORM_LRADIUS = "radius",
-                    UNIFORM_AMBIENT = "ambient", UNIFORM_AMBIENT_COLOR = "ambient_color";
-
+    /**
+     * Uploads light data for the current program into the 'LightData' and
+     * 'LightTiles' uniform blocks (see {@link LightBuffer} for the block
+     * layout). Data is only re-packed and uploaded if a light, the light set or
+     * the ambient light changed since the last call, so it is cheap to call
+     * once per frame. Lights are culled against the display and binned into
+     * screen tiles so that fragments only evaluate nearby lights.
+     *
+     * @throws IllegalStateException
+     *             if no program is enabled
+     */
     public void updateLightData() throws IllegalStateException {
 
-        FloatBuffer lightCoords = Buffers.newDirectFloatBuffer(lights.size() * 2);
-        FloatBuffer lightColors = Buffers.newDirectFloatBuffer(lights.size() * 3);
-        FloatBuffer radii = Buffers.newDirectFloatBuffer(lights.size());
-        FloatBuffer intensity = Buffers.newDirectFloatBuffer(lights.size());
-        for (LightSource light : lights) {
-            if ( !light.isEnabled()) {
-                continue;
-            }
-            PointUD loc = light.getLocation();
-            lightCoords.put(loc.getFloatX());
-            lightCoords.put(loc.getFloatY());
-            float[] color = light.getColor();
-            lightColors.put(color);
-            float radius = light.getRadius();
-            radii.put(radius);
-            float ifactor = light.getIntensity();
-            intensity.put(ifactor);
-        }
-
-        lightCoords.flip();
-        lightColors.flip();
-        radii.flip();
-        intensity.flip();
-
         GLProgram prog = GLProgram.getCurrentProgram();
-        prog.setUniformi(UNIFORM_LCOUNT, lights.size());
-        checkGLError(UNIFORM_LCOUNT);
-        prog.setUniformfv(UNIFORM_LCOORDS, 2, lightCoords);
-        checkGLError(UNIFORM_LCOORDS);
-        prog.setUniformfv(UNIFORM_LCOLORS, 3, lightColors);
-        checkGLError(UNIFORM_LCOLORS);
-        prog.setUniformfv(UNIFORM_LRADIUS, 1, radii);
-        checkGLError(UNIFORM_LRADIUS);
-        prog.setUniformfv(UNIFORM_LINTENSITY, 1, intensity);
-        checkGLError(UNIFORM_LINTENSITY);
-        prog.setUniformf(UNIFORM_AMBIENT, ambientFactor);
-        checkGLError(UNIFORM_AMBIENT);
-        prog.setUniformf(UNIFORM_AMBIENT_COLOR, ambientColor);
-        checkGLError(UNIFORM_AMBIENT_COLOR);
+        if (prog == null) {
+            throw (new IllegalStateException("no program enabled"));
+        }
+        final GL2GL3 gl = getGL2GL3();
+        if (lightBuff.pack(lights, lightsVersion, ambientColor, ambientFactor, swt, sht)) {
+            lightBuff.upload(gl);
+            checkGLError("upload light data");
+        }
+        lightBuff.bind(gl, prog);
+        checkGLError("bind light blocks");
     }
 
     // ---- Data Store/Access and Drawing ---- //
 
-    // private int[] buffIds;
-    private BufferObject[] buffInfo;
+    private final HandleTable<BufferObject> buffInfo = new HandleTable<BufferObject>();
 
     private final float[] color = new float[4]; // array that holds color data
 
@@ -569,7 +588,7 @@ public class GL3Handle implements GLHandle {
                           final float ht,
                           FloatBuffer colorBuffer) {
 
-        if (buffInfo == null || buffInfo.length == 0) {
+        if (buffInfo.isEmpty()) {
             throw (new GLException("can't write quad data: no allocated buffers"));
         }
 
@@ -589,7 +608,7 @@ public class GL3Handle implements GLHandle {
 
         gl.glBindVertexArray(buffObj.vao);
         checkGLError("glBindVertexArray");
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, rectBuffId);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, buffObj.vbo);
         checkGLError("glBindBuffer");
 
         if (buffObj.storeHint == BufferUsage.STATIC_DRAW) {
@@ -704,7 +723,7 @@ public class GL3Handle implements GLHandle {
                           final double ht,
                           FloatBuffer colorBuffer) {
 
-        if (buffInfo == null || buffInfo.length == 0) {
+        if (buffInfo.isEmpty()) {
             throw (new GLException("can't write quad data: no allocated buffers"));
         }
 
@@ -722,7 +741,7 @@ public class GL3Handle implements GLHandle {
             buffObj.objCount = 0;
         }
 
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, rectBuffId);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, buffObj.vbo);
 
         final double[] dcolor = new double[4];
         if (buffObj.storeHint == BufferUsage.STATIC_DRAW) {
@@ -859,7 +878,7 @@ public class GL3Handle implements GLHandle {
     @Override
     public void putPoly2f(final int polyBuffId, FloatBuffer colorBuffer, final PointUD... points) {
 
-        if (buffInfo == null || buffInfo.length == 0) {
+        if (buffInfo.isEmpty()) {
             throw (new GLException("can't write poly data: no allocated buffers"));
         }
 
@@ -877,7 +896,7 @@ public class GL3Handle implements GLHandle {
             buffObj.objCount = 0;
         }
 
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, polyBuffId);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, buffObj.vbo);
 
         if (buffObj.storeHint == BufferUsage.STATIC_DRAW) {
             ByteBuffer buff = gl.glMapBuffer(GL.GL_ARRAY_BUFFER, GL.GL_WRITE_ONLY);
@@ -925,7 +944,7 @@ public class GL3Handle implements GLHandle {
     @Override
     public void putPoly2d(final int rectBuffId, final PointUD[] points, FloatBuffer colorBuffer) {
 
-        if (buffInfo == null || buffInfo.length == 0) {
+        if (buffInfo.isEmpty()) {
             throw (new GLException("can't write poly data: no allocated buffers"));
         }
 
@@ -943,7 +962,7 @@ public class GL3Handle implements GLHandle {
             buffObj.objCount = 0;
         }
 
-        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, rectBuffId);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, buffObj.vbo);
 
         final double[] dcolor = new double[4];
         if (buffObj.storeHint == BufferUsage.STATIC_DRAW) {
@@ -1022,14 +1041,14 @@ public class GL3Handle implements GLHandle {
     public int createQuadBuffer2f(final BufferUsage storeType, final int nobjs, final boolean textured) {
 
         BufferObject buffObj = initVBO2f(storeType, GeomFunc.TRIANGLE_STRIP, 4, nobjs, textured);
-        return buffObj.vbo;
+        return buffObj.id;
     }
 
     @Override
     public int createQuadBuffer2d(final BufferUsage storeType, final int nobjs, final boolean textured) {
 
         BufferObject buffObj = initVBO2d(storeType, GeomFunc.TRIANGLE_STRIP, 4, nobjs, textured);
-        return buffObj.vbo;
+        return buffObj.id;
     }
 
     /**
@@ -1060,7 +1079,7 @@ public class GL3Handle implements GLHandle {
                                   final boolean textured) {
 
         BufferObject buffObj = initVBO2f(storeType, drawFunc, verts, nobjs, textured);
-        return buffObj.vbo;
+        return buffObj.id;
     }
 
     @Override
@@ -1071,7 +1090,7 @@ public class GL3Handle implements GLHandle {
                                   final boolean textured) {
 
         BufferObject buffObj = initVBO2d(storeType, drawFunc, verts, nobjs, textured);
-        return buffObj.vbo;
+        return buffObj.id;
     }
 
     /**
@@ -1092,14 +1111,15 @@ public class GL3Handle implements GLHandle {
         // delete buffer from GL system
         gl.glDeleteBuffers(1, new int[] { buffObj.vbo }, 0);
         checkGLError("glDeleteBuffers");
-        // delete buffer BufferObject from internal array store
-        buffInfo = Utils.arrayDelete(buffInfo, new BufferObject[buffInfo.length - 1], findIndexOfBuffer(buffObj));
+        // delete buffer BufferObject from internal handle table; the id is
+        // invalidated and will not resolve even once its slot is reused
+        buffInfo.remove(id);
         return true;
     }
 
     /*
-     * appends the buffer index to 'buffIds' and returns the BufferObject for
-     * the newly created buffer
+     * registers the new buffer in the handle table and returns the
+     * BufferObject for the newly created buffer
      */
     private BufferObject initVBO2f(final BufferUsage storeType,
                                    final GeomFunc drawFunc,
@@ -1116,12 +1136,6 @@ public class GL3Handle implements GLHandle {
         final int vertColorPos = currProg.getAttribLoc(GLShader.ATTRIB_VERT_COLOR);
         final int texCoordPos = currProg.getAttribLoc(GLShader.ATTRIB_TEX_COORD);
 
-        if (buffInfo == null) {
-            buffInfo = new BufferObject[1];
-        } else {
-            buffInfo = Arrays.copyOf(buffInfo, buffInfo.length + 1);
-        }
-
         int[] vaoId = new int[1];
         gl.getGL2GL3().glGenVertexArrays(1, vaoId, 0);
         checkGLError("glGenVertexArrays");
@@ -1173,13 +1187,13 @@ public class GL3Handle implements GLHandle {
         if (buffObj.storeHint != BufferUsage.STATIC_DRAW) {
             buffObj.data = Buffers.newDirectFloatBuffer(buffSize / Buffers.SIZEOF_FLOAT);
         }
-        buffInfo[buffInfo.length - 1] = buffObj;
+        buffObj.id = buffInfo.add(buffObj);
         return buffObj;
     }
 
     /*
-     * appends the buffer index to 'buffIds' and returns the BufferObject for
-     * the newly created buffer
+     * registers the new buffer in the handle table and returns the
+     * BufferObject for the newly created buffer
      */
     private BufferObject initVBO2d(final BufferUsage storeType,
                                    final GeomFunc drawFunc,
@@ -1196,12 +1210,6 @@ public class GL3Handle implements GLHandle {
         final int vertColorPos = currProg.getAttribLoc(GLShader.ATTRIB_VERT_COLOR);
         final int texCoordPos = currProg.getAttribLoc(GLShader.ATTRIB_TEX_COORD);
 
-        if (buffInfo == null) {
-            buffInfo = new BufferObject[1];
-        } else {
-            buffInfo = Arrays.copyOf(buffInfo, buffInfo.length + 1);
-        }
-
         int[] vaoId = new int[1];
         gl.getGL2GL3().glGenVertexArrays(1, vaoId, 0);
         checkGLError("glGenVertexArrays");
@@ -1252,33 +1260,22 @@ public class GL3Handle implements GLHandle {
         if (buffObj.storeHint != BufferUsage.STATIC_DRAW) {
             buffObj.data = Buffers.newDirectFloatBuffer(buffSize / Buffers.SIZEOF_DOUBLE);
         }
-        buffInfo[buffInfo.length - 1] = buffObj;
+        buffObj.id = buffInfo.add(buffObj);
         return buffObj;
     }
 
     /*
-     * Find BufferObject by internal GL id. You do not need to check this
-     * method's return value for null; it will fail with a GLException if the
-     * buffer is not found.
+     * Find BufferObject by the id handed out on creation. You do not need to
+     * check this method's return value for null; it will fail with a
+     * GLException if the buffer does not exist or has been destroyed.
      */
     private BufferObject findBufferById(final int id) throws GLException {
 
-        for (int i = 0; i < buffInfo.length; i++ ) {
-            if (id == buffInfo[i].vbo) {
-                return buffInfo[i];
-            }
-        }
-        throw (new GLException("failed to locate buffer - ID does not exist: " + id));
-    }
-
-    private int findIndexOfBuffer(final BufferObject obj) {
-
-        for (int i = 0; i < buffInfo.length; i++ ) {
-            if (obj == buffInfo[i]) {
-                return i;
-            }
+        BufferObject buffObj = buffInfo.get(id);
+        if (buffObj == null) {
+            throw (new GLException("failed to locate buffer - ID does not exist or is stale: " + id));
         }
-        throw (new GLException("failed to locate index of buffer in internal array store"));
+        return buffObj;
     }
 
     /*
@@ -1288,7 +1285,7 @@ public class GL3Handle implements GLHandle {
     private class BufferObject {
 
         int[] vertIndices, vertNum;
-        int vbo, vao, nobjs, objCount, size;
+        int id, vbo, vao, nobjs, objCount, size;
         boolean textured;
         GeomFunc drawFunc;
         BufferUsage storeHint;
@@ -1345,26 +1342,14 @@ public class GL3Handle implements GLHandle {
     @Override
     public void drawText(final String text, final int x, final int y, final float[] rgba) {
 
-        final GL2GL3 gl = getGL2GL3();
-        int cprog = GLUtils.glGetInteger(gl, GL2ES2.GL_CURRENT_PROGRAM);
-        gl.glUseProgram(0);
-
-        textRender.beginRendering(swt, sht);
-        textRender.setSmoothing(config.getAsBool(Property.GL_RENDER_TEXT_SMOOTH));
-        textRender.setUseVertexArrays(config.getAsBool(Property.GL_RENDER_TEXT_USE_VAO));
-        textRender.setColor(rgba[0], rgba[1], rgba[2], rgba[3]);
-        textRender.draw(text, x, y);
-        textRender.endRendering();
-
-        checkGLError("drawText/TextRenderer");
-
-        gl.glUseProgram(cprog);
+        textBatch.add(text, x, y, rgba);
+        textBatch.flush(this);
     }
 
     /**
      * Draws the given array of text strings at their respective screen
      * coordinates specified in IntBuffer 'coords' with their respective colors
-     * in FloatBuffer colors
+     * in FloatBuffer colors. All strings are drawn as a single text batch.
      *
      * @param texts
      * @param coords
@@ -1383,31 +1368,54 @@ public class GL3Handle implements GLHandle {
             if (colors.position() < colors.limit()) {
                 colors.get(color, 0, Math.min(colors.remaining(), color.length));
             }
-            drawText(s, x, y, color);
+            textBatch.add(s, x, y, color);
         }
+        textBatch.flush(this);
     }
 
     /**
-     * Re-creates the internal TextRenderer with the given Font.
+     * @return the text batch used by the drawText methods; text can be queued
+     *         on it over the course of a frame and drawn with a single
+     *         {@link TextBatch#flush(GL3Handle)}
+     */
+    public TextBatch getTextBatch() {
+
+        return textBatch;
+    }
+
+    /**
+     * Replaces the glyph atlas used for text rendering with one for the given
+     * Font. Must be called from the GL thread.
      *
      * @param font
      */
     @Override
     public void setFont(final Font font) {
 
-        textRender.dispose();
-        textRender = new TextRenderer(font, true, true, null, config.getAsBool(Property.GL_RENDER_TEXT_MIPMAP));
+        if (textBatch != null) {
+            textBatch.dispose(this);
+            glyphAtlas.dispose();
+        }
+        glyphAtlas = new GlyphAtlas(font, config.getAsBool(Property.GL_RENDER_TEXT_SMOOTH),
+                        config.getAsBool(Property.GL_RENDER_TEXT_MIPMAP), GlyphAtlas.DEFAULT_PAGE_SIZE,
+                        GlyphAtlas.DEFAULT_LAYOUT_CACHE_SIZE);
+        textBatch = new TextBatch(glyphAtlas);
     }
 
     @Override
     public void setEnabled(final GLFeature feature, final boolean enable) {
 
+        Boolean state = featureState[feature.ordinal()];
+        if (state != null && state == enable) {
+            return;
+        }
         final GL gl = getGL();
         if (enable) {
             gl.glEnable(feature.getGLCommand());
         } else {
             gl.glDisable(feature.getGLCommand());
         }
+        featureState[feature.ordinal()] = enable;
     }
 
     /**
@@ -1418,6 +1426,10 @@ public class GL3Handle implements GLHandle {
     @Override
     public void setBlendFunc(final AlphaFunc blendFunc) {
 
+        if (blendFunc == boundBlendFunc) {
+            return;
+        }
+        boundBlendFunc = blendFunc;
         final GL gl = getGL();
         switch (blendFunc) {
         case CLEAR:
@@ -1467,14 +1479,80 @@ public class GL3Handle implements GLHandle {
         }
     }
 
+    /**
+     * Clears all cached GL state so that the next texture bind, feature toggle,
+     * blend function or program change is issued to GL again. Must be called
+     * after GL state has been modified without going through this handle or
+     * {@link GLProgram}.
+     */
+    @Override
+    public void invalidateStateCache() {
+
+        boundTex = null;
+        boundBlendFunc = null;
+        texTargetEnabled = null;
+        Arrays.fill(featureState, null);
+        GLProgram.invalidateBinding();
+    }
+
+    /*
+     * Last known state of the given feature, or null if unknown.
+     */
+    Boolean getCachedFeatureState(final GLFeature feature) {
+
+        return featureState[feature.ordinal()];
+    }
+
+    /*
+     * Last blend function set through this handle, or null if unknown.
+     */
+    AlphaFunc getCachedBlendFunc() {
+
+        return boundBlendFunc;
+    }
+
+    /*
+     * Uploads the viewport projection with an identity transform to the
+     * current program without changing the stored transform; pushTransform()
+     * restores it.
+     */
+    void pushIdentityTransform() {
+
+        GLProgram prog = GLProgram.getCurrentProgram();
+        prog.setUniformMatrix(UNIFORM_ORTHO_MATRIX, 4, orthoMatrix);
+        orthoMatrix.rewind();
+        prog.setUniformf(UNIFORM_TRANSLATE, 0, 0);
+        prog.setUniformf(UNIFORM_ROTATE, 0);
+        prog.setUniformf(UNIFORM_ROTATE_PIVOT, 0, 0);
+        prog.setUniformf(UNIFORM_SCALE, 1, 1);
+        checkGLError("pushIdentityTransform");
+    }
+
+    /*
+     * Replaces the contents of a textured, non-static quad buffer with
+     * 'nquads' quads of 16 floats each (x, y, s, t per strip vertex) without
+     * any GL calls; the data is uploaded by the next draw2f.
+     */
+    void putTexturedQuads2f(final int buffId, final float[] verts, final int nquads) {
+
+        BufferObject buffObj = findBufferById(buffId);
+        if ( !buffObj.textured || buffObj.storeHint == BufferUsage.STATIC_DRAW || nquads > buffObj.nobjs) {
+            throw (new IllegalArgumentException("buffer " + buffId + " cannot hold " + nquads + " textured quads"));
+        }
+        FloatBuffer floatBuff = (FloatBuffer) buffObj.data;
+        floatBuff.clear();
+        floatBuff.put(verts, 0, nquads * 16);
+        buffObj.objCount = nquads;
+    }
+
     @Override
     public void dispose() {
 
-        textRender.dispose();
-        if (buffInfo != null) {
-            for (BufferObject buffObj : buffInfo) {
-                destroyBuff(buffObj.vbo);
-            }
+        textBatch.dispose(this);
+        glyphAtlas.dispose();
+        lightBuff.dispose(getGL());
+        for (int id : buffInfo.handles()) {
+            destroyBuff(id);
         }
     }
 
@@ -134,6 +134,18 @@ public interface GLHandle {
      */
     public void setRectTexCoords(Texture2D rectCoords);
 
+    /**
+     * Sets the texture coordinates to the four corners of the given rectangle
+     * in texture space. This is useful for drawing sub-images of a texture,
+     * e.g. regions of a {@link com.snap2d.atlas.TextureAtlas}.
+     *
+     * @param left
+     * @param bottom
+     * @param right
+     * @param top
+     */
+    public void setRectTexCoords(float left, float bottom, float right, float top);
+
     // ---- Data Store/Access and Drawing ---- //
 
     /**
@@ -314,6 +326,14 @@ public interface GLHandle {
 
     public void setBlendFunc(AlphaFunc func);
 
+    /**
+     * Clears any GL state cached by this handle (bound texture, enabled
+     * features, blend function, current program) so that it is re-applied on
+     * next use. Must be called after GL state has been changed without going
+     * through the handle, e.g. by third party rendering code.
+     */
+    public void invalidateStateCache();
+
     public void dispose();
 
     public boolean isGL3();
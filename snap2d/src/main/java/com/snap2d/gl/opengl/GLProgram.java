@@ -37,6 +37,10 @@ public class GLProgram {
 
     private static GLProgram defaultShaderProg, currentShaderProg;
 
+    // id of the last program bound through GLProgram, or -1 if unknown; used
+    // to skip redundant glUseProgram calls
+    private static int boundProgId = -1;
+
     private final int progId;
     private final ArrayList<GLShader> shaders = new ArrayList<GLShader>();
 
@@ -144,6 +148,9 @@ public class GLProgram {
      */
     public static boolean isDefaultProgEnabled() {
 
+        if (boundProgId >= 0) {
+            return defaultShaderProg != null && defaultShaderProg.progId == boundProgId;
+        }
         final GL gl = GLContext.getCurrentGL();
         int currId = GLUtils.glGetInteger(gl, GL2ES2.GL_CURRENT_PROGRAM);
         if (defaultShaderProg != null && defaultShaderProg.progId == currId) {
@@ -210,12 +217,16 @@ public class GLProgram {
     }
 
     /**
-     * Enable the shader program for use in subsequent pipeline calls.
+     * Enable the shader program for use in subsequent pipeline calls. Does
+     * nothing if the program is already bound.
      */
     public void enable() {
 
-        final GL2GL3 gl = getGL().getGL2GL3();
-        gl.glUseProgram(progId);
+        if (boundProgId != progId) {
+            final GL2GL3 gl = getGL().getGL2GL3();
+            gl.glUseProgram(progId);
+            boundProgId = progId;
+        }
         currentShaderProg = this;
     }
 
@@ -227,6 +238,7 @@ public class GLProgram {
 
         final GL2ES2 gl = getGL();
         gl.glUseProgram(0);
+        boundProgId = 0;
         if ( !defaultProg) {
             defaultShaderProg.enable();
         }
@@ -459,6 +471,9 @@ public class GLProgram {
             gls.dispose();
         }
         gl.glDeleteProgram(progId);
+        if (boundProgId == progId) {
+            boundProgId = -1;
+        }
     }
 
     /**
@@ -473,6 +488,17 @@ public class GLProgram {
         return gl.glGetUniformLocation(progId, uniform);
     }
 
+    /**
+     * Clears the cached program binding so that the next call to
+     * {@link #enable()} re-binds its program. This must be called after the
+     * current program has been changed without going through GLProgram (e.g.
+     * by a third party renderer calling glUseProgram directly).
+     */
+    public static void invalidateBinding() {
+
+        boundProgId = -1;
+    }
+
     static void setDefaultProgram(final GLProgram newDefaultProg) {
 
         defaultShaderProg = newDefaultProg;
@@ -12,9 +12,6 @@
 
 package com.snap2d.gl.opengl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
@@ -25,13 +22,15 @@ import com.jogamp.newt.opengl.GLWindow;
 import com.jogamp.opengl.FBObject;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2;
-import com.jogamp.opengl.GL2ES2;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.GLEventListener;
 import com.jogamp.opengl.util.Gamma;
 import com.snap2d.ThreadManager;
 import com.snap2d.gl.CrashReportWindow;
+import com.snap2d.gl.FramePacer;
+import com.snap2d.gl.FrameProfiler;
+import com.snap2d.gl.RenderQueue;
 import com.snap2d.gl.opengl.GLConfig.Property;
 import com.snap2d.gl.spi.RenderController;
 
@@ -55,16 +54,30 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
     int wt, ht;
 
-    protected List<GLRenderable> rtasks = new ArrayList<GLRenderable>(), delQueue = new Vector<GLRenderable>(),
-                    initQueue = new Vector<GLRenderable>();
-    protected List<QueuedGLRenderable> addQueue = new Vector<QueuedGLRenderable>();
+    // drained on the GL thread, so that added renderables are initialized
+    // with a current context
+    protected final RenderQueue<GLRenderable> renderQueue = new RenderQueue<GLRenderable>(GLRenderable.class) {
+
+        @Override
+        protected void onAdded(final GLRenderable r) {
+
+            r.init(handle);
+        }
+
+        @Override
+        protected void onRemoved(final GLRenderable r) {
+
+            profiler.remove(r);
+        }
+    };
     protected GLConfig config;
     protected GLWindow glWin;
     protected GLHandle handle;
     protected GLRenderLoop loop = new GLRenderLoop();
     protected ThreadManager exec = new ThreadManager();
-    protected volatile boolean updateDisplay = true, vsync;
+    protected volatile boolean updateDisplay = true, vsync, queueMode;
     protected volatile float gamma = 1.0f;
+    protected final FrameProfiler profiler = new FrameProfiler();
 
     private final Semaphore loopChk = new Semaphore(1, true);
     private CountDownLatch awaitShutdown;
@@ -77,13 +90,15 @@ public class GLRenderControl implements RenderController, GLEventListener {
         this.glWin = glWin;
     }
 
-    private volatile GLRenderable[] renderables = new GLRenderable[0]; // independent
-    // of
-    // task
-    // list
-
     private FBObject fbo;
 
+    // render queue mode state; 'sorted' holds the renderables in the order
+    // they were drawn last frame, so it is usually already close to sorted,
+    // and 'sortIndex' the position of each in the render queue
+    private GLRenderable[] sorted = new GLRenderable[0], sortSource;
+    private long[] sortKeys = new long[0];
+    private int[] sortIndex = new int[0];
+
     /**
      *
      */
@@ -102,9 +117,18 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
         checkAddQueue();
 
-        for (GLRenderable r : renderables) {
+        GLRenderable[] drawList = (queueMode) ? sortRenderables() : renderQueue.get();
+        boolean profiling = profiler.isEnabled();
+        for (GLRenderable r : drawList) {
+            // no-op unless the last renderable switched programs
             GLProgram.enableDefaultProgram();
-            r.render(handle, loop.interpolation);
+            if (profiling) {
+                long start = System.nanoTime();
+                r.render(handle, loop.interpolation);
+                profiler.recordRender(r, System.nanoTime() - start);
+            } else {
+                r.render(handle, loop.interpolation);
+            }
         }
 
     }
@@ -116,7 +140,7 @@ public class GLRenderControl implements RenderController, GLEventListener {
     public void dispose(final GLAutoDrawable arg0) {
 
         Gamma.resetDisplayGamma(glWin);
-        for (GLRenderable glr : renderables) {
+        for (GLRenderable glr : renderQueue.get()) {
             glr.dispose(handle);
         }
         // fbo.destroy(arg0.getGL());
@@ -141,17 +165,7 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
     private void checkAddQueue() {
 
-        if (addQueue.size() > 0) {
-
-            for (QueuedGLRenderable qr : addQueue) {
-                rtasks.add(qr.pos, qr.r);
-                qr.r.init(handle);
-            }
-
-            addQueue.clear();
-
-            renderables = rtasks.toArray(new GLRenderable[rtasks.size()]);
-        }
+        renderQueue.drain();
     }
 
     /**
@@ -172,7 +186,7 @@ public class GLRenderControl implements RenderController, GLEventListener {
         // fbo.attachTexture2D(gl, 0, true);
         // fbo.syncSamplingSink(gl);
 
-        for (GLRenderable r : renderables) {
+        for (GLRenderable r : renderQueue.get()) {
             r.resize(handle, width, height);
         }
         Gamma.resetDisplayGamma(glWin);
@@ -235,16 +249,13 @@ public class GLRenderControl implements RenderController, GLEventListener {
      *            first to be rendered on each frame and LAST is provided as a
      *            convenience field to insert at position size - 1 (aka the end
      *            of the queue, thus last to be rendered on each frame).
+     *            Additions and removals are applied in the order they were
+     *            made at the start of the next frame, on the GL thread. Safe to
+     *            call from any thread; never blocks.
      */
-    public synchronized void addRenderable(final GLRenderable r, int pos) {
+    public void addRenderable(final GLRenderable r, final int pos) {
 
-        if (pos == POSITION_LAST) {
-            pos = (addQueue.size() == 0) ? rtasks.size() : rtasks.size() + addQueue.size();
-        }
-        QueuedGLRenderable qr = new QueuedGLRenderable();
-        qr.pos = pos;
-        qr.r = r;
-        addQueue.add(qr);
+        renderQueue.add(r, pos);
     }
 
     /**
@@ -253,14 +264,14 @@ public class GLRenderControl implements RenderController, GLEventListener {
      * @param r
      *            removes the GLRenderable from the queue.
      */
-    public synchronized void removeRenderable(final GLRenderable r) {
+    public void removeRenderable(final GLRenderable r) {
 
-        delQueue.add(r);
+        renderQueue.remove(r);
     }
 
-    public synchronized boolean isRegistered(final GLRenderable r) {
+    public boolean isRegistered(final GLRenderable r) {
 
-        return rtasks.contains(r);
+        return renderQueue.contains(r);
     }
 
     public void setVSync(final boolean enabled) {
@@ -286,16 +297,16 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
     private void updateGamma() {
 
-        final GL gl = GLContext.getCurrentGL();
         if (handle.isGL2()) {
             Gamma.setDisplayGamma(glWin, gamma, 0, 1);
         } else if (handle.isGL3()) {
-            int currProg = GLUtils.glGetInteger(gl, GL2ES2.GL_CURRENT_PROGRAM);
-            GLProgram.enableDefaultProgram();
-            if (GLProgram.isDefaultProgEnabled()) {
+            GLProgram currProg = GLProgram.getCurrentProgram();
+            if (GLProgram.enableDefaultProgram()) {
                 GLProgram.getDefaultProgram().setUniformf("gamma", gamma);
             }
-            gl.getGL2GL3().glUseProgram(currProg);
+            if (currProg != null) {
+                currProg.enable();
+            }
         }
     }
 
@@ -310,6 +321,68 @@ public class GLRenderControl implements RenderController, GLEventListener {
         return gamma;
     }
 
+    /**
+     * Enables or disables render queue mode. In render queue mode, renderables
+     * implementing {@link SortedGLRenderable} are drawn in ascending order of
+     * their sort keys (see {@link RenderKey}) on each frame so that redundant
+     * GL state changes between them are minimized. All other renderables are
+     * treated as having a key of 0 (layer 0, no state). Renderables with equal
+     * keys are drawn in queue order. When disabled (the default), renderables are drawn in queue
+     * order.
+     *
+     * @param enabled
+     */
+    public void setRenderQueueMode(final boolean enabled) {
+
+        queueMode = enabled;
+    }
+
+    public boolean isRenderQueueMode() {
+
+        return queueMode;
+    }
+
+    /*
+     * Insertion sort of the renderables by sort key, with ties broken by
+     * position in the render queue, so renderables with equal keys are always
+     * drawn in the order they were queued. The previous frame's order is
+     * reused while the renderable set doesn't change, which makes the sort
+     * close to linear when keys are stable between frames.
+     */
+    private GLRenderable[] sortRenderables() {
+
+        final GLRenderable[] src = renderQueue.get();
+        if (src != sortSource) {
+            sorted = src.clone();
+            sortKeys = new long[src.length];
+            sortIndex = new int[src.length];
+            for (int i = 0; i < src.length; i++ ) {
+                sortIndex[i] = i;
+            }
+            sortSource = src;
+        }
+        for (int i = 0; i < sorted.length; i++ ) {
+            GLRenderable r = sorted[i];
+            sortKeys[i] = (r instanceof SortedGLRenderable) ? ((SortedGLRenderable) r).getSortKey() : 0;
+        }
+        for (int i = 1; i < sorted.length; i++ ) {
+            GLRenderable r = sorted[i];
+            long key = sortKeys[i];
+            int index = sortIndex[i];
+            int j = i - 1;
+            while (j >= 0 && (sortKeys[j] > key || (sortKeys[j] == key && sortIndex[j] > index))) {
+                sorted[j + 1] = sorted[j];
+                sortKeys[j + 1] = sortKeys[j];
+                sortIndex[j + 1] = sortIndex[j];
+                j-- ;
+            }
+            sorted[j + 1] = r;
+            sortKeys[j + 1] = key;
+            sortIndex[j + 1] = index;
+        }
+        return sorted;
+    }
+
     /**
      * Gets the last recorded number of frames rendered per second.
      *
@@ -332,6 +405,26 @@ public class GLRenderControl implements RenderController, GLEventListener {
         return loop.tps;
     }
 
+    /**
+     * @return the FramePacer used by the render loop to wait between frames;
+     *         can be used to query frame timing jitter
+     */
+    public FramePacer getFramePacer() {
+
+        return loop.pacer;
+    }
+
+    /**
+     * @return the FrameProfiler for this controller's render loop; profiling
+     *         is disabled until {@link FrameProfiler#setEnabled(boolean)} is
+     *         called
+     */
+    @Override
+    public FrameProfiler getFrameProfiler() {
+
+        return profiler;
+    }
+
     /**
      * Sets the frame rate that the rendering algorithm will target when
      * interpolating.
@@ -392,14 +485,7 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
     public void copyRenderablesTo(final GLRenderControl rc) {
 
-        rc.addQueue.addAll(addQueue);
-        rc.delQueue.addAll(delQueue);
-        for (GLRenderable glr : rtasks) {
-            QueuedGLRenderable queued = new QueuedGLRenderable();
-            queued.r = glr;
-            queued.pos = rtasks.indexOf(glr);
-            rc.addQueue.add(queued);
-        }
+        renderQueue.copyTo(rc.renderQueue);
     }
 
     /**
@@ -416,10 +502,8 @@ public class GLRenderControl implements RenderController, GLEventListener {
         } catch (InterruptedException e1) {
             log.warning("GLRenderControl.dispose: interrupted before shutdown completion");
         }
-        rtasks.clear();
-        addQueue.clear();
-        delQueue.clear();
-        renderables = null;
+        renderQueue.clear();
+        profiler.clear();
     }
 
     /**
@@ -446,6 +530,8 @@ public class GLRenderControl implements RenderController, GLEventListener {
 
         volatile int fps, tps;
         volatile boolean running, active, noUpdate, printFrames;
+
+        final FramePacer pacer = new FramePacer();
         volatile float interpolation = 1.0f;
 
         @Override
@@ -482,8 +568,8 @@ public class GLRenderControl implements RenderController, GLEventListener {
                         try {
                             Thread.sleep(850);
                             boolean print = Boolean.getBoolean(Property.SNAP2D_PRINT_GLRENDER_STAT.getProperty());
-                            while ( !printFrames) {
-                                ;
+                            while ( !printFrames && running) {
+                                Thread.sleep(SLEEP_WHILE_INACTIVE);
                             }
                             String printStr = fps + " fps " + tps + " ticks";
                             if (print) {
@@ -510,23 +596,25 @@ public class GLRenderControl implements RenderController, GLEventListener {
             while (running) {
                 try {
 
-                    if (delQueue.size() > 0) {
-                        for (GLRenderable r : delQueue) {
-                            rtasks.remove(r);
-                        }
-                        delQueue.clear();
-
-                        renderables = rtasks.toArray(new GLRenderable[rtasks.size()]);
-                    }
-
                     double now = System.nanoTime();
                     if (active) {
 
-                        int updateCount = 0;
+                        boolean profiling = profiler.isEnabled();
+                        if (profiling) {
+                            profiler.beginFrame();
+                        }
 
+                        int updateCount = 0;
+                        long updateStart = System.nanoTime();
                         while (now - lastUpdateTime > timeBetweenUpdates && updateCount < maxUpdates && !noUpdate) {
-                            for (GLRenderable r : renderables) {
-                                r.update((long) now, (long) lastUpdateTime);
+                            for (GLRenderable r : renderQueue.get()) {
+                                if (profiling) {
+                                    long start = System.nanoTime();
+                                    r.update((long) now, (long) lastUpdateTime);
+                                    profiler.recordUpdate(r, System.nanoTime() - start);
+                                } else {
+                                    r.update((long) now, (long) lastUpdateTime);
+                                }
                             }
 
                             lastUpdateTime += timeBetweenUpdates;
@@ -539,7 +627,13 @@ public class GLRenderControl implements RenderController, GLEventListener {
                         }
 
                         interpolation = Math.min(1.0f, (float) ( (now - lastUpdateTime) / timeBetweenUpdates));
+                        long renderStart = System.nanoTime();
                         glWin.display();
+                        if (profiling) {
+                            profiler.recordUpdatePhase(renderStart - updateStart);
+                            profiler.recordRenderPhase(System.nanoTime() - renderStart);
+                            profiler.endFrame();
+                        }
                         lastRenderTime = now;
                         frameCount++ ;
 
@@ -555,11 +649,12 @@ public class GLRenderControl implements RenderController, GLEventListener {
                     }
 
                     loopChk.release();
-                    while (now - lastRenderTime < targetTimeBetweenRenders
-                                    && (now - lastUpdateTime < timeBetweenUpdates || noUpdate)) {
-                        Thread.yield();
-                        now = System.nanoTime();
+                    // wait for the next frame or tick, whichever is due first
+                    double deadline = lastRenderTime + targetTimeBetweenRenders;
+                    if ( !noUpdate) {
+                        deadline = Math.min(deadline, lastUpdateTime + timeBetweenUpdates);
                     }
+                    pacer.awaitDeadline((long) deadline);
                     loopChk.acquire();
 
                     if ( !active) {
@@ -640,12 +735,6 @@ public class GLRenderControl implements RenderController, GLEventListener {
         }
     }
 
-    protected class QueuedGLRenderable {
-
-        GLRenderable r;
-        int pos;
-    }
-
     private void checkCompat() {
 
         GLContext ctxt = glWin.getContext();
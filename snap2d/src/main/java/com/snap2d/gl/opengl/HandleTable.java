@@ -0,0 +1,156 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Generational handle table used by the GL handles to map the integer ids
+ * given out to client code onto internal objects in constant time. Each handle
+ * encodes a slot index in its low bits and the generation of that slot in its
+ * high bits. Removing an object bumps the generation of its slot, so handles
+ * held onto after removal will no longer resolve, even once the slot has been
+ * reused. Freed slots are recycled through a free list and the backing arrays
+ * grow geometrically, so insertion is amortized constant time.<br/>
+ * <br/>
+ * Handles are always positive and never zero. This class is not thread safe;
+ * like the rest of the GL handle state, it should only be accessed from the GL
+ * thread.
+ *
+ * @author Brian Groenke
+ *
+ */
+final class HandleTable<T> {
+
+    static final int INDEX_BITS = 20, INDEX_MASK = (1 << INDEX_BITS) - 1, GEN_MASK = 0x7ff;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] objs;
+    private int[] gens, free;
+    private int freeCount, next, size;
+
+    HandleTable() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    HandleTable(final int initCapacity) {
+
+        int cap = Math.max(1, initCapacity);
+        objs = new Object[cap];
+        gens = new int[cap];
+        free = new int[cap];
+        Arrays.fill(gens, 1);
+    }
+
+    /**
+     * Stores the given object in the table.
+     *
+     * @param obj
+     *            the object to store; must not be null
+     * @return the handle that can be used to look up the object
+     */
+    int add(final T obj) {
+
+        if (obj == null) {
+            throw (new IllegalArgumentException("null objects cannot be stored in a handle table"));
+        }
+        int ind;
+        if (freeCount > 0) {
+            ind = free[ --freeCount];
+        } else {
+            if (next > INDEX_MASK) {
+                throw (new IllegalStateException("handle table full: " + next + " entries"));
+            }
+            if (next == objs.length) {
+                grow();
+            }
+            ind = next++ ;
+        }
+        objs[ind] = obj;
+        size++ ;
+        return (gens[ind] << INDEX_BITS) | ind;
+    }
+
+    /**
+     * @param handle
+     * @return the object stored for the given handle, or null if the handle is
+     *         invalid or has been removed
+     */
+    @SuppressWarnings("unchecked")
+    T get(final int handle) {
+
+        int ind = handle & INDEX_MASK;
+        if (handle <= 0 || ind >= next || gens[ind] != (handle >>> INDEX_BITS)) {
+            return null;
+        }
+        return (T) objs[ind];
+    }
+
+    /**
+     * Removes the object stored for the given handle. The handle (and any
+     * copies of it) will be invalidated.
+     *
+     * @param handle
+     * @return the removed object, or null if the handle was not valid
+     */
+    T remove(final int handle) {
+
+        T obj = get(handle);
+        if (obj == null) {
+            return null;
+        }
+        int ind = handle & INDEX_MASK;
+        objs[ind] = null;
+        // generation 0 is skipped so that handles are never zero
+        gens[ind] = (gens[ind] & GEN_MASK) == GEN_MASK ? 1 : gens[ind] + 1;
+        free[freeCount++ ] = ind;
+        size-- ;
+        return obj;
+    }
+
+    /**
+     * @return an array of all currently valid handles in slot order
+     */
+    int[] handles() {
+
+        int[] handles = new int[size];
+        for (int i = 0, n = 0; i < next; i++ ) {
+            if (objs[i] != null) {
+                handles[n++ ] = (gens[i] << INDEX_BITS) | i;
+            }
+        }
+        return handles;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    boolean isEmpty() {
+
+        return size == 0;
+    }
+
+    private void grow() {
+
+        int cap = objs.length << 1;
+        objs = Arrays.copyOf(objs, cap);
+        free = Arrays.copyOf(free, cap);
+        int prev = gens.length;
+        gens = Arrays.copyOf(gens, cap);
+        Arrays.fill(gens, prev, cap, 1);
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES3;
+import com.jogamp.opengl.GL2GL3;
+import com.snap2d.light.LightSource;
+import com.snap2d.light.PointLight;
+
+import bg.x2d.geo.PointUD;
+
+/**
+ * Packs light data for GL3Handle into two std140 uniform blocks and uploads
+ * them only when a light (or the light set) has changed since the last upload.
+ * <br/>
+ * <br/>
+ * Lights are culled against the display and binned into screen-space tiles on
+ * the CPU, so a fragment only evaluates the lights whose area of effect
+ * overlaps its tile. Shaders declare the blocks as:
+ *
+ * <pre>
+ * layout(std140) uniform LightData {
+ *     vec4 ambient;                  // rgb = ambient color, a = ambient factor
+ *     ivec4 light_info;              // light count, tile size, tile columns, tile rows
+ *     vec4 light_pos[MAX_LIGHTS];    // x, y, radius, intensity
+ *     vec4 light_color[MAX_LIGHTS];  // r, g, b, max distance
+ * };
+ * layout(std140) uniform LightTiles {
+ *     ivec4 tile_ranges[MAX_TILES / 2];       // (offset, count) pairs per tile
+ *     ivec4 tile_lights[MAX_TILE_LIGHTS / 4]; // light indices, packed 4 per element
+ * };
+ * </pre>
+ *
+ * A tile size of 0 means tiling was not possible (unknown display size or too
+ * many light/tile overlaps) and all lights should be evaluated.
+ *
+ * @author Brian Groenke
+ *
+ */
+final class LightBuffer {
+
+    static final int MAX_LIGHTS = 256, MAX_TILES = 512, MAX_TILE_LIGHTS = 3072;
+    static final int MIN_TILE_SIZE = 32;
+
+    static final String LIGHT_DATA_BLOCK = "LightData", LIGHT_TILES_BLOCK = "LightTiles";
+    static final int LIGHT_DATA_BINDING = 0, LIGHT_TILES_BINDING = 1;
+
+    // luminance below which a light's contribution is ignored
+    private static final float MIN_LUMINANCE = 0.001f;
+
+    // std140 byte offsets
+    private static final int INFO_OFFS = 16, POS_OFFS = 32, COLOR_OFFS = POS_OFFS + 16 * MAX_LIGHTS,
+                    DATA_SIZE = COLOR_OFFS + 16 * MAX_LIGHTS, INDEX_OFFS = 8 * MAX_TILES,
+                    TILES_SIZE = INDEX_OFFS + 4 * MAX_TILE_LIGHTS;
+
+    private static final Logger log = Logger.getLogger(LightBuffer.class.getCanonicalName());
+
+    private final ByteBuffer data = Buffers.newDirectByteBuffer(DATA_SIZE);
+    private final ByteBuffer tiles = Buffers.newDirectByteBuffer(TILES_SIZE);
+    private int dataUbo, tilesUbo;
+    private int boundProgId = -1;
+
+    // snapshot of the light set at 'version' and each light's mod count when
+    // it was last packed; only PointLights track modifications, so any other
+    // LightSource is re-packed every frame
+    private LightSource[] lights = new LightSource[0];
+    private int[] modCounts = new int[0];
+    private int version = -1;
+
+    // packed light bounds for tile binning
+    private final float[] lx = new float[MAX_LIGHTS], ly = new float[MAX_LIGHTS], ldist = new float[MAX_LIGHTS];
+    private final int[] tileCounts = new int[MAX_TILES], tileCursor = new int[MAX_TILES];
+    private final float[] colorBuff = new float[3];
+
+    private int lightCount, tileSize, tileCols, tileRows, indexCount;
+    private boolean warnedOverflow;
+
+    /**
+     * Re-packs the light data if anything changed since the last call.
+     *
+     * @param lightSet
+     *            all lights known to the handle
+     * @param setVersion
+     *            a counter the caller changes whenever the light set, the
+     *            ambient light or the display size changes
+     * @return true if the light data changed and needs to be uploaded
+     */
+    boolean pack(final Collection<LightSource> lightSet,
+                 final int setVersion,
+                 final float[] ambientColor,
+                 final float ambientFactor,
+                 final int width,
+                 final int height) {
+
+        if (setVersion != version) {
+            lights = lightSet.toArray(new LightSource[lightSet.size()]);
+            modCounts = new int[lights.length];
+            version = setVersion;
+        } else if ( !lightsChanged()) {
+            return false;
+        }
+
+        data.putFloat(0, ambientColor[0]);
+        data.putFloat(4, ambientColor[1]);
+        data.putFloat(8, ambientColor[2]);
+        data.putFloat(12, ambientFactor);
+
+        lightCount = 0;
+        int dropped = 0;
+        for (int i = 0; i < lights.length; i++ ) {
+            LightSource light = lights[i];
+            PointLight point = (light instanceof PointLight) ? (PointLight) light : null;
+            float x, y;
+            if (point != null) {
+                modCounts[i] = point.getModCount();
+                x = (float) point.getX();
+                y = (float) point.getY();
+            } else {
+                PointUD loc = light.getLocation();
+                x = (float) loc.ux;
+                y = (float) loc.uy;
+            }
+            float radius = light.getRadius(), intensity = light.getIntensity();
+            float maxDist = (intensity > 0) ? radius * ((float) Math.sqrt(intensity / MIN_LUMINANCE) - 1) : 0;
+            if ( !light.isEnabled() || maxDist <= 0) {
+                continue;
+            }
+            if (width > 0 && height > 0
+                            && (x + maxDist < 0 || x - maxDist > width || y + maxDist < 0 || y - maxDist > height)) {
+                continue;
+            }
+            if (lightCount == MAX_LIGHTS) {
+                dropped++ ;
+                continue;
+            }
+            int n = lightCount++ ;
+            int offs = POS_OFFS + 16 * n;
+            data.putFloat(offs, x);
+            data.putFloat(offs + 4, y);
+            data.putFloat(offs + 8, radius);
+            data.putFloat(offs + 12, intensity);
+            float[] color = (point != null) ? point.getColor(colorBuff) : light.getColor();
+            offs = COLOR_OFFS + 16 * n;
+            data.putFloat(offs, color[0]);
+            data.putFloat(offs + 4, color[1]);
+            data.putFloat(offs + 8, color[2]);
+            data.putFloat(offs + 12, maxDist);
+            lx[n] = x;
+            ly[n] = y;
+            ldist[n] = maxDist;
+        }
+        if (dropped > 0 && !warnedOverflow) {
+            log.warning("more than " + MAX_LIGHTS + " visible lights; " + dropped + " light(s) not rendered");
+            warnedOverflow = true;
+        }
+
+        binLights(width, height);
+        data.putInt(INFO_OFFS, lightCount);
+        data.putInt(INFO_OFFS + 4, tileSize);
+        data.putInt(INFO_OFFS + 8, tileCols);
+        data.putInt(INFO_OFFS + 12, tileRows);
+        return true;
+    }
+
+    /**
+     * Uploads the packed data. Must be called from the GL thread after
+     * {@link #pack} returns true.
+     */
+    void upload(final GL gl) {
+
+        if (dataUbo == 0) {
+            create(gl);
+        }
+        gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, dataUbo);
+        subData(gl, data, 0, POS_OFFS + 16 * lightCount);
+        subData(gl, data, COLOR_OFFS, 16 * lightCount);
+        if (tileSize > 0) {
+            gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, tilesUbo);
+            subData(gl, tiles, 0, 8 * tileCols * tileRows);
+            subData(gl, tiles, INDEX_OFFS, 4 * indexCount);
+        }
+        gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, 0);
+    }
+
+    /**
+     * Connects the light blocks of the given program, if it declares them, to
+     * this buffer's binding points.
+     */
+    void bind(final GL2GL3 gl, final GLProgram prog) {
+
+        int progId = prog.getProgramObject();
+        if (progId == boundProgId) {
+            return;
+        }
+        int ind = gl.glGetUniformBlockIndex(progId, LIGHT_DATA_BLOCK);
+        if (ind != GL2ES3.GL_INVALID_INDEX) {
+            gl.glUniformBlockBinding(progId, ind, LIGHT_DATA_BINDING);
+        }
+        ind = gl.glGetUniformBlockIndex(progId, LIGHT_TILES_BLOCK);
+        if (ind != GL2ES3.GL_INVALID_INDEX) {
+            gl.glUniformBlockBinding(progId, ind, LIGHT_TILES_BINDING);
+        }
+        boundProgId = progId;
+    }
+
+    void dispose(final GL gl) {
+
+        if (dataUbo != 0) {
+            gl.glDeleteBuffers(2, new int[] { dataUbo, tilesUbo }, 0);
+            dataUbo = tilesUbo = 0;
+        }
+        version = -1;
+        boundProgId = -1;
+    }
+
+    int getLightCount() {
+
+        return lightCount;
+    }
+
+    int getTileSize() {
+
+        return tileSize;
+    }
+
+    private boolean lightsChanged() {
+
+        for (int i = 0; i < lights.length; i++ ) {
+            LightSource light = lights[i];
+            if ( !(light instanceof PointLight) || ((PointLight) light).getModCount() != modCounts[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Counting sort of light indices into screen tiles: count the lights
+     * overlapping each tile, prefix sum the counts into offsets, then fill.
+     */
+    private void binLights(final int width, final int height) {
+
+        tileSize = tileCols = tileRows = indexCount = 0;
+        if (width <= 0 || height <= 0 || lightCount == 0) {
+            return;
+        }
+        int size = MIN_TILE_SIZE;
+        while (ceilDiv(width, size) * ceilDiv(height, size) > MAX_TILES) {
+            size <<= 1;
+        }
+        int cols = ceilDiv(width, size), rows = ceilDiv(height, size);
+
+        Arrays.fill(tileCounts, 0, cols * rows, 0);
+        int total = 0;
+        for (int i = 0; i < lightCount; i++ ) {
+            int tx0 = tile(lx[i] - ldist[i], size, cols), tx1 = tile(lx[i] + ldist[i], size, cols);
+            int ty0 = tile(ly[i] - ldist[i], size, rows), ty1 = tile(ly[i] + ldist[i], size, rows);
+            for (int ty = ty0; ty <= ty1; ty++ ) {
+                for (int tx = tx0; tx <= tx1; tx++ ) {
+                    tileCounts[ty * cols + tx]++ ;
+                }
+            }
+            total += (tx1 - tx0 + 1) * (ty1 - ty0 + 1);
+        }
+        if (total > MAX_TILE_LIGHTS) {
+            // fall back to evaluating every light per fragment
+            return;
+        }
+
+        int offs = 0;
+        for (int t = 0; t < cols * rows; t++ ) {
+            tiles.putInt(8 * t, offs);
+            tiles.putInt(8 * t + 4, tileCounts[t]);
+            tileCursor[t] = offs;
+            offs += tileCounts[t];
+        }
+        for (int i = 0; i < lightCount; i++ ) {
+            int tx0 = tile(lx[i] - ldist[i], size, cols), tx1 = tile(lx[i] + ldist[i], size, cols);
+            int ty0 = tile(ly[i] - ldist[i], size, rows), ty1 = tile(ly[i] + ldist[i], size, rows);
+            for (int ty = ty0; ty <= ty1; ty++ ) {
+                for (int tx = tx0; tx <= tx1; tx++ ) {
+                    tiles.putInt(INDEX_OFFS + 4 * tileCursor[ty * cols + tx]++ , i);
+                }
+            }
+        }
+        tileSize = size;
+        tileCols = cols;
+        tileRows = rows;
+        indexCount = total;
+    }
+
+    private void create(final GL gl) {
+
+        int[] ids = new int[2];
+        gl.glGenBuffers(2, ids, 0);
+        dataUbo = ids[0];
+        tilesUbo = ids[1];
+        gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, dataUbo);
+        gl.glBufferData(GL2ES3.GL_UNIFORM_BUFFER, DATA_SIZE, null, GL.GL_DYNAMIC_DRAW);
+        gl.glBindBuffer(GL2ES3.GL_UNIFORM_BUFFER, tilesUbo);
+        gl.glBufferData(GL2ES3.GL_UNIFORM_BUFFER, TILES_SIZE, null, GL.GL_DYNAMIC_DRAW);
+        gl.getGL2ES3().glBindBufferBase(GL2ES3.GL_UNIFORM_BUFFER, LIGHT_DATA_BINDING, dataUbo);
+        gl.getGL2ES3().glBindBufferBase(GL2ES3.GL_UNIFORM_BUFFER, LIGHT_TILES_BINDING, tilesUbo);
+    }
+
+    private static void subData(final GL gl, final ByteBuffer buff, final int offs, final int len) {
+
+        if (len <= 0) {
+            return;
+        }
+        buff.position(offs);
+        gl.glBufferSubData(GL2ES3.GL_UNIFORM_BUFFER, offs, len, buff);
+        buff.position(0);
+    }
+
+    private static int tile(final float coord, final int size, final int count) {
+
+        int t = (int) Math.floor(coord / size);
+        return Math.max(0, Math.min(count - 1, t));
+    }
+
+    private static int ceilDiv(final int n, final int d) {
+
+        return (n + d - 1) / d;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl.opengl;
+
+/**
+ * Static utilities for building the 64-bit sort keys returned by
+ * {@link SortedGLRenderable#getSortKey()}. From most to least significant, a
+ * key holds the layer (7 bits), shader program (16 bits), texture (24 bits)
+ * and blend function (8 bits), leaving the lowest 8 bits for user defined
+ * ordering. Layers always take priority, so drawing order between layers is
+ * preserved; within a layer, renderables are grouped by the most expensive
+ * state change first.
+ *
+ * @author Brian Groenke
+ *
+ */
+public final class RenderKey {
+
+    public static final int MAX_LAYER = 0x7f;
+
+    private static final int LAYER_SHIFT = 56, PROG_SHIFT = 40, TEX_SHIFT = 16, BLEND_SHIFT = 8;
+    private static final long PROG_MASK = 0xffff, TEX_MASK = 0xffffff, BLEND_MASK = 0xff, USER_MASK = 0xff;
+
+    private RenderKey() {
+
+    }
+
+    /**
+     * Creates a sort key from raw GL object ids.
+     *
+     * @param layer
+     *            the draw layer, 0 - {@link #MAX_LAYER}; lower layers are drawn
+     *            first
+     * @param program
+     *            the GL program object id, or 0 for none
+     * @param texture
+     *            the GL texture object id, or 0 for none
+     * @param blend
+     *            a blend function identifier, e.g. {@link AlphaFunc#ordinal()}
+     *            + 1, or 0 for none
+     * @param user
+     *            user defined ordering within identical state, 0-255
+     * @return the sort key
+     */
+    public static long create(final int layer, final int program, final int texture, final int blend, final int user) {
+
+        if (layer < 0 || layer > MAX_LAYER) {
+            throw (new IllegalArgumentException("layer must be in range 0-" + MAX_LAYER + ": " + layer));
+        }
+        return (long) layer << LAYER_SHIFT | (program & PROG_MASK) << PROG_SHIFT | (texture & TEX_MASK) << TEX_SHIFT
+                        | (blend & BLEND_MASK) << BLEND_SHIFT | (user & USER_MASK);
+    }
+
+    /**
+     * Creates a sort key for the given render state. Any of the state
+     * arguments may be null.
+     *
+     * @param layer
+     * @param program
+     * @param texture
+     * @param blend
+     * @return the sort key
+     */
+    public static long create(final int layer, final GLProgram program, final Texture2D texture, final AlphaFunc blend) {
+
+        return create(layer, (program != null) ? program.getProgramObject() : 0,
+                      (texture != null) ? texture.getTextureObject().getTextureObject() : 0,
+                      (blend != null) ? blend.ordinal() + 1 : 0, 0);
+    }
+
+    public static int getLayer(final long key) {
+
+        return (int) (key >>> LAYER_SHIFT);
+    }
+
+    public static int getProgram(final long key) {
+
+        return (int) (key >>> PROG_SHIFT & PROG_MASK);
+    }
+
+    public static int getTexture(final long key) {
+
+        return (int) (key >>> TEX_SHIFT & TEX_MASK);
+    }
+
+    public static int getBlend(final long key) {
+
+        return (int) (key >>> BLEND_SHIFT & BLEND_MASK);
+    }
+}
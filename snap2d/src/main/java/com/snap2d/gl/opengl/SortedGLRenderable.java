@@ -0,0 +1,34 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl.opengl;
+
+/**
+ * A GLRenderable that supplies a sort key describing the GL state it renders
+ * with. When render queue mode is enabled on a {@link GLRenderControl},
+ * renderables are drawn in ascending key order so that renderables sharing a
+ * shader, texture and blend function are drawn back to back. Keys should be
+ * built with {@link RenderKey}.
+ *
+ * @author Brian Groenke
+ *
+ */
+public interface SortedGLRenderable extends GLRenderable {
+
+    /**
+     * Called once per frame, before rendering, when render queue mode is
+     * enabled.
+     *
+     * @return the sort key for this renderable's next render call
+     */
+    public long getSortKey();
+}
@@ -0,0 +1,294 @@
+/*
+ *  Copyright (C) 2011-2013 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.gl.opengl;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import com.snap2d.atlas.AtlasRegion;
+import com.snap2d.atlas.Glyph;
+import com.snap2d.atlas.GlyphAtlas;
+import com.snap2d.atlas.GlyphRun;
+
+/**
+ * Collects text as glyph quads from a {@link GlyphAtlas} and draws them
+ * through the same textured quad buffers used for sprites. Queued glyphs are
+ * grouped by atlas page and color when flushed, so a whole frame's text
+ * usually takes one draw call per text color rather than one pass per string.
+ * <br/>
+ * <br/>
+ * Text positions are window pixel coordinates of the start of the baseline,
+ * with the origin in the lower left corner (the same convention as
+ * {@link GLHandle#drawText(String, int, int, float[])}). Text is drawn
+ * untransformed and alpha blended, using the default shader program.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class TextBatch {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    private static final String UNIFORM_TEXT_MODE = "text_mode", UNIFORM_TEXT_COLOR = "text_color";
+
+    private static final int INDEX_BITS = 24, MAX_QUEUED = 1 << INDEX_BITS;
+    private static final long INDEX_MASK = MAX_QUEUED - 1;
+
+    private static final Logger log = Logger.getLogger(TextBatch.class.getCanonicalName());
+
+    private final GlyphAtlas font;
+    private final int capacity;
+    private final float[] verts;
+
+    private int buffId;
+
+    // queued glyphs
+    private Glyph[] glyphs = new Glyph[64];
+    private float[] xs = new float[64], ys = new float[64];
+    private int[] colors = new int[64];
+    private long[] keys = new long[64];
+    private int count;
+
+    public TextBatch(final GlyphAtlas font) {
+
+        this(font, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param font
+     * @param capacity
+     *            maximum number of glyphs drawn per draw call; larger batches
+     *            are split into multiple calls
+     */
+    public TextBatch(final GlyphAtlas font, final int capacity) {
+
+        if (capacity <= 0) {
+            throw (new IllegalArgumentException("capacity must be > 0"));
+        }
+        this.font = font;
+        this.capacity = capacity;
+        this.verts = new float[capacity * 16];
+    }
+
+    /**
+     * Queues the given text, using the font's cached layout for it.
+     *
+     * @param text
+     * @param x
+     * @param y
+     * @param rgba
+     */
+    public void add(final String text, final float x, final float y, final float[] rgba) {
+
+        add(font.layout(text), x, y, rgba);
+    }
+
+    /**
+     * Queues a pre-computed layout; lines after the first are placed below the
+     * given baseline.
+     *
+     * @param run
+     * @param x
+     * @param y
+     * @param rgba
+     */
+    public void add(final GlyphRun run, final float x, final float y, final float[] rgba) {
+
+        int color = packColor(rgba);
+        ensureCapacity(count + run.getGlyphCount());
+        for (int i = 0; i < run.getGlyphCount(); i++ ) {
+            Glyph glyph = run.getGlyph(i);
+            glyphs[count] = glyph;
+            xs[count] = x + run.getGlyphX(i);
+            // convert from y-down layout space to the y-up window space of
+            // the glyph's bottom edge
+            ys[count] = y - run.getGlyphY(i) - glyph.getHeight();
+            colors[count] = color;
+            count++ ;
+        }
+    }
+
+    /**
+     * Draws and clears all queued text. Must be called from the GL thread.
+     *
+     * @param handle
+     */
+    public void flush(final GL3Handle handle) {
+
+        if (count == 0) {
+            return;
+        }
+        GLProgram prev = GLProgram.getCurrentProgram();
+        if ( !GLProgram.enableDefaultProgram()) {
+            log.warning("cannot draw text: no default program");
+            count = 0;
+            return;
+        }
+        GLProgram prog = GLProgram.getDefaultProgram();
+        if (buffId == 0) {
+            buffId = handle.createQuadBuffer2f(BufferUsage.STREAM_DRAW, capacity, true);
+        }
+
+        Boolean blendEnabled = handle.getCachedFeatureState(GLFeature.BLENDING);
+        AlphaFunc blendFunc = handle.getCachedBlendFunc();
+        handle.setEnabled(GLFeature.BLENDING, true);
+        handle.setBlendFunc(AlphaFunc.SRC_BLEND);
+        handle.pushIdentityTransform();
+        prog.setUniformi(UNIFORM_TEXT_MODE, 1);
+
+        // sort by page, then color; the low bits keep queue order stable
+        for (int i = 0; i < count; i++ ) {
+            long page = glyphs[i].getRegion().getPageIndex() & 0xff;
+            keys[i] = page << 56 | (colors[i] & 0xffffffffL) << INDEX_BITS | i;
+        }
+        Arrays.sort(keys, 0, count);
+
+        // window pixels to viewport units
+        float scaleX = (handle.swt > 0) ? handle.vwt / handle.swt : 1;
+        float scaleY = (handle.sht > 0) ? handle.vht / handle.sht : 1;
+        int start = 0;
+        while (start < count) {
+            long group = keys[start] & ~INDEX_MASK;
+            glyphs[(int) (keys[start] & INDEX_MASK)].getRegion().bind(handle);
+            int color = colors[(int) (keys[start] & INDEX_MASK)];
+            prog.setUniformf(UNIFORM_TEXT_COLOR, (color >>> 24) / 255f, (color >>> 16 & 0xff) / 255f,
+                             (color >>> 8 & 0xff) / 255f, (color & 0xff) / 255f);
+            int n = 0, k = start;
+            for (; k < count && (keys[k] & ~INDEX_MASK) == group; k++ ) {
+                putQuad(n++ , (int) (keys[k] & INDEX_MASK), handle.vx, handle.vy, scaleX, scaleY);
+                if (n == capacity) {
+                    draw(handle, n);
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                draw(handle, n);
+            }
+            start = k;
+        }
+
+        prog.setUniformi(UNIFORM_TEXT_MODE, 0);
+        handle.pushTransform();
+        if (blendFunc != null) {
+            handle.setBlendFunc(blendFunc);
+        }
+        if (blendEnabled == null || !blendEnabled) {
+            handle.setEnabled(GLFeature.BLENDING, false);
+        }
+        if (prev != null && prev != prog) {
+            prev.enable();
+        }
+        Arrays.fill(glyphs, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Discards all queued text without drawing it.
+     */
+    public void clear() {
+
+        Arrays.fill(glyphs, 0, count, null);
+        count = 0;
+    }
+
+    public int getQueuedGlyphCount() {
+
+        return count;
+    }
+
+    public GlyphAtlas getFont() {
+
+        return font;
+    }
+
+    /**
+     * Destroys this batch's vertex buffer. Must be called from the GL thread.
+     *
+     * @param handle
+     */
+    public void dispose(final GLHandle handle) {
+
+        if (buffId != 0) {
+            handle.destroyBuff(buffId);
+            buffId = 0;
+        }
+        clear();
+    }
+
+    private void putQuad(final int n,
+                         final int i,
+                         final float vx,
+                         final float vy,
+                         final float scaleX,
+                         final float scaleY) {
+
+        Glyph glyph = glyphs[i];
+        AtlasRegion region = glyph.getRegion();
+        float x = vx + xs[i] * scaleX, y = vy + ys[i] * scaleY;
+        float wt = glyph.getWidth() * scaleX, ht = glyph.getHeight() * scaleY;
+        float left = region.getLeftCoord(), right = region.getRightCoord();
+        float bottom = region.getBottomCoord(), top = region.getTopCoord();
+        // vertex order matches GL3Handle.putQuad2f (triangle strip)
+        int offs = n * 16;
+        verts[offs] = x;
+        verts[offs + 1] = y;
+        verts[offs + 2] = left;
+        verts[offs + 3] = bottom;
+        verts[offs + 4] = x;
+        verts[offs + 5] = y + ht;
+        verts[offs + 6] = left;
+        verts[offs + 7] = top;
+        verts[offs + 8] = x + wt;
+        verts[offs + 9] = y;
+        verts[offs + 10] = right;
+        verts[offs + 11] = bottom;
+        verts[offs + 12] = x + wt;
+        verts[offs + 13] = y + ht;
+        verts[offs + 14] = right;
+        verts[offs + 15] = top;
+    }
+
+    private void draw(final GL3Handle handle, final int nquads) {
+
+        handle.putTexturedQuads2f(buffId, verts, nquads);
+        handle.draw2f(buffId);
+    }
+
+    private void ensureCapacity(final int size) {
+
+        if (size > MAX_QUEUED) {
+            throw (new IllegalStateException("text batch full: flush before queuing more text"));
+        }
+        if (size <= glyphs.length) {
+            return;
+        }
+        int len = Math.max(size, glyphs.length * 2);
+        glyphs = Arrays.copyOf(glyphs, len);
+        xs = Arrays.copyOf(xs, len);
+        ys = Arrays.copyOf(ys, len);
+        colors = Arrays.copyOf(colors, len);
+        keys = Arrays.copyOf(keys, len);
+    }
+
+    private static int packColor(final float[] rgba) {
+
+        int r = clamp(rgba[0]), g = clamp(rgba[1]), b = clamp(rgba[2]);
+        int a = (rgba.length > 3) ? clamp(rgba[3]) : 0xff;
+        return r << 24 | g << 16 | b << 8 | a;
+    }
+
+    private static int clamp(final float c) {
+
+        return Math.max(0, Math.min(255, Math.round(c * 255)));
+    }
+}
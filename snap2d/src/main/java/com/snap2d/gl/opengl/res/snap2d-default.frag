@@ -18,12 +18,19 @@ vec3 gamma_func(vec3 rgb);
 uniform sampler2D tex;
 uniform float gamma;
 uniform int tex_bound;
+uniform int text_mode;
+uniform vec4 text_color;
 
 in vec4 color_vs, tex_vs;
 out vec4 frag_out;
 
 void main() {
-    if(tex_bound != 0) {
+    if(text_mode != 0) {
+        // glyph textures hold coverage in alpha; tint with the text color
+        float coverage = texture2D(tex, tex_vs.xy).a;
+        frag_out.rgb = gamma_func(text_color.rgb);
+        frag_out.a = text_color.a * coverage;
+    } else if(tex_bound != 0) {
         vec2 uv = tex_vs.xy;
         vec4 tex_frag = texture2D(tex, uv);
         frag_out.rgb = gamma_func(tex_frag.rgb);
@@ -13,7 +13,7 @@
 // Standard vertex shader - receives vertex coordinate and texture
 // coordinate data for rendering
 
-uniform int tex_bound;
+uniform int tex_bound, text_mode;
 
 out vec4 color_vs, tex_vs;
 
@@ -21,6 +21,6 @@ void main() {
     vec4 vert = vec4(vert_coord.xy, 0, 1);
     transform(vert);
     color_vs = vert_color;
-    if(tex_bound != 0)
+    if(tex_bound != 0 || text_mode != 0)
         tex_vs = vec4(tex_coord.xy, 0, 1);
 }
\ No newline at end of file
@@ -10,21 +10,28 @@
  *  was not distributed with this file, You can obtain one at 
  *  http://mozilla.org/MPL/2.0/.
  */
-#define MAX_LIGHTS 30
+// must match the limits in LightBuffer
+#define MAX_LIGHTS 256
+#define MAX_TILES 512
+#define MAX_TILE_LIGHTS 3072
 
 uniform int tex_bound;
 
 uniform sampler2D tex;
-uniform int light_count;
-uniform vec2 lights[MAX_LIGHTS];
-uniform vec3 light_colors[MAX_LIGHTS];
-uniform float radius[MAX_LIGHTS];
-uniform float intensity[MAX_LIGHTS];
-uniform float ambient;
-uniform vec3 ambient_color;
+
+layout(std140) uniform LightData {
+    vec4 ambient;                  // rgb = ambient color, a = ambient factor
+    ivec4 light_info;              // light count, tile size, tile columns, tile rows
+    vec4 light_pos[MAX_LIGHTS];    // x, y, radius, intensity
+    vec4 light_color[MAX_LIGHTS];  // r, g, b, max distance
+};
+
+layout(std140) uniform LightTiles {
+    ivec4 tile_ranges[MAX_TILES / 2];
+    ivec4 tile_lights[MAX_TILE_LIGHTS / 4];
+};
 
 in vec4 color, tex_out;
-in float light_max_dist[MAX_LIGHTS];
 
 out vec4 frag_out;
 
@@ -37,21 +44,35 @@ void main() {
     } else
         rgba = color;
         
-    vec3 light_sum = ambient_color * ambient;
+    vec3 light_sum = ambient.rgb * ambient.a;
     
-    for(int i=0; i < light_count; i++) {
-        float max_dist = light_max_dist[i];
-        float r = radius[i];
-        float v = intensity[i];
+    // look up the lights binned into this fragment's tile, or use all lights
+    // if tiling is disabled
+    bool tiled = light_info.y > 0;
+    int first = 0, count = light_info.x;
+    if(tiled) {
+        ivec2 tile = clamp(ivec2(gl_FragCoord.xy) / light_info.y, ivec2(0), light_info.zw - 1);
+        int t = tile.y * light_info.z + tile.x;
+        ivec4 range = tile_ranges[t / 2];
+        first = (t % 2 == 0) ? range.x : range.z;
+        count = (t % 2 == 0) ? range.y : range.w;
+    }
+    
+    for(int i=0; i < count; i++) {
+        int li = i;
+        if(tiled) {
+            int k = first + i;
+            li = tile_lights[k / 4][k % 4];
+        }
+        vec4 pos = light_pos[li];
+        vec4 lcolor = light_color[li];
         float att = 0;
-        vec2 coord = lights[i];
-        vec2 diff = gl_FragCoord.xy - coord;
-        float dist = length(diff);
-        if(dist < max_dist) {
-            att += v / pow(dist / r + 1, 2);
+        float dist = length(gl_FragCoord.xy - pos.xy);
+        if(dist < lcolor.w) {
+            att += pos.w / pow(dist / pos.z + 1, 2);
         }
         
-        light_sum += light_colors[i] * att * (1-ambient);
+        light_sum += lcolor.rgb * att * (1-ambient.a);
     }
     
     frag_out.rgb = rgba.rgb * light_sum;
@@ -12,6 +12,8 @@
 
 package com.snap2d.gl.spi;
 
+import com.snap2d.gl.FrameProfiler;
+
 /**
  * @author Brian Groenke
  *
@@ -38,6 +40,8 @@ public interface RenderController {
 
     public int getCurrentTPS();
 
+    public FrameProfiler getFrameProfiler();
+
     public void setDisableUpdates(boolean disableUpdates);
 
     public boolean isUpdating();
@@ -26,6 +26,7 @@ public class PointLight implements LightSource {
     float[] color = new float[3];
     float ifactor, radius;
     boolean enabled = true;
+    volatile int modCount;
 
     public PointLight(final double x, final double y, final float[] color, final float intensity, final float radius) {
 
@@ -41,7 +42,11 @@ public class PointLight implements LightSource {
     @Override
     public void setLocation(final double x, final double y) {
 
+        if (loc.ux == x && loc.uy == y) {
+            return;
+        }
         loc.setLocation(x, y);
+        modCount++ ;
     }
 
     /**
@@ -51,6 +56,7 @@ public class PointLight implements LightSource {
     public void setColor(final float[] color) {
 
         System.arraycopy(color, 0, this.color, 0, this.color.length);
+        modCount++ ;
     }
 
     /**
@@ -60,6 +66,7 @@ public class PointLight implements LightSource {
     public void setIntensity(final float ifactor) {
 
         this.ifactor = ifactor;
+        modCount++ ;
     }
 
     /**
@@ -69,6 +76,7 @@ public class PointLight implements LightSource {
     public void setRadius(final float radius) {
 
         this.radius = radius;
+        modCount++ ;
     }
 
     /**
@@ -78,6 +86,7 @@ public class PointLight implements LightSource {
     public void setEnabled(final boolean enabled) {
 
         this.enabled = enabled;
+        modCount++ ;
     }
 
     /**
@@ -125,4 +134,44 @@ public class PointLight implements LightSource {
         return enabled;
     }
 
+    /**
+     * @return the x coordinate of this light; unlike {@link #getLocation()},
+     *         this does not allocate
+     */
+    public double getX() {
+
+        return loc.ux;
+    }
+
+    /**
+     * @return the y coordinate of this light; unlike {@link #getLocation()},
+     *         this does not allocate
+     */
+    public double getY() {
+
+        return loc.uy;
+    }
+
+    /**
+     * Copies this light's color components into 'dst'.
+     *
+     * @param dst
+     * @return dst
+     */
+    public float[] getColor(final float[] dst) {
+
+        System.arraycopy(color, 0, dst, 0, color.length);
+        return dst;
+    }
+
+    /**
+     * @return a counter that changes every time a property of this light is
+     *         changed; used by renderers to detect when light data needs to
+     *         be re-uploaded
+     */
+    public int getModCount() {
+
+        return modCount;
+    }
+
 }
@@ -68,6 +68,8 @@ public class NiftyRenderable implements GLRenderable {
 
         nifty.update();
         nifty.render(false);
+        // nifty changes program, texture and blend state directly
+        handle.invalidateStateCache();
     }
 
     /**
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 
 import bg.x2d.geo.GeoUtils;
 import bg.x2d.geo.PointUD;
+import bg.x2d.geo.Vec2d;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.math.FloatMath;
 
@@ -96,22 +97,23 @@ public class CollisionModel {
         double tx = (modelLoc != null) ? modelLoc.ux : 0, ty = (modelLoc != null) ? modelLoc.uy : 0;
         PointUD basePoint = new PointUD( -1, -1);
         PointUD testPoint = new PointUD(p.ux - tx, p.uy - ty);
+        PolySeg testSeg = new PolySeg(basePoint, testPoint);
+        Vec2d intrsec = new Vec2d();
         int crossCount = 0;
         for (PolySeg seg : poly) {
-            PolySeg testSeg = new PolySeg(basePoint, testPoint);
-            PointUD intrsec = GeoUtils.lineIntersection(testSeg.x1,
-                                                        testSeg.y1,
-                                                        testSeg.x2,
-                                                        testSeg.y2,
-                                                        seg.x1,
-                                                        seg.y1,
-                                                        seg.x2,
-                                                        seg.y2);
-            if (intrsec == null) {
+            if ( !GeoUtils.lineIntersection(testSeg.x1,
+                                            testSeg.y1,
+                                            testSeg.x2,
+                                            testSeg.y2,
+                                            seg.x1,
+                                            seg.y1,
+                                            seg.x2,
+                                            seg.y2,
+                                            intrsec)) {
                 continue;
             }
-            float sx = (float) (intrsec.getX());
-            float sy = (float) (intrsec.getY());
+            float sx = (float) intrsec.x;
+            float sy = (float) intrsec.y;
             if (seg.hasPoint(sx, sy) && testSeg.hasPoint(sx, sy)) {
                 crossCount++ ;
             }
@@ -156,33 +158,31 @@ public class CollisionModel {
     public void resolve(final PointUD loc,
                         final PointUD cloc,
                         final CollisionModel coll,
-                        Vector2d vel,
-                        Vector2d cvel,
+                        final Vector2d vel,
+                        final Vector2d cvel,
                         final double velFactor,
                         final double resolutionThreshold) {
 
         if (resolutionThreshold <= 0) {
             throw (new IllegalArgumentException("resolution thershold must be > 0"));
         }
-        vel = vel.negateNew().mult(0.5);
-        cvel = cvel.negateNew().mult(0.5);
+        Vec2d step = new Vec2d(vel).negate().mult(0.5);
+        Vec2d cstep = new Vec2d(cvel).negate().mult(0.5);
+        double thresholdSq = resolutionThreshold * resolutionThreshold;
         boolean resolved = false, colliding = true;
         while ( !resolved) {
-            vel.applyTo(loc, velFactor);
-            cvel.applyTo(cloc, velFactor);
+            step.applyTo(loc, velFactor);
+            cstep.applyTo(cloc, velFactor);
             // if collision test status changes, negate and half testing vectors
             // -
             // the collision is resolved when the test status changes
             // while both vectors have a magnitude of <= resolutionThreshold
             if (testCollision(loc.ux, loc.uy, cloc.ux, cloc.uy, coll) != colliding) {
-                if (colliding && vel.getMagnitude() <= resolutionThreshold
-                                && cvel.getMagnitude() <= resolutionThreshold) {
+                if (colliding && step.lengthSq() <= thresholdSq && cstep.lengthSq() <= thresholdSq) {
                     resolved = true;
                 } else {
-                    vel.negate();
-                    cvel.negate();
-                    vel.mult(0.75);
-                    cvel.mult(0.75);
+                    step.negate().mult(0.75);
+                    cstep.negate().mult(0.75);
                     colliding = !colliding;
                 }
             }
@@ -226,18 +226,18 @@ public class CollisionModel {
             minx = Math.min(px, minx);
         }
         double lx = minx - 1;
+        Vec2d intrsec = new Vec2d();
         for (PointUD p : coll.wpts) {
             double px = p.getX() + cx;
             double py = p.getY() + cy;
             int crossCount = 0;
             for (PolySeg seg : poly) {
-                PointUD intrsec = GeoUtils.lineIntersection(lx, py, px, py, seg.x1 + x, seg.y1 + y, seg.x2 + x, seg.y2
-                                + y);
-                if (intrsec == null) {
+                if ( !GeoUtils.lineIntersection(lx, py, px, py, seg.x1 + x, seg.y1 + y, seg.x2 + x, seg.y2 + y,
+                                                intrsec)) {
                     continue;
                 }
-                float sx = (float) (intrsec.getX() - x);
-                float sy = (float) (intrsec.getY() - y);
+                float sx = (float) (intrsec.x - x);
+                float sy = (float) (intrsec.y - y);
                 if (seg.hasPointInBounds(sx, sy) && sx < (px - x)) {
                     crossCount++ ;
                 }
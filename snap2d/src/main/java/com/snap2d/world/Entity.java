@@ -21,6 +21,8 @@ import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
 import bg.x2d.geo.PointUD;
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 
@@ -176,14 +178,22 @@ public abstract class Entity implements RenderableSpi, Serializable {
 
     public void applyVector(final Vector2f vec, final float mult) {
 
-        PointUD np = new PointUD(vec.applyTo(worldLoc.getFloatPoint(), mult));
-        setWorldLoc(np.getX(), np.getY());
+        setWorldLoc(worldLoc.ux + vec.x * mult, worldLoc.uy + vec.y * mult);
     }
 
     public void applyVector(final Vector2d vec, final double mult) {
 
-        PointUD np = new PointUD(vec.applyTo(worldLoc.getDoublePoint(), mult));
-        setWorldLoc(np.getX(), np.getY());
+        setWorldLoc(worldLoc.ux + vec.x * mult, worldLoc.uy + vec.y * mult);
+    }
+
+    public void applyVector(final Vec2f vec, final float mult) {
+
+        setWorldLoc(worldLoc.ux + vec.x * mult, worldLoc.uy + vec.y * mult);
+    }
+
+    public void applyVector(final Vec2d vec, final double mult) {
+
+        setWorldLoc(worldLoc.ux + vec.x * mult, worldLoc.uy + vec.y * mult);
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package com.snap2d.testing.javagl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.snap2d.gl.GammaTable;
+
+/**
+ * Compares the old per-pixel, per-channel gamma pass with the packed lookup
+ * table pass, single threaded and split into row bands across a thread pool,
+ * at 1080p and 4K.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class GammaPassBenchmark {
+
+    static final int WARMUP = 50, RUNS = 200;
+
+    public static void main(final String[] args) throws Exception {
+
+        final GammaTable gamma = new GammaTable(1.8f);
+        final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        int[][] sizes = { {1920, 1080}, {3840, 2160}};
+        for (int[] size : sizes) {
+            final int wt = size[0], ht = size[1];
+            int[] src = new int[wt * ht];
+            Random rand = new Random(0);
+            for (int i = 0; i < src.length; i++ ) {
+                src[i] = rand.nextInt();
+            }
+
+            int[] a = src.clone(), b = src.clone();
+            legacyPass(gamma, a, wt, ht);
+            gamma.applyGamma(b, 0, b.length);
+            for (int i = 0; i < a.length; i++ ) {
+                if (a[i] != b[i]) {
+                    throw (new AssertionError("results differ at pixel " + i));
+                }
+            }
+
+            int[] data = src.clone();
+            System.out.printf("%dx%d%n", wt, ht);
+            System.out.printf("  legacy per-pixel:  %.3f ms%n", time(new Pass() {
+
+                @Override
+                public void run(final int[] px) {
+
+                    legacyPass(gamma, px, wt, ht);
+                }
+            }, data));
+            System.out.printf("  packed LUT:        %.3f ms%n", time(new Pass() {
+
+                @Override
+                public void run(final int[] px) {
+
+                    gamma.applyGamma(px, 0, px.length);
+                }
+            }, data));
+            System.out.printf("  packed LUT (%d threads): %.3f ms%n", Runtime.getRuntime().availableProcessors(),
+                              time(new Pass() {
+
+                                  @Override
+                                  public void run(final int[] px) throws Exception {
+
+                                      parallelPass(pool, gamma, px, wt, ht);
+                                  }
+                              }, data));
+        }
+        pool.shutdown();
+    }
+
+    static double time(final Pass pass, final int[] data) throws Exception {
+
+        for (int i = 0; i < WARMUP; i++ ) {
+            pass.run(data);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++ ) {
+            pass.run(data);
+        }
+        return (System.nanoTime() - start) / (RUNS * 1000000.0);
+    }
+
+    /*
+     * The pass previously done by RenderControl.RenderRow, one row at a time.
+     */
+    static void legacyPass(final GammaTable gammaTable, final int[] pixelData, final int priWidth, final int priHeight) {
+
+        for (int y = 0; y < priHeight; y++ ) {
+            for (int x = 0; x < priWidth; x++ ) {
+                if (x >= priWidth || x < 0) {
+                    continue;
+                }
+                int pos = y * priWidth + x;
+                if (pos < 0 || pos >= pixelData.length) {
+                    continue;
+                }
+                int srcValue = pixelData[y * priWidth + x];
+                int b = srcValue & 0xFF;
+                int g = srcValue >> 8 & 0xFF;
+                int r = srcValue >> 16 & 0xFF;
+                int a = srcValue >> 24 & 0xFF;
+                a = gammaTable.applyGamma(a);
+                r = gammaTable.applyGamma(r);
+                g = gammaTable.applyGamma(g);
+                b = gammaTable.applyGamma(b);
+                srcValue = a;
+                srcValue = (srcValue << 8) + r;
+                srcValue = (srcValue << 8) + g;
+                srcValue = (srcValue << 8) + b;
+                pixelData[pos] = srcValue;
+            }
+        }
+    }
+
+    static void parallelPass(final ExecutorService pool,
+                             final GammaTable gamma,
+                             final int[] px,
+                             final int wt,
+                             final int ht) throws Exception {
+
+        int bands = Runtime.getRuntime().availableProcessors() * 2;
+        int rowsPerBand = (ht + bands - 1) / bands;
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(bands);
+        for (int y = 0; y < ht; y += rowsPerBand) {
+            final int offs = y * wt, len = Math.min(rowsPerBand, ht - y) * wt;
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+
+                    gamma.applyGamma(px, offs, len);
+                    return null;
+                }
+            });
+        }
+        pool.invokeAll(tasks);
+    }
+
+    interface Pass {
+
+        void run(int[] px) throws Exception;
+    }
+}
@@ -69,20 +69,47 @@ public class GeoUtils {
                                            final double x4,
                                            final double y4) {
 
+        Vec2d isect = new Vec2d();
+        return (lineIntersection(x1, y1, x2, y2, x3, y3, x4, y4, isect)) ? new PointUD(isect.x, isect.y) : null;
+    }
+
+    /**
+     * Computes the intersection point between two lines, if one exists,
+     * without allocating. See
+     * {@link #lineIntersection(double, double, double, double, double, double, double, double)}
+     * .
+     * 
+     * @param out
+     *            set to the intersection point if one exists; unchanged
+     *            otherwise
+     * @return true if the lines intersect
+     */
+    public static boolean lineIntersection(final double x1,
+                                           final double y1,
+                                           final double x2,
+                                           final double y2,
+                                           final double x3,
+                                           final double y3,
+                                           final double x4,
+                                           final double y4,
+                                           final Vec2d out) {
+
         boolean m1u = (x2 - x1) == 0;
         boolean m2u = (x4 - x3) == 0;
         if (m1u && m2u) {
-            return null;
+            return false;
         } else if (m1u) {
             double m = (y4 - y3) / (x4 - x3);
             double spx = m * -x3;
             double yint = spx + y3;
-            return new PointUD(x1, m * x1 + yint);
+            out.set(x1, m * x1 + yint);
+            return true;
         } else if (m2u) {
             double m = (y2 - y1) / (x2 - x1);
             double spx = m * -x1;
             double yint = spx + y1;
-            return new PointUD(x3, m * x3 + yint);
+            out.set(x3, m * x3 + yint);
+            return true;
         }
 
         double m1 = (y2 - y1) / (x2 - x1);
@@ -94,11 +121,12 @@ public class GeoUtils {
         double nt = yint2 - yint1;
         double terms = m1 - m2;
         if (terms == 0) {
-            return null;
+            return false;
         }
         double xp = nt / terms;
         double yp = m1 * xp + yint1;
-        return new PointUD(xp, yp);
+        out.set(xp, yp);
+        return true;
     }
 
     /**
@@ -0,0 +1,406 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package bg.x2d.geo;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Fast path counterpart to {@link Vector2d} for code that does vector math
+ * every update, like physics and collision. Unlike Vector2d, Vec2d has plain
+ * (non-volatile) fields, does no precision rounding and doesn't cache its
+ * magnitude or angle; {@link #length()} and {@link #angle()} are only computed
+ * when called. All operations modify this vector in place and return it for
+ * chain calls, and the static forms write their result to an output vector,
+ * so no temporary objects are created.<br/>
+ * <br/>
+ * Vec2d is not thread safe.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class Vec2d {
+
+    private static final double TWO_PI = Math.PI * 2;
+
+    public double x, y;
+
+    public Vec2d() {
+
+    }
+
+    public Vec2d(final double x, final double y) {
+
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vec2d(final Vec2d copy) {
+
+        this(copy.x, copy.y);
+    }
+
+    public Vec2d(final Vector2d vec) {
+
+        this(vec.x, vec.y);
+    }
+
+    public static Vec2d fromPolar(final double mag, final double angle) {
+
+        return new Vec2d().setFromPolar(mag, angle);
+    }
+
+    public Vec2d set(final double x, final double y) {
+
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vec2d set(final Vec2d vec) {
+
+        this.x = vec.x;
+        this.y = vec.y;
+        return this;
+    }
+
+    public Vec2d set(final Vector2d vec) {
+
+        this.x = vec.x;
+        this.y = vec.y;
+        return this;
+    }
+
+    /**
+     * @param mag
+     * @param angle
+     *            direction angle in radians
+     * @return this vector
+     */
+    public Vec2d setFromPolar(final double mag, final double angle) {
+
+        x = mag * Math.cos(angle);
+        y = mag * Math.sin(angle);
+        return this;
+    }
+
+    public double length() {
+
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * @return the squared length of this vector; cheaper than
+     *         {@link #length()} for comparisons
+     */
+    public double lengthSq() {
+
+        return x * x + y * y;
+    }
+
+    /**
+     * @return the direction of this vector in radians, between 0 and 2*PI
+     */
+    public double angle() {
+
+        double angle = Math.atan2(y, x);
+        return (angle < 0) ? angle + TWO_PI : angle;
+    }
+
+    public boolean isZero() {
+
+        return x == 0 && y == 0;
+    }
+
+    public Vec2d add(final Vec2d vec) {
+
+        x += vec.x;
+        y += vec.y;
+        return this;
+    }
+
+    public Vec2d add(final double dx, final double dy) {
+
+        x += dx;
+        y += dy;
+        return this;
+    }
+
+    public Vec2d sub(final Vec2d vec) {
+
+        x -= vec.x;
+        y -= vec.y;
+        return this;
+    }
+
+    public Vec2d sub(final double dx, final double dy) {
+
+        x -= dx;
+        y -= dy;
+        return this;
+    }
+
+    public Vec2d mult(final double factor) {
+
+        x *= factor;
+        y *= factor;
+        return this;
+    }
+
+    public Vec2d div(final double factor) {
+
+        x /= factor;
+        y /= factor;
+        return this;
+    }
+
+    /**
+     * Adds 'vec' multiplied by 'factor' to this vector; i.e. this += vec *
+     * factor.
+     *
+     * @param vec
+     * @param factor
+     * @return this vector
+     */
+    public Vec2d addScaled(final Vec2d vec, final double factor) {
+
+        x += vec.x * factor;
+        y += vec.y * factor;
+        return this;
+    }
+
+    public Vec2d addScaled(final double dx, final double dy, final double factor) {
+
+        x += dx * factor;
+        y += dy * factor;
+        return this;
+    }
+
+    public Vec2d negate() {
+
+        x = -x;
+        y = -y;
+        return this;
+    }
+
+    public Vec2d negateX() {
+
+        x = -x;
+        return this;
+    }
+
+    public Vec2d negateY() {
+
+        y = -y;
+        return this;
+    }
+
+    /**
+     * Scales this vector to a length of 1. Does nothing if this vector has a
+     * length of zero.
+     *
+     * @return this vector
+     */
+    public Vec2d normalize() {
+
+        double lenSq = x * x + y * y;
+        if (lenSq != 0) {
+            double norm = 1.0 / Math.sqrt(lenSq);
+            x *= norm;
+            y *= norm;
+        }
+        return this;
+    }
+
+    /**
+     * @param rads
+     *            rotation IN RADIANS
+     * @return this vector
+     */
+    public Vec2d rotate(final double rads) {
+
+        double cos = Math.cos(rads), sin = Math.sin(rads);
+        double nx = x * cos - y * sin;
+        y = x * sin + y * cos;
+        x = nx;
+        return this;
+    }
+
+    /**
+     * Scales this vector, if necessary, so that its length is between 'min'
+     * and 'max'. A zero length vector is left unchanged.
+     *
+     * @param min
+     * @param max
+     * @return this vector
+     */
+    public Vec2d clampLength(final double min, final double max) {
+
+        double lenSq = x * x + y * y;
+        if (lenSq == 0) {
+            return this;
+        }
+        if (lenSq < min * min) {
+            mult(min / Math.sqrt(lenSq));
+        } else if (lenSq > max * max) {
+            mult(max / Math.sqrt(lenSq));
+        }
+        return this;
+    }
+
+    /**
+     * Linearly interpolates this vector towards 'vec'.
+     *
+     * @param vec
+     * @param alpha
+     *            0 leaves this vector unchanged, 1 sets it to 'vec'
+     * @return this vector
+     */
+    public Vec2d interpolate(final Vec2d vec, final double alpha) {
+
+        x += (vec.x - x) * alpha;
+        y += (vec.y - y) * alpha;
+        return this;
+    }
+
+    public double dot(final Vec2d vec) {
+
+        return x * vec.x + y * vec.y;
+    }
+
+    public double det(final Vec2d vec) {
+
+        return x * vec.y - y * vec.x;
+    }
+
+    public double distance(final Vec2d vec) {
+
+        return Math.sqrt(distanceSq(vec));
+    }
+
+    public double distanceSq(final Vec2d vec) {
+
+        double dx = x - vec.x, dy = y - vec.y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Translates 'p' by this vector multiplied by 'multiplier'.
+     *
+     * @param p
+     * @param multiplier
+     * @return p
+     */
+    public PointUD applyTo(final PointUD p, final double multiplier) {
+
+        p.setLocation(p.ux + x * multiplier, p.uy + y * multiplier);
+        return p;
+    }
+
+    public Point2D.Double applyTo(final Point2D.Double p, final double multiplier) {
+
+        p.setLocation(p.x + x * multiplier, p.y + y * multiplier);
+        return p;
+    }
+
+    public Vector2d toVector2d() {
+
+        return new Vector2d(x, y);
+    }
+
+    /**
+     * out = a + b
+     */
+    public static Vec2d add(final Vec2d a, final Vec2d b, final Vec2d out) {
+
+        return out.set(a.x + b.x, a.y + b.y);
+    }
+
+    /**
+     * out = a - b
+     */
+    public static Vec2d sub(final Vec2d a, final Vec2d b, final Vec2d out) {
+
+        return out.set(a.x - b.x, a.y - b.y);
+    }
+
+    /**
+     * out = a * factor
+     */
+    public static Vec2d mult(final Vec2d a, final double factor, final Vec2d out) {
+
+        return out.set(a.x * factor, a.y * factor);
+    }
+
+    /**
+     * out = a + b * factor
+     */
+    public static Vec2d addScaled(final Vec2d a, final Vec2d b, final double factor, final Vec2d out) {
+
+        return out.set(a.x + b.x * factor, a.y + b.y * factor);
+    }
+
+    /**
+     * out = a + (b - a) * alpha
+     */
+    public static Vec2d interpolate(final Vec2d a, final Vec2d b, final double alpha, final Vec2d out) {
+
+        return out.set(a.x + (b.x - a.x) * alpha, a.y + (b.y - a.y) * alpha);
+    }
+
+    /**
+     * out = a rotated by 'rads'
+     */
+    public static Vec2d rotate(final Vec2d a, final double rads, final Vec2d out) {
+
+        return out.set(a).rotate(rads);
+    }
+
+    /**
+     * out = a scaled to a length of 1, or zero if 'a' has a length of zero
+     */
+    public static Vec2d normalize(final Vec2d a, final Vec2d out) {
+
+        return out.set(a).normalize();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if ( ! (obj instanceof Vec2d)) {
+            return false;
+        }
+        Vec2d vec = (Vec2d) obj;
+        return Double.compare(x, vec.x) == 0 && Double.compare(y, vec.y) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * hash(x) + hash(y);
+    }
+
+    private static int hash(final double v) {
+
+        long bits = Double.doubleToLongBits(v);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+
+        return "[" + x + ", " + y + "]";
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package bg.x2d.geo;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Fast path counterpart to {@link Vector2f} for code that does vector math
+ * every update, like physics and collision. Unlike Vector2f, Vec2f has plain
+ * (non-volatile) fields, does no precision rounding and doesn't cache its
+ * magnitude or angle; {@link #length()} and {@link #angle()} are only computed
+ * when called. All operations modify this vector in place and return it for
+ * chain calls, and the static forms write their result to an output vector,
+ * so no temporary objects are created.<br/>
+ * <br/>
+ * Vec2f is not thread safe.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class Vec2f {
+
+    private static final float TWO_PI = (float) (Math.PI * 2);
+
+    public float x, y;
+
+    public Vec2f() {
+
+    }
+
+    public Vec2f(final float x, final float y) {
+
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vec2f(final Vec2f copy) {
+
+        this(copy.x, copy.y);
+    }
+
+    public Vec2f(final Vector2f vec) {
+
+        this(vec.x, vec.y);
+    }
+
+    public static Vec2f fromPolar(final float mag, final float angle) {
+
+        return new Vec2f().setFromPolar(mag, angle);
+    }
+
+    public Vec2f set(final float x, final float y) {
+
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vec2f set(final Vec2f vec) {
+
+        this.x = vec.x;
+        this.y = vec.y;
+        return this;
+    }
+
+    public Vec2f set(final Vector2f vec) {
+
+        this.x = vec.x;
+        this.y = vec.y;
+        return this;
+    }
+
+    /**
+     * @param mag
+     * @param angle
+     *            direction angle in radians
+     * @return this vector
+     */
+    public Vec2f setFromPolar(final float mag, final float angle) {
+
+        x = (float) (mag * Math.cos(angle));
+        y = (float) (mag * Math.sin(angle));
+        return this;
+    }
+
+    public float length() {
+
+        return (float) Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * @return the squared length of this vector; cheaper than
+     *         {@link #length()} for comparisons
+     */
+    public float lengthSq() {
+
+        return x * x + y * y;
+    }
+
+    /**
+     * @return the direction of this vector in radians, between 0 and 2*PI
+     */
+    public float angle() {
+
+        float angle = (float) Math.atan2(y, x);
+        return (angle < 0) ? angle + TWO_PI : angle;
+    }
+
+    public boolean isZero() {
+
+        return x == 0 && y == 0;
+    }
+
+    public Vec2f add(final Vec2f vec) {
+
+        x += vec.x;
+        y += vec.y;
+        return this;
+    }
+
+    public Vec2f add(final float dx, final float dy) {
+
+        x += dx;
+        y += dy;
+        return this;
+    }
+
+    public Vec2f sub(final Vec2f vec) {
+
+        x -= vec.x;
+        y -= vec.y;
+        return this;
+    }
+
+    public Vec2f sub(final float dx, final float dy) {
+
+        x -= dx;
+        y -= dy;
+        return this;
+    }
+
+    public Vec2f mult(final float factor) {
+
+        x *= factor;
+        y *= factor;
+        return this;
+    }
+
+    public Vec2f div(final float factor) {
+
+        x /= factor;
+        y /= factor;
+        return this;
+    }
+
+    /**
+     * Adds 'vec' multiplied by 'factor' to this vector; i.e. this += vec *
+     * factor.
+     *
+     * @param vec
+     * @param factor
+     * @return this vector
+     */
+    public Vec2f addScaled(final Vec2f vec, final float factor) {
+
+        x += vec.x * factor;
+        y += vec.y * factor;
+        return this;
+    }
+
+    public Vec2f addScaled(final float dx, final float dy, final float factor) {
+
+        x += dx * factor;
+        y += dy * factor;
+        return this;
+    }
+
+    public Vec2f negate() {
+
+        x = -x;
+        y = -y;
+        return this;
+    }
+
+    public Vec2f negateX() {
+
+        x = -x;
+        return this;
+    }
+
+    public Vec2f negateY() {
+
+        y = -y;
+        return this;
+    }
+
+    /**
+     * Scales this vector to a length of 1. Does nothing if this vector has a
+     * length of zero.
+     *
+     * @return this vector
+     */
+    public Vec2f normalize() {
+
+        float lenSq = x * x + y * y;
+        if (lenSq != 0) {
+            float norm = (float) (1.0 / Math.sqrt(lenSq));
+            x *= norm;
+            y *= norm;
+        }
+        return this;
+    }
+
+    /**
+     * @param rads
+     *            rotation IN RADIANS
+     * @return this vector
+     */
+    public Vec2f rotate(final float rads) {
+
+        double cos = Math.cos(rads), sin = Math.sin(rads);
+        float nx = (float) (x * cos - y * sin);
+        y = (float) (x * sin + y * cos);
+        x = nx;
+        return this;
+    }
+
+    /**
+     * Scales this vector, if necessary, so that its length is between 'min'
+     * and 'max'. A zero length vector is left unchanged.
+     *
+     * @param min
+     * @param max
+     * @return this vector
+     */
+    public Vec2f clampLength(final float min, final float max) {
+
+        float lenSq = x * x + y * y;
+        if (lenSq == 0) {
+            return this;
+        }
+        if (lenSq < min * min) {
+            mult(min / (float) Math.sqrt(lenSq));
+        } else if (lenSq > max * max) {
+            mult(max / (float) Math.sqrt(lenSq));
+        }
+        return this;
+    }
+
+    /**
+     * Linearly interpolates this vector towards 'vec'.
+     *
+     * @param vec
+     * @param alpha
+     *            0 leaves this vector unchanged, 1 sets it to 'vec'
+     * @return this vector
+     */
+    public Vec2f interpolate(final Vec2f vec, final float alpha) {
+
+        x += (vec.x - x) * alpha;
+        y += (vec.y - y) * alpha;
+        return this;
+    }
+
+    public float dot(final Vec2f vec) {
+
+        return x * vec.x + y * vec.y;
+    }
+
+    public float det(final Vec2f vec) {
+
+        return x * vec.y - y * vec.x;
+    }
+
+    public float distance(final Vec2f vec) {
+
+        return (float) Math.sqrt(distanceSq(vec));
+    }
+
+    public float distanceSq(final Vec2f vec) {
+
+        float dx = x - vec.x, dy = y - vec.y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Translates 'p' by this vector multiplied by 'multiplier'.
+     *
+     * @param p
+     * @param multiplier
+     * @return p
+     */
+    public PointUD applyTo(final PointUD p, final float multiplier) {
+
+        p.setLocation(p.ux + x * multiplier, p.uy + y * multiplier);
+        return p;
+    }
+
+    public Point2D.Float applyTo(final Point2D.Float p, final float multiplier) {
+
+        p.setLocation(p.x + x * multiplier, p.y + y * multiplier);
+        return p;
+    }
+
+    public Vector2f toVector2f() {
+
+        return new Vector2f(x, y);
+    }
+
+    /**
+     * out = a + b
+     */
+    public static Vec2f add(final Vec2f a, final Vec2f b, final Vec2f out) {
+
+        return out.set(a.x + b.x, a.y + b.y);
+    }
+
+    /**
+     * out = a - b
+     */
+    public static Vec2f sub(final Vec2f a, final Vec2f b, final Vec2f out) {
+
+        return out.set(a.x - b.x, a.y - b.y);
+    }
+
+    /**
+     * out = a * factor
+     */
+    public static Vec2f mult(final Vec2f a, final float factor, final Vec2f out) {
+
+        return out.set(a.x * factor, a.y * factor);
+    }
+
+    /**
+     * out = a + b * factor
+     */
+    public static Vec2f addScaled(final Vec2f a, final Vec2f b, final float factor, final Vec2f out) {
+
+        return out.set(a.x + b.x * factor, a.y + b.y * factor);
+    }
+
+    /**
+     * out = a + (b - a) * alpha
+     */
+    public static Vec2f interpolate(final Vec2f a, final Vec2f b, final float alpha, final Vec2f out) {
+
+        return out.set(a.x + (b.x - a.x) * alpha, a.y + (b.y - a.y) * alpha);
+    }
+
+    /**
+     * out = a rotated by 'rads'
+     */
+    public static Vec2f rotate(final Vec2f a, final float rads, final Vec2f out) {
+
+        return out.set(a).rotate(rads);
+    }
+
+    /**
+     * out = a scaled to a length of 1, or zero if 'a' has a length of zero
+     */
+    public static Vec2f normalize(final Vec2f a, final Vec2f out) {
+
+        return out.set(a).normalize();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+        if (this == obj) {
+            return true;
+        }
+        if ( ! (obj instanceof Vec2f)) {
+            return false;
+        }
+        Vec2f vec = (Vec2f) obj;
+        return Float.compare(x, vec.x) == 0 && Float.compare(y, vec.y) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * Float.floatToIntBits(x) + Float.floatToIntBits(y);
+    }
+
+    @Override
+    public String toString() {
+
+        return "[" + x + ", " + y + "]";
+    }
+}
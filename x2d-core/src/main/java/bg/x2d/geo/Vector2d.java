@@ -192,12 +192,12 @@ public class Vector2d {
 
     public Vector2d addNew(final Vector2d arg) {
 
-        return new Vector2d(x += arg.x, y += arg.y);
+        return new Vector2d(x + arg.x, y + arg.y);
     }
 
     public Vector2d subNew(final Vector2d arg) {
 
-        return new Vector2d(x -= arg.x, y -= arg.y);
+        return new Vector2d(x - arg.x, y - arg.y);
     }
 
     public Vector2d multNew(final double factor) {
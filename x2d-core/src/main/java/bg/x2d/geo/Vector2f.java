@@ -199,12 +199,12 @@ public class Vector2f {
 
     public Vector2f addNew(final Vector2f arg) {
 
-        return new Vector2f(x += arg.x, y += arg.y);
+        return new Vector2f(x + arg.x, y + arg.y);
     }
 
     public Vector2f subNew(final Vector2f arg) {
 
-        return new Vector2f(x -= arg.x, y -= arg.y);
+        return new Vector2f(x - arg.x, y - arg.y);
     }
 
     public Vector2f multNew(final float factor) {
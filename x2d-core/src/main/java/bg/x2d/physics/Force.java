@@ -12,6 +12,10 @@
 
 package bg.x2d.physics;
 
+import java.util.concurrent.ConcurrentHashMap;
+
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 
@@ -22,9 +26,42 @@ import bg.x2d.geo.Vector2f;
  */
 public abstract class Force {
 
+    // per class: whether the Vector2f and Vector2d forms of applyTo are
+    // overridden without the allocation free forms
+    private static final ConcurrentHashMap<Class<?>, boolean[]> legacyForms = new ConcurrentHashMap<Class<?>, boolean[]>();
+
     protected Vector2f vecf;
     protected Vector2d vecd;
 
+    /**
+     * True if this Force's class overrides
+     * {@link #applyTo(float, float, Vector2f, Vector2f)} but not
+     * {@link #applyTo(float, float, Vec2f, Vec2f)}, in which case the latter
+     * delegates to the former. Subclasses that override both should check
+     * this flag and call {@link #applyLegacy(float, float, Vec2f, Vec2f)} when
+     * it is set, as one of their own subclasses may only override the
+     * Vector2f form.
+     */
+    protected final boolean legacyf;
+
+    /**
+     * Same as {@link #legacyf}, for the Vector2d and Vec2d forms.
+     */
+    protected final boolean legacyd;
+
+    protected Force() {
+
+        boolean[] legacy = legacyForms.get(getClass());
+        if (legacy == null) {
+            legacy = new boolean[] {
+                            overridesLegacyForm(getClass(), float.class, Vector2f.class, Vec2f.class),
+                            overridesLegacyForm(getClass(), double.class, Vector2d.class, Vec2d.class) };
+            legacyForms.put(getClass(), legacy);
+        }
+        legacyf = legacy[0];
+        legacyd = legacy[1];
+    }
+
     /**
      * Sets the vector for this force. A vector may hold different meanings
      * depending on the force; i.e a force vector might be acceleration, energy,
@@ -106,4 +143,102 @@ public abstract class Force {
         vec.add(vecd.divNew(mass).mult(time));
         return vec;
     }
+
+    /**
+     * Allocation free form of {@link #applyTo(float, float, Vector2f, Vector2f)}
+     * used by {@link StandardPhysics}. Subclasses that override the Vector2f
+     * form should override this method as well; if they do not, this method
+     * calls the Vector2f form.
+     * 
+     * @param time
+     *            seconds to accelerate the given vector
+     * @param mass
+     *            of the object in Kg
+     * @param forceSum
+     *            sum of the other forces being applied; may be null
+     * @param vec
+     *            velocity vector to be accelerated by force.
+     * @return the modified vector
+     */
+    public Vec2f applyTo(final float time, final float mass, final Vec2f forceSum, final Vec2f vec) {
+
+        if (legacyf) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        return vec.addScaled(vecf.x, vecf.y, time / mass);
+    }
+
+    /**
+     * Allocation free form of
+     * {@link #applyTo(double, double, Vector2d, Vector2d)} used by
+     * {@link StandardPhysics}. Subclasses that override the Vector2d form
+     * should override this method as well; if they do not, this method calls
+     * the Vector2d form.
+     * 
+     * @param time
+     *            seconds to accelerate the given vector
+     * @param mass
+     *            of the object in Kg
+     * @param forceSum
+     *            sum of the other forces being applied; may be null
+     * @param vec
+     *            velocity vector to be accelerated by force.
+     * @return the modified vector
+     */
+    public Vec2d applyTo(final double time, final double mass, final Vec2d forceSum, final Vec2d vec) {
+
+        if (legacyd) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        return vec.addScaled(vecd.x, vecd.y, time / mass);
+    }
+
+    /**
+     * Applies this force to 'vec' through the Vector2f form of applyTo.
+     * 
+     * @return the modified vector
+     */
+    protected final Vec2f applyLegacy(final float time, final float mass, final Vec2f forceSum, final Vec2f vec) {
+
+        Vector2f res = applyTo(time, mass, (forceSum != null) ? forceSum.toVector2f() : null, vec.toVector2f());
+        return vec.set(res.x, res.y);
+    }
+
+    /**
+     * Applies this force to 'vec' through the Vector2d form of applyTo.
+     * 
+     * @return the modified vector
+     */
+    protected final Vec2d applyLegacy(final double time, final double mass, final Vec2d forceSum, final Vec2d vec) {
+
+        Vector2d res = applyTo(time, mass, (forceSum != null) ? forceSum.toVector2d() : null, vec.toVector2d());
+        return vec.set(res.x, res.y);
+    }
+
+    /*
+     * True if the nearest declaration of applyTo in 'type' or its superclasses
+     * is the legacy vector form only.
+     */
+    private static boolean overridesLegacyForm(final Class<?> type, final Class<?> scalar, final Class<?> legacy,
+                    final Class<?> fast) {
+
+        for (Class<?> c = type; c != Force.class; c = c.getSuperclass()) {
+            if (declares(c, scalar, fast)) {
+                return false;
+            } else if (declares(c, scalar, legacy)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean declares(final Class<?> c, final Class<?> scalar, final Class<?> vec) {
+
+        try {
+            c.getDeclaredMethod("applyTo", scalar, scalar, vec, vec);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
 }
@@ -12,6 +12,8 @@
 
 package bg.x2d.physics;
 
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 import bg.x2d.math.DoubleMath;
@@ -204,6 +206,88 @@ public class Friction extends Force {
         return vec;
     }
 
+    /**
+     * Same as the Vector2f form, but without allocating or any trigonometry:
+     * kinetic friction is directed opposite to the current velocity (or to
+     * 'forceSum' if the velocity is zero).
+     */
+    @Override
+    public Vec2f applyTo(final float time, final float mass, final Vec2f forceSum, final Vec2f vec) {
+
+        if (legacyf) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        float sx = fsc * mass * fg;
+        float len = vec.length();
+        if (forceSum == null || forceSum.length() > sx || !FloatMath.equals(len, 0)) {
+            float f = fkc * mass * fg;
+            if (len != 0) {
+                vecf.setXY(-vec.x / len * f, -vec.y / len * f);
+            } else if (forceSum != null && !forceSum.isZero()) {
+                float flen = forceSum.length();
+                vecf.setXY(-forceSum.x / flen * f, -forceSum.y / flen * f);
+            } else {
+                vecf.setXY(0, 0);
+            }
+        } else {
+            vecf.setXY(forceSum.x, forceSum.y);
+        }
+
+        float signX = Math.signum(vec.x);
+        float signY = Math.signum(vec.y);
+        vec.addScaled(vecf.x, vecf.y, time / mass);
+        if (Math.signum(vec.x) != signX) {
+            vec.x = 0;
+            vecf.x = 0;
+        }
+        if (Math.signum(vec.y) != signY) {
+            vec.y = 0;
+            vecf.y = 0;
+        }
+        return vec;
+    }
+
+    /**
+     * Same as the Vector2d form, but without allocating or any trigonometry:
+     * kinetic friction is directed opposite to the current velocity (or to
+     * 'forceSum' if the velocity is zero).
+     */
+    @Override
+    public Vec2d applyTo(final double time, final double mass, final Vec2d forceSum, final Vec2d vec) {
+
+        if (legacyd) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        double sx = dsc * mass * dg;
+        double len = vec.length();
+        if (forceSum == null || forceSum.length() > sx || !DoubleMath.equals(len, 0)) {
+            double f = dkc * mass * dg;
+            if (len != 0) {
+                vecd.setXY(-vec.x / len * f, -vec.y / len * f);
+            } else if (forceSum != null && !forceSum.isZero()) {
+                double flen = forceSum.length();
+                vecd.setXY(-forceSum.x / flen * f, -forceSum.y / flen * f);
+            } else {
+                vecd.setXY(0, 0);
+            }
+        } else {
+            vecd.setXY(forceSum.x, forceSum.y);
+        }
+
+        double signX = Math.signum(vec.x);
+        double signY = Math.signum(vec.y);
+        vec.addScaled(vecd.x, vecd.y, time / mass);
+        if (Math.signum(vec.x) != signX) {
+            vec.x = 0;
+            vecd.x = 0;
+        }
+        if (Math.signum(vec.y) != signY) {
+            vec.y = 0;
+            vecd.y = 0;
+        }
+        return vec;
+    }
+
     /**
      *
      */
@@ -12,6 +12,8 @@
 
 package bg.x2d.physics;
 
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 
@@ -110,6 +112,24 @@ public class GeneralForce extends Force {
         return vec;
     }
 
+    /**
+     * Same as the Vector2f form, without allocating.
+     */
+    @Override
+    public Vec2f applyTo(final float time, final float mass, final Vec2f forceSum, final Vec2f vec) {
+
+        return super.applyTo(time, mass, forceSum, vec);
+    }
+
+    /**
+     * Same as the Vector2d form, without allocating.
+     */
+    @Override
+    public Vec2d applyTo(final double time, final double mass, final Vec2d forceSum, final Vec2d vec) {
+
+        return super.applyTo(time, mass, forceSum, vec);
+    }
+
     /**
      *
      */
@@ -12,6 +12,8 @@
 
 package bg.x2d.physics;
 
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 
@@ -119,6 +121,26 @@ public class Gravity extends Force {
         return vec.add(vecd.multNew(time));
     }
 
+    @Override
+    public Vec2f applyTo(final float time, final float mass, final Vec2f forceSum, final Vec2f vec) {
+
+        if (legacyf) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        vec.y += ga * time;
+        return vec;
+    }
+
+    @Override
+    public Vec2d applyTo(final double time, final double mass, final Vec2d forceSum, final Vec2d vec) {
+
+        if (legacyd) {
+            return applyLegacy(time, mass, forceSum, vec);
+        }
+        vec.y += ga * time;
+        return vec;
+    }
+
     /**
      *
      */
@@ -0,0 +1,597 @@
+/*
+ *  Copyright (C) 2011-2014 Brian Groenke
+ *  All rights reserved.
+ *
+ *  This file is part of the 2DX Graphics Library.
+ *
+ *  This Source Code Form is subject to the terms of the
+ *  Mozilla Public License, v. 2.0. If a copy of the MPL
+ *  was not distributed with this file, You can obtain one at
+ *  http://mozilla.org/MPL/2.0/.
+ */
+
+package bg.x2d.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bg.x2d.geo.Vec2d;
+
+/**
+ * Integrates many bodies at once. Where each {@link StandardPhysics} node is
+ * updated on its own, PhysicsWorld keeps the position, velocity, acceleration,
+ * mass and accumulated force of every body in flat primitive arrays (one array
+ * per component) and applies the global forces, gravity and friction, to all
+ * of them in simple loops over those arrays. Large worlds are split into
+ * chunks that are integrated in parallel.<br/>
+ * <br/>
+ * Bodies are referred to by the int id returned from
+ * {@link #addBody(double, double, double, double, double)}. Ids stay valid
+ * until the body is removed, after which they may be reused. The body arrays
+ * are kept packed, so removing a body moves the last body into its slot.<br/>
+ * <br/>
+ * PhysicsWorld is not thread safe: bodies must not be added, removed or
+ * modified while {@link #step(double)} is running.
+ *
+ * @author Brian Groenke
+ *
+ */
+public class PhysicsWorld {
+
+    /**
+     * Default number of bodies at which {@link #step(double)} starts
+     * integrating in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * Default number of bodies integrated by each parallel task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private int count;
+    private double[] px, py, vx, vy, ax, ay, fx, fy, mass, invMass;
+    // index -> id and id -> index (-1 if the id is free)
+    private int[] idAt, indexOf;
+    private int[] freeIds = new int[0];
+    private int freeCount, nextId;
+
+    private double gx, gy;
+    private boolean friction;
+    private double staticAccel, kineticAccel;
+
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD, chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean parallel = true;
+    private ExecutorService executor;
+    private boolean ownExecutor;
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+    /**
+     * Creates an empty PhysicsWorld with standard gravity and no friction.
+     */
+    public PhysicsWorld() {
+
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty PhysicsWorld with standard gravity and no friction.
+     *
+     * @param initialCapacity
+     *            number of bodies to allocate storage for
+     */
+    public PhysicsWorld(final int initialCapacity) {
+
+        int cap = Math.max(1, initialCapacity);
+        px = new double[cap];
+        py = new double[cap];
+        vx = new double[cap];
+        vy = new double[cap];
+        ax = new double[cap];
+        ay = new double[cap];
+        fx = new double[cap];
+        fy = new double[cap];
+        mass = new double[cap];
+        invMass = new double[cap];
+        idAt = new int[cap];
+        indexOf = new int[cap];
+        Arrays.fill(indexOf, -1);
+        gy = Gravity.STANDARD;
+    }
+
+    /**
+     * Adds a body to the world.
+     *
+     * @param x
+     * @param y
+     * @param velX
+     * @param velY
+     * @param kg
+     *            mass of the body; must be greater than zero
+     * @return the id of the new body
+     */
+    public int addBody(final double x, final double y, final double velX, final double velY, final double kg) {
+
+        if (kg <= 0) {
+            throw (new IllegalArgumentException("mass must be > 0"));
+        }
+        if (count == px.length) {
+            grow(count * 2);
+        }
+        int id = (freeCount > 0) ? freeIds[--freeCount] : nextId++ ;
+        if (id >= indexOf.length) {
+            int len = indexOf.length;
+            indexOf = Arrays.copyOf(indexOf, Math.max(id + 1, len * 2));
+            Arrays.fill(indexOf, len, indexOf.length, -1);
+        }
+        int i = count++ ;
+        px[i] = x;
+        py[i] = y;
+        vx[i] = velX;
+        vy[i] = velY;
+        ax[i] = 0;
+        ay[i] = 0;
+        fx[i] = 0;
+        fy[i] = 0;
+        mass[i] = kg;
+        invMass[i] = 1.0 / kg;
+        idAt[i] = id;
+        indexOf[id] = i;
+        return id;
+    }
+
+    /**
+     * Removes the body with the given id. The id may be reused by a later
+     * call to addBody.
+     *
+     * @param id
+     */
+    public void removeBody(final int id) {
+
+        int i = index(id);
+        int last = --count;
+        if (i != last) {
+            px[i] = px[last];
+            py[i] = py[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            ax[i] = ax[last];
+            ay[i] = ay[last];
+            fx[i] = fx[last];
+            fy[i] = fy[last];
+            mass[i] = mass[last];
+            invMass[i] = invMass[last];
+            idAt[i] = idAt[last];
+            indexOf[idAt[i]] = i;
+        }
+        indexOf[id] = -1;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(16, freeCount * 2));
+        }
+        freeIds[freeCount++ ] = id;
+    }
+
+    /**
+     * Removes all bodies.
+     */
+    public void clear() {
+
+        count = 0;
+        freeCount = 0;
+        nextId = 0;
+        Arrays.fill(indexOf, -1);
+    }
+
+    public boolean contains(final int id) {
+
+        return id >= 0 && id < indexOf.length && indexOf[id] >= 0;
+    }
+
+    /**
+     * @return the number of bodies in the world
+     */
+    public int getBodyCount() {
+
+        return count;
+    }
+
+    /**
+     * Sets the gravitational acceleration applied to every body.
+     *
+     * @param g
+     *            the gravity to apply, or null for none
+     */
+    public void setGravity(final Gravity g) {
+
+        if (g == null) {
+            setGravity(0, 0);
+        } else {
+            setGravity(g.getVec2d().x, g.getVec2d().y);
+        }
+    }
+
+    /**
+     * Sets the gravitational acceleration, in m/s/s, applied to every body.
+     *
+     * @param gx
+     * @param gy
+     */
+    public void setGravity(final double gx, final double gy) {
+
+        this.gx = gx;
+        this.gy = gy;
+    }
+
+    public Vec2d getGravity(final Vec2d out) {
+
+        return out.set(gx, gy);
+    }
+
+    /**
+     * Sets the friction applied to every body. As with the allocation free
+     * form of {@link Friction#applyTo(double, double, Vec2d, Vec2d)}, kinetic
+     * friction opposes the velocity of a moving body and static friction keeps
+     * a body at rest until the acceleration from the other forces exceeds it.
+     *
+     * @param f
+     *            the friction to apply, or null for none
+     */
+    public void setFriction(final Friction f) {
+
+        if (f == null) {
+            friction = false;
+        } else if (f.getVec2d() != null) {
+            setFriction(f.dsc * f.dg, f.dkc * f.dg);
+        } else {
+            setFriction(f.fsc * f.fg, f.fkc * f.fg);
+        }
+    }
+
+    /**
+     * Sets the friction applied to every body as accelerations (friction
+     * coefficient times gravitational acceleration).
+     *
+     * @param staticAccel
+     *            the acceleration needed to move a body at rest
+     * @param kineticAccel
+     *            the deceleration of a moving body
+     */
+    public void setFriction(final double staticAccel, final double kineticAccel) {
+
+        this.staticAccel = Math.abs(staticAccel);
+        this.kineticAccel = Math.abs(kineticAccel);
+        friction = true;
+    }
+
+    /**
+     * Adds a force, in Newtons, to be applied to the given body on the next
+     * step. Forces are cleared after each step.
+     *
+     * @param id
+     * @param forceX
+     * @param forceY
+     */
+    public void applyForce(final int id, final double forceX, final double forceY) {
+
+        int i = index(id);
+        fx[i] += forceX;
+        fy[i] += forceY;
+    }
+
+    public void applyForce(final int id, final Vec2d force) {
+
+        applyForce(id, force.x, force.y);
+    }
+
+    public void setPosition(final int id, final double x, final double y) {
+
+        int i = index(id);
+        px[i] = x;
+        py[i] = y;
+    }
+
+    public void setVelocity(final int id, final double velX, final double velY) {
+
+        int i = index(id);
+        vx[i] = velX;
+        vy[i] = velY;
+    }
+
+    public void setMass(final int id, final double kg) {
+
+        if (kg <= 0) {
+            throw (new IllegalArgumentException("mass must be > 0"));
+        }
+        int i = index(id);
+        mass[i] = kg;
+        invMass[i] = 1.0 / kg;
+    }
+
+    public double getX(final int id) {
+
+        return px[index(id)];
+    }
+
+    public double getY(final int id) {
+
+        return py[index(id)];
+    }
+
+    public double getVelocityX(final int id) {
+
+        return vx[index(id)];
+    }
+
+    public double getVelocityY(final int id) {
+
+        return vy[index(id)];
+    }
+
+    public double getMass(final int id) {
+
+        return mass[index(id)];
+    }
+
+    public Vec2d getPosition(final int id, final Vec2d out) {
+
+        int i = index(id);
+        return out.set(px[i], py[i]);
+    }
+
+    public Vec2d getVelocity(final int id, final Vec2d out) {
+
+        int i = index(id);
+        return out.set(vx[i], vy[i]);
+    }
+
+    /**
+     * @param id
+     * @param out
+     * @return the acceleration of the body from applied forces and gravity
+     *         during the last step (not including friction)
+     */
+    public Vec2d getAcceleration(final int id, final Vec2d out) {
+
+        int i = index(id);
+        return out.set(ax[i], ay[i]);
+    }
+
+    /**
+     * Enables or disables parallel integration. Enabled by default.
+     *
+     * @param parallel
+     */
+    public void setParallel(final boolean parallel) {
+
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param threshold
+     *            number of bodies at which steps start being integrated in
+     *            parallel
+     * @param chunkSize
+     *            number of bodies integrated by each task
+     */
+    public void setParallelThreshold(final int threshold, final int chunkSize) {
+
+        if (chunkSize <= 0) {
+            throw (new IllegalArgumentException("chunk size must be > 0"));
+        }
+        this.parallelThreshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the executor used for parallel steps. If none is set, a daemon
+     * thread pool with one thread per processor is created on the first
+     * parallel step and shut down by {@link #dispose()}.
+     *
+     * @param executor
+     */
+    public void setExecutor(final ExecutorService executor) {
+
+        dispose();
+        this.executor = executor;
+        this.ownExecutor = false;
+    }
+
+    /**
+     * Shuts down the thread pool created by this PhysicsWorld, if any.
+     */
+    public void dispose() {
+
+        if (ownExecutor && executor != null) {
+            executor.shutdown();
+        }
+        executor = null;
+        ownExecutor = false;
+    }
+
+    /**
+     * Advances every body by 'time' seconds: the accumulated forces and
+     * gravity are applied to each velocity, followed by friction, and then
+     * each velocity is applied to its position (semi-implicit Euler).
+     * Accumulated forces are cleared afterwards.
+     * <p>
+     * If the calling thread is interrupted during a parallel step, the step is
+     * still completed, with chunks that have not started integrated on the
+     * calling thread, and the thread's interrupt status is set on return.
+     *
+     * @param time
+     *            seconds to advance
+     */
+    public void step(final double time) {
+
+        if (count == 0) {
+            return;
+        }
+        if ( !parallel || count < parallelThreshold
+                        || (executor == null && Runtime.getRuntime().availableProcessors() == 1)) {
+            integrate(0, count, time);
+            return;
+        }
+
+        ExecutorService exec = executor();
+        int n = (count + chunkSize - 1) / chunkSize;
+        while (chunks.size() < n) {
+            chunks.add(new Chunk());
+        }
+        for (int c = 0; c < n; c++ ) {
+            Chunk chunk = chunks.get(c);
+            chunk.start = c * chunkSize;
+            chunk.end = Math.min(count, chunk.start + chunkSize);
+            chunk.time = time;
+        }
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(n);
+        for (int c = 0; c < n; c++ ) {
+            futures.add(exec.submit(chunks.get(c)));
+        }
+        boolean interrupted = false;
+        try {
+            for (int c = 0; c < n; c++ ) {
+                Future<Object> f = futures.get(c);
+                while (true) {
+                    // once interrupted, stop waiting for chunks that have not
+                    // started, but never leave one half integrated
+                    if (interrupted && f.cancel(false)) {
+                        Chunk chunk = chunks.get(c);
+                        integrate(chunk.start, chunk.end, time);
+                        break;
+                    }
+                    try {
+                        f.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw (new RuntimeException("error integrating bodies", e.getCause()));
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Integrates bodies [start, end). The loops without friction have no
+     * branches so that the JIT can vectorize them.
+     */
+    private void integrate(final int start, final int end, final double time) {
+
+        final double[] px = this.px, py = this.py, vx = this.vx, vy = this.vy;
+        final double[] ax = this.ax, ay = this.ay, fx = this.fx, fy = this.fy, invMass = this.invMass;
+        final double gx = this.gx, gy = this.gy;
+
+        for (int i = start; i < end; i++ ) {
+            ax[i] = fx[i] * invMass[i] + gx;
+            ay[i] = fy[i] * invMass[i] + gy;
+        }
+
+        if (friction) {
+            final double staticSq = staticAccel * staticAccel, decel = kineticAccel * time;
+            for (int i = start; i < end; i++ ) {
+                double nvx = vx[i], nvy = vy[i];
+                if (nvx == 0 && nvy == 0 && ax[i] * ax[i] + ay[i] * ay[i] <= staticSq) {
+                    // held in place by static friction
+                    continue;
+                }
+                nvx += ax[i] * time;
+                nvy += ay[i] * time;
+                double speed = Math.sqrt(nvx * nvx + nvy * nvy);
+                if (speed <= decel) {
+                    nvx = 0;
+                    nvy = 0;
+                } else {
+                    double scale = 1 - decel / speed;
+                    nvx *= scale;
+                    nvy *= scale;
+                }
+                vx[i] = nvx;
+                vy[i] = nvy;
+            }
+        } else {
+            for (int i = start; i < end; i++ ) {
+                vx[i] += ax[i] * time;
+                vy[i] += ay[i] * time;
+            }
+        }
+
+        for (int i = start; i < end; i++ ) {
+            px[i] += vx[i] * time;
+            py[i] += vy[i] * time;
+            fx[i] = 0;
+            fy[i] = 0;
+        }
+    }
+
+    private ExecutorService executor() {
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+
+                    Thread t = new Thread(r, "x2d-physics-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            ownExecutor = true;
+        }
+        return executor;
+    }
+
+    private int index(final int id) {
+
+        int i = (id >= 0 && id < indexOf.length) ? indexOf[id] : -1;
+        if (i < 0) {
+            throw (new IllegalArgumentException("no body with id " + id));
+        }
+        return i;
+    }
+
+    private void grow(final int cap) {
+
+        px = Arrays.copyOf(px, cap);
+        py = Arrays.copyOf(py, cap);
+        vx = Arrays.copyOf(vx, cap);
+        vy = Arrays.copyOf(vy, cap);
+        ax = Arrays.copyOf(ax, cap);
+        ay = Arrays.copyOf(ay, cap);
+        fx = Arrays.copyOf(fx, cap);
+        fy = Arrays.copyOf(fy, cap);
+        mass = Arrays.copyOf(mass, cap);
+        invMass = Arrays.copyOf(invMass, cap);
+        idAt = Arrays.copyOf(idAt, cap);
+    }
+
+    private class Chunk implements Callable<Object> {
+
+        int start, end;
+        double time;
+
+        @Override
+        public Object call() {
+
+            integrate(start, end, time);
+            return null;
+        }
+    }
+}
@@ -12,13 +12,20 @@
 
 package bg.x2d.physics;
 
+import bg.x2d.geo.Vec2d;
+import bg.x2d.geo.Vec2f;
 import bg.x2d.geo.Vector2d;
 import bg.x2d.geo.Vector2f;
 
 /**
  * A PhysicsNode that represents standard (real) physical forces acting upon an
  * object. Gravity is built in and will always be called by
- * <code>applyForces</code>.
+ * <code>applyForces</code>.<br/>
+ * <br/>
+ * Forces are applied using the allocation free Vec2f/Vec2d forms of
+ * {@link Force#applyTo(float, float, Vec2f, Vec2f)}, so an update doesn't
+ * create any objects. The velocity vector is only written back (without
+ * intermediate precision rounding) once all forces have been applied.
  * 
  * @author Brian Groenke
  * 
@@ -31,6 +38,11 @@ public class StandardPhysics implements PhysicsNode {
     protected Vector2d veld, acceld;
 
     protected double mass;
+
+    // scratch vectors for applyForces
+    private final Vec2f tmpVelf = new Vec2f(), tmpSumf = new Vec2f();
+    private final Vec2d tmpVeld = new Vec2d(), tmpSumd = new Vec2d();
+
     /**
      * configurable only by subclasses to toggle gravity - gravity will always
      * be applied within a StandardPhysics object
@@ -101,32 +113,48 @@ public class StandardPhysics implements PhysicsNode {
     @Override
     public Vector2f applyForces(final float time, final Force... f) {
 
+        Vec2f vel = tmpVelf.set(velf);
         if (applyGravity) {
-            g.applyTo(time, (float) mass, null, velf);
+            g.applyTo(time, (float) mass, (Vec2f) null, vel);
         }
 
-        Vector2f vecSum = new Vector2f(g.getVec2f());
+        Vec2f vecSum = tmpSumf.set(g.getVec2f());
         for (Force force : f) {
-            force.applyTo(time, (float) mass, vecSum, velf);
-            vecSum.add(force.getVec2f());
+            force.applyTo(time, (float) mass, vecSum, vel);
+            Vector2f fvec = force.getVec2f();
+            vecSum.add(fvec.x, fvec.y);
+        }
+        vecSum.div((float) mass);
+        velf.setXY(vel.x, vel.y);
+        if (accelf == null) {
+            accelf = new Vector2f(vecSum.x, vecSum.y);
+        } else {
+            accelf.setXY(vecSum.x, vecSum.y);
         }
-        accelf = vecSum.div((float) mass);
         return velf;
     }
 
     @Override
     public Vector2d applyForces(final double time, final Force... f) {
 
+        Vec2d vel = tmpVeld.set(veld);
         if (applyGravity) {
-            g.applyTo(time, mass, null, veld);
+            g.applyTo(time, mass, (Vec2d) null, vel);
         }
 
-        Vector2d vecSum = new Vector2d(g.getVec2d());
+        Vec2d vecSum = tmpSumd.set(g.getVec2d());
         for (Force force : f) {
-            force.applyTo(time, mass, vecSum, veld);
-            vecSum.add(force.getVec2d());
+            force.applyTo(time, mass, vecSum, vel);
+            Vector2d fvec = force.getVec2d();
+            vecSum.add(fvec.x, fvec.y);
+        }
+        vecSum.div(mass);
+        veld.setXY(vel.x, vel.y);
+        if (acceld == null) {
+            acceld = new Vector2d(vecSum.x, vecSum.y);
+        } else {
+            acceld.setXY(vecSum.x, vecSum.y);
         }
-        acceld = vecSum.div(mass);
         return veld;
     }
 